@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.AliasMetadata;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.mockito.Mockito;
+
+import com.amazon.opendistroforelasticsearch.security.DefaultObjectMapper;
+import com.amazon.opendistroforelasticsearch.security.resolver.IndexResolverReplacer.Resolved;
+import com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModelV7;
+import com.amazon.opendistroforelasticsearch.security.securityconf.DynamicConfigModel;
+import com.amazon.opendistroforelasticsearch.security.securityconf.impl.CType;
+import com.amazon.opendistroforelasticsearch.security.securityconf.impl.SecurityDynamicConfiguration;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Synthetic configurations and cluster states shared by the benchmarks.
+ *
+ * Every team {@code n} gets a role {@code team_n} which may read {@code logs-team_n-*} and
+ * {@code metrics-team_n}, is mapped from the backend role {@code team_n} and the user {@code svc_team_n}.
+ * Every third role carries a DLS query, every fifth FLS and masked fields.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    public static String team(int n) {
+        return "team_" + n;
+    }
+
+    public static ConfigModelV7 configModel(int roleCount) throws IOException {
+        final DynamicConfigModel dcm = Mockito.mock(DynamicConfigModel.class);
+        Mockito.when(dcm.getHostsResolverMode()).thenReturn("ip-only");
+
+        return new ConfigModelV7(
+                SecurityDynamicConfiguration.fromNode(roles(roleCount), CType.ROLES, 2, 0, 0),
+                SecurityDynamicConfiguration.fromNode(roleMappings(roleCount), CType.ROLESMAPPING, 2, 0, 0),
+                SecurityDynamicConfiguration.fromNode(actionGroups(), CType.ACTIONGROUPS, 2, 0, 0),
+                SecurityDynamicConfiguration.fromNode(withMeta(DefaultObjectMapper.objectMapper.createObjectNode(), "tenants"), CType.TENANTS, 2, 0, 0),
+                dcm, Settings.EMPTY);
+    }
+
+    // teamCount * indicesPerTeam daily log indices, one alias per team and one metrics index per team
+    public static ClusterState clusterState(int teamCount, int indicesPerTeam) {
+        final Metadata.Builder metadata = Metadata.builder();
+        for (int t = 0; t < teamCount; t++) {
+            for (int i = 0; i < indicesPerTeam; i++) {
+                metadata.put(IndexMetadata.builder("logs-" + team(t) + "-2020.01." + i)
+                        .settings(indexSettings())
+                        .putAlias(AliasMetadata.builder("logs-" + team(t)))
+                        .build(), false);
+            }
+            metadata.put(IndexMetadata.builder("metrics-" + team(t)).settings(indexSettings()).build(), false);
+        }
+        return ClusterState.builder(new ClusterName("benchmark")).metadata(metadata).build();
+    }
+
+    public static ClusterService clusterService(ClusterState state) {
+        final ClusterService clusterService = Mockito.mock(ClusterService.class);
+        Mockito.when(clusterService.state()).thenReturn(state);
+        return clusterService;
+    }
+
+    public static Resolved resolved(String... indices) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            final List<String> indexList = Arrays.asList(indices);
+            out.writeStringCollection(Collections.emptyList());
+            out.writeStringCollection(indexList);
+            out.writeStringCollection(indexList);
+            out.writeStringCollection(Collections.emptyList());
+            return new Resolved(out.bytes().streamInput());
+        }
+    }
+
+    private static Settings.Builder indexSettings() {
+        return Settings.builder()
+                .put(IndexMetadata.SETTING_VERSION_CREATED, Version.CURRENT)
+                .put(IndexMetadata.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetadata.SETTING_NUMBER_OF_REPLICAS, 0);
+    }
+
+    private static ObjectNode roles(int roleCount) {
+        final ObjectNode roles = DefaultObjectMapper.objectMapper.createObjectNode();
+        for (int t = 0; t < roleCount; t++) {
+            final ObjectNode role = roles.putObject(team(t));
+            role.putArray("cluster_permissions").add("cluster_composite_ops_ro");
+            final ObjectNode index = role.putArray("index_permissions").addObject();
+            index.putArray("index_patterns").add("logs-" + team(t) + "-*").add("metrics-" + team(t));
+            index.putArray("allowed_actions").add("read").add("indices:data/write/index");
+            if (t % 3 == 0) {
+                index.put("dls", "{\"term\": {\"owner\": \"" + team(t) + "\"}}");
+            }
+            if (t % 5 == 0) {
+                index.putArray("fls").add("~secret").add("~internal.*");
+                index.putArray("masked_fields").add("ip").add("user.email");
+            }
+        }
+        return withMeta(roles, "roles");
+    }
+
+    private static ObjectNode roleMappings(int roleCount) {
+        final ObjectNode mappings = DefaultObjectMapper.objectMapper.createObjectNode();
+        for (int t = 0; t < roleCount; t++) {
+            final ObjectNode mapping = mappings.putObject(team(t));
+            mapping.putArray("backend_roles").add(team(t));
+            mapping.putArray("users").add("svc_" + team(t));
+            mapping.putArray("hosts");
+        }
+        return withMeta(mappings, "rolesmapping");
+    }
+
+    private static ObjectNode actionGroups() {
+        final ObjectNode groups = DefaultObjectMapper.objectMapper.createObjectNode();
+        final ArrayNode read = groups.putObject("read").putArray("allowed_actions");
+        read.add("indices:data/read*").add("indices:admin/mappings/fields/get*");
+        groups.putObject("cluster_composite_ops_ro").putArray("allowed_actions")
+                .add("indices:data/read/mget").add("indices:data/read/msearch").add("indices:data/read/scroll*");
+        return withMeta(groups, "actiongroups");
+    }
+
+    private static ObjectNode withMeta(ObjectNode config, String type) {
+        final ObjectNode meta = config.putObject("_meta");
+        meta.put("type", type);
+        meta.put("config_version", 2);
+        return config;
+    }
+
+    public static List<String> indexNames(int teamCount, int indicesPerTeam) {
+        final List<String> names = new ArrayList<>(teamCount * indicesPerTeam);
+        for (int t = 0; t < teamCount; t++) {
+            for (int i = 0; i < indicesPerTeam; i++) {
+                names.add("logs-" + team(t) + "-2020.01." + i);
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.configuration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.fieldvisitor.FieldsVisitor;
+import org.elasticsearch.index.shard.ShardId;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.amazon.opendistroforelasticsearch.security.auditlog.NullAuditLog;
+import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Cost of opening a DLS restricted reader and of loading documents through the FLS and
+ * field masking visitors of {@link DlsFlsFilterLeafReader}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DlsFlsFilterLeafReaderBenchmark {
+
+    private static final int TEAMS = 20;
+    private static final Set<String> FLS = ImmutableSet.of("~secret", "~internal.*");
+    private static final Set<String> MASKED = ImmutableSet.of("ip", "user.email");
+
+    @Param({ "10000" })
+    public int docCount;
+
+    @Param({ "0", "1000" })
+    public int maskedValueCacheSize;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private IndexService indexService;
+    private ThreadContext threadContext;
+    private ClusterService clusterService;
+    private ShardId shardId;
+    private MaskedFieldCache maskedFieldCache;
+    private Query dlsQuery;
+    private DlsBitsetCache dlsBitsetCache;
+
+    private DirectoryReader flsReader;
+    private DirectoryReader maskedReader;
+    private int doc;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = new ByteBuffersDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()))) {
+            for (int i = 0; i < docCount; i++) {
+                writer.addDocument(document(i));
+            }
+        }
+        reader = DirectoryReader.open(directory);
+
+        indexService = Mockito.mock(IndexService.class);
+        Mockito.when(indexService.index()).thenReturn(new Index("bench", "uuid"));
+        clusterService = Mockito.mock(ClusterService.class);
+        shardId = new ShardId("bench", "uuid", 0);
+        maskedFieldCache = new MaskedFieldCache(new Salt(new byte[16]), maskedValueCacheSize);
+        dlsQuery = new TermQuery(new Term("owner", "team_3"));
+        dlsBitsetCache = new DlsBitsetCache(64 * 1024 * 1024);
+
+        //a get applies DLS in the leaf reader, a search would apply it as a filter query
+        threadContext = new ThreadContext(Settings.EMPTY);
+        threadContext.putTransient(ConfigConstants.OPENDISTRO_SECURITY_ACTION_NAME, "indices:data/read/get");
+
+        flsReader = wrap(FLS, null, null, null);
+        maskedReader = wrap(null, null, MASKED, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public int dlsOpenReader(Blackhole bh) throws IOException {
+        return openDlsReader(bh, null);
+    }
+
+    @Benchmark
+    public int dlsOpenReaderCachedBitsets(Blackhole bh) throws IOException {
+        return openDlsReader(bh, dlsBitsetCache);
+    }
+
+    private int openDlsReader(Blackhole bh, DlsBitsetCache cache) throws IOException {
+        //like the searcher wrapper a reader is wrapped per request
+        final DirectoryReader dlsReader = wrap(null, dlsQuery, null, cache);
+        int live = 0;
+        for (final LeafReaderContext ctx : dlsReader.leaves()) {
+            final Bits liveDocs = ctx.reader().getLiveDocs();
+            bh.consume(liveDocs);
+            live += ctx.reader().numDocs();
+        }
+        return live;
+    }
+
+    @Benchmark
+    public FieldsVisitor flsLoadDocument() throws IOException {
+        return load(flsReader);
+    }
+
+    @Benchmark
+    public FieldsVisitor maskedLoadDocument() throws IOException {
+        return load(maskedReader);
+    }
+
+    @Benchmark
+    public FieldsVisitor baselineLoadDocument() throws IOException {
+        return load(reader);
+    }
+
+    private FieldsVisitor load(DirectoryReader r) throws IOException {
+        final FieldsVisitor visitor = new FieldsVisitor(true);
+        r.document(doc, visitor);
+        doc = (doc + 1) % docCount;
+        return visitor;
+    }
+
+    private DirectoryReader wrap(Set<String> fls, Query dls, Set<String> masked, DlsBitsetCache cache) throws IOException {
+        return new DlsFlsFilterLeafReader.DlsFlsDirectoryReader(reader, fls == null ? Collections.emptySet() : fls, dls,
+                indexService, threadContext, clusterService, new NullAuditLog(), masked, shardId, maskedFieldCache, cache);
+    }
+
+    private static Document document(int i) {
+        final String owner = "team_" + (i % TEAMS);
+        final String ip = "10.0." + (i % 256) + "." + (i / 256 % 256);
+        final String source = "{\"owner\":\"" + owner + "\",\"message\":\"request " + i + " handled\",\"ip\":\"" + ip + "\","
+                + "\"secret\":\"s" + i + "\",\"internal\":{\"trace\":\"t" + i + "\",\"node\":\"n" + (i % 7) + "\"},"
+                + "\"user\":{\"name\":\"u" + i + "\",\"email\":\"u" + i + "@example.com\"}}";
+
+        final Document doc = new Document();
+        doc.add(new StoredField("_source", source.getBytes(StandardCharsets.UTF_8)));
+        doc.add(new StringField("owner", owner, Field.Store.YES));
+        doc.add(new StringField("ip", ip, Field.Store.YES));
+        doc.add(new StringField("secret", "s" + i, Field.Store.YES));
+        doc.add(new TextField("message", "request " + i + " handled", Field.Store.YES));
+        return doc;
+    }
+}
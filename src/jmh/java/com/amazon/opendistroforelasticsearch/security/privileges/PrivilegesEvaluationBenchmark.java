@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.privileges;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.opendistroforelasticsearch.security.benchmark.BenchmarkFixtures;
+import com.amazon.opendistroforelasticsearch.security.resolver.IndexResolverReplacer.Resolved;
+import com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModelV7;
+import com.amazon.opendistroforelasticsearch.security.securityconf.SecurityRoles;
+import com.amazon.opendistroforelasticsearch.security.user.User;
+
+/**
+ * Role mapping and index privilege checks as done by {@link PrivilegesEvaluator#evaluate} for a
+ * user holding a handful of roles out of a large role configuration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PrivilegesEvaluationBenchmark {
+
+    private static final String[] SEARCH = new String[] { "indices:data/read/search" };
+
+    @Param({ "100", "400" })
+    public int roleCount;
+
+    @Param({ "10" })
+    public int indicesPerTeam;
+
+    private ConfigModelV7 configModel;
+    private ClusterService clusterService;
+    private IndexNameExpressionResolver resolver;
+    private User user;
+    private Set<String> mappedRoles;
+    private Resolved ownIndices;
+    private Resolved foreignIndex;
+    private Resolved allIndices;
+
+    @Setup
+    public void setup() throws Exception {
+        configModel = BenchmarkFixtures.configModel(roleCount);
+        clusterService = BenchmarkFixtures.clusterService(BenchmarkFixtures.clusterState(roleCount, indicesPerTeam));
+        resolver = new IndexNameExpressionResolver(new ThreadContext(Settings.EMPTY));
+
+        user = new User("svc_" + BenchmarkFixtures.team(3),
+                Arrays.asList(BenchmarkFixtures.team(3), BenchmarkFixtures.team(5), BenchmarkFixtures.team(7)), null);
+        mappedRoles = configModel.mapSecurityRoles(user, null);
+
+        ownIndices = BenchmarkFixtures.resolved("logs-" + BenchmarkFixtures.team(3) + "-2020.01.1",
+                "logs-" + BenchmarkFixtures.team(5) + "-2020.01.2", "metrics-" + BenchmarkFixtures.team(7));
+        foreignIndex = BenchmarkFixtures.resolved("logs-" + BenchmarkFixtures.team(11) + "-2020.01.1");
+        allIndices = BenchmarkFixtures.resolved(BenchmarkFixtures.indexNames(roleCount, indicesPerTeam).toArray(new String[0]));
+    }
+
+    @Benchmark
+    public Set<String> mapRoles() {
+        return configModel.mapSecurityRoles(user, null);
+    }
+
+    @Benchmark
+    public boolean permittedIndices() {
+        final SecurityRoles securityRoles = configModel.getSecurityRoles().filter(mappedRoles);
+        return securityRoles.get(ownIndices, user, SEARCH, resolver, clusterService);
+    }
+
+    @Benchmark
+    public boolean forbiddenIndex() {
+        final SecurityRoles securityRoles = configModel.getSecurityRoles().filter(mappedRoles);
+        return securityRoles.get(foreignIndex, user, SEARCH, resolver, clusterService);
+    }
+
+    @Benchmark
+    public boolean permittedIndicesRolespan() {
+        final SecurityRoles securityRoles = configModel.getSecurityRoles().filter(mappedRoles);
+        return securityRoles.impliesTypePermGlobal(ownIndices, user, SEARCH, resolver, clusterService);
+    }
+
+    @Benchmark
+    public Set<String> reduceAllIndices() {
+        final SecurityRoles securityRoles = configModel.getSecurityRoles().filter(mappedRoles);
+        return securityRoles.reduce(allIndices, user, SEARCH, resolver, clusterService);
+    }
+
+    @Benchmark
+    public Tuple<Map<String, Set<String>>, Map<String, Set<String>>> dlsFls() {
+        final SecurityRoles securityRoles = configModel.getSecurityRoles().filter(mappedRoles);
+        return securityRoles.getDlsFls(user, resolver, clusterService);
+    }
+
+    @Benchmark
+    public Map<String, Set<String>> maskedFields() {
+        final SecurityRoles securityRoles = configModel.getSecurityRoles().filter(mappedRoles);
+        return securityRoles.getMaskedFields(user, resolver, clusterService);
+    }
+}
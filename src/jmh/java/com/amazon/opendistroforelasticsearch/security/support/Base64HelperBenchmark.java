@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.support;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazon.opendistroforelasticsearch.security.user.User;
+
+/**
+ * Serialization of the user and DLS/FLS transport headers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class Base64HelperBenchmark {
+
+    private User user;
+    private HashMap<String, Set<String>> dlsQueries;
+    private String serializedUser;
+    private String serializedDlsQueries;
+
+    @Setup
+    public void setup() {
+        user = new User("svc_team_1", Arrays.asList("team_1", "team_2", "ops"), null);
+        user.addAttributes(Collections.singletonMap("attr.ldap.department", "engineering"));
+        user.addOpenDistroSecurityRoles(Arrays.asList("team_1", "team_2", "own_index"));
+
+        dlsQueries = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            final Set<String> queries = new HashSet<>();
+            queries.add("{\"term\": {\"owner\": \"team_" + i + "\"}}");
+            dlsQueries.put("logs-team_" + i + "-*", queries);
+        }
+
+        serializedUser = Base64Helper.serializeObject(user);
+        serializedDlsQueries = Base64Helper.serializeObject(dlsQueries);
+    }
+
+    @Benchmark
+    public String serializeUser() {
+        return Base64Helper.serializeObject(user);
+    }
+
+    @Benchmark
+    public Serializable deserializeUser() {
+        return Base64Helper.deserializeObject(serializedUser);
+    }
+
+    @Benchmark
+    public String serializeDlsQueries() {
+        return Base64Helper.serializeObject(dlsQueries);
+    }
+
+    @Benchmark
+    public Serializable deserializeDlsQueries() {
+        return Base64Helper.deserializeObject(serializedDlsQueries);
+    }
+}
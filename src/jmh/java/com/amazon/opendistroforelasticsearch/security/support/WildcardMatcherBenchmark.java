@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching index names against a combined matcher built from many role index patterns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WildcardMatcherBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int patternCount;
+
+    private WildcardMatcher matcher;
+    private String[] candidates;
+    private int next;
+
+    @Setup
+    public void setup() {
+        final List<String> patterns = new ArrayList<>(patternCount);
+        for (int i = 0; i < patternCount; i++) {
+            switch (i % 4) {
+            case 0:
+                patterns.add("logs-team_" + i + "-*");
+                break;
+            case 1:
+                patterns.add("metrics-team_" + i);
+                break;
+            case 2:
+                patterns.add("*-team_" + i + "-archive");
+                break;
+            default:
+                patterns.add("app?-team_" + i + "-*");
+                break;
+            }
+        }
+        matcher = WildcardMatcher.from(patterns);
+
+        candidates = new String[256];
+        for (int i = 0; i < candidates.length; i++) {
+            final int team = i * 7 % (patternCount * 2);
+            candidates[i] = (i % 2 == 0 ? "logs-team_" : "metrics-team_") + team + (i % 2 == 0 ? "-2020.01." + i : "");
+        }
+    }
+
+    @Benchmark
+    public boolean test() {
+        return matcher.test(candidate());
+    }
+
+    @Benchmark
+    public List<String> matchingPatterns() {
+        return matcher.getMatchingPatterns(candidate());
+    }
+
+    private String candidate() {
+        next = (next + 1) & (candidates.length - 1);
+        return candidates[next];
+    }
+}
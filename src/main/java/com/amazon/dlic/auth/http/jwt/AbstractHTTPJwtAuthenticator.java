@@ -23,7 +23,6 @@ import java.util.Map.Entry;
 import java.util.regex.Pattern;
 
 import org.apache.cxf.rs.security.jose.jwt.JwtClaims;
-import org.apache.cxf.rs.security.jose.jwt.JwtToken;
 import org.apache.http.HttpHeaders;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -41,6 +40,7 @@ import com.amazon.dlic.auth.http.jwt.keybyoidc.AuthenticatorUnavailableException
 import com.amazon.dlic.auth.http.jwt.keybyoidc.BadCredentialsException;
 import com.amazon.dlic.auth.http.jwt.keybyoidc.JwtVerifier;
 import com.amazon.dlic.auth.http.jwt.keybyoidc.KeyProvider;
+import com.amazon.dlic.auth.http.jwt.keybyoidc.SelfRefreshingKeySet;
 import com.amazon.opendistroforelasticsearch.security.auth.HTTPAuthenticator;
 import com.amazon.opendistroforelasticsearch.security.user.AuthCredentials;
 
@@ -57,6 +57,7 @@ public abstract class AbstractHTTPJwtAuthenticator implements HTTPAuthenticator
     private final String jwtUrlParameter;
     private final String subjectKey;
     private final String rolesKey;
+    private final VerifiedTokenCache<JwtClaims> tokenCache;
 
     public AbstractHTTPJwtAuthenticator(Settings settings, Path configPath) {
         jwtUrlParameter = settings.get("jwt_url_parameter");
@@ -64,10 +65,15 @@ public abstract class AbstractHTTPJwtAuthenticator implements HTTPAuthenticator
         isDefaultAuthHeader = HttpHeaders.AUTHORIZATION.equalsIgnoreCase(jwtHeaderName);
         rolesKey = settings.get("roles_key");
         subjectKey = settings.get("subject_key");
+        tokenCache = VerifiedTokenCache.from(settings);
 
         try {
             this.keyProvider = this.initKeyProvider(settings, configPath);
 
+            if (keyProvider instanceof SelfRefreshingKeySet) {
+                ((SelfRefreshingKeySet) keyProvider).addRefreshListener(tokenCache::invalidateAll);
+            }
+
             jwtVerifier = new JwtVerifier(keyProvider);
 
         } catch (Exception e) {
@@ -102,19 +108,35 @@ public abstract class AbstractHTTPJwtAuthenticator implements HTTPAuthenticator
             return null;
         }
 
-        JwtToken jwt;
+        final String cacheKey = tokenCache.key(jwtString);
+        final VerifiedTokenCache.Entry<JwtClaims> cached = tokenCache.get(cacheKey);
+        final JwtClaims claims;
 
-        try {
-            jwt = jwtVerifier.getVerifiedJwtToken(jwtString);
-        } catch (AuthenticatorUnavailableException e) {
-            log.info(e);
-            throw new ElasticsearchSecurityException(e.getMessage(), RestStatus.SERVICE_UNAVAILABLE);
-        } catch (BadCredentialsException e) {
-            log.info("Extracting JWT token from " + jwtString + " failed", e);
-            return null;
-        }
+        if (cached != null) {
+            if (cached.isRejected()) {
+                log.debug("JWT token was rejected recently");
+                return null;
+            }
+            claims = cached.getClaims();
+        } else {
+            final long generation = tokenCache.generation();
+
+            try {
+                claims = jwtVerifier.getVerifiedJwtToken(jwtString).getClaims();
+            } catch (AuthenticatorUnavailableException e) {
+                log.info(e);
+                throw new ElasticsearchSecurityException(e.getMessage(), RestStatus.SERVICE_UNAVAILABLE);
+            } catch (BadCredentialsException e) {
+                log.info("Extracting JWT token from " + jwtString + " failed", e);
+                tokenCache.putRejected(cacheKey, generation);
+                return null;
+            }
 
-        JwtClaims claims = jwt.getClaims();
+            if (claims != null) {
+                final Long expiryTime = claims.getExpiryTime();
+                tokenCache.putVerified(cacheKey, generation, claims, expiryTime == null ? 0 : expiryTime * 1000);
+            }
+        }
 
         final String subject = extractSubject(claims);
 
@@ -25,6 +25,7 @@ import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Map.Entry;
 import java.util.regex.Pattern;
 
@@ -62,6 +63,7 @@ public class HTTPJwtAuthenticator implements HTTPAuthenticator {
     private final String jwtUrlParameter;
     private final String rolesKey;
     private final String subjectKey;
+    private final VerifiedTokenCache<Claims> tokenCache;
 
     public HTTPJwtAuthenticator(final Settings settings, final Path configPath) {
         super();
@@ -109,6 +111,7 @@ public class HTTPJwtAuthenticator implements HTTPAuthenticator {
         isDefaultAuthHeader = HttpHeaders.AUTHORIZATION.equalsIgnoreCase(jwtHeaderName);
         rolesKey = settings.get("roles_key");
         subjectKey = settings.get("subject_key");
+        tokenCache = VerifiedTokenCache.from(settings);
         jwtParser = _jwtParser;
     }
 
@@ -165,9 +168,37 @@ public class HTTPJwtAuthenticator implements HTTPAuthenticator {
             }
         }
 
-        try {
-            final Claims claims = jwtParser.parseClaimsJws(jwtToken).getBody();
+        final String cacheKey = tokenCache.key(jwtToken);
+        final VerifiedTokenCache.Entry<Claims> cached = tokenCache.get(cacheKey);
+        final Claims claims;
+
+        if (cached != null) {
+            if (cached.isRejected()) {
+                log.debug("JWT token was rejected recently");
+                return null;
+            }
+            claims = cached.getClaims();
+        } else {
+            final long generation = tokenCache.generation();
+
+            try {
+                claims = jwtParser.parseClaimsJws(jwtToken).getBody();
+            } catch (WeakKeyException e) {
+                log.error("Cannot authenticate user with JWT because of "+e, e);
+                return null;
+            } catch (Exception e) {
+                if(log.isDebugEnabled()) {
+                    log.debug("Invalid or expired JWT token.", e);
+                }
+                tokenCache.putRejected(cacheKey, generation);
+                return null;
+            }
 
+            final Date expiration = claims.getExpiration();
+            tokenCache.putVerified(cacheKey, generation, claims, expiration == null ? 0 : expiration.getTime());
+        }
+
+        try {
             final String subject = extractSubject(claims, request);
 
             if (subject == null) {
@@ -185,12 +216,9 @@ public class HTTPJwtAuthenticator implements HTTPAuthenticator {
 
             return ac;
 
-        } catch (WeakKeyException e) {
-            log.error("Cannot authenticate user with JWT because of "+e, e);
-            return null;
         } catch (Exception e) {
             if(log.isDebugEnabled()) {
-                log.debug("Invalid or expired JWT token.", e);
+                log.debug("Invalid JWT token.", e);
             }
             return null;
         }
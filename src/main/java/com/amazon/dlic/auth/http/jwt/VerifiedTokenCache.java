@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.dlic.auth.http.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.ElasticsearchSecurityException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Claims of tokens whose signature was already verified, keyed by the SHA-256 of the raw token, so
+ * that a token which is sent again does not need to be verified again. A verified token is kept until
+ * its expiry, at most for {@code jwt_cache_ttl}. A rejected token is kept for {@code jwt_cache_negative_ttl}.
+ * Everything is evicted when the keys change, results of verifications which were running at that time
+ * are not cached.
+ */
+public final class VerifiedTokenCache<T> {
+
+    //null if disabled
+    private final Cache<String, Entry<T>> cache;
+    private final long negativeTtlMillis;
+    private final AtomicLong generation = new AtomicLong();
+
+    VerifiedTokenCache(final int maxSize, final TimeValue ttl, final TimeValue negativeTtl) {
+        if (maxSize > 0 && ttl.millis() > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(ttl.millis(), TimeUnit.MILLISECONDS)
+                    .build();
+        } else {
+            this.cache = null;
+        }
+        this.negativeTtlMillis = negativeTtl.millis();
+    }
+
+    public static <T> VerifiedTokenCache<T> from(final Settings settings) {
+        return new VerifiedTokenCache<>(settings.getAsInt("jwt_cache_max_size", 10000),
+                settings.getAsTime("jwt_cache_ttl", TimeValue.timeValueMinutes(10)),
+                settings.getAsTime("jwt_cache_negative_ttl", TimeValue.timeValueSeconds(10)));
+    }
+
+    /**
+     * @return the key of {@code token} for this cache, null if the cache is disabled
+     */
+    public String key(final String token) {
+        if (cache == null) {
+            return null;
+        }
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new ElasticsearchSecurityException("Unable to digest token", e);
+        }
+    }
+
+    /**
+     * @return the cached result for {@code key}, null if there is none or it expired
+     */
+    public Entry<T> get(final String key) {
+        if (key == null) {
+            return null;
+        }
+        final Entry<T> entry = cache.getIfPresent(key);
+        if (entry != null && entry.expiresAtMillis != 0 && System.currentTimeMillis() >= entry.expiresAtMillis) {
+            cache.asMap().remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * @return the current generation, to be passed to {@link #putVerified} and {@link #putRejected}
+     * after the verification
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * @param expiresAtMillis the expiry of the token, 0 if it does not expire
+     */
+    public void putVerified(final String key, final long generation, final T claims, final long expiresAtMillis) {
+        put(key, generation, new Entry<>(claims, expiresAtMillis));
+    }
+
+    public void putRejected(final String key, final long generation) {
+        if (negativeTtlMillis > 0) {
+            put(key, generation, new Entry<>(null, System.currentTimeMillis() + negativeTtlMillis));
+        }
+    }
+
+    private void put(final String key, final long generation, final Entry<T> entry) {
+        if (key == null) {
+            return;
+        }
+        cache.put(key, entry);
+        //the keys changed during the verification
+        if (generation != this.generation.get()) {
+            cache.asMap().remove(key, entry);
+        }
+    }
+
+    /**
+     * Evicts all tokens, called when the keys changed
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    long size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    public static final class Entry<T> {
+        private final T claims;
+        private final long expiresAtMillis;
+
+        private Entry(final T claims, final long expiresAtMillis) {
+            this.claims = claims;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public boolean isRejected() {
+            return claims == null;
+        }
+
+        /**
+         * @return the verified claims, null if the token was rejected
+         */
+        public T getClaims() {
+            return claims;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package com.amazon.dlic.auth.http.jwt.keybyoidc;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -46,11 +47,19 @@ public class SelfRefreshingKeySet implements KeyProvider {
 	private int queuedThreadTimeoutMs = 2500;
 	private int refreshRateLimitTimeWindowMs = 10000;
 	private int refreshRateLimitCount = 10;
+	private final List<Runnable> refreshListeners = new CopyOnWriteArrayList<>();
 
 	public SelfRefreshingKeySet(KeySetProvider refreshFunction) {
 		this.keySetProvider = refreshFunction;
 	}
 
+	/**
+	 * Adds a listener which is called after the keys were refreshed, before any request uses the new keys
+	 */
+	public void addRefreshListener(Runnable listener) {
+		refreshListeners.add(listener);
+	}
+
 	public JsonWebKey getKey(String kid) throws AuthenticatorUnavailableException, BadCredentialsException {
 		if (Strings.isNullOrEmpty(kid)) {
 			return getKeyWithoutKeyId();
@@ -221,6 +230,7 @@ public class SelfRefreshingKeySet implements KeyProvider {
 
 						synchronized (SelfRefreshingKeySet.this) {
 							jsonWebKeys = newKeys;
+							notifyRefreshListeners();
 							refreshInProgress = false;
 							lastRefreshFailure = null;
 							SelfRefreshingKeySet.this.notifyAll();
@@ -282,6 +292,16 @@ public class SelfRefreshingKeySet implements KeyProvider {
 		}
 	}
 
+	private void notifyRefreshListeners() {
+		for (Runnable listener : refreshListeners) {
+			try {
+				listener.run();
+			} catch (Exception e) {
+				log.warn("Refresh listener {} failed", listener, e);
+			}
+		}
+	}
+
 	public int getRequestTimeoutMs() {
 		return requestTimeoutMs;
 	}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.dlic.auth.http.kerberos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.ietf.jgss.GSSCredential;
+import org.ietf.jgss.GSSManager;
+import org.ietf.jgss.Oid;
+
+import com.amazon.dlic.auth.http.kerberos.util.JaasKrbUtil;
+
+/**
+ * Long lived acceptor Subject and GSS credential of the SPNEGO authenticator. The keytab login is done
+ * once and renewed in the background, after the renew interval or at 80% of the lifetime of a ticket
+ * of the Subject, whatever comes first, and when the keytab file changes. Requests keep using the
+ * current credentials while they are renewed. If a renewal fails, it is tried again after a minute,
+ * also if it was caused by a change of the keytab.
+ */
+final class AcceptorCredentials {
+
+    private static final Logger log = LogManager.getLogger(AcceptorCredentials.class);
+    static final long KEYTAB_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    static final long RETRY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    //shared by all authenticators, they are recreated on every config change
+    private static final ThreadPoolExecutor RENEWAL_EXECUTOR;
+
+    static {
+        RENEWAL_EXECUTOR = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                EsExecutors.daemonThreadFactory("opendistro_security_kerberos_renewal"));
+        RENEWAL_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final Set<String> acceptorPrincipal;
+    private final Login login;
+    private final LongSupplier keytabModified;
+    private final LongSupplier nanoTime;
+    private final Executor executor;
+    private final long renewIntervalNanos;
+    private final AtomicBoolean renewing = new AtomicBoolean();
+
+    private volatile Credentials current;
+    private volatile long nextKeytabCheckNanos;
+    //modification time of the keytab which was last logged in with or seen changing
+    private volatile long observedKeytabModified;
+
+    AcceptorCredentials(final Set<String> acceptorPrincipal, final Path acceptorKeyTabPath, final Oid[] oids, final TimeValue renewInterval) {
+        this(acceptorPrincipal, () -> keytabLogin(acceptorPrincipal, acceptorKeyTabPath, oids), () -> lastModified(acceptorKeyTabPath),
+                renewInterval, System::nanoTime, RENEWAL_EXECUTOR);
+    }
+
+    AcceptorCredentials(final Set<String> acceptorPrincipal, final Login login, final LongSupplier keytabModified,
+            final TimeValue renewInterval, final LongSupplier nanoTime, final Executor executor) {
+        this.acceptorPrincipal = acceptorPrincipal;
+        this.login = login;
+        this.keytabModified = keytabModified;
+        this.renewIntervalNanos = renewInterval.nanos();
+        this.nanoTime = nanoTime;
+        this.executor = executor;
+    }
+
+    /**
+     * @return the current credentials, logs in with the keytab if there are none yet
+     */
+    Credentials get() throws LoginException, PrivilegedActionException {
+        Credentials credentials = current;
+        if (credentials == null) {
+            synchronized (this) {
+                credentials = current;
+                if (credentials == null) {
+                    current = credentials = login();
+                }
+            }
+            return credentials;
+        }
+
+        final long now = nanoTime.getAsLong();
+        if (now - credentials.renewAtNanos >= 0 || isKeytabChanged(now)) {
+            renew(credentials);
+        }
+        return credentials;
+    }
+
+    private boolean isKeytabChanged(final long now) {
+        if (now - nextKeytabCheckNanos < 0) {
+            return false;
+        }
+        nextKeytabCheckNanos = now + KEYTAB_CHECK_INTERVAL_NANOS;
+        final long modified = keytabModified.getAsLong();
+        if (modified != observedKeytabModified) {
+            //a failed renewal is retried after RETRY_NANOS, not on the next check
+            observedKeytabModified = modified;
+            log.info("Keytab of {} changed, renew the acceptor credentials", acceptorPrincipal);
+            return true;
+        }
+        return false;
+    }
+
+    private void renew(final Credentials credentials) {
+        if (!renewing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    final Credentials renewed = AccessController.doPrivileged(
+                            (PrivilegedExceptionAction<Credentials>) this::login);
+                    current = renewed;
+                    log.debug("Renewed acceptor credentials of {}", acceptorPrincipal);
+                    //the old credential is not disposed, contexts of other requests may still use it
+                } catch (Exception e) {
+                    log.error("Unable to renew acceptor credentials of {}, keep the current ones", acceptorPrincipal, e);
+                    credentials.renewAtNanos = nanoTime.getAsLong() + RETRY_NANOS;
+                } finally {
+                    renewing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            renewing.set(false);
+        }
+    }
+
+    private Credentials login() throws LoginException, PrivilegedActionException {
+        final long modified = keytabModified.getAsLong();
+        final long now = nanoTime.getAsLong();
+        final Tuple<Subject, GSSCredential> loggedIn = login.login();
+        final Subject subject = loggedIn.v1();
+
+        long renewAtNanos = now + renewIntervalNanos;
+        for (final KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+            if (ticket.getStartTime() != null && ticket.getEndTime() != null) {
+                final long lifetimeMillis = ticket.getEndTime().getTime() - ticket.getStartTime().getTime();
+                final long remainingMillis = ticket.getEndTime().getTime() - System.currentTimeMillis();
+                final long renewInMillis = Math.max(0, remainingMillis - lifetimeMillis / 5);
+                renewAtNanos = Math.min(renewAtNanos, now + TimeUnit.MILLISECONDS.toNanos(renewInMillis));
+            }
+        }
+
+        observedKeytabModified = modified;
+        nextKeytabCheckNanos = now + KEYTAB_CHECK_INTERVAL_NANOS;
+        return new Credentials(subject, loggedIn.v2(), renewAtNanos);
+    }
+
+    private static Tuple<Subject, GSSCredential> keytabLogin(final Set<String> acceptorPrincipal, final Path acceptorKeyTabPath,
+            final Oid[] oids) throws LoginException, PrivilegedActionException {
+        final Subject subject = JaasKrbUtil.loginUsingKeytab(acceptorPrincipal, acceptorKeyTabPath, false);
+        final GSSManager manager = GSSManager.getInstance();
+        final GSSCredential credential = Subject.doAs(subject, (PrivilegedExceptionAction<GSSCredential>) () ->
+                manager.createCredential(null, GSSCredential.INDEFINITE_LIFETIME, oids, GSSCredential.ACCEPT_ONLY));
+        return new Tuple<>(subject, credential);
+    }
+
+    private static long lastModified(final Path acceptorKeyTabPath) {
+        return AccessController.doPrivileged((PrivilegedAction<Long>) () -> {
+            try {
+                return Files.getLastModifiedTime(acceptorKeyTabPath).toMillis();
+            } catch (IOException e) {
+                log.warn("Unable to read the modification time of keytab {}", acceptorKeyTabPath, e);
+                return -1L;
+            }
+        });
+    }
+
+    /**
+     * Logs in with the keytab, returns the Subject and its acceptor credential
+     */
+    @FunctionalInterface
+    interface Login {
+        Tuple<Subject, GSSCredential> login() throws LoginException, PrivilegedActionException;
+    }
+
+    static final class Credentials {
+        final Subject subject;
+        final GSSCredential credential;
+        private volatile long renewAtNanos;
+
+        private Credentials(final Subject subject, final GSSCredential credential, final long renewAtNanos) {
+            this.subject = subject;
+            this.credential = credential;
+            this.renewAtNanos = renewAtNanos;
+        }
+    }
+}
@@ -20,6 +20,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
@@ -28,6 +30,8 @@ import java.util.Base64;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 import javax.security.auth.Subject;
@@ -35,9 +39,11 @@ import javax.security.auth.login.LoginException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ElasticsearchSecurityException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.SpecialPermission;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -48,7 +54,6 @@ import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestStatus;
 import org.ietf.jgss.GSSContext;
-import org.ietf.jgss.GSSCredential;
 import org.ietf.jgss.GSSException;
 import org.ietf.jgss.GSSManager;
 import org.ietf.jgss.GSSName;
@@ -59,6 +64,8 @@ import com.amazon.dlic.auth.http.kerberos.util.KrbConstants;
 import com.amazon.opendistroforelasticsearch.security.auth.HTTPAuthenticator;
 import com.amazon.opendistroforelasticsearch.security.user.AuthCredentials;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 public class HTTPSpnegoAuthenticator implements HTTPAuthenticator {
 
@@ -70,6 +77,11 @@ public class HTTPSpnegoAuthenticator implements HTTPAuthenticator {
     private boolean stripRealmFromPrincipalName;
     private Set<String> acceptorPrincipal;
     private Path acceptorKeyTabPath;
+    //null if the acceptor principal or keytab is not configured or not usable
+    private AcceptorCredentials acceptorCredentials;
+    private final AtomicBoolean missingCredentialsLogged = new AtomicBoolean();
+    //established principals by token digest, null if disabled
+    private Cache<String, EstablishedPrincipal> tokenCache;
 
     public HTTPSpnegoAuthenticator(final Settings settings, final Path configPath) {
         super();
@@ -153,6 +165,20 @@ public class HTTPSpnegoAuthenticator implements HTTPAuthenticator {
                 }
             });
 
+            if (acceptorPrincipal != null && acceptorKeyTabPath != null) {
+                acceptorCredentials = new AcceptorCredentials(acceptorPrincipal, acceptorKeyTabPath, KRB_OIDS,
+                        settings.getAsTime("acceptor_credentials_renew_interval", TimeValue.timeValueHours(1)));
+            }
+
+            //a replayed token is accepted while it is cached, so this is off by default
+            final TimeValue tokenCacheTtl = settings.getAsTime("token_cache_ttl", TimeValue.ZERO);
+            if (tokenCacheTtl.millis() > 0) {
+                tokenCache = CacheBuilder.newBuilder()
+                        .expireAfterWrite(tokenCacheTtl.millis(), TimeUnit.MILLISECONDS)
+                        .maximumSize(settings.getAsInt("token_cache_max_size", 10000))
+                        .build();
+            }
+
             log.debug("strip_realm_from_principal {}", stripRealmFromPrincipalName);
             log.debug("acceptor_principal {}", acceptorPrincipal);
             log.debug("acceptor_keytab_filepath {}", acceptorKeyTabPath);
@@ -190,7 +216,6 @@ public class HTTPSpnegoAuthenticator implements HTTPAuthenticator {
             return null;
         }
 
-        Principal principal = null;
         final String authorizationHeader = request.header("Authorization");
 
         if (authorizationHeader != null) {
@@ -200,76 +225,95 @@ public class HTTPSpnegoAuthenticator implements HTTPAuthenticator {
             } else {
                 final byte[] decodedNegotiateHeader = Base64.getDecoder().decode(authorizationHeader.substring(10));
 
-                GSSContext gssContext = null;
-                byte[] outToken = null;
+                final String tokenKey = tokenCache == null ? null : digest(decodedNegotiateHeader);
+                if (tokenKey != null) {
+                    final EstablishedPrincipal established = tokenCache.getIfPresent(tokenKey);
+                    if (established != null) {
+                        return new AuthCredentials(established.username, (Object) established.outToken).markComplete();
+                    }
+                }
 
-                try {
+                final AuthCredentials creds = acceptToken(decodedNegotiateHeader);
 
-                    final Subject subject = JaasKrbUtil.loginUsingKeytab(acceptorPrincipal, acceptorKeyTabPath, false);
+                //only established contexts are cached
+                if (tokenKey != null && creds != null && creds.isComplete()) {
+                    tokenCache.put(tokenKey, new EstablishedPrincipal(creds.getUsername(), (byte[]) creds.getNativeCredentials()));
+                }
 
-                    final GSSManager manager = GSSManager.getInstance();
-                    final int credentialLifetime = GSSCredential.INDEFINITE_LIFETIME;
+                return creds;
+            }
+        } else {
+            log.trace("No 'Authorization' header, send 401 and 'WWW-Authenticate Negotiate'");
+            return null;
+        }
 
-                    final PrivilegedExceptionAction<GSSCredential> action = new PrivilegedExceptionAction<GSSCredential>() {
-                        @Override
-                        public GSSCredential run() throws GSSException {
-                            return manager.createCredential(null, credentialLifetime, KRB_OIDS, GSSCredential.ACCEPT_ONLY);
-                        }
-                    };
-                    gssContext = manager.createContext(Subject.doAs(subject, action));
+    }
 
-                    outToken = Subject.doAs(subject, new AcceptAction(gssContext, decodedNegotiateHeader));
+    AuthCredentials acceptToken(final byte[] decodedNegotiateHeader) {
 
-                    if (outToken == null) {
-                        log.warn("Ticket validation not successful, outToken is null");
-                        return null;
-                    }
+        if (acceptorCredentials == null) {
+            if (missingCredentialsLogged.compareAndSet(false, true)) {
+                log.error("No acceptor credentials, check acceptor_principal and acceptor_keytab_filepath. Kerberos authentication will not work");
+            }
+            return null;
+        }
 
-                    principal = Subject.doAs(subject, new AuthenticateAction(log, gssContext, stripRealmFromPrincipalName));
+        Principal principal = null;
+        GSSContext gssContext = null;
+        byte[] outToken = null;
 
-                } catch (final LoginException e) {
-                    log.error("Login exception due to", e);
-                    return null;
-                } catch (final GSSException e) {
-                    log.error("Ticket validation not successful due to", e);
-                    return null;
-                } catch (final PrivilegedActionException e) {
-                    final Throwable cause = e.getCause();
-                    if (cause instanceof GSSException) {
-                        log.info("Service login not successful due to", e);
-                    } else {
-                        log.error("Service login not successful due to", e);
-                    }
-                    return null;
-                } finally {
-                    if (gssContext != null) {
-                        try {
-                            gssContext.dispose();
-                        } catch (final GSSException e) {
-                            // Ignore
-                        }
-                    }
-                }
+        try {
 
-                if (principal == null) {
-                    return new AuthCredentials("_incomplete_", (Object) outToken);
-                }
+            final AcceptorCredentials.Credentials credentials = acceptorCredentials.get();
+            final Subject subject = credentials.subject;
 
+            gssContext = GSSManager.getInstance().createContext(credentials.credential);
 
-                final String username = ((SimpleUserPrincipal) principal).getName();
+            outToken = Subject.doAs(subject, new AcceptAction(gssContext, decodedNegotiateHeader));
 
-                if(username == null || username.length() == 0) {
-                    log.error("Got empty or null user from kerberos. Normally this means that you acceptor principal {} does not match the server hostname", acceptorPrincipal);
-                }
+            if (outToken == null) {
+                log.warn("Ticket validation not successful, outToken is null");
+                return null;
+            }
 
-                return new AuthCredentials(username, (Object) outToken).markComplete();
+            principal = Subject.doAs(subject, new AuthenticateAction(log, gssContext, stripRealmFromPrincipalName));
 
+        } catch (final LoginException e) {
+            log.error("Login exception due to", e);
+            return null;
+        } catch (final GSSException e) {
+            log.error("Ticket validation not successful due to", e);
+            return null;
+        } catch (final PrivilegedActionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof GSSException) {
+                log.info("Service login not successful due to", e);
+            } else {
+                log.error("Service login not successful due to", e);
             }
-        } else {
-            log.trace("No 'Authorization' header, send 401 and 'WWW-Authenticate Negotiate'");
             return null;
+        } finally {
+            if (gssContext != null) {
+                try {
+                    gssContext.dispose();
+                } catch (final GSSException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        if (principal == null) {
+            return new AuthCredentials("_incomplete_", (Object) outToken);
+        }
+
+
+        final String username = ((SimpleUserPrincipal) principal).getName();
+
+        if(username == null || username.length() == 0) {
+            log.error("Got empty or null user from kerberos. Normally this means that you acceptor principal {} does not match the server hostname", acceptorPrincipal);
         }
 
+        return new AuthCredentials(username, (Object) outToken).markComplete();
     }
 
     @Override
@@ -381,6 +425,24 @@ public class HTTPSpnegoAuthenticator implements HTTPAuthenticator {
 		}
 	}
 
+    private static String digest(final byte[] token) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(token));
+        } catch (NoSuchAlgorithmException e) {
+            throw new ElasticsearchSecurityException("Unable to digest token", e);
+        }
+    }
+
+    private static final class EstablishedPrincipal {
+        private final String username;
+        private final byte[] outToken;
+
+        private EstablishedPrincipal(final String username, final byte[] outToken) {
+            this.username = username;
+            this.outToken = outToken;
+        }
+    }
+
     private static String stripRealmName(String name, boolean strip){
         if (strip && name != null) {
             final int i = name.indexOf('@');
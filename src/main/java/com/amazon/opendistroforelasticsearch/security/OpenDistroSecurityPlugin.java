@@ -48,6 +48,8 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.amazon.opendistroforelasticsearch.security.auditlog.NullAuditLog;
+import com.amazon.opendistroforelasticsearch.security.configuration.DlsBitsetCache;
+import com.amazon.opendistroforelasticsearch.security.configuration.MaskedFieldCache;
 import com.amazon.opendistroforelasticsearch.security.configuration.OpenDistroSecurityFlsDlsIndexSearcherWrapper;
 import com.amazon.opendistroforelasticsearch.security.configuration.Salt;
 import com.amazon.opendistroforelasticsearch.security.ssl.rest.OpenDistroSecuritySSLReloadCertsAction;
@@ -84,8 +86,12 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.env.Environment;
@@ -126,6 +132,9 @@ import org.elasticsearch.watcher.ResourceWatcherService;
 import com.amazon.opendistroforelasticsearch.security.action.configupdate.ConfigUpdateAction;
 import com.amazon.opendistroforelasticsearch.security.action.configupdate.TransportConfigUpdateAction;
 import com.amazon.opendistroforelasticsearch.security.action.whoami.TransportWhoAmIAction;
+import com.amazon.opendistroforelasticsearch.security.action.stats.SecurityStatsAction;
+import com.amazon.opendistroforelasticsearch.security.action.stats.SecurityStatsCollector;
+import com.amazon.opendistroforelasticsearch.security.action.stats.TransportSecurityStatsAction;
 import com.amazon.opendistroforelasticsearch.security.action.whoami.WhoAmIAction;
 import com.amazon.opendistroforelasticsearch.security.auditlog.AuditLog;
 import com.amazon.opendistroforelasticsearch.security.auditlog.AuditLogSslExceptionHandler;
@@ -148,6 +157,7 @@ import com.amazon.opendistroforelasticsearch.security.privileges.PrivilegesInter
 import com.amazon.opendistroforelasticsearch.security.resolver.IndexResolverReplacer;
 import com.amazon.opendistroforelasticsearch.security.rest.KibanaInfoAction;
 import com.amazon.opendistroforelasticsearch.security.rest.OpenDistroSecurityHealthAction;
+import com.amazon.opendistroforelasticsearch.security.rest.OpenDistroSecurityStatsAction;
 import com.amazon.opendistroforelasticsearch.security.rest.OpenDistroSecurityInfoAction;
 import com.amazon.opendistroforelasticsearch.security.rest.TenantInfoAction;
 import com.amazon.opendistroforelasticsearch.security.securityconf.DynamicConfigFactory;
@@ -184,6 +194,7 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
     private volatile ClusterService cs;
     private volatile AuditLog auditLog;
     private volatile BackendRegistry backendRegistry;
+    private volatile DynamicConfigFactory dynamicConfigFactory;
     private volatile SslExceptionHandler sslExceptionHandler;
     private volatile Client localClient;
     private final boolean disabled;
@@ -193,7 +204,8 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
     private volatile IndexResolverReplacer irr;
     private volatile NamedXContentRegistry namedXContentRegistry = null;
     private volatile DlsFlsRequestValve dlsFlsValve = null;
-    private volatile Salt salt;
+    private volatile MaskedFieldCache maskedFieldCache;
+    private volatile DlsBitsetCache dlsBitsetCache;
 
     public static boolean isActionTraceEnabled() {
         return actionTrace.isTraceEnabled();
@@ -213,6 +225,9 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
         if (auditLog != null) {
             auditLog.close();
         }
+        if (dynamicConfigFactory != null) {
+            dynamicConfigFactory.close();
+        }
     }
 
     private final SslExceptionHandler evaluateSslExceptionHandler() {
@@ -448,6 +463,7 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
                 handlers.add(new OpenDistroSecurityInfoAction(settings, restController, Objects.requireNonNull(evaluator), Objects.requireNonNull(threadPool)));
                 handlers.add(new KibanaInfoAction(settings, restController, Objects.requireNonNull(evaluator), Objects.requireNonNull(threadPool)));
                 handlers.add(new OpenDistroSecurityHealthAction(settings, restController, Objects.requireNonNull(backendRegistry)));
+                handlers.add(new OpenDistroSecurityStatsAction(Objects.requireNonNull(threadPool), Objects.requireNonNull(adminDns)));
                 handlers.add(new OpenDistroSecuritySSLCertsInfoAction(settings, restController, odsks, Objects.requireNonNull(threadPool), Objects.requireNonNull(adminDns)));
                 handlers.add(new TenantInfoAction(settings, restController, Objects.requireNonNull(evaluator), Objects.requireNonNull(threadPool),
 				Objects.requireNonNull(cs), Objects.requireNonNull(adminDns), Objects.requireNonNull(cr)));
@@ -481,6 +497,7 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
         if(!disabled && !openDistroSSLConfig.isSslOnlyMode()) {
             actions.add(new ActionHandler<>(ConfigUpdateAction.INSTANCE, TransportConfigUpdateAction.class));
             actions.add(new ActionHandler<>(WhoAmIAction.INSTANCE, TransportWhoAmIAction.class));
+            actions.add(new ActionHandler<>(SecurityStatsAction.INSTANCE, TransportSecurityStatsAction.class));
         }
         return actions;
     }
@@ -496,7 +513,7 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
                 final ComplianceIndexingOperationListener ciol = ReflectionHelper.instantiateComplianceListener(Objects.requireNonNull(auditLog));
                 indexModule.addIndexOperationListener(ciol);
 
-                indexModule.setReaderWrapper(indexService -> new OpenDistroSecurityFlsDlsIndexSearcherWrapper(indexService, settings, adminDns, cs, auditLog, ciol, evaluator, salt));
+                indexModule.setReaderWrapper(indexService -> new OpenDistroSecurityFlsDlsIndexSearcherWrapper(indexService, settings, adminDns, cs, auditLog, ciol, evaluator, maskedFieldCache, dlsBitsetCache));
                 indexModule.forceQueryCacheProvider((indexSettings,nodeCache)->new QueryCache() {
 
                     @Override
@@ -516,14 +533,14 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
 
                     @Override
                     public Weight doCache(Weight weight, QueryCachingPolicy policy) {
-                        final Map<String, Set<String>> allowedFlsFields = (Map<String, Set<String>>) HeaderHelper.deserializeSafeFromHeader(threadPool.getThreadContext(),
+                        final Map<String, Set<String>> allowedFlsFields = HeaderHelper.deserializeSafeDlsFlsMapFromHeader(threadPool.getThreadContext(),
                                 ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER);
                         
                         if(OpenDistroSecurityUtils.evalMap(allowedFlsFields, index().getName()) != null) {
                             return weight;
                         } else {
                             
-                            final Map<String, Set<String>> maskedFieldsMap = (Map<String, Set<String>>) HeaderHelper.deserializeSafeFromHeader(threadPool.getThreadContext(),
+                            final Map<String, Set<String>> maskedFieldsMap = HeaderHelper.deserializeSafeDlsFlsMapFromHeader(threadPool.getThreadContext(),
                                     ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER);
                             
                             if(OpenDistroSecurityUtils.evalMap(maskedFieldsMap, index().getName()) != null) {
@@ -606,7 +623,7 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
                         return;
                     }
 
-                    final Map<String, Set<String>> maskedFieldsMap = (Map<String, Set<String>>) HeaderHelper.deserializeSafeFromHeader(threadPool.getThreadContext(),
+                    final Map<String, Set<String>> maskedFieldsMap = HeaderHelper.deserializeSafeDlsFlsMapFromHeader(threadPool.getThreadContext(),
                             ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER);
                     final String maskedEval = OpenDistroSecurityUtils.evalMap(maskedFieldsMap, indexModule.getIndex().getName());
                     if (maskedEval != null) {
@@ -750,7 +767,8 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
         }
         final ClusterInfoHolder cih = new ClusterInfoHolder();
         this.cs.addListener(cih);
-        this.salt = Salt.from(settings);
+        this.maskedFieldCache = new MaskedFieldCache(settings, Salt.from(settings));
+        this.dlsBitsetCache = new DlsBitsetCache(settings);
         dlsFlsValve = ReflectionHelper.instantiateDlsFlsValve();
 
         final IndexNameExpressionResolver resolver = new IndexNameExpressionResolver(threadPool.getThreadContext());
@@ -798,6 +816,7 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
                 principalExtractor, settings, configPath, compatConfig);
 
         final DynamicConfigFactory dcf = new DynamicConfigFactory(cr, settings, configPath, localClient, threadPool, cih);
+        dynamicConfigFactory = dcf;
         dcf.registerDCFListener(backendRegistry);
         dcf.registerDCFListener(compatConfig);
         dcf.registerDCFListener(irr);
@@ -830,6 +849,7 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
         components.add(evaluator);
         components.add(odsi);
         components.add(dcf);
+        components.add(new SecurityStatsCollector(auditLog, backendRegistry, evaluator, dcf.getPasswordVerifier()));
 
 
         return components;
@@ -893,6 +913,14 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
             settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_DISABLED, false, Property.NodeScope, Property.Filtered));
     
             settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_CACHE_TTL_MINUTES, 60, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.timeSetting(ConfigConstants.OPENDISTRO_SECURITY_CACHE_INVALIDATION_SPREAD, TimeValue.ZERO, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_CACHE_SOFT_TTL_MINUTES, 0, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_CACHE_REFRESH_THREADS, 2, 1, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.timeSetting(ConfigConstants.OPENDISTRO_SECURITY_CACHE_REFRESH_INITIAL_BACKOFF, TimeValue.timeValueSeconds(10), Property.NodeScope, Property.Filtered));
+            settings.add(Setting.timeSetting(ConfigConstants.OPENDISTRO_SECURITY_CACHE_REFRESH_MAX_BACKOFF, TimeValue.timeValueMinutes(5), Property.NodeScope, Property.Filtered));
+            settings.add(new Setting<>(ConfigConstants.OPENDISTRO_SECURITY_PASSWORD_HASHING_THREADS, s -> Integer.toString(Math.max(1, EsExecutors.allocatedProcessors(s) / 2)),
+                    s -> Setting.parseInt(s, 0, ConfigConstants.OPENDISTRO_SECURITY_PASSWORD_HASHING_THREADS), Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_PASSWORD_HASHING_MAX_QUEUE_LEN, 1000, 1, Property.NodeScope, Property.Filtered));
     
             //Security
             settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_ADVANCED_MODULES_ENABLED, true, Property.NodeScope, Property.Filtered));
@@ -910,6 +938,8 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
             settings.add(Setting.groupSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_ENDPOINTS + ".",  Property.NodeScope));
             settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_THREADPOOL_SIZE, 10, Property.NodeScope, Property.Filtered));
             settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_THREADPOOL_MAX_QUEUE_LEN, 100*1000, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WRITE_DIFF_THREADS, 2, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WRITE_DIFF_MAX_QUEUE_LEN, 10*1000, 1, Property.NodeScope, Property.Filtered));
             settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_LOG_REQUEST_BODY, true, Property.NodeScope, Property.Filtered));
             settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_RESOLVE_INDICES, true, Property.NodeScope, Property.Filtered));
             settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ENABLE_REST, true, Property.NodeScope, Property.Filtered));
@@ -928,8 +958,22 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
     
             
             // Security - Audit - Sink
+            settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_QUEUE_MAX_LEN, 100*1000, 1, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.simpleString(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_QUEUE_OVERFLOW_POLICY, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_QUEUE_DRAINERS, ConfigConstants.OPENDISTRO_SECURITY_AUDIT_QUEUE_DRAINERS_DEFAULT, 1, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_ENABLED, false, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.simpleString(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_PATH, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.byteSizeSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_MAX_SIZE, new ByteSizeValue(1, ByteSizeUnit.GB), Property.NodeScope, Property.Filtered));
+            settings.add(Setting.byteSizeSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_SEGMENT_SIZE, new ByteSizeValue(16, ByteSizeUnit.MB), Property.NodeScope, Property.Filtered));
+            settings.add(Setting.timeSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_INITIAL_BACKOFF, TimeValue.timeValueSeconds(1), Property.NodeScope, Property.Filtered));
+            settings.add(Setting.timeSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_MAX_BACKOFF, TimeValue.timeValueMinutes(5), Property.NodeScope, Property.Filtered));
             settings.add(Setting.simpleString(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_INDEX, Property.NodeScope, Property.Filtered));
             settings.add(Setting.simpleString(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_TYPE, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.simpleString(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_REFRESH_POLICY, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_ENABLED, false, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_ACTIONS, 500, 1, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.byteSizeSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_SIZE, new ByteSizeValue(5, ByteSizeUnit.MB), Property.NodeScope, Property.Filtered));
+            settings.add(Setting.timeSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_FLUSH_INTERVAL, TimeValue.timeValueSeconds(1), Property.NodeScope, Property.Filtered));
     
             // External ES
             settings.add(Setting.listSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_EXTERNAL_ES_HTTP_ENDPOINTS, Lists.newArrayList("localhost:9200"), Function.identity(), Property.NodeScope)); //not filtered here
@@ -948,6 +992,7 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
             settings.add(Setting.simpleString(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_EXTERNAL_ES_JKS_CERT_ALIAS, Property.NodeScope, Property.Filtered));
             settings.add(Setting.listSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_EXTERNAL_ES_ENABLED_SSL_CIPHERS, Collections.emptyList(), Function.identity(), Property.NodeScope));//not filtered here
             settings.add(Setting.listSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_EXTERNAL_ES_ENABLED_SSL_PROTOCOLS, Collections.emptyList(), Function.identity(), Property.NodeScope));//not filtered here
+            settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_EXTERNAL_ES_BULK_GZIP, true, Property.NodeScope, Property.Filtered));
     
             // Webhooks
             settings.add(Setting.simpleString(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_URL, Property.NodeScope, Property.Filtered));
@@ -955,6 +1000,13 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
             settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_SSL_VERIFY, true, Property.NodeScope, Property.Filtered));
             settings.add(Setting.simpleString(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_PEMTRUSTEDCAS_FILEPATH, Property.NodeScope, Property.Filtered));
             settings.add(Setting.simpleString(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_PEMTRUSTEDCAS_CONTENT, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_ENABLED, false, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.simpleString(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_BODY, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_ACTIONS, 500, 1, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.byteSizeSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_SIZE, new ByteSizeValue(1, ByteSizeUnit.MB), Property.NodeScope, Property.Filtered));
+            settings.add(Setting.timeSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_FLUSH_INTERVAL, TimeValue.timeValueSeconds(1), Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_MAX_IN_FLIGHT, 4, 1, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_GZIP, false, Property.NodeScope, Property.Filtered));
             
             // Log4j
             settings.add(Setting.simpleString(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_LOG4J_LOGGER_NAME, Property.NodeScope, Property.Filtered));
@@ -995,6 +1047,9 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
             //compat
             settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_UNSUPPORTED_DISABLE_INTERTRANSPORT_AUTH_INITIALLY, false, Property.NodeScope, Property.Filtered));
             settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_UNSUPPORTED_DISABLE_REST_AUTH_INITIALLY, false, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_COMPAT_JDK_SERIALIZATION_HEADERS, ConfigConstants.OPENDISTRO_SECURITY_COMPAT_JDK_SERIALIZATION_HEADERS_DEFAULT, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.memorySizeSetting(ConfigConstants.OPENDISTRO_SECURITY_DLS_BITSET_CACHE_SIZE, ConfigConstants.OPENDISTRO_SECURITY_DLS_BITSET_CACHE_SIZE_DEFAULT, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELDS_VALUE_CACHE_SIZE, ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELDS_VALUE_CACHE_SIZE_DEFAULT, 0, Property.NodeScope, Property.Filtered));
 
             // system integration
             settings.add(Setting.boolSetting(ConfigConstants.OPENDISTRO_SECURITY_UNSUPPORTED_RESTORE_SECURITYINDEX_ENABLED, false, Property.NodeScope, Property.Filtered));
@@ -1054,8 +1109,8 @@ public final class OpenDistroSecurityPlugin extends OpenDistroSecuritySSLPlugin
             if (threadPool == null) {
                 return field -> true;
             }
-            final Map<String, Set<String>> allowedFlsFields = (Map<String, Set<String>>) HeaderHelper
-                    .deserializeSafeFromHeader(threadPool.getThreadContext(), ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER);
+            final Map<String, Set<String>> allowedFlsFields = HeaderHelper
+                    .deserializeSafeDlsFlsMapFromHeader(threadPool.getThreadContext(), ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER);
 
             final String eval = OpenDistroSecurityUtils.evalMap(allowedFlsFields, index);
 
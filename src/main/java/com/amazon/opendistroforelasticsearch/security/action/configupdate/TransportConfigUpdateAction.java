@@ -31,11 +31,18 @@
 package com.amazon.opendistroforelasticsearch.security.action.configupdate;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.FailedNodeException;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.nodes.BaseNodeRequest;
@@ -51,15 +58,19 @@ import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 
+import com.amazon.opendistroforelasticsearch.security.DefaultObjectMapper;
 import com.amazon.opendistroforelasticsearch.security.auth.BackendRegistry;
 import com.amazon.opendistroforelasticsearch.security.configuration.ConfigurationRepository;
 import com.amazon.opendistroforelasticsearch.security.securityconf.DynamicConfigFactory;
 import com.amazon.opendistroforelasticsearch.security.securityconf.impl.CType;
+import com.amazon.opendistroforelasticsearch.security.securityconf.impl.SecurityDynamicConfiguration;
+import com.fasterxml.jackson.core.JsonProcessingException;
 
 public class TransportConfigUpdateAction
 extends
 TransportNodesAction<ConfigUpdateRequest, ConfigUpdateResponse, TransportConfigUpdateAction.NodeConfigUpdateRequest, ConfigUpdateNodeResponse> {
 
+    private static final Logger log = LogManager.getLogger(TransportConfigUpdateAction.class);
     protected Logger logger = LogManager.getLogger(getClass());
     private final Provider<BackendRegistry> backendRegistry;
     private final ConfigurationRepository configurationRepository;
@@ -113,11 +124,77 @@ TransportNodesAction<ConfigUpdateRequest, ConfigUpdateResponse, TransportConfigU
 	
     @Override
     protected ConfigUpdateNodeResponse nodeOperation(final NodeConfigUpdateRequest request) {
-        configurationRepository.reloadConfiguration(CType.fromStringValues((request.request.getConfigTypes())));
-        backendRegistry.get().invalidateCache();
+        final Set<CType> types = CType.fromStringValues((request.request.getConfigTypes()));
+        reloadAndInvalidate(types, configurationRepository, backendRegistry.get());
         return new ConfigUpdateNodeResponse(clusterService.localNode(), request.request.getConfigTypes(), null);
     }
 
+    /**
+     * Reloads the configuration types and drops the cached users which depend on what changed. A request for all
+     * types (flush cache or a full upload) drops all cached users, at once if the config or the internal users
+     * changed, otherwise spread if configured.
+     */
+    static void reloadAndInvalidate(final Set<CType> types, final ConfigurationRepository configurationRepository,
+            final BackendRegistry backendRegistry) {
+        final Map<CType, SecurityDynamicConfiguration<?>> before = new EnumMap<>(CType.class);
+        for (final CType type : types) {
+            before.put(type, configurationRepository.getConfiguration(type));
+        }
+
+        configurationRepository.reloadConfiguration(types);
+
+        final Set<CType> changedTypes = EnumSet.noneOf(CType.class);
+        Set<String> changedUsers = Collections.emptySet();
+        for (final CType type : types) {
+            final SecurityDynamicConfiguration<?> after = configurationRepository.getConfiguration(type);
+            if (isChanged(before.get(type), after)) {
+                changedTypes.add(type);
+                if (type == CType.INTERNALUSERS) {
+                    changedUsers = changedEntries(before.get(type), after);
+                }
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Changed config types {}, changed internal users {}", changedTypes, changedUsers);
+        }
+
+        if (types.containsAll(EnumSet.allOf(CType.class))) {
+            if (changedTypes.contains(CType.CONFIG) || changedTypes.contains(CType.INTERNALUSERS)) {
+                backendRegistry.invalidateCacheNow();
+            } else {
+                backendRegistry.invalidateCache();
+            }
+            return;
+        }
+
+        backendRegistry.invalidateCache(changedTypes, changedUsers);
+    }
+
+    static boolean isChanged(final SecurityDynamicConfiguration<?> before, final SecurityDynamicConfiguration<?> after) {
+        //versions of the security index document, not set for configurations which do not come from the index
+        if (before.getSeqNo() >= 0 && before.getSeqNo() == after.getSeqNo() && before.getPrimaryTerm() == after.getPrimaryTerm()) {
+            return false;
+        }
+        return !toJson(before.getCEntries()).equals(toJson(after.getCEntries()));
+    }
+
+    //keys of the entries which were added, removed or changed
+    static Set<String> changedEntries(final SecurityDynamicConfiguration<?> before, final SecurityDynamicConfiguration<?> after) {
+        final Set<String> keys = new HashSet<>(before.getCEntries().keySet());
+        keys.addAll(after.getCEntries().keySet());
+        keys.removeIf(key -> toJson(before.getCEntry(key)).equals(toJson(after.getCEntry(key))));
+        return keys;
+    }
+
+    private static String toJson(final Object value) {
+        try {
+            return DefaultObjectMapper.writeValueAsString(value, false);
+        } catch (JsonProcessingException e) {
+            throw ExceptionsHelper.convertToElastic(e);
+        }
+    }
+
     @Override
     protected NodeConfigUpdateRequest newNodeRequest(ConfigUpdateRequest request) {
         return new NodeConfigUpdateRequest(request);
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.action.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.amazon.opendistroforelasticsearch.security.auditlog.AuditLog;
+import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AbstractAuditLog;
+import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditLogImpl;
+import com.amazon.opendistroforelasticsearch.security.auditlog.impl.WriteDiffExecutor;
+import com.amazon.opendistroforelasticsearch.security.auditlog.routing.AuditAggregator;
+import com.amazon.opendistroforelasticsearch.security.auditlog.routing.AuditMessageRouter;
+import com.amazon.opendistroforelasticsearch.security.auditlog.routing.SinkQueue;
+import com.amazon.opendistroforelasticsearch.security.auditlog.sink.AuditLogSink;
+import com.amazon.opendistroforelasticsearch.security.auditlog.sink.AuditSpool;
+import com.amazon.opendistroforelasticsearch.security.auditlog.sink.WebhookSink;
+import com.amazon.opendistroforelasticsearch.security.auth.BackendRegistry;
+import com.amazon.opendistroforelasticsearch.security.auth.internal.PasswordVerifier;
+import com.amazon.opendistroforelasticsearch.security.privileges.PrivilegesEvaluator;
+
+/**
+ * Collects the counters and latency histograms of the authentication, the privilege evaluation
+ * and the audit log pipeline of this node. Only reads counters, so it is cheap to call.
+ */
+public class SecurityStatsCollector {
+
+    private final AuditLog auditLog;
+    private final BackendRegistry backendRegistry;
+    private final PrivilegesEvaluator evaluator;
+    private final PasswordVerifier passwordVerifier;
+
+    public SecurityStatsCollector(final AuditLog auditLog, final BackendRegistry backendRegistry, final PrivilegesEvaluator evaluator,
+            final PasswordVerifier passwordVerifier) {
+        this.auditLog = auditLog;
+        this.backendRegistry = backendRegistry;
+        this.evaluator = evaluator;
+        this.passwordVerifier = passwordVerifier;
+    }
+
+    public Map<String, Object> collect() {
+        final Map<String, Object> stats = new LinkedHashMap<>();
+
+        final Map<String, Object> authc = new LinkedHashMap<>();
+        authc.put("rest", backendRegistry.getRestAuthenticateLatency().toMap());
+        authc.put("transport", backendRegistry.getTransportAuthenticateLatency().toMap());
+        final Map<String, Object> cacheRefresh = new LinkedHashMap<>();
+        cacheRefresh.put("refreshed", backendRegistry.getCacheRefreshed());
+        cacheRefresh.put("failed", backendRegistry.getCacheRefreshFailed());
+        authc.put("cache_refresh", cacheRefresh);
+        final Map<String, Object> passwordHashing = new LinkedHashMap<>();
+        passwordHashing.put("threads", passwordVerifier.getThreads());
+        passwordHashing.put("queue_depth", passwordVerifier.getQueueDepth());
+        passwordHashing.put("in_flight", passwordVerifier.getInFlight());
+        passwordHashing.put("verified", passwordVerifier.getVerified());
+        passwordHashing.put("shared", passwordVerifier.getShared());
+        passwordHashing.put("rejected", passwordVerifier.getRejected());
+        passwordHashing.put("verify", passwordVerifier.getLatency().toMap());
+        authc.put("password_hashing", passwordHashing);
+        stats.put("authentication", authc);
+
+        final Map<String, Object> privileges = new LinkedHashMap<>();
+        privileges.put("evaluate", evaluator.getEvaluateLatency().toMap());
+        stats.put("privileges", privileges);
+
+        stats.put("audit", collectAudit());
+        return stats;
+    }
+
+    private Map<String, Object> collectAudit() {
+        final Map<String, Object> audit = new LinkedHashMap<>();
+
+        if (auditLog instanceof AuditLogImpl) {
+            final AuditMessageRouter router = ((AuditLogImpl) auditLog).getMessageRouter();
+
+            final Map<String, Object> queues = new LinkedHashMap<>();
+            for (final SinkQueue queue : router.getStoragePool().getQueues()) {
+                final Map<String, Object> q = new LinkedHashMap<>();
+                q.put("depth", queue.getDepth());
+                q.put("capacity", queue.getCapacity());
+                q.put("overflow_policy", queue.getOverflowPolicy().name().toLowerCase());
+                q.put("enqueued", queue.getEnqueued());
+                q.put("dropped", queue.getDropped());
+                q.put("fallback", queue.getFallback());
+                queues.put(queue.getSinkName(), q);
+            }
+            audit.put("queues", queues);
+
+            final Map<String, Object> sinks = new LinkedHashMap<>();
+            for (final AuditLogSink sink : router.getSinks()) {
+                sinks.put(sink.getName(), collectSink(sink));
+            }
+            audit.put("sinks", sinks);
+
+            final AuditAggregator aggregator = router.getAggregator();
+            if (aggregator != null) {
+                final Map<String, Object> aggregation = new LinkedHashMap<>();
+                aggregation.put("aggregated", aggregator.getAggregated());
+                aggregation.put("emitted", aggregator.getEmitted());
+                aggregation.put("overflow", aggregator.getOverflow());
+                aggregation.put("pending", aggregator.getPending());
+                audit.put("aggregation", aggregation);
+            }
+        }
+
+        if (auditLog instanceof AbstractAuditLog) {
+            final WriteDiffExecutor executor = ((AbstractAuditLog) auditLog).getWriteDiffExecutor();
+            final Map<String, Object> writeDiff = new LinkedHashMap<>();
+            writeDiff.put("queue_depth", executor.getQueueDepth());
+            writeDiff.put("queued", executor.getQueued());
+            writeDiff.put("inline", executor.getInline());
+            writeDiff.put("completed", executor.getCompleted());
+            writeDiff.put("failed", executor.getFailed());
+            writeDiff.put("total_time_in_millis", TimeUnit.NANOSECONDS.toMillis(executor.getTotalTimeInNanos()));
+            audit.put("write_diff", writeDiff);
+        }
+
+        return audit;
+    }
+
+    private static Map<String, Object> collectSink(final AuditLogSink sink) {
+        final Map<String, Object> s = new LinkedHashMap<>();
+        s.put("type", sink.getClass().getSimpleName());
+        s.put("store", sink.getStoreLatency().toMap());
+        s.put("retries", sink.getRetries());
+        s.put("fallbacks", sink.getFallbacks());
+
+        final AuditSpool spool = sink.getSpool();
+        if (spool != null) {
+            final Map<String, Object> sp = new LinkedHashMap<>();
+            sp.put("pending", spool.getPendingRecords());
+            sp.put("size_in_bytes", spool.getSizeInBytes());
+            sp.put("max_size_in_bytes", spool.getMaxSizeInBytes());
+            sp.put("segments", spool.getSegmentCount());
+            sp.put("spooled", spool.getSpooled());
+            sp.put("replayed", spool.getReplayed());
+            sp.put("rejected", spool.getRejected());
+            sp.put("corrupted", spool.getCorrupted());
+            sp.put("backoff_in_millis", spool.getBackoffMillis());
+            s.put("spool", sp);
+        }
+
+        if (sink instanceof WebhookSink) {
+            final WebhookSink webhook = (WebhookSink) sink;
+            final WebhookSink.EndpointStats endpoint = webhook.getEndpointStats();
+            final Map<String, Object> ep = new LinkedHashMap<>();
+            ep.put("requests", endpoint.getRequests());
+            ep.put("failed_requests", endpoint.getFailedRequests());
+            ep.put("messages", endpoint.getMessages());
+            ep.put("avg_latency_in_millis", endpoint.getAverageLatencyMillis());
+            ep.put("max_latency_in_millis", endpoint.getMaxLatencyMillis());
+            ep.put("in_flight", webhook.getInFlight());
+            s.put("endpoint", ep);
+        }
+        return s;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.action.stats;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class TransportSecurityStatsAction
+extends
+TransportNodesAction<SecurityStatsRequest, SecurityStatsResponse, TransportSecurityStatsAction.NodeSecurityStatsRequest, SecurityStatsNodeResponse> {
+
+    private final SecurityStatsCollector collector;
+
+    @Inject
+    public TransportSecurityStatsAction(final ThreadPool threadPool, final ClusterService clusterService,
+            final TransportService transportService, final ActionFilters actionFilters, final SecurityStatsCollector collector) {
+        super(SecurityStatsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                SecurityStatsRequest::new, TransportSecurityStatsAction.NodeSecurityStatsRequest::new,
+                ThreadPool.Names.MANAGEMENT, SecurityStatsNodeResponse.class);
+
+        this.collector = collector;
+    }
+
+    public static class NodeSecurityStatsRequest extends BaseNodeRequest {
+
+        public NodeSecurityStatsRequest(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        public NodeSecurityStatsRequest() {
+            super();
+        }
+    }
+
+    @Override
+    protected SecurityStatsNodeResponse newNodeResponse(StreamInput in) throws IOException {
+        return new SecurityStatsNodeResponse(in);
+    }
+
+    @Override
+    protected SecurityStatsResponse newResponse(SecurityStatsRequest request, List<SecurityStatsNodeResponse> responses,
+            List<FailedNodeException> failures) {
+        return new SecurityStatsResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected SecurityStatsNodeResponse nodeOperation(final NodeSecurityStatsRequest request) {
+        return new SecurityStatsNodeResponse(clusterService.localNode(), collector.collect());
+    }
+
+    @Override
+    protected NodeSecurityStatsRequest newNodeRequest(SecurityStatsRequest request) {
+        return new NodeSecurityStatsRequest();
+    }
+}
@@ -23,6 +23,7 @@ import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
 import com.amazon.opendistroforelasticsearch.security.support.WildcardMatcher;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -33,10 +34,14 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -78,8 +83,16 @@ import static com.amazon.opendistroforelasticsearch.security.DefaultObjectMapper
  *     "write_log_diffs" : false,
  *     "write_watched_indices" : [ ],
  *     "write_ignore_users" : [ ]
+ *   },
+ *   "aggregation" : {
+ *     "categories" : {
+ *       "GRANTED_PRIVILEGES" : "10s",
+ *       "COMPLIANCE_DOC_READ" : "1m"
+ *     },
+ *     "max_keys" : 10000
  *   }
  * }
+ * The aggregation section is optional, without it every audit message is stored on its own.
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class AuditConfig {
@@ -88,7 +101,7 @@ public class AuditConfig {
     private static Set<String> FIELDS = DefaultObjectMapper.getFields(AuditConfig.class);
 
     private AuditConfig() {
-        this(true, null, null);
+        this(true, null, null, null);
     }
 
     @JsonProperty("enabled")
@@ -98,6 +111,8 @@ public class AuditConfig {
 
     private final ComplianceConfig compliance;
 
+    private final Aggregation aggregation;
+
     public boolean isEnabled() {
         return auditLogEnabled;
     }
@@ -110,14 +125,31 @@ public class AuditConfig {
         return compliance;
     }
 
+    /**
+     * @return null if no audit messages are aggregated
+     */
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
     @VisibleForTesting
     public AuditConfig(
             final boolean auditLogEnabled,
             final Filter filter,
             final ComplianceConfig compliance) {
+        this(auditLogEnabled, filter, compliance, null);
+    }
+
+    @VisibleForTesting
+    public AuditConfig(
+            final boolean auditLogEnabled,
+            final Filter filter,
+            final ComplianceConfig compliance,
+            final Aggregation aggregation) {
         this.auditLogEnabled = auditLogEnabled;
         this.filter = filter != null ? filter : Filter.DEFAULT;
         this.compliance = compliance != null ? compliance : ComplianceConfig.DEFAULT;
+        this.aggregation = aggregation;
     }
 
     public static AuditConfig from(final Settings settings) {
@@ -372,6 +404,98 @@ public class AuditConfig {
         }
     }
 
+    /**
+     * Aggregation represents the categories whose audit messages are rolled up and the time window of each category.
+     * Messages of such a category with the same effective user, action, indices and remote address which are logged
+     * within the window are stored as one message with their count and the timestamps of the first and the last one.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Aggregation {
+        public static final int DEFAULT_MAX_KEYS = 10000;
+        private static Set<String> FIELDS = DefaultObjectMapper.getFields(Aggregation.class);
+
+        private final Map<AuditCategory, TimeValue> windows;
+        private final int maxKeys;
+
+        @VisibleForTesting
+        public Aggregation(final Map<AuditCategory, TimeValue> windows, final int maxKeys) {
+            if (maxKeys <= 0) {
+                throw new IllegalArgumentException("max_keys must be positive but was " + maxKeys);
+            }
+            this.windows = windows.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new EnumMap<>(windows));
+            this.maxKeys = maxKeys;
+        }
+
+        @JsonCreator
+        @VisibleForTesting
+        public static Aggregation from(Map<String, Object> properties) throws JsonProcessingException {
+            if (!FIELDS.containsAll(properties.keySet())) {
+                throw new UnrecognizedPropertyException(null, "Unrecognized field(s) present in the input data for audit aggregation config", null, Aggregation.class, null, null);
+            }
+
+            final Map<String, Object> categories = getOrDefault(properties, "categories", Collections.emptyMap());
+            final Map<AuditCategory, TimeValue> windows = new EnumMap<>(AuditCategory.class);
+            for (final Map.Entry<String, Object> category : categories.entrySet()) {
+                windows.put(AuditCategory.valueOf(category.getKey().toUpperCase()),
+                        TimeValue.parseTimeValue(String.valueOf(category.getValue()), "aggregation.categories." + category.getKey()));
+            }
+            final int maxKeys = getOrDefault(properties, "max_keys", DEFAULT_MAX_KEYS);
+
+            return new Aggregation(windows, maxKeys);
+        }
+
+        /**
+         * Window per aggregated category
+         * @return map of category to window
+         */
+        @JsonIgnore
+        public Map<AuditCategory, TimeValue> getWindows() {
+            return windows;
+        }
+
+        @JsonProperty("categories")
+        public Map<String, String> getCategories() {
+            final Map<String, String> categories = new LinkedHashMap<>();
+            windows.forEach((category, window) -> categories.put(category.name(), window.getStringRep()));
+            return categories;
+        }
+
+        /**
+         * Maximum number of messages which are held back for aggregation at the same time,
+         * further messages are stored on their own
+         * @return max keys
+         */
+        @JsonProperty("max_keys")
+        public int getMaxKeys() {
+            return maxKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Aggregation that = (Aggregation) o;
+            return maxKeys == that.maxKeys && windows.equals(that.windows);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(windows, maxKeys);
+        }
+
+        @Override
+        public String toString() {
+            return "Aggregation{" +
+                    "windows=" + windows +
+                    ", maxKeys=" + maxKeys +
+                    '}';
+        }
+    }
+
     /**
      * List of keys that are deprecated
      */
@@ -408,7 +532,10 @@ public class AuditConfig {
             Utils.generateFieldResourcePaths(AuditConfig.FIELDS, "/"),
             Sets.union(
                     Utils.generateFieldResourcePaths(Filter.FIELDS, "/audit/"),
-                    Utils.generateFieldResourcePaths(ComplianceConfig.FIELDS, "/compliance/")
+                    Sets.union(
+                            Utils.generateFieldResourcePaths(ComplianceConfig.FIELDS, "/compliance/"),
+                            Utils.generateFieldResourcePaths(Aggregation.FIELDS, "/aggregation/")
+                    )
             )
     );
 }
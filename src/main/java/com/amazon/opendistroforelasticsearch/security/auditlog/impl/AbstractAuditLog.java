@@ -45,6 +45,7 @@ import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.settings.Settings;
@@ -92,6 +93,7 @@ public abstract class AbstractAuditLog implements AuditLog {
     private volatile ComplianceConfig complianceConfig;
     private final Environment environment;
     private AtomicBoolean externalConfigLogged = new AtomicBoolean();
+    private final WriteDiffExecutor writeDiffExecutor;
 
     protected abstract void enableRoutes();
 
@@ -112,6 +114,11 @@ public abstract class AbstractAuditLog implements AuditLog {
         this.clusterService = clusterService;
         this.opendistrosecurityIndex = settings.get(ConfigConstants.OPENDISTRO_SECURITY_CONFIG_INDEX_NAME, ConfigConstants.OPENDISTRO_SECURITY_DEFAULT_CONFIG_INDEX);
         this.environment = environment;
+        this.writeDiffExecutor = WriteDiffExecutor.from(settings);
+    }
+
+    public WriteDiffExecutor getWriteDiffExecutor() {
+        return writeDiffExecutor;
     }
 
     protected void onAuditConfigFilterChanged(AuditConfig.Filter auditConfigFilter) {
@@ -446,73 +453,87 @@ public abstract class AbstractAuditLog implements AuditLog {
         msg.addComplianceDocVersion(result.getVersion());
         msg.addComplianceOperation(result.isCreated()?Operation.CREATE:Operation.UPDATE);
 
-        if(complianceConfig.shouldLogDiffsForWrite() && originalResult != null && originalResult.isExists() && originalResult.internalSourceRef() != null) {
-            try {
-                String originalSource = null;
-                String currentSource = null;
-                if (opendistrosecurityIndex.equals(shardId.getIndexName())) {
-                    try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY, THROW_UNSUPPORTED_OPERATION, originalResult.internalSourceRef(), XContentType.JSON)) {
-                        Object base64 = parser.map().values().iterator().next();
-                        if(base64 instanceof String) {
-                            originalSource = (new String(BaseEncoding.base64().decode((String) base64)));
-                        } else {
-                            originalSource = XContentHelper.convertToJson(originalResult.internalSourceRef(), false, XContentType.JSON);
-                        }
-                    } catch (Exception e) {
-                        log.error(e);
-                    }
-
-                    try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY, THROW_UNSUPPORTED_OPERATION, currentIndex.source(), XContentType.JSON)) {
-                        Object base64 = parser.map().values().iterator().next();
-                        if(base64 instanceof String) {
-                            currentSource = (new String(BaseEncoding.base64().decode((String) base64)));
-                        } else {
-                            currentSource = XContentHelper.convertToJson(currentIndex.source(), false, XContentType.JSON);
-                        }
-                    } catch (Exception e) {
-                        log.error(e);
-                    }
-                } else {
-                    originalSource = XContentHelper.convertToJson(originalResult.internalSourceRef(), false, XContentType.JSON);
-                    currentSource = XContentHelper.convertToJson(currentIndex.source(), false, XContentType.JSON);
-                }
-                final JsonNode diffnode = JsonDiff.asJson(DefaultObjectMapper.objectMapper.readTree(originalSource), DefaultObjectMapper.objectMapper.readTree(currentSource));
-                msg.addComplianceWriteDiffSource(diffnode.size() == 0?"":diffnode.toString());
-            } catch (Exception e) {
-                log.error("Unable to generate diff for {}",msg.toPrettyString(),e);
+        final boolean logDiff = complianceConfig.shouldLogDiffsForWrite() && originalResult != null && originalResult.isExists() && originalResult.internalSourceRef() != null;
+        final boolean logSource = !complianceConfig.shouldLogWriteMetadataOnly();
+        final boolean internalConfig = opendistrosecurityIndex.equals(shardId.getIndexName());
+        if (!logDiff) {
+            if (logSource) {
+                addWriteSource(msg, currentIndex.source(), internalConfig);
             }
+            save(msg);
+            return;
         }
 
+        final BytesReference originalSource = originalResult.internalSourceRef();
+        //the source of the operation may be backed by a network buffer which is released before the diff is computed
+        final BytesReference currentSource = new BytesArray(BytesReference.toBytes(currentIndex.source()));
 
-        if (!complianceConfig.shouldLogWriteMetadataOnly()){
-            if(opendistrosecurityIndex.equals(shardId.getIndexName())) {
-                //current source, normally not null or empty
-                try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY, THROW_UNSUPPORTED_OPERATION, currentIndex.source(), XContentType.JSON)) {
-                   Object base64 = parser.map().values().iterator().next();
-                   if(base64 instanceof String) {
-                       msg.addUnescapedJsonToRequestBody(new String(BaseEncoding.base64().decode((String) base64)));
-                    } else {
-                        msg.addTupleToRequestBody(new Tuple<XContentType, BytesReference>(XContentType.JSON, currentIndex.source()));
-                    }
-                } catch (Exception e) {
-                    log.error(e);
-                }
-
-                //if we want to have msg.ComplianceWritePreviousSource we need to do the same as above
+        //diffing is left to the write diff threads, the indexing thread only captures the bytes
+        writeDiffExecutor.execute(() -> {
+            addWriteDiff(msg, originalSource, currentSource, internalConfig);
+            if (logSource) {
+                addWriteSource(msg, currentSource, internalConfig);
+            }
+            save(msg);
+        });
+    }
 
+    private void addWriteDiff(final AuditMessage msg, final BytesReference originalSource, final BytesReference currentSource, final boolean internalConfig) {
+        try {
+            final String original;
+            final String current;
+            if (internalConfig) {
+                original = decodeInternalConfigSource(originalSource);
+                current = decodeInternalConfigSource(currentSource);
             } else {
+                original = XContentHelper.convertToJson(originalSource, false, XContentType.JSON);
+                current = XContentHelper.convertToJson(currentSource, false, XContentType.JSON);
+            }
+            final JsonNode diffnode = JsonDiff.asJson(DefaultObjectMapper.objectMapper.readTree(original), DefaultObjectMapper.objectMapper.readTree(current));
+            msg.addComplianceWriteDiffSource(diffnode.size() == 0?"":diffnode.toString());
+        } catch (Exception e) {
+            log.error("Unable to generate diff for {}",msg.toPrettyString(),e);
+        }
+    }
 
-                //previous source, can be null if document is a new one
-                //msg.ComplianceWritePreviousSource(new Tuple<XContentType, BytesReference>(XContentType.JSON, originalResult.internalSourceRef()));
+    private String decodeInternalConfigSource(final BytesReference source) {
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY, THROW_UNSUPPORTED_OPERATION, source, XContentType.JSON)) {
+            Object base64 = parser.map().values().iterator().next();
+            if(base64 instanceof String) {
+                return (new String(BaseEncoding.base64().decode((String) base64)));
+            } else {
+                return XContentHelper.convertToJson(source, false, XContentType.JSON);
+            }
+        } catch (Exception e) {
+            log.error(e);
+            return null;
+        }
+    }
 
-                //current source, normally not null or empty
-                msg.addTupleToRequestBody(new Tuple<XContentType, BytesReference>(XContentType.JSON, currentIndex.source()));
+    private void addWriteSource(final AuditMessage msg, final BytesReference currentSource, final boolean internalConfig) {
+        if(internalConfig) {
+            //current source, normally not null or empty
+            try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY, THROW_UNSUPPORTED_OPERATION, currentSource, XContentType.JSON)) {
+               Object base64 = parser.map().values().iterator().next();
+               if(base64 instanceof String) {
+                   msg.addUnescapedJsonToRequestBody(new String(BaseEncoding.base64().decode((String) base64)));
+                } else {
+                    msg.addTupleToRequestBody(new Tuple<XContentType, BytesReference>(XContentType.JSON, currentSource));
+                }
+            } catch (Exception e) {
+                log.error(e);
             }
 
-        }
+            //if we want to have msg.ComplianceWritePreviousSource we need to do the same as above
 
+        } else {
 
-        save(msg);
+            //previous source, can be null if document is a new one
+            //msg.ComplianceWritePreviousSource(new Tuple<XContentType, BytesReference>(XContentType.JSON, originalResult.internalSourceRef()));
+
+            //current source, normally not null or empty
+            msg.addTupleToRequestBody(new Tuple<XContentType, BytesReference>(XContentType.JSON, currentSource));
+        }
     }
 
     @Override
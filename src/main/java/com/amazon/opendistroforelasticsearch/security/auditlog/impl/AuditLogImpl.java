@@ -88,11 +88,18 @@ public final class AuditLogImpl extends AbstractAuditLog {
 	public void setConfig(final AuditConfig auditConfig) {
 		enabled = auditConfig.isEnabled() && messageRouterEnabled;
 		onAuditConfigFilterChanged(auditConfig.getFilter());
+		if (messageRouterEnabled) {
+			messageRouter.setAggregation(auditConfig.getAggregation());
+		}
 		if (dlsFlsAvailable) {
 			onComplianceConfigChanged(auditConfig.getCompliance());
 		}
 	}
 
+	public AuditMessageRouter getMessageRouter() {
+		return messageRouter;
+	}
+
 	@Override
 	protected void enableRoutes() {
 		if (messageRouterEnabled) {
@@ -101,7 +108,11 @@ public final class AuditLogImpl extends AbstractAuditLog {
 	}
 
     private Thread addShutdownHook() {
-        Thread shutdownHook = new Thread(() -> messageRouter.close());
+        Thread shutdownHook = new Thread(() -> {
+            // compliance write messages which are still being completed go to the router too
+            getWriteDiffExecutor().close();
+            messageRouter.close();
+        });
         Runtime.getRuntime().addShutdownHook(shutdownHook);
         return shutdownHook;
     }
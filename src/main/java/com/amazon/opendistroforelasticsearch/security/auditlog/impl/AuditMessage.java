@@ -21,11 +21,15 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 
 import com.amazon.opendistroforelasticsearch.security.auditlog.config.AuditConfig;
@@ -38,9 +42,10 @@ import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
-import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.rest.RestRequest;
 import org.joda.time.DateTime;
@@ -111,136 +116,229 @@ public final class AuditMessage {
     public static final String COMPLIANCE_OPERATION = "audit_compliance_operation";
     public static final String COMPLIANCE_DOC_VERSION = "audit_compliance_doc_version";
 
+    public static final String AGGREGATED_COUNT = "audit_aggregated_count";
+    public static final String AGGREGATED_FIRST_TIMESTAMP = "audit_aggregated_first_timestamp";
+    public static final String AGGREGATED_LAST_TIMESTAMP = "audit_aggregated_last_timestamp";
+
+    /**
+     * Fields of a message, in the order in which they are written out
+     */
+    private enum Field {
+        FORMAT_VERSION(AuditMessage.FORMAT_VERSION),
+        CATEGORY(AuditMessage.CATEGORY),
+        UTC_TIMESTAMP(AuditMessage.UTC_TIMESTAMP),
+        AGGREGATED_COUNT(AuditMessage.AGGREGATED_COUNT),
+        AGGREGATED_FIRST_TIMESTAMP(AuditMessage.AGGREGATED_FIRST_TIMESTAMP),
+        AGGREGATED_LAST_TIMESTAMP(AuditMessage.AGGREGATED_LAST_TIMESTAMP),
+        CLUSTER_NAME(AuditMessage.CLUSTER_NAME),
+        NODE_ID(AuditMessage.NODE_ID),
+        NODE_HOST_ADDRESS(AuditMessage.NODE_HOST_ADDRESS),
+        NODE_HOST_NAME(AuditMessage.NODE_HOST_NAME),
+        NODE_NAME(AuditMessage.NODE_NAME),
+        ORIGIN(AuditMessage.ORIGIN),
+        REQUEST_LAYER(AuditMessage.REQUEST_LAYER),
+        REMOTE_ADDRESS(AuditMessage.REMOTE_ADDRESS),
+        REQUEST_INITIATING_USER(AuditMessage.REQUEST_INITIATING_USER),
+        REQUEST_EFFECTIVE_USER(AuditMessage.REQUEST_EFFECTIVE_USER),
+        IS_ADMIN_DN(AuditMessage.IS_ADMIN_DN),
+        PRIVILEGE(AuditMessage.PRIVILEGE),
+        REST_REQUEST_PATH(AuditMessage.REST_REQUEST_PATH),
+        REST_REQUEST_METHOD(AuditMessage.REST_REQUEST_METHOD),
+        REST_REQUEST_PARAMS(AuditMessage.REST_REQUEST_PARAMS),
+        REST_REQUEST_HEADERS(AuditMessage.REST_REQUEST_HEADERS),
+        TRANSPORT_REQUEST_TYPE(AuditMessage.TRANSPORT_REQUEST_TYPE),
+        TRANSPORT_ACTION(AuditMessage.TRANSPORT_ACTION),
+        TRANSPORT_REQUEST_HEADERS(AuditMessage.TRANSPORT_REQUEST_HEADERS),
+        ID(AuditMessage.ID),
+        INDICES(AuditMessage.INDICES),
+        RESOLVED_INDICES(AuditMessage.RESOLVED_INDICES),
+        SHARD_ID(AuditMessage.SHARD_ID),
+        TASK_ID(AuditMessage.TASK_ID),
+        TASK_PARENT_ID(AuditMessage.TASK_PARENT_ID),
+        COMPLIANCE_OPERATION(AuditMessage.COMPLIANCE_OPERATION),
+        COMPLIANCE_DOC_VERSION(AuditMessage.COMPLIANCE_DOC_VERSION),
+        COMPLIANCE_DIFF_IS_NOOP(AuditMessage.COMPLIANCE_DIFF_IS_NOOP),
+        COMPLIANCE_DIFF_CONTENT(AuditMessage.COMPLIANCE_DIFF_CONTENT),
+        COMPLIANCE_FILE_INFOS(AuditMessage.COMPLIANCE_FILE_INFOS),
+        REQUEST_BODY(AuditMessage.REQUEST_BODY),
+        EXCEPTION(AuditMessage.EXCEPTION);
+
+        private static final Map<String, Field> BY_KEY = new HashMap<>();
+        static {
+            for (final Field field : values()) {
+                BY_KEY.put(field.key, field);
+            }
+        }
+
+        private final String key;
+
+        Field(final String key) {
+            this.key = key;
+        }
+    }
+
     private static final DateTimeFormatter DEFAULT_FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZZ");
-    private final Map<String, Object> auditInfo = new HashMap<String, Object>(50);
+    private final EnumMap<Field, Object> auditInfo = new EnumMap<>(Field.class);
     private final AuditCategory msgCategory;
+    //encoded once per content type and shared by all sinks the message is routed to
+    private final AtomicReferenceArray<BytesReference> encoded = new AtomicReferenceArray<>(XContentType.values().length);
+    private volatile String text;
 
     public AuditMessage(final AuditCategory msgCategory, final ClusterService clusterService, final Origin origin, final Origin layer) {
         this.msgCategory = Objects.requireNonNull(msgCategory);
         final String currentTime = currentTime();
-        auditInfo.put(FORMAT_VERSION, 4);
-        auditInfo.put(CATEGORY, Objects.requireNonNull(msgCategory));
-        auditInfo.put(UTC_TIMESTAMP, currentTime);
-        auditInfo.put(NODE_HOST_ADDRESS, Objects.requireNonNull(clusterService).localNode().getHostAddress());
-        auditInfo.put(NODE_ID, Objects.requireNonNull(clusterService).localNode().getId());
-        auditInfo.put(NODE_HOST_NAME, Objects.requireNonNull(clusterService).localNode().getHostName());
-        auditInfo.put(NODE_NAME, Objects.requireNonNull(clusterService).localNode().getName());
-        auditInfo.put(CLUSTER_NAME, Objects.requireNonNull(clusterService).getClusterName().value());
+        put(Field.FORMAT_VERSION, 4);
+        put(Field.CATEGORY, Objects.requireNonNull(msgCategory));
+        put(Field.UTC_TIMESTAMP, currentTime);
+        put(Field.NODE_HOST_ADDRESS, Objects.requireNonNull(clusterService).localNode().getHostAddress());
+        put(Field.NODE_ID, Objects.requireNonNull(clusterService).localNode().getId());
+        put(Field.NODE_HOST_NAME, Objects.requireNonNull(clusterService).localNode().getHostName());
+        put(Field.NODE_NAME, Objects.requireNonNull(clusterService).localNode().getName());
+        put(Field.CLUSTER_NAME, Objects.requireNonNull(clusterService).getClusterName().value());
 
         if(origin != null) {
-            auditInfo.put(ORIGIN, origin);
+            put(Field.ORIGIN, origin);
         }
 
         if(layer != null) {
-            auditInfo.put(REQUEST_LAYER, layer);
+            put(Field.REQUEST_LAYER, layer);
+        }
+    }
+
+    private AuditMessage(final AuditCategory msgCategory) {
+        this.msgCategory = msgCategory;
+    }
+
+    /**
+     * Recreates a message from the map of a message which was written out before, e.g. to the audit spool.
+     * Keys which are not audit message fields are ignored.
+     */
+    public static AuditMessage fromMap(final Map<String, Object> auditInfo) {
+        final Object category = Objects.requireNonNull(auditInfo.get(CATEGORY), "No " + CATEGORY + " in audit message");
+        final AuditMessage msg = new AuditMessage(AuditCategory.valueOf(category.toString()));
+        for (final Entry<String, Object> entry : auditInfo.entrySet()) {
+            final Field field = Field.BY_KEY.get(entry.getKey());
+            if (field != null) {
+                msg.auditInfo.put(field, entry.getValue());
+            }
+        }
+        return msg;
+    }
+
+    private void put(final Field field, final Object value) {
+        auditInfo.put(field, value);
+        //a changed message has to be encoded again
+        for (int i = 0; i < encoded.length(); i++) {
+            encoded.set(i, null);
         }
+        text = null;
     }
 
     public void addRemoteAddress(TransportAddress remoteAddress) {
         if (remoteAddress != null && remoteAddress.getAddress() != null) {
-            auditInfo.put(REMOTE_ADDRESS, remoteAddress.getAddress());
+            put(Field.REMOTE_ADDRESS, remoteAddress.getAddress());
         }
     }
 
     public void addIsAdminDn(boolean isAdminDn) {
-        auditInfo.put(IS_ADMIN_DN, isAdminDn);
+        put(Field.IS_ADMIN_DN, isAdminDn);
     }
 
     public void addException(Throwable t) {
         if (t != null) {
-            auditInfo.put(EXCEPTION, ExceptionsHelper.stackTrace(t));
+            put(Field.EXCEPTION, ExceptionsHelper.stackTrace(t));
         }
     }
 
     public void addPrivilege(String priv) {
         if (priv != null) {
-            auditInfo.put(PRIVILEGE, priv);
+            put(Field.PRIVILEGE, priv);
         }
     }
 
     public void addInitiatingUser(String user) {
         if (user != null) {
-            auditInfo.put(REQUEST_INITIATING_USER, user);
+            put(Field.REQUEST_INITIATING_USER, user);
         }
     }
 
     public void addEffectiveUser(String user) {
         if (user != null) {
-            auditInfo.put(REQUEST_EFFECTIVE_USER, user);
+            put(Field.REQUEST_EFFECTIVE_USER, user);
         }
     }
 
     public void addPath(String path) {
         if (path != null) {
-            auditInfo.put(REST_REQUEST_PATH, path);
+            put(Field.REST_REQUEST_PATH, path);
         }
     }
 
     public void addComplianceWriteDiffSource(String diff) {
         if (diff != null && !diff.isEmpty()) {
-            auditInfo.put(COMPLIANCE_DIFF_CONTENT, diff);
-            auditInfo.put(COMPLIANCE_DIFF_IS_NOOP, false);
+            put(Field.COMPLIANCE_DIFF_CONTENT, diff);
+            put(Field.COMPLIANCE_DIFF_IS_NOOP, false);
         } else if (diff != null && diff.isEmpty()) {
-            auditInfo.put(COMPLIANCE_DIFF_IS_NOOP, true);
+            put(Field.COMPLIANCE_DIFF_IS_NOOP, true);
         }
     }
 
 //    public void addComplianceWriteStoredFields0(String diff) {
 //        if (diff != null && !diff.isEmpty()) {
-//            auditInfo.put(COMPLIANCE_STORED_FIELDS_CONTENT, diff);
-//            //auditInfo.put(COMPLIANCE_DIFF_STORED_IS_NOOP, false);
+//            put(Field.COMPLIANCE_STORED_FIELDS_CONTENT, diff);
+//            //put(Field.COMPLIANCE_DIFF_STORED_IS_NOOP, false);
 //        }
 //    }
 
     public void addTupleToRequestBody(Tuple<XContentType, BytesReference> xContentTuple) {
         if (xContentTuple != null) {
             try {
-                auditInfo.put(REQUEST_BODY, XContentHelper.convertToJson(xContentTuple.v2(), false, xContentTuple.v1()));
+                put(Field.REQUEST_BODY, XContentHelper.convertToJson(xContentTuple.v2(), false, xContentTuple.v1()));
             } catch (Exception e) {
-                auditInfo.put(REQUEST_BODY, "ERROR: Unable to convert to json because of "+e.toString());
+                put(Field.REQUEST_BODY, "ERROR: Unable to convert to json because of "+e.toString());
             }
         }
     }
 
     public void addMapToRequestBody(Map<String, Object> map) {
         if(map != null) {
-            auditInfo.put(REQUEST_BODY, Utils.convertStructuredMapToJson(map));
+            put(Field.REQUEST_BODY, Utils.convertStructuredMapToJson(map));
         }
     }
 
     public void addUnescapedJsonToRequestBody(String source) {
         if (source != null) {
-            auditInfo.put(REQUEST_BODY, source);
+            put(Field.REQUEST_BODY, source);
         }
     }
 
     public void addRequestType(String requestType) {
         if (requestType != null) {
-            auditInfo.put(TRANSPORT_REQUEST_TYPE, requestType);
+            put(Field.TRANSPORT_REQUEST_TYPE, requestType);
         }
     }
 
     public void addAction(String action) {
         if (action != null) {
-            auditInfo.put(TRANSPORT_ACTION, action);
+            put(Field.TRANSPORT_ACTION, action);
         }
     }
 
     public void addId(String id) {
         if (id != null) {
-            auditInfo.put(ID, id);
+            put(Field.ID, id);
         }
     }
 
     /*public void addTypes(String[] types) {
         if (types != null && types.length > 0) {
-            auditInfo.put(TYPES, types);
+            put(Field.TYPES, types);
         }
     }
 
     public void addType(String type) {
         if (type != null) {
-            auditInfo.put(TYPES, new String[] { type });
+            put(Field.TYPES, new String[] { type });
         }
     }*/
 
@@ -264,48 +362,48 @@ public final class AuditMessage {
                     //ignore non readable files
                 }
             }
-            auditInfo.put(COMPLIANCE_FILE_INFOS, infos);
+            put(Field.COMPLIANCE_FILE_INFOS, infos);
         }
     }
 
     /*public void addSource(Map<String, String> source) {
         if (source != null && !source.isEmpty()) {
-            auditInfo.put(REQUEST_BODY, source);
+            put(Field.REQUEST_BODY, source);
         }
     }*/
 
     public void addIndices(String[] indices) {
         if (indices != null && indices.length > 0) {
-            auditInfo.put(INDICES, indices);
+            put(Field.INDICES, indices);
         }
 
     }
 
     public void addResolvedIndices(String[] resolvedIndices) {
         if (resolvedIndices != null && resolvedIndices.length > 0) {
-            auditInfo.put(RESOLVED_INDICES, resolvedIndices);
+            put(Field.RESOLVED_INDICES, resolvedIndices);
         }
     }
 
     public void addTaskId(long id) {
-         auditInfo.put(TASK_ID, auditInfo.get(NODE_ID)+":"+id);
+         put(Field.TASK_ID, auditInfo.get(Field.NODE_ID)+":"+id);
     }
 
     public void addShardId(ShardId id) {
         if(id != null) {
-            auditInfo.put(SHARD_ID, id.getId());
+            put(Field.SHARD_ID, id.getId());
         }
    }
 
     public void addTaskParentId(String id) {
         if(id != null) {
-            auditInfo.put(TASK_PARENT_ID, id);
+            put(Field.TASK_PARENT_ID, id);
         }
     }
 
     public void addRestParams(Map<String,String> params) {
         if(params != null && !params.isEmpty()) {
-            auditInfo.put(REST_REQUEST_PARAMS, new HashMap<>(params));
+            put(Field.REST_REQUEST_PARAMS, new HashMap<>(params));
         }
     }
 
@@ -315,13 +413,13 @@ public final class AuditMessage {
             if (excludeSensitiveHeaders) {
                 headersClone.keySet().removeIf(AUTHORIZATION_HEADER);
             }
-            auditInfo.put(REST_REQUEST_HEADERS, headersClone);
+            put(Field.REST_REQUEST_HEADERS, headersClone);
         }
     }
 
     void addRestMethod(final RestRequest.Method method) {
         if (method != null) {
-            auditInfo.put(REST_REQUEST_METHOD, method);
+            put(Field.REST_REQUEST_METHOD, method);
         }
     }
 
@@ -339,12 +437,12 @@ public final class AuditMessage {
                     if (path != null && requestBody != null
                             && SENSITIVE_PATHS.matcher(path).matches()
                             && requestBody.contains(SENSITIVE_KEY)) {
-                        auditInfo.put(REQUEST_BODY, SENSITIVE_REPLACEMENT_VALUE);
+                        put(Field.REQUEST_BODY, SENSITIVE_REPLACEMENT_VALUE);
                     } else {
-                        auditInfo.put(REQUEST_BODY, requestBody);
+                        put(Field.REQUEST_BODY, requestBody);
                     }
                 } catch (IOException e) {
-                    auditInfo.put(REQUEST_BODY, "ERROR: Unable to generate request body");
+                    put(Field.REQUEST_BODY, "ERROR: Unable to generate request body");
                 }
             }
         }
@@ -356,34 +454,102 @@ public final class AuditMessage {
             if (excludeSensitiveHeaders) {
                 headersClone.keySet().removeIf(AUTHORIZATION_HEADER);
             }
-            auditInfo.put(TRANSPORT_REQUEST_HEADERS, headersClone);
+            put(Field.TRANSPORT_REQUEST_HEADERS, headersClone);
         }
     }
 
     public void addComplianceOperation(Operation op) {
         if(op != null) {
-            auditInfo.put(COMPLIANCE_OPERATION, op);
+            put(Field.COMPLIANCE_OPERATION, op);
         }
     }
 
     public void addComplianceDocVersion(long version) {
-        auditInfo.put(COMPLIANCE_DOC_VERSION, version);
+        put(Field.COMPLIANCE_DOC_VERSION, version);
+    }
+
+    /**
+     * Marks this message as the roll-up of {@code count} messages which were logged between the two timestamps
+     */
+    public void addAggregation(int count, String firstTimestamp, String lastTimestamp) {
+        put(Field.AGGREGATED_COUNT, count);
+        put(Field.AGGREGATED_FIRST_TIMESTAMP, firstTimestamp);
+        put(Field.AGGREGATED_LAST_TIMESTAMP, lastTimestamp);
     }
 
     public Map<String, Object> getAsMap() {
-      return new HashMap<>(this.auditInfo);
+        final Map<String, Object> map = new LinkedHashMap<>();
+        for (final Entry<Field, Object> entry : auditInfo.entrySet()) {
+            map.put(entry.getKey().key, entry.getValue());
+        }
+        return map;
+    }
+
+    /**
+     * @return the message encoded as {@code contentType}. The message is encoded once per content type,
+     *         the same bytes are returned until the message is changed.
+     */
+    public BytesReference toBytes(final XContentType contentType) {
+        BytesReference bytes = encoded.get(contentType.ordinal());
+        if (bytes == null) {
+            bytes = encode(contentType, false);
+            encoded.set(contentType.ordinal(), bytes);
+        }
+        return bytes;
+    }
+
+    private BytesReference encode(final XContentType contentType, final boolean prettyPrint) {
+        try {
+            final XContentBuilder builder = XContentFactory.contentBuilder(contentType);
+            if (prettyPrint) {
+                builder.prettyPrint();
+            }
+            builder.startObject();
+            for (final Entry<Field, Object> entry : auditInfo.entrySet()) {
+                builder.field(entry.getKey().key, entry.getValue());
+            }
+            builder.endObject();
+            return BytesReference.bytes(builder);
+        } catch (final IOException e) {
+            throw ExceptionsHelper.convertToElastic(e);
+        }
     }
 
     public String getInitiatingUser() {
-        return (String) this.auditInfo.get(REQUEST_INITIATING_USER);
+        return (String) this.auditInfo.get(Field.REQUEST_INITIATING_USER);
     }
 
     public String getEffectiveUser() {
-        return (String) this.auditInfo.get(REQUEST_EFFECTIVE_USER);
+        return (String) this.auditInfo.get(Field.REQUEST_EFFECTIVE_USER);
     }
 
     public String getRequestType() {
-        return (String) this.auditInfo.get(TRANSPORT_REQUEST_TYPE);
+        return (String) this.auditInfo.get(Field.TRANSPORT_REQUEST_TYPE);
+    }
+
+    public String getPrivilege() {
+        return (String) this.auditInfo.get(Field.PRIVILEGE);
+    }
+
+    public String getRemoteAddress() {
+        return stringOrNull(this.auditInfo.get(Field.REMOTE_ADDRESS));
+    }
+
+    /**
+     * @return the resolved indices if there are any, otherwise the requested indices
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getIndices() {
+        Object indices = this.auditInfo.get(Field.RESOLVED_INDICES);
+        if (indices == null) {
+            indices = this.auditInfo.get(Field.INDICES);
+        }
+        //a list if the message was recreated from a map
+        return indices instanceof String[] ? Arrays.asList((String[]) indices) : (List<String>) indices;
+    }
+
+    public String getTimestamp() {
+        return (String) this.auditInfo.get(Field.UTC_TIMESTAMP);
     }
 
 	public AuditCategory getCategory() {
@@ -392,27 +558,23 @@ public final class AuditMessage {
 
 	@Override
 	public String toString() {
-		try {
-			return Strings.toString(JsonXContent.contentBuilder().map(getAsMap()));
-		} catch (final IOException e) {
-		    throw ExceptionsHelper.convertToElastic(e);
-		}
+		return toBytes(XContentType.JSON).utf8ToString();
 	}
 
     public String toPrettyString() {
-        try {
-            return Strings.toString(JsonXContent.contentBuilder().prettyPrint().map(getAsMap()));
-        } catch (final IOException e) {
-            throw ExceptionsHelper.convertToElastic(e);
-        }
+        return encode(XContentType.JSON, true).utf8ToString();
     }
 
 	public String toText() {
-		StringBuilder builder = new StringBuilder();
-		for (Entry<String, Object> entry : getAsMap().entrySet()) {
-			addIfNonEmpty(builder, entry.getKey(), stringOrNull(entry.getValue()));
+		String text = this.text;
+		if (text == null) {
+			StringBuilder builder = new StringBuilder();
+			for (Entry<Field, Object> entry : auditInfo.entrySet()) {
+				addIfNonEmpty(builder, entry.getKey().key, stringOrNull(entry.getValue()));
+			}
+			this.text = text = builder.toString();
 		}
-		return builder.toString();
+		return text;
 	}
 
 	public final String toJson() {
@@ -421,8 +583,8 @@ public final class AuditMessage {
 
 	public String toUrlParameters() {
 		URIBuilder builder = new URIBuilder();
-		for (Entry<String, Object> entry : getAsMap().entrySet()) {
-			builder.addParameter(entry.getKey(), stringOrNull(entry.getValue()));
+		for (Entry<Field, Object> entry : auditInfo.entrySet()) {
+			builder.addParameter(entry.getKey().key, stringOrNull(entry.getValue()));
 		}
 		return builder.toString();
 	}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+
+import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
+
+/**
+ * Computes the diffs and sources of compliance write messages off the indexing threads.
+ * The queue is bounded; when it is full the work is done on the calling thread, so that
+ * write history is slowed down but never lost.
+ */
+public final class WriteDiffExecutor {
+
+    private static final Logger log = LogManager.getLogger(WriteDiffExecutor.class);
+    private static final int DEFAULT_THREADS = 2;
+    private static final int DEFAULT_MAX_QUEUE_LEN = 10_000;
+
+    // null if the work is done on the calling thread
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder inline = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    WriteDiffExecutor(final int threads, final int maxQueueLen) {
+        if (threads > 0) {
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(maxQueueLen),
+                    EsExecutors.daemonThreadFactory("opendistro_security_audit_write_diff"));
+            //idle threads go away, e.g. if no index has write history with diffs
+            this.executor.allowCoreThreadTimeOut(true);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    static WriteDiffExecutor from(final Settings settings) {
+        return new WriteDiffExecutor(settings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WRITE_DIFF_THREADS, DEFAULT_THREADS),
+                settings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WRITE_DIFF_MAX_QUEUE_LEN, DEFAULT_MAX_QUEUE_LEN));
+    }
+
+    void execute(final Runnable task) {
+        if (executor != null) {
+            try {
+                executor.execute(() -> run(task));
+                queued.increment();
+                return;
+            } catch (RejectedExecutionException e) {
+                //full or closed
+            }
+        }
+        inline.increment();
+        run(task);
+    }
+
+    private void run(final Runnable task) {
+        final long start = System.nanoTime();
+        try {
+            task.run();
+            completed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            log.error("Unable to complete compliance write message", e);
+        } finally {
+            totalNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Completes the queued work
+     */
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.error("{} compliance write messages were not completed in time", executor.getQueue().size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * @return number of messages which were completed on a pool thread or queued for it
+     */
+    public long getQueued() {
+        return queued.sum();
+    }
+
+    /**
+     * @return number of messages which were completed on the indexing thread because the queue was full
+     */
+    public long getInline() {
+        return inline.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getTotalTimeInNanos() {
+        return totalNanos.sum();
+    }
+}
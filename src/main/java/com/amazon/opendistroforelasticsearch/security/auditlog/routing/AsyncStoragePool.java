@@ -15,26 +15,35 @@
 
 package com.amazon.opendistroforelasticsearch.security.auditlog.routing;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import com.amazon.opendistroforelasticsearch.security.auditlog.config.ThreadPoolConfig;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.settings.Settings;
 
 import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditMessage;
 import com.amazon.opendistroforelasticsearch.security.auditlog.sink.AuditLogSink;
+import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
 
+/**
+ * Stores audit messages asynchronously. Every sink has its own bounded {@link SinkQueue}
+ * and drainer threads ({@code queue.drainers} in the sink configuration, 2 by default but at
+ * most {@code threadpool.size}), and its own overflow policy ({@code queue.overflow_policy},
+ * fallback by default), so that a slow sink does not hold back the others.
+ */
 public class AsyncStoragePool {
 	private static final Logger log = LogManager.getLogger(AsyncStoragePool.class);
-	private final ExecutorService pool;
+	private final ConcurrentMap<AuditLogSink, SinkQueue> queues = new ConcurrentHashMap<>();
 	private final ThreadPoolConfig threadPoolConfig;
+	private volatile boolean closed = false;
 
 	public AsyncStoragePool(final ThreadPoolConfig threadPoolConfig) {
 		this.threadPoolConfig = threadPoolConfig;
-		this.pool = createExecutor(threadPoolConfig);
 	}
 
 	public ThreadPoolConfig getConfig() {
@@ -42,54 +51,59 @@ public class AsyncStoragePool {
 	}
 
 	public void submit(AuditMessage message, AuditLogSink sink) {
-		try {
-			pool.submit(() -> {
-				sink.store(message);
-				if (log.isTraceEnabled()) {
-					log.trace("stored on delegate {} asynchronously", sink.getClass().getSimpleName());
-				}
-			});
-		} catch (Exception ex) {
-			log.error("Could not submit audit message {} to thread pool for delegate '{}' due to '{}'", message, sink.getClass().getSimpleName(), ex.getMessage());
-			if (sink.getFallbackSink() != null) {
-				sink.getFallbackSink().store(message);
-			}
+		SinkQueue queue = queues.get(sink);
+		if (queue == null) {
+			queue = createQueue(sink);
 		}
+		queue.submit(message);
 	}
 
-	private static ThreadPoolExecutor createExecutor(final ThreadPoolConfig config) {
-		if (log.isDebugEnabled()) {
-			log.debug("Create new executor with threadPoolSize: {} and maxQueueLen: {}",
-					config.getThreadPoolSize(),
-					config.getThreadPoolMaxQueueLen());
-		}
-		return new ThreadPoolExecutor(
-				config.getThreadPoolSize(),
-				config.getThreadPoolSize(),
-				0L,
-				TimeUnit.MILLISECONDS,
-				new LinkedBlockingQueue<>(config.getThreadPoolMaxQueueLen()));
+	/**
+	 * @return the queues of the sinks which received messages so far
+	 */
+	public Collection<SinkQueue> getQueues() {
+		return Collections.unmodifiableCollection(queues.values());
 	}
 
-	public void close() {
+	private synchronized SinkQueue createQueue(final AuditLogSink sink) {
+		SinkQueue queue = queues.get(sink);
+		if (queue == null) {
+			final Settings sinkSettings = sink.getSinkSettings();
+			final int maxQueueLen = sinkSettings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_QUEUE_MAX_LEN, threadPoolConfig.getThreadPoolMaxQueueLen());
+			final OverflowPolicy overflowPolicy = OverflowPolicy.parse(sinkSettings.get(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_QUEUE_OVERFLOW_POLICY,
+					OverflowPolicy.FALLBACK.name()));
+			final int drainers = Math.max(1, sinkSettings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_QUEUE_DRAINERS,
+					Math.min(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_QUEUE_DRAINERS_DEFAULT, threadPoolConfig.getThreadPoolSize())));
 
-		if (pool != null) {
-			pool.shutdown(); // Disable new tasks from being submitted
+			if (log.isDebugEnabled()) {
+				log.debug("Create new queue for sink {} with drainers: {}, maxQueueLen: {} and overflowPolicy: {}",
+						sink.getName(), drainers, maxQueueLen, overflowPolicy);
+			}
 
-			try {
-				// Wait a while for existing tasks to terminate
-				if (!pool.awaitTermination(60, TimeUnit.SECONDS)) {
-					pool.shutdownNow(); // Cancel currently executing tasks
-					// Wait a while for tasks to respond to being cancelled
-					if (!pool.awaitTermination(60, TimeUnit.SECONDS))
-						log.error("Pool did not terminate");
-				}
-			} catch (InterruptedException ie) {
-				// (Re-)Cancel if current thread also interrupted
-				pool.shutdownNow();
-				// Preserve interrupt status
-				Thread.currentThread().interrupt();
+			queue = new SinkQueue(sink, maxQueueLen, drainers, overflowPolicy);
+			if (closed) {
+				//messages submitted after close go to the fallback
+				closeQueue(queue);
 			}
+			queues.put(sink, queue);
+		}
+		return queue;
+	}
+
+	public synchronized void close() {
+		closed = true;
+		for (final SinkQueue queue : queues.values()) {
+			closeQueue(queue);
+		}
+	}
+
+	private static void closeQueue(final SinkQueue queue) {
+		try {
+			queue.close(60, TimeUnit.SECONDS);
+		} catch (InterruptedException ie) {
+			log.error("Interrupted while closing queue of sink {}", queue.getSinkName());
+			// Preserve interrupt status
+			Thread.currentThread().interrupt();
 		}
 	}
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.routing;
+
+import java.io.Closeable;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+
+import com.amazon.opendistroforelasticsearch.security.auditlog.config.AuditConfig;
+import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditCategory;
+import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditMessage;
+
+/**
+ * Rolls up the messages of the configured categories. The first message with a new
+ * (category, effective user, action, indices, remote address) tuple is held back for the window
+ * of its category, later messages with the same tuple only count. When the window is over, the
+ * first message is emitted with the count and the timestamps of the first and the last message.
+ */
+public final class AuditAggregator implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(AuditAggregator.class);
+    private static final long MIN_SWEEP_INTERVAL_MILLIS = 100;
+
+    private final AuditConfig.Aggregation config;
+    private final Map<AuditCategory, Long> windowNanos = new EnumMap<>(AuditCategory.class);
+    private final Consumer<AuditMessage> emitter;
+    private final ConcurrentHashMap<Key, Rollup> rollups = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor sweeper;
+    private volatile boolean closed;
+
+    private final LongAdder aggregated = new LongAdder();
+    private final LongAdder emitted = new LongAdder();
+    private final LongAdder overflow = new LongAdder();
+
+    AuditAggregator(final AuditConfig.Aggregation config, final Consumer<AuditMessage> emitter) {
+        this.config = config;
+        this.emitter = emitter;
+
+        long minWindowMillis = Long.MAX_VALUE;
+        for (final Map.Entry<AuditCategory, TimeValue> window : config.getWindows().entrySet()) {
+            windowNanos.put(window.getKey(), window.getValue().nanos());
+            minWindowMillis = Math.min(minWindowMillis, window.getValue().millis());
+        }
+
+        //a roll-up is emitted at most a quarter of its window late
+        final long sweepInterval = Math.max(MIN_SWEEP_INTERVAL_MILLIS, minWindowMillis / 4);
+        this.sweeper = new ScheduledThreadPoolExecutor(1, EsExecutors.daemonThreadFactory("opendistro_security_audit_aggregator"));
+        this.sweeper.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if the message is part of a roll-up now and must not be stored on its own
+     */
+    boolean aggregate(final AuditMessage msg) {
+        final Long window = windowNanos.get(msg.getCategory());
+        if (window == null || closed) {
+            return false;
+        }
+
+        final Key key = new Key(msg);
+        if (rollups.size() >= config.getMaxKeys() && !rollups.containsKey(key)) {
+            overflow.increment();
+            return false;
+        }
+
+        rollups.compute(key, (k, rollup) -> {
+            if (rollup == null) {
+                return new Rollup(msg, System.nanoTime() + window);
+            }
+            rollup.add(msg);
+            return rollup;
+        });
+        aggregated.increment();
+
+        //close() may have missed the roll-up
+        if (closed) {
+            final Rollup rollup = rollups.remove(key);
+            if (rollup != null) {
+                emit(rollup);
+            }
+        }
+        return true;
+    }
+
+    private void sweep() {
+        final long now = System.nanoTime();
+        for (final Map.Entry<Key, Rollup> entry : rollups.entrySet()) {
+            if (now - entry.getValue().deadline >= 0 && rollups.remove(entry.getKey(), entry.getValue())) {
+                emit(entry.getValue());
+            }
+        }
+    }
+
+    private void flush() {
+        for (final Key key : rollups.keySet()) {
+            final Rollup rollup = rollups.remove(key);
+            if (rollup != null) {
+                emit(rollup);
+            }
+        }
+    }
+
+    private void emit(final Rollup rollup) {
+        rollup.first.addAggregation(rollup.count, rollup.first.getTimestamp(), rollup.lastTimestamp);
+        emitted.increment();
+        try {
+            emitter.accept(rollup.first);
+        } catch (Exception e) {
+            log.error("Unable to route aggregated audit message {}", rollup.first, e);
+        }
+    }
+
+    /**
+     * Stops aggregating and emits all pending roll-ups
+     */
+    @Override
+    public void close() {
+        closed = true;
+        sweeper.shutdown();
+        try {
+            sweeper.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    AuditConfig.Aggregation getConfig() {
+        return config;
+    }
+
+    /**
+     * @return number of messages which went into a roll-up
+     */
+    public long getAggregated() {
+        return aggregated.sum();
+    }
+
+    /**
+     * @return number of roll-ups which were emitted
+     */
+    public long getEmitted() {
+        return emitted.sum();
+    }
+
+    /**
+     * @return number of messages which were stored on their own because max_keys roll-ups were pending
+     */
+    public long getOverflow() {
+        return overflow.sum();
+    }
+
+    public int getPending() {
+        return rollups.size();
+    }
+
+    private static final class Key {
+        private final AuditCategory category;
+        private final String effectiveUser;
+        private final String action;
+        private final List<String> indices;
+        private final String remoteAddress;
+        private final int hash;
+
+        private Key(final AuditMessage msg) {
+            this.category = msg.getCategory();
+            this.effectiveUser = msg.getEffectiveUser();
+            this.action = msg.getPrivilege() != null ? msg.getPrivilege() : msg.getRequestType();
+            this.indices = msg.getIndices();
+            this.remoteAddress = msg.getRemoteAddress();
+            this.hash = Objects.hash(category, effectiveUser, action, indices, remoteAddress);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key that = (Key) o;
+            return hash == that.hash
+                    && category == that.category
+                    && Objects.equals(effectiveUser, that.effectiveUser)
+                    && Objects.equals(action, that.action)
+                    && Objects.equals(indices, that.indices)
+                    && Objects.equals(remoteAddress, that.remoteAddress);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    //only changed under the lock of its map entry
+    private static final class Rollup {
+        private final AuditMessage first;
+        private final long deadline;
+        private int count = 1;
+        private String lastTimestamp;
+
+        private Rollup(final AuditMessage first, final long deadline) {
+            this.first = first;
+            this.deadline = deadline;
+            this.lastTimestamp = first.getTimestamp();
+        }
+
+        private void add(final AuditMessage msg) {
+            count++;
+            lastTimestamp = msg.getTimestamp();
+        }
+    }
+}
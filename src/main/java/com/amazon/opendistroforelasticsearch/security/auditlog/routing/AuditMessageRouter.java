@@ -16,6 +16,7 @@
 package com.amazon.opendistroforelasticsearch.security.auditlog.routing;
 
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
@@ -25,6 +26,7 @@ import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.amazon.opendistroforelasticsearch.security.auditlog.config.AuditConfig;
 import com.amazon.opendistroforelasticsearch.security.auditlog.config.ThreadPoolConfig;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
@@ -50,6 +52,8 @@ public class AuditMessageRouter {
     volatile Map<AuditCategory, List<AuditLogSink>> categorySinks;
     final SinkProvider sinkProvider;
     final AsyncStoragePool storagePool;
+    // null if no category is aggregated
+    private volatile AuditAggregator aggregator;
 
     public AuditMessageRouter(final Settings settings, final Client clientProvider, ThreadPool threadPool, final Path configPath) {
         this(
@@ -81,17 +85,63 @@ public class AuditMessageRouter {
             return;
         }
         checkState(categorySinks != null, "categorySinks is null, prior to route() call enableRoutes().");
+        final AuditAggregator aggregator = this.aggregator;
+        if (aggregator != null && aggregator.aggregate(msg)) {
+            return;
+        }
+        dispatch(msg);
+    }
+
+    private void dispatch(final AuditMessage msg) {
         // if we do not run the compliance features or no extended configuration is present, only log to default.
         List<AuditLogSink> auditLogSinks = categorySinks.get(msg.getCategory());
         if (auditLogSinks == null) {
             store(defaultSink, msg);
         } else {
-            auditLogSinks.stream().forEach(sink -> store(sink, msg));
+            for (final AuditLogSink sink : auditLogSinks) {
+                store(sink, msg);
+            }
+        }
+    }
+
+    /**
+     * Starts, changes or stops the aggregation of audit messages. Pending roll-ups of a previous
+     * configuration are routed right away.
+     *
+     * @param aggregation null to store every message on its own
+     */
+    public final synchronized void setAggregation(final AuditConfig.Aggregation aggregation) {
+        final boolean enabled = aggregation != null && !aggregation.getWindows().isEmpty();
+        final AuditAggregator current = this.aggregator;
+        if (current == null ? !enabled : current.getConfig().equals(aggregation)) {
+            return;
+        }
+        this.aggregator = enabled ? new AuditAggregator(aggregation, this::dispatch) : null;
+        log.info("Audit message aggregation is {}", enabled ? aggregation : "disabled");
+        if (current != null) {
+            current.close();
         }
     }
 
+    /**
+     * @return null if no category is aggregated
+     */
+    public AuditAggregator getAggregator() {
+        return aggregator;
+    }
+
+    public AsyncStoragePool getStoragePool() {
+        return storagePool;
+    }
+
+    public Collection<AuditLogSink> getSinks() {
+        return sinkProvider.getSinks();
+    }
+
     public final void close() {
         log.info("Closing {}", getClass().getSimpleName());
+        // route pending roll-ups while the sinks are still open
+        setAggregation(null);
         // shutdown storage pool
         storagePool.close();
         // close default
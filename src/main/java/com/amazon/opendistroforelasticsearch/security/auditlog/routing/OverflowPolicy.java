@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.routing;
+
+import java.util.Locale;
+
+/**
+ * What to do with an audit message when the queue of its sink is full.
+ */
+public enum OverflowPolicy {
+    /** wait on the calling thread until there is room in the queue */
+    BLOCK,
+    /** drop the oldest queued message to make room */
+    DROP_OLDEST,
+    /** drop the message */
+    DROP_NEWEST,
+    /** store the message on the fallback sink from the calling thread */
+    FALLBACK;
+
+    public static OverflowPolicy parse(final String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid audit queue overflow policy '" + value + "', must be one of block, drop_oldest, drop_newest or fallback");
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.routing;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+
+import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditMessage;
+import com.amazon.opendistroforelasticsearch.security.auditlog.sink.AuditLogSink;
+
+/**
+ * Bounded queue of the messages of one sink and the threads which store them on the sink,
+ * so that a slow sink only fills its own queue.
+ */
+public final class SinkQueue {
+
+    private static final Logger log = LogManager.getLogger(SinkQueue.class);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final AuditLogSink sink;
+    private final OverflowPolicy overflowPolicy;
+    private final MessageRingBuffer<AuditMessage> queue;
+    private final Thread[] drainers;
+    //parked drainers, a producer unparks one of them after queueing a message
+    private final Queue<Thread> idleDrainers = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder fallback = new LongAdder();
+
+    SinkQueue(final AuditLogSink sink, final int maxQueueLen, final int drainerCount, final OverflowPolicy overflowPolicy) {
+        this.sink = sink;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new MessageRingBuffer<>(maxQueueLen);
+        this.drainers = new Thread[drainerCount];
+
+        for (int i = 0; i < drainerCount; i++) {
+            drainers[i] = EsExecutors.daemonThreadFactory("opendistro_security_audit_" + sink.getName()).newThread(this::drain);
+            drainers[i].start();
+        }
+    }
+
+    void submit(final AuditMessage message) {
+        if (!running) {
+            storeOnFallback(message);
+            return;
+        }
+
+        if (!queue.offer(message)) {
+            switch (overflowPolicy) {
+            case BLOCK:
+                while (!queue.offer(message)) {
+                    if (!running) {
+                        storeOnFallback(message);
+                        return;
+                    }
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                }
+                break;
+            case DROP_OLDEST:
+                do {
+                    if (queue.poll() != null) {
+                        dropped.increment();
+                    }
+                } while (!queue.offer(message));
+                break;
+            case DROP_NEWEST:
+                dropped.increment();
+                if (log.isDebugEnabled()) {
+                    log.debug("Queue of sink {} is full, dropped {}", sink.getName(), message);
+                }
+                return;
+            case FALLBACK:
+            default:
+                log.error("Queue of sink {} is full, store audit message {} on fallback", sink.getName(), message);
+                storeOnFallback(message);
+                return;
+            }
+        }
+
+        enqueued.increment();
+
+        final Thread idle = idleDrainers.poll();
+        if (idle != null) {
+            LockSupport.unpark(idle);
+        }
+    }
+
+    private void storeOnFallback(final AuditMessage message) {
+        fallback.increment();
+        sink.storeToFallback(message);
+    }
+
+    private void drain() {
+        for (;;) {
+            AuditMessage message = queue.poll();
+
+            if (message == null) {
+                if (!running) {
+                    return;
+                }
+                final Thread current = Thread.currentThread();
+                idleDrainers.add(current);
+                //check again, a producer may have missed this drainer going idle
+                message = queue.poll();
+                if (message == null && running) {
+                    //until a producer or close unparks this drainer
+                    LockSupport.park(this);
+                }
+                idleDrainers.remove(current);
+                if (message == null) {
+                    continue;
+                }
+            }
+
+            try {
+                sink.store(message);
+                if (log.isTraceEnabled()) {
+                    log.trace("stored on delegate {} asynchronously", sink.getClass().getSimpleName());
+                }
+            } catch (Exception e) {
+                log.error("Unable to store audit message {} on sink {}", message, sink.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting messages and waits for the queued messages to be stored
+     */
+    void close(final long timeout, final TimeUnit unit) throws InterruptedException {
+        running = false;
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        for (final Thread drainer : drainers) {
+            LockSupport.unpark(drainer);
+        }
+
+        boolean drained = true;
+        for (final Thread drainer : drainers) {
+            drainer.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            if (drainer.isAlive()) {
+                log.error("Queue of sink {} did not drain in time, {} messages left", sink.getName(), queue.size());
+                drainer.interrupt();
+                drained = false;
+            }
+        }
+
+        //messages which were queued while the drainers were exiting
+        AuditMessage message;
+        while (drained && (message = queue.poll()) != null) {
+            sink.store(message);
+        }
+    }
+
+    public String getSinkName() {
+        return sink.getName();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getDepth() {
+        return queue.size();
+    }
+
+    int getDrainers() {
+        return drainers.length;
+    }
+
+    public int getCapacity() {
+        return queue.capacity();
+    }
+
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getFallback() {
+        return fallback.sum();
+    }
+}
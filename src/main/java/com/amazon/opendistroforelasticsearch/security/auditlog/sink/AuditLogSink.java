@@ -16,19 +16,30 @@
 package com.amazon.opendistroforelasticsearch.security.auditlog.sink;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.SpecialPermission;
+import org.elasticsearch.common.io.PathUtils;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.env.Environment;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormatter;
 
 import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditMessage;
 import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
-import com.google.common.util.concurrent.Uninterruptibles;
+import com.amazon.opendistroforelasticsearch.security.support.LatencyHistogram;
 
 public abstract class AuditLogSink {
 
@@ -39,6 +50,11 @@ public abstract class AuditLogSink {
     protected final AuditLogSink fallbackSink;
     private final int retryCount;
     private final long delayMs;
+    private volatile AuditSpool spool;
+
+    private final LatencyHistogram storeLatency = new LatencyHistogram();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
 
     protected AuditLogSink(String name, Settings settings, String settingsPrefix, AuditLogSink fallbackSink) {
         this.name = name.toLowerCase();
@@ -63,26 +79,58 @@ public abstract class AuditLogSink {
     }
 
     public final void store(AuditMessage msg) {
-		if (!doStoreWithRetry(msg) && !fallbackSink.doStoreWithRetry(msg)) {
-			System.err.println(msg.toPrettyString());
+		if (!doStoreWithRetry(msg)) {
+			storeToFallback(msg);
 		}
     }
 
+    /**
+     * For messages which this sink could not store, also for sinks which store messages asynchronously
+     * and find out later that they could not be stored, and for messages the sink had to refuse.
+     * They go to the spool of this sink to be replayed later and, if there is no spool or it is full,
+     * to the fallback sink.
+     */
+    public final void storeToFallback(AuditMessage msg) {
+        fallbacks.increment();
+        if (spool != null && spool.append(msg)) {
+            return;
+        }
+
+        if (fallbackSink == null || !fallbackSink.doStoreOrSpool(msg)) {
+            log.error("Unable to store audit message on {} or its fallback, message is lost: {}", name, msg.toPrettyString());
+        }
+    }
+
+    private boolean doStoreOrSpool(AuditMessage msg) {
+        return doStoreWithRetry(msg) || (spool != null && spool.append(msg));
+    }
+
     private boolean doStoreWithRetry(AuditMessage msg) {
         //retryCount of 0 means no retry (which is: try exactly once) - delayMs is ignored
         //retryCount of 1 means: try and if this fails wait delayMs and try once again
 
-        if(doStore(msg)) {
+        if(timedDoStore(msg)) {
             return true;
         }
 
+        //the spool replays the message with backoff, no need to hold this thread
+        if(spool != null) {
+            return false;
+        }
+
 
         for(int i=0; i<retryCount; i++) {
             if(log.isDebugEnabled()) {
                 log.debug("Retry attempt {}/{} for {} ({})", i+1, retryCount, this.getName(), this.getClass());
             }
-            Uninterruptibles.sleepUninterruptibly(delayMs, TimeUnit.MILLISECONDS);
-            if(!doStore(msg)) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            retries.increment();
+            if(!timedDoStore(msg)) {
                 continue;
             } else {
                 return true;
@@ -92,12 +140,111 @@ public abstract class AuditLogSink {
         return false;
     }
 
+    private boolean timedDoStore(AuditMessage msg) {
+        final long start = System.nanoTime();
+        try {
+            return doStore(msg);
+        } finally {
+            storeLatency.record(System.nanoTime() - start);
+        }
+    }
+
     protected abstract boolean doStore(AuditMessage msg);
 
+    protected int getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * For sinks which retry messages on their own, e.g. the failed items of a bulk request
+     */
+    protected final void countRetry() {
+        retries.increment();
+    }
+
+    /**
+     * @return latency of {@link #doStore(AuditMessage)}, for sinks which store asynchronously only the hand-over
+     */
+    public LatencyHistogram getStoreLatency() {
+        return storeLatency;
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return number of messages which went to the spool or the fallback sink
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
     public void close() throws IOException {
     	// to be implemented by subclasses
     }
 
+    /**
+     * Opens the spool of this sink, if it has one configured, and starts to replay the messages
+     * in it. Not done in the constructor because the spool stores messages on the fully constructed sink.
+     */
+    final void startSpool() throws IOException {
+        final Settings sinkSettings = getSinkSettings();
+        if (!sinkSettings.getAsBoolean(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_ENABLED, false)) {
+            return;
+        }
+
+        final Path directory = resolveSpoolPath(sinkSettings.get(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_PATH, "opendistro_security_audit_spool")).resolve(name);
+        final long segmentSize = sinkSettings.getAsBytesSize(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_SEGMENT_SIZE, new ByteSizeValue(16, ByteSizeUnit.MB)).getBytes();
+        final long maxSize = sinkSettings.getAsBytesSize(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_MAX_SIZE, new ByteSizeValue(1, ByteSizeUnit.GB)).getBytes();
+        final TimeValue initialBackoff = sinkSettings.getAsTime(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_INITIAL_BACKOFF, TimeValue.timeValueSeconds(1));
+        final TimeValue maxBackoff = sinkSettings.getAsTime(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_SPOOL_MAX_BACKOFF, TimeValue.timeValueMinutes(5));
+
+        if (segmentSize > ByteSizeUnit.GB.toBytes(1)) {
+            throw new IllegalArgumentException("Spool segment size of " + name + " must not be larger than 1gb");
+        }
+
+        final SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            sm.checkPermission(new SpecialPermission());
+        }
+
+        try {
+            spool = AccessController.doPrivileged((PrivilegedExceptionAction<AuditSpool>) () ->
+                    new AuditSpool(name, directory, (int) segmentSize, maxSize, initialBackoff, maxBackoff, this::doStore));
+        } catch (PrivilegedActionException e) {
+            throw (IOException) e.getException();
+        }
+        spool.start();
+        log.info("Spooling audit messages of {} which cannot be stored to {}", name, directory);
+    }
+
+    private Path resolveSpoolPath(String path) {
+        final Path spoolPath = PathUtils.get(path);
+        if (spoolPath.isAbsolute()) {
+            return spoolPath;
+        }
+
+        final List<String> dataPaths = Environment.PATH_DATA_SETTING.get(settings);
+        if (!dataPaths.isEmpty()) {
+            return PathUtils.get(dataPaths.get(0)).resolve(spoolPath);
+        }
+        return PathUtils.get(Environment.PATH_HOME_SETTING.get(settings)).resolve("data").resolve(spoolPath);
+    }
+
+    final void closeSpool() throws IOException {
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    /**
+     * @return the spool of this sink, null if it has none
+     */
+    public AuditSpool getSpool() {
+        return spool;
+    }
+
     protected String getExpandedIndexName(DateTimeFormatter indexPattern, String index) {
         if(indexPattern == null) {
             return index;
@@ -109,6 +256,13 @@ public abstract class AuditLogSink {
     	return settings.getAsSettings(prefix);
     }
 
+    /**
+     * @return the configuration of this sink, empty if it has none
+     */
+    public Settings getSinkSettings() {
+        return settingsPrefix == null ? Settings.EMPTY : getSinkSettings(settingsPrefix);
+    }
+
     @Override
     public String toString() {
     	return ("AudtLogSink: Name: " + name+", type: " + this.getClass().getSimpleName());
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditMessage;
+
+/**
+ * Append only store on local disk for the messages a sink could not store. Messages are written
+ * as records into memory mapped segment files of a fixed size, every record is a header of the
+ * payload length and the CRC32 of the payload, followed by the message as JSON. Once a record is
+ * replayed its length is negated in place, so that a restarted node only replays the records which
+ * were not stored yet, and a segment file is deleted once all of its records are replayed.
+ * <p>
+ * A single replay thread hands the records to the sink in the order they were written. While the
+ * sink fails the replay thread backs off exponentially, up to {@code maxBackoff}.
+ */
+public final class AuditSpool implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(AuditSpool.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final int HEADER_BYTES = 8;
+
+    private final String name;
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSize;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Predicate<AuditMessage> replayer;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long nextSegmentId = 0;
+    private long sizeInBytes = 0;
+    private long pendingRecords = 0;
+    private volatile long backoffMillis = 0;
+    private volatile boolean closed = false;
+
+    private final LongAdder spooled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder corrupted = new LongAdder();
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int readPosition;
+        private int writePosition;
+
+        private Segment(final long id, final Path path, final MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private int capacity() {
+            return buffer.capacity();
+        }
+    }
+
+    /**
+     * Opens the spool in {@code directory} and recovers the records which were not replayed yet
+     *
+     * @param replayer stores a message on the sink, returns false if the sink is still unavailable
+     */
+    AuditSpool(final String name, final Path directory, final int segmentSize, final long maxSize,
+            final TimeValue initialBackoff, final TimeValue maxBackoff, final Predicate<AuditMessage> replayer) throws IOException {
+        if (segmentSize <= HEADER_BYTES || segmentSize > maxSize) {
+            throw new IllegalArgumentException("Invalid spool segment size " + segmentSize + " for a maximum spool size of " + maxSize);
+        }
+        this.name = name;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        this.initialBackoffMillis = Math.max(1, initialBackoff.millis());
+        this.maxBackoffMillis = Math.max(initialBackoffMillis, maxBackoff.millis());
+        this.replayer = replayer;
+
+        Files.createDirectories(directory);
+        recover();
+
+        this.scheduler = new ScheduledThreadPoolExecutor(1, EsExecutors.daemonThreadFactory("opendistro_security_audit_" + name + "_spool"));
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    void start() {
+        scheduleReplay(initialBackoffMillis);
+    }
+
+    private void recover() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (final Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(Comparator.comparingLong(AuditSpool::segmentId));
+
+        for (final Path file : files) {
+            final Segment segment = new Segment(segmentId(file), file, map(file, Files.size(file), StandardOpenOption.READ, StandardOpenOption.WRITE));
+            scan(segment);
+            segments.addLast(segment);
+            sizeInBytes += segment.capacity();
+            nextSegmentId = segment.id + 1;
+        }
+
+        //only the last segment is appended to, all others are done once they are replayed
+        while (segments.size() > 1 && isReplayed(segments.peekFirst())) {
+            delete(segments.pollFirst());
+        }
+
+        if (pendingRecords > 0) {
+            log.info("Recovered {} audit messages of {} from spool {}", pendingRecords, name, directory);
+        }
+    }
+
+    private void scan(final Segment segment) {
+        final ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        boolean readPositionSet = false;
+
+        while (position + HEADER_BYTES <= segment.capacity()) {
+            final int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+
+            final int size = length == Integer.MIN_VALUE ? -1 : Math.abs(length);
+            if (size < 0 || size > segment.capacity() - position - HEADER_BYTES || buffer.getInt(position + 4) != crc(buffer, position + HEADER_BYTES, size)) {
+                //a record which was only partially written before the node stopped, nothing after it can be trusted
+                log.warn("Spool segment {} of {} is corrupted at position {}, ignoring the rest of the segment", segment.path, name, position);
+                corrupted.increment();
+                zero(buffer, position, segment.capacity());
+                break;
+            }
+
+            if (length > 0) {
+                pendingRecords++;
+                if (!readPositionSet) {
+                    segment.readPosition = position;
+                    readPositionSet = true;
+                }
+            }
+            position += HEADER_BYTES + size;
+        }
+
+        segment.writePosition = position;
+        if (!readPositionSet) {
+            segment.readPosition = position;
+        }
+    }
+
+    /**
+     * @return false if the message could not be spooled, e.g. because the spool is full
+     */
+    boolean append(final AuditMessage message) {
+        final byte[] payload = BytesReference.toBytes(message.toBytes(XContentType.JSON));
+        final int recordSize = HEADER_BYTES + payload.length;
+
+        synchronized (this) {
+            if (closed) {
+                rejected.increment();
+                return false;
+            }
+
+            Segment tail = segments.peekLast();
+            if (tail == null || recordSize > tail.capacity() - tail.writePosition) {
+                if (recordSize > segmentSize) {
+                    log.error("Audit message of {} bytes does not fit into a spool segment of {}", recordSize, name);
+                    rejected.increment();
+                    return false;
+                }
+
+                releaseReplayedSegments();
+                if (sizeInBytes + segmentSize > maxSize) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Spool of {} is full ({} bytes)", name, sizeInBytes);
+                    }
+                    rejected.increment();
+                    return false;
+                }
+
+                if (tail != null) {
+                    tail.buffer.force();
+                }
+
+                try {
+                    tail = createSegment();
+                } catch (IOException e) {
+                    log.error("Unable to create spool segment for {} in {}", name, directory, e);
+                    rejected.increment();
+                    return false;
+                }
+            }
+
+            final int position = tail.writePosition;
+            final ByteBuffer buffer = tail.buffer.duplicate();
+            buffer.position(position + HEADER_BYTES);
+            buffer.put(payload);
+            final CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            buffer.putInt(position + 4, (int) crc.getValue());
+            //the length is written last, a record without length is not there
+            buffer.putInt(position, payload.length);
+
+            tail.writePosition += recordSize;
+            pendingRecords++;
+        }
+
+        spooled.increment();
+        return true;
+    }
+
+    private Segment createSegment() throws IOException {
+        final long id = nextSegmentId++;
+        final Path path = directory.resolve(String.format(Locale.ROOT, "%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        final Segment segment = new Segment(id, path, map(path, segmentSize, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        segments.addLast(segment);
+        sizeInBytes += segment.capacity();
+        return segment;
+    }
+
+    private void replay() {
+        long delay = initialBackoffMillis;
+
+        try {
+            while (!closed) {
+                final Segment segment;
+                final int position;
+                final byte[] payload;
+
+                synchronized (this) {
+                    releaseReplayedSegments();
+                    segment = segments.peekFirst();
+                    if (segment == null || isReplayed(segment)) {
+                        backoffMillis = 0;
+                        break;
+                    }
+                    position = segment.readPosition;
+                    payload = new byte[segment.buffer.getInt(position)];
+                    final ByteBuffer buffer = segment.buffer.duplicate();
+                    buffer.position(position + HEADER_BYTES);
+                    buffer.get(payload);
+                }
+
+                final AuditMessage message;
+                try {
+                    message = AuditMessage.fromMap(XContentHelper.convertToMap(new BytesArray(payload), false, XContentType.JSON).v2());
+                } catch (Exception e) {
+                    log.error("Unable to read spooled audit message of {}, discarding it", name, e);
+                    corrupted.increment();
+                    markReplayed(segment, position, payload.length);
+                    continue;
+                }
+
+                boolean stored;
+                try {
+                    stored = replayer.test(message);
+                } catch (Exception e) {
+                    log.warn("Unable to replay spooled audit message on {}", name, e);
+                    stored = false;
+                }
+
+                if (!stored) {
+                    backoffMillis = backoffMillis == 0 ? initialBackoffMillis : Math.min(maxBackoffMillis, backoffMillis * 2);
+                    delay = backoffMillis;
+                    if (log.isDebugEnabled()) {
+                        log.debug("{} still unavailable, {} spooled audit messages left, retry in {}ms", name, getPendingRecords(), delay);
+                    }
+                    break;
+                }
+
+                backoffMillis = 0;
+                markReplayed(segment, position, payload.length);
+                replayed.increment();
+            }
+        } catch (Exception e) {
+            log.error("Unexpected error while replaying the spool of {}", name, e);
+        } finally {
+            scheduleReplay(delay);
+        }
+    }
+
+    private void scheduleReplay(final long delayMillis) {
+        if (closed) {
+            return;
+        }
+        try {
+            scheduler.schedule(this::replay, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            //closed concurrently
+        }
+    }
+
+    private synchronized void markReplayed(final Segment segment, final int position, final int length) {
+        segment.buffer.putInt(position, -length);
+        segment.readPosition = position + HEADER_BYTES + length;
+        pendingRecords--;
+    }
+
+    private boolean isReplayed(final Segment segment) {
+        return segment.readPosition >= segment.writePosition;
+    }
+
+    private void releaseReplayedSegments() {
+        Segment head;
+        while ((head = segments.peekFirst()) != null && head != segments.peekLast() && isReplayed(head)) {
+            delete(segments.pollFirst());
+        }
+    }
+
+    private void delete(final Segment segment) {
+        sizeInBytes -= segment.capacity();
+        //the mapping itself is released once the buffer is garbage collected
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("Unable to delete replayed spool segment {} of {}", segment.path, name, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Spool of {} still replaying after 10 seconds", name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            for (final Segment segment : segments) {
+                segment.buffer.force();
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(final Path path, final long size, final StandardOpenOption... options) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static long segmentId(final Path path) {
+        final String fileName = path.getFileName().toString();
+        try {
+            return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int crc(final ByteBuffer buffer, final int offset, final int length) {
+        final ByteBuffer record = buffer.duplicate();
+        record.position(offset);
+        record.limit(offset + length);
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private static void zero(final ByteBuffer buffer, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized long getPendingRecords() {
+        return pendingRecords;
+    }
+
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public long getMaxSizeInBytes() {
+        return maxSize;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getSpooled() {
+        return spooled.sum();
+    }
+
+    public long getReplayed() {
+        return replayed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getCorrupted() {
+        return corrupted.sum();
+    }
+
+    /**
+     * @return the current delay between replay attempts, 0 while the sink is available
+     */
+    public long getBackoffMillis() {
+        return backoffMillis;
+    }
+}
@@ -23,8 +23,23 @@ import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
@@ -44,6 +59,11 @@ public final class ExternalESSink extends AuditLogSink {
 	private final HttpClient client;
 	private List<String> servers;
 	private DateTimeFormatter indexPattern;
+	private final RefreshPolicy refreshPolicy;
+	private final boolean gzip;
+	// null if every message is indexed on its own
+	private final MessageBatcher<BulkItem> batcher;
+	private final ExecutorService fallbackExecutor;
 
     static final String PKCS12 = "PKCS12";
 
@@ -162,18 +182,57 @@ public final class ExternalESSink extends AuditLogSink {
 		}
 
 		client = builder.build();
+
+		final boolean bulk = sinkSettings.getAsBoolean(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_ENABLED, false);
+		// a refresh per message is affordable when messages are indexed one by one, not for every bulk request
+		this.refreshPolicy = RefreshPolicy.parse(sinkSettings.get(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_REFRESH_POLICY,
+				bulk ? RefreshPolicy.NONE.getValue() : RefreshPolicy.IMMEDIATE.getValue()));
+		this.gzip = sinkSettings.getAsBoolean(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_EXTERNAL_ES_BULK_GZIP, true);
+
+		if (bulk) {
+			this.batcher = new MessageBatcher<>(getName(),
+					sinkSettings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_ACTIONS, 500),
+					sinkSettings.getAsBytesSize(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_SIZE, new ByteSizeValue(5, ByteSizeUnit.MB)),
+					sinkSettings.getAsTime(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_FLUSH_INTERVAL, TimeValue.timeValueSeconds(1)),
+					this::flush);
+			this.fallbackExecutor = Executors.newSingleThreadExecutor(EsExecutors.daemonThreadFactory("opendistro_security_audit_" + name + "_fallback"));
+		} else {
+			this.batcher = null;
+			this.fallbackExecutor = null;
+		}
 	}
 
 	@Override
 	public void close() throws IOException {
+		if (batcher != null) {
+			batcher.close();
+			fallbackExecutor.shutdown();
+			try {
+				fallbackExecutor.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 		if (client != null) {
 			client.close();
 		}
 	}
 
+	@Override
+	public boolean isHandlingBackpressure() {
+		return batcher != null;
+	}
+
 	public boolean doStore(final AuditMessage msg) {
+		if (batcher != null) {
+			final String expandedIndex = getExpandedIndexName(indexPattern, index);
+			final IndexRequest request = (type == null ? new IndexRequest(expandedIndex) : new IndexRequest(expandedIndex, type))
+					.source(msg.toBytes(XContentType.JSON), XContentType.JSON);
+			return batcher.add(new BulkItem(msg, request), request.source().length());
+		}
+
 		try {
-			boolean successful = client.index(msg.toString(), getExpandedIndexName(indexPattern, index), type, true);
+			boolean successful = client.index(msg.toBytes(XContentType.JSON), XContentType.JSON, getExpandedIndexName(indexPattern, index), type, refreshPolicy != RefreshPolicy.NONE);
 			if (!successful) {
 				log.error("Unable to send audit log {} to one of these servers: {}", msg, servers);
 			}
@@ -183,4 +242,60 @@ public final class ExternalESSink extends AuditLogSink {
 			return false;
 		}
 	}
+
+	private void flush(final List<BulkItem> items) {
+		client.bulk(items.stream().map(item -> item.request).collect(Collectors.toList()), refreshPolicy, gzip, new ActionListener<BulkResponse>() {
+
+			@Override
+			public void onResponse(final BulkResponse response) {
+				batcher.done(items.size());
+				if (response.hasFailures()) {
+					final BulkItemResponse[] responses = response.getItems();
+					for (int i = 0; i < responses.length; i++) {
+						if (responses[i].isFailed()) {
+							retry(items.get(i), responses[i].getFailureMessage());
+						}
+					}
+				}
+			}
+
+			@Override
+			public void onFailure(final Exception e) {
+				batcher.done(items.size());
+				for (final BulkItem item : items) {
+					retry(item, e.toString());
+				}
+			}
+		});
+	}
+
+	// failed items go with one of the next bulk requests, which also spaces out the attempts
+	private void retry(final BulkItem item, final String failure) {
+		if (item.attempt++ < getRetryCount() && batcher.add(item, item.request.source().length())) {
+			countRetry();
+			if (log.isDebugEnabled()) {
+				log.debug("Retry attempt {}/{} for {} due to {}", item.attempt, getRetryCount(), getName(), failure);
+			}
+			return;
+		}
+
+		log.error("Unable to send audit log {} to one of these servers: {} due to {}", item.msg, servers, failure);
+		// the fallback may block, keep it off the http client threads
+		try {
+			fallbackExecutor.execute(() -> storeToFallback(item.msg));
+		} catch (RejectedExecutionException e) {
+			storeToFallback(item.msg);
+		}
+	}
+
+	private static final class BulkItem {
+		private final AuditMessage msg;
+		private final IndexRequest request;
+		private int attempt = 0;
+
+		private BulkItem(final AuditMessage msg, final IndexRequest request) {
+			this.msg = msg;
+			this.request = request;
+		}
+	}
 }
@@ -17,13 +17,22 @@ package com.amazon.opendistroforelasticsearch.security.auditlog.sink;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.List;
 
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.ThreadContext.StoredContext;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -34,11 +43,16 @@ import com.amazon.opendistroforelasticsearch.security.support.HeaderHelper;
 
 public final class InternalESSink extends AuditLogSink {
 
+	private static final TimeValue TIMEOUT = TimeValue.timeValueMinutes(1);
+
 	private final Client clientProvider;
 	final String index;
 	final String type;
 	private DateTimeFormatter indexPattern;
 	private final ThreadPool threadPool;
+	private final RefreshPolicy refreshPolicy;
+	// null if every message is indexed on its own
+	private final MessageBatcher<BulkItem> batcher;
 
 	public InternalESSink(final String name, final Settings settings, final String settingsPrefix, final Path configPath, final Client clientProvider, ThreadPool threadPool, AuditLogSink fallbackSink) {
 		super(name, settings, settingsPrefix, fallbackSink);
@@ -54,11 +68,33 @@ public final class InternalESSink extends AuditLogSink {
 		} catch (IllegalArgumentException e) {
 			log.debug("Unable to parse index pattern due to {}. " + "If you have no date pattern configured you can safely ignore this message", e.getMessage());
 		}
+
+		final boolean bulk = sinkSettings.getAsBoolean(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_ENABLED, false);
+		// a refresh per message is affordable when messages are indexed one by one, not for every bulk request
+		this.refreshPolicy = RefreshPolicy.parse(sinkSettings.get(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_REFRESH_POLICY,
+				bulk ? RefreshPolicy.NONE.getValue() : RefreshPolicy.IMMEDIATE.getValue()));
+
+		if (bulk) {
+			this.batcher = new MessageBatcher<>(getName(),
+					sinkSettings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_ACTIONS, 500),
+					sinkSettings.getAsBytesSize(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_SIZE, new ByteSizeValue(5, ByteSizeUnit.MB)),
+					sinkSettings.getAsTime(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_ES_BULK_FLUSH_INTERVAL, TimeValue.timeValueSeconds(1)),
+					this::flush);
+		} else {
+			this.batcher = null;
+		}
 	}
 
 	@Override
 	public void close() throws IOException {
+		if (batcher != null) {
+			batcher.close();
+		}
+	}
 
+	@Override
+	public boolean isHandlingBackpressure() {
+		return batcher != null;
 	}
 
 	public boolean doStore(final AuditMessage msg) {
@@ -70,11 +106,16 @@ public final class InternalESSink extends AuditLogSink {
 			return true;
 		}
 
+		if (batcher != null) {
+			final IndexRequest request = clientProvider.prepareIndex(getExpandedIndexName(indexPattern, index), type).setSource(msg.toBytes(XContentType.JSON), XContentType.JSON).request();
+			return batcher.add(new BulkItem(msg, request), request.source().length());
+		}
+
 		try (StoredContext ctx = threadPool.getThreadContext().stashContext()) {
 			try {
-				final IndexRequestBuilder irb = clientProvider.prepareIndex(getExpandedIndexName(indexPattern, index), type).setRefreshPolicy(RefreshPolicy.IMMEDIATE).setSource(msg.getAsMap());
+				final IndexRequestBuilder irb = clientProvider.prepareIndex(getExpandedIndexName(indexPattern, index), type).setRefreshPolicy(refreshPolicy).setSource(msg.toBytes(XContentType.JSON), XContentType.JSON);
 				threadPool.getThreadContext().putHeader(ConfigConstants.OPENDISTRO_SECURITY_CONF_REQUEST_HEADER, "true");
-				irb.setTimeout(TimeValue.timeValueMinutes(1));
+				irb.setTimeout(TIMEOUT);
 				irb.execute().actionGet();
 				return true;
 			} catch (final Exception e) {
@@ -83,4 +124,66 @@ public final class InternalESSink extends AuditLogSink {
 			}
 		}
 	}
+
+	private void flush(final List<BulkItem> items) {
+		final BulkRequest bulkRequest = new BulkRequest();
+		bulkRequest.setRefreshPolicy(refreshPolicy);
+		bulkRequest.timeout(TIMEOUT);
+		for (final BulkItem item : items) {
+			bulkRequest.add(item.request);
+		}
+
+		try (StoredContext ctx = threadPool.getThreadContext().stashContext()) {
+			threadPool.getThreadContext().putHeader(ConfigConstants.OPENDISTRO_SECURITY_CONF_REQUEST_HEADER, "true");
+			clientProvider.bulk(bulkRequest, new ActionListener<BulkResponse>() {
+
+				@Override
+				public void onResponse(final BulkResponse response) {
+					batcher.done(items.size());
+					if (response.hasFailures()) {
+						final BulkItemResponse[] responses = response.getItems();
+						for (int i = 0; i < responses.length; i++) {
+							if (responses[i].isFailed()) {
+								retry(items.get(i), responses[i].getFailureMessage());
+							}
+						}
+					}
+				}
+
+				@Override
+				public void onFailure(final Exception e) {
+					batcher.done(items.size());
+					for (final BulkItem item : items) {
+						retry(item, e.toString());
+					}
+				}
+			});
+		}
+	}
+
+	// failed items go with one of the next bulk requests, which also spaces out the attempts
+	private void retry(final BulkItem item, final String failure) {
+		if (item.attempt++ < getRetryCount() && batcher.add(item, item.request.source().length())) {
+			countRetry();
+			if (log.isDebugEnabled()) {
+				log.debug("Retry attempt {}/{} for {} due to {}", item.attempt, getRetryCount(), getName(), failure);
+			}
+			return;
+		}
+
+		log.error("Unable to index audit log {} due to {}", item.msg, failure);
+		// the fallback may block, keep it off the transport threads
+		threadPool.generic().execute(() -> storeToFallback(item.msg));
+	}
+
+	private static final class BulkItem {
+		private final AuditMessage msg;
+		private final IndexRequest request;
+		private int attempt = 0;
+
+		private BulkItem(final AuditMessage msg, final IndexRequest request) {
+			this.msg = msg;
+			this.request = request;
+		}
+	}
 }
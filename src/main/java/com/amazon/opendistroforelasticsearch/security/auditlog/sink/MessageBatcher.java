@@ -0,0 +1,195 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.sink;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+
+/**
+ * Collects the messages of a sink and hands them over in batches once a batch has
+ * {@code maxActions} messages or {@code maxSize} bytes, or {@code flushInterval} after
+ * the last flush. Batches are always handed over on the flush thread of the batcher, so that the
+ * threads which add messages never encode or send. Messages count as pending until the flusher
+ * reports them {@link #done(int)},
+ * and at most ten batches worth of messages can be pending, {@link #add(Object, long)}
+ * refuses messages beyond that so that the sink can hand them to its fallback. Once closed, it
+ * refuses all messages.
+ */
+final class MessageBatcher<T> implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(MessageBatcher.class);
+    private static final int MAX_PENDING_BATCHES = 10;
+    //how long close() waits for the flush thread and then for the messages in flight
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final String name;
+    private final int maxActions;
+    private final long maxBytes;
+    private final Consumer<List<T>> flusher;
+    private final ScheduledExecutorService scheduler;
+
+    private List<T> buffer;
+    //full batches waiting for the flush thread
+    private final Deque<List<T>> full = new ArrayDeque<>();
+    private long bufferedBytes = 0;
+    private int pending = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * @param flusher called with each batch from the flush thread of this batcher, or from the
+     *                thread which closes the batcher. Must call {@link #done(int)} once the
+     *                messages are stored or handed to the fallback.
+     */
+    MessageBatcher(final String name, final int maxActions, final ByteSizeValue maxSize, final TimeValue flushInterval, final Consumer<List<T>> flusher) {
+        this.name = name;
+        this.maxActions = maxActions;
+        this.maxBytes = maxSize.getBytes();
+        this.flusher = flusher;
+        this.buffer = new ArrayList<>(maxActions);
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                EsExecutors.daemonThreadFactory("opendistro_security_audit_" + name + "_flush"));
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval.millis(), flushInterval.millis(), TimeUnit.MILLISECONDS);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return false if the batcher is closed or too many messages are pending already
+     */
+    boolean add(final T message, final long bytes) {
+        synchronized (this) {
+            if (closed || pending >= maxActions * MAX_PENDING_BATCHES) {
+                return false;
+            }
+
+            buffer.add(message);
+            bufferedBytes += bytes;
+            pending++;
+
+            if (buffer.size() < maxActions && bufferedBytes < maxBytes) {
+                return true;
+            }
+
+            full.add(takeBuffer());
+        }
+
+        try {
+            scheduler.execute(this::sendFull);
+        } catch (RejectedExecutionException e) {
+            //closed after the message was added, close() sends what is left
+        }
+        return true;
+    }
+
+    void flush() {
+        sendFull();
+        final List<T> batch;
+        synchronized (this) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            batch = takeBuffer();
+        }
+        send(batch);
+    }
+
+    synchronized void done(final int count) {
+        pending -= count;
+        notifyAll();
+    }
+
+    synchronized int getPending() {
+        return pending;
+    }
+
+    private void sendFull() {
+        List<T> batch;
+        while ((batch = pollFull()) != null) {
+            send(batch);
+        }
+    }
+
+    private synchronized List<T> pollFull() {
+        return full.poll();
+    }
+
+    private List<T> takeBuffer() {
+        final List<T> batch = buffer;
+        buffer = new ArrayList<>(maxActions);
+        bufferedBytes = 0;
+        return batch;
+    }
+
+    private void send(final List<T> batch) {
+        try {
+            flusher.accept(batch);
+        } catch (Exception e) {
+            log.error("Unable to flush {} audit messages of {}", batch.size(), name, e);
+            done(batch.size());
+        }
+    }
+
+    /**
+     * Refuses further messages, sends what is left and waits for the messages in flight, so that
+     * the sink can close its client afterwards. Messages which fail after that go to the fallback.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("Flush thread of {} did not terminate", name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        awaitPending();
+    }
+
+    private synchronized void awaitPending() {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+        long remaining;
+        while (pending > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (pending > 0) {
+            log.warn("{} audit messages of {} still in flight after close", pending, name);
+        }
+    }
+}
@@ -16,6 +16,8 @@
 package com.amazon.opendistroforelasticsearch.security.auditlog.sink;
 
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -105,6 +107,13 @@ public class SinkProvider {
 		return defaultSink;
 	}
 
+	/**
+	 * @return all configured sinks, including the default and the fallback sink
+	 */
+	public Collection<AuditLogSink> getSinks() {
+		return Collections.unmodifiableCollection(allSinks.values());
+	}
+
 	public void close() {
 		for (AuditLogSink sink : allSinks.values()) {
 			close(sink);
@@ -114,6 +123,7 @@ public class SinkProvider {
 	protected void close(AuditLogSink sink) {
 		try {
 			log.info("Closing {}", sink.getClass().getSimpleName());
+			sink.closeSpool();
 			sink.close();
 		} catch (Exception ex) {
 			log.info("Could not close sink '{}' due to '{}'", sink.getClass().getSimpleName(), ex.getMessage());
@@ -171,6 +181,14 @@ public class SinkProvider {
 				}
 			}
 		}
+
+		if (sink != null) {
+			try {
+				sink.startSpool();
+			} catch (Exception e) {
+				log.error("Unable to open spool of endpoint '{}', messages which cannot be stored go to the fallback", name, e);
+			}
+		}
 		return sink;
 	}
 
@@ -16,6 +16,7 @@
 package com.amazon.opendistroforelasticsearch.security.auditlog.sink;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
@@ -24,23 +25,47 @@ import java.security.AccessController;
 import java.security.KeyStore;
 import java.security.PrivilegedAction;
 import java.security.cert.X509Certificate;
-
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.conn.ssl.DefaultHostnameVerifier;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.TrustStrategy;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.xcontent.XContentType;
 
 import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditMessage;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
@@ -49,6 +74,9 @@ import com.amazon.opendistroforelasticsearch.security.support.PemKeyReader;
 
 public class WebhookSink extends AuditLogSink {
 
+	private static final int TIMEOUT_SECONDS = 5;
+	private static final ContentType NDJSON_CONTENT_TYPE = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+
 	/* HttpClient is thread safe */
 	private final CloseableHttpClient httpClient;
 
@@ -56,6 +84,16 @@ public class WebhookSink extends AuditLogSink {
 	WebhookFormat webhookFormat = null;
 	final boolean verifySSL;
 	final KeyStore effectiveTruststore;
+	private EndpointStats endpointStats = new EndpointStats(null);
+
+	// batch mode
+	private MessageBatcher<AuditMessage> batcher;
+	private CloseableHttpAsyncClient asyncHttpClient;
+	private ExecutorService fallbackExecutor;
+	private Semaphore inFlight;
+	private int maxInFlight;
+	private BatchBody batchBody;
+	private boolean gzip;
 
     public WebhookSink(final String name, final Settings settings, final String settingsPrefix, final Path configPath, AuditLogSink fallbackSink) throws Exception {
 	    super(name, settings, settingsPrefix, fallbackSink);
@@ -81,8 +119,10 @@ public class WebhookSink extends AuditLogSink {
 		} else {
 			try {
 				// Sanity - check URL validity
-				new URL(webhookUrl);
+				final URL url = new URL(webhookUrl);
 				this.webhookUrl = webhookUrl;
+				// without path and query, which might contain a token
+				this.endpointStats = new EndpointStats(url.getProtocol() + "://" + url.getHost() + (url.getPort() == -1 ? "" : ":" + url.getPort()));
 			} catch (MalformedURLException ex) {
 				log.error("URL {} is invalid, webhook audit log will not work.", webhookUrl, ex);
 			}
@@ -99,6 +139,44 @@ public class WebhookSink extends AuditLogSink {
 				webhookFormat = WebhookFormat.TEXT;
 			}
 		}
+
+		if (sinkSettings.getAsBoolean(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_ENABLED, false)) {
+			if (webhookFormat != WebhookFormat.JSON) {
+				log.warn("Batching is only supported for webhook format 'json', sending audit messages of {} one by one", name);
+			} else if (this.webhookUrl != null) {
+				setupBatching(name, sinkSettings);
+			}
+		}
+	}
+
+	private void setupBatching(final String name, final Settings sinkSettings) {
+		final String body = sinkSettings.get(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_BODY, BatchBody.NDJSON.name());
+		try {
+			batchBody = BatchBody.valueOf(body.toUpperCase());
+		} catch (Exception ex) {
+			log.error("Could not find batch body type {}, falling back to 'ndjson'", body, ex);
+			batchBody = BatchBody.NDJSON;
+		}
+		gzip = sinkSettings.getAsBoolean(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_GZIP, false);
+		maxInFlight = Math.max(1, sinkSettings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_MAX_IN_FLIGHT, 4));
+		inFlight = new Semaphore(maxInFlight);
+
+		asyncHttpClient = getAsyncHttpClient(maxInFlight);
+		if (asyncHttpClient == null) {
+			return;
+		}
+
+		fallbackExecutor = Executors.newSingleThreadExecutor(EsExecutors.daemonThreadFactory("opendistro_security_audit_" + name + "_fallback"));
+		batcher = new MessageBatcher<>(name,
+				Math.max(1, sinkSettings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_ACTIONS, 500)),
+				sinkSettings.getAsBytesSize(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_SIZE, new ByteSizeValue(1, ByteSizeUnit.MB)),
+				sinkSettings.getAsTime(ConfigConstants.OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_FLUSH_INTERVAL, TimeValue.timeValueSeconds(1)),
+				this::flush);
+	}
+
+	@Override
+	public boolean isHandlingBackpressure() {
+		return batcher != null;
 	}
 
 	@Override
@@ -112,11 +190,16 @@ public class WebhookSink extends AuditLogSink {
 			return true;
 		}
 
+		if (batcher != null) {
+			return batcher.add(msg, msg.toBytes(XContentType.JSON).length());
+		}
+
 		return AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
 
 			@Override
 			public Boolean run() {
 				boolean success = false;
+				final long start = System.nanoTime();
 				try {
 					switch (webhookFormat.method) {
 					case POST:
@@ -138,13 +221,141 @@ public class WebhookSink extends AuditLogSink {
 					log.error("Uncaught exception while trying to log message.", t);
 					log.error(msg.toString());
 					return false;
+				} finally {
+					endpointStats.record(System.nanoTime() - start, 1, success);
 				}
 			}
 		});
 	}
 
+	// called on the flush thread of the batcher
+	private void flush(final List<AuditMessage> batch) {
+		final byte[] body;
+		try {
+			body = encode(batch);
+		} catch (Exception e) {
+			notSent(batch, e.toString());
+			return;
+		}
+
+		// bounds the number of requests and so the number of connections to the endpoint
+		try {
+			if (!inFlight.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				notSent(batch, "too many requests in flight");
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			notSent(batch, e.toString());
+			return;
+		}
+
+		final HttpPost post = new HttpPost(webhookUrl);
+		final ByteArrayEntity entity = new ByteArrayEntity(body, batchBody.contentType);
+		if (gzip) {
+			entity.setContentEncoding("gzip");
+		}
+		post.setEntity(entity);
+
+		final long start = System.nanoTime();
+		final FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>() {
+
+			@Override
+			public void completed(final HttpResponse response) {
+				final int responseCode = response.getStatusLine().getStatusCode();
+				if (responseCode >= 200 && responseCode < 300) {
+					done(batch, start, true);
+				} else {
+					done(batch, start, false);
+					WebhookSink.this.failed(batch, "server returned status " + responseCode);
+				}
+			}
+
+			@Override
+			public void failed(final Exception e) {
+				done(batch, start, false);
+				WebhookSink.this.failed(batch, e.toString());
+			}
+
+			@Override
+			public void cancelled() {
+				done(batch, start, false);
+				WebhookSink.this.failed(batch, "request cancelled");
+			}
+		};
+
+		try {
+			AccessController.doPrivileged((PrivilegedAction<?>) () -> asyncHttpClient.execute(post, callback));
+		} catch (Exception e) {
+			callback.failed(e);
+		}
+	}
+
+	private byte[] encode(final List<AuditMessage> batch) throws IOException {
+		try (BytesStreamOutput bytes = new BytesStreamOutput()) {
+			try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : bytes) {
+				if (batchBody == BatchBody.JSON_ARRAY) {
+					out.write('[');
+				}
+				for (int i = 0; i < batch.size(); i++) {
+					if (i > 0 && batchBody == BatchBody.JSON_ARRAY) {
+						out.write(',');
+					}
+					batch.get(i).toBytes(XContentType.JSON).writeTo(out);
+					if (batchBody == BatchBody.NDJSON) {
+						out.write('\n');
+					}
+				}
+				if (batchBody == BatchBody.JSON_ARRAY) {
+					out.write(']');
+				}
+			}
+			return BytesReference.toBytes(bytes.bytes());
+		}
+	}
+
+	private void done(final List<AuditMessage> batch, final long start, final boolean success) {
+		inFlight.release();
+		batcher.done(batch.size());
+		endpointStats.record(System.nanoTime() - start, batch.size(), success);
+	}
+
+	private void notSent(final List<AuditMessage> batch, final String reason) {
+		batcher.done(batch.size());
+		failed(batch, reason);
+	}
+
+	int getPendingMessages() {
+		return batcher == null ? 0 : batcher.getPending();
+	}
+
+	private void failed(final List<AuditMessage> batch, final String reason) {
+		log.error("Cannot POST {} audit messages to webhook URL '{}' due to '{}'", batch.size(), webhookUrl, reason);
+		// the fallback may block, keep it off the http client threads
+		try {
+			fallbackExecutor.execute(() -> batch.forEach(this::storeToFallback));
+		} catch (RejectedExecutionException e) {
+			batch.forEach(this::storeToFallback);
+		}
+	}
+
     @Override
     public void close() throws IOException {
+        if (batcher != null) {
+            batcher.close();
+            // wait for the requests in flight
+            try {
+                if (inFlight.tryAcquire(maxInFlight, TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    inFlight.release(maxInFlight);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            fallbackExecutor.shutdown();
+        }
+        if (asyncHttpClient != null) {
+            asyncHttpClient.close();
+        }
         if(httpClient != null) {
         	httpClient.close();
         }
@@ -338,19 +549,7 @@ public class WebhookSink extends AuditLogSink {
 	CloseableHttpClient getHttpClient()  {
 
         // TODO: set a timeout until we have a proper way to deal with back pressure
-        int timeout = 5;
-
-        RequestConfig config = RequestConfig.custom()
-          .setConnectTimeout(timeout * 1000)
-          .setConnectionRequestTimeout(timeout * 1000)
-          .setSocketTimeout(timeout * 1000).build();
-
-        final TrustStrategy trustAllStrategy = new TrustStrategy() {
-            @Override
-            public boolean isTrusted(X509Certificate[] chain, String authType) {
-                return true;
-            }
-        };
+        RequestConfig config = getRequestConfig();
 
 	    try {
 
@@ -358,9 +557,7 @@ public class WebhookSink extends AuditLogSink {
 	            return HttpClients.custom()
 	                    .setSSLSocketFactory(
 	                            new SSLConnectionSocketFactory(
-	                                    new SSLContextBuilder()
-	                                    .loadTrustMaterial(trustAllStrategy)
-	                                    .build(),
+	                                    trustAllSslContext(),
 	                                    NoopHostnameVerifier.INSTANCE))
 	                    .setDefaultRequestConfig(config)
 	                    .build();
@@ -375,9 +572,7 @@ public class WebhookSink extends AuditLogSink {
 		    return HttpClients.custom()
 		            .setSSLSocketFactory(
 		                    new SSLConnectionSocketFactory(
-		                            new SSLContextBuilder()
-		                            .loadTrustMaterial(effectiveTruststore, null)
-		                            .build(),
+		                            truststoreSslContext(),
 		                            new DefaultHostnameVerifier()))
 		            .setDefaultRequestConfig(config)
 		            .build();
@@ -389,6 +584,134 @@ public class WebhookSink extends AuditLogSink {
 	    }
 	}
 
+	/**
+	 * Pooled client for batch mode which keeps up to {@code maxConnections} connections to the endpoint alive
+	 */
+	CloseableHttpAsyncClient getAsyncHttpClient(final int maxConnections) {
+		try {
+			final HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+					.setDefaultRequestConfig(getRequestConfig())
+					.setMaxConnTotal(maxConnections)
+					.setMaxConnPerRoute(maxConnections);
+
+			if (!verifySSL) {
+				builder.setSSLContext(trustAllSslContext()).setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE);
+			} else if (effectiveTruststore != null) {
+				builder.setSSLContext(truststoreSslContext()).setSSLHostnameVerifier(new DefaultHostnameVerifier());
+			}
+
+			final CloseableHttpAsyncClient client = builder.build();
+			AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+				client.start();
+				return null;
+			});
+			return client;
+		} catch (Exception ex) {
+			log.error("Could not create async HTTPClient due to {}, audit messages will be sent one by one.", ex.getMessage(), ex);
+			return null;
+		}
+	}
+
+	private static RequestConfig getRequestConfig() {
+		return RequestConfig.custom()
+				.setConnectTimeout(TIMEOUT_SECONDS * 1000)
+				.setConnectionRequestTimeout(TIMEOUT_SECONDS * 1000)
+				.setSocketTimeout(TIMEOUT_SECONDS * 1000).build();
+	}
+
+	private static SSLContext trustAllSslContext() throws Exception {
+		final TrustStrategy trustAllStrategy = new TrustStrategy() {
+			@Override
+			public boolean isTrusted(X509Certificate[] chain, String authType) {
+				return true;
+			}
+		};
+		return new SSLContextBuilder().loadTrustMaterial(trustAllStrategy).build();
+	}
+
+	private SSLContext truststoreSslContext() throws Exception {
+		return new SSLContextBuilder().loadTrustMaterial(effectiveTruststore, null).build();
+	}
+
+	/**
+	 * @return latency and failures of the requests to the webhook endpoint
+	 */
+	public EndpointStats getEndpointStats() {
+		return endpointStats;
+	}
+
+	/**
+	 * @return number of batch requests waiting for a response, 0 if not in batch mode
+	 */
+	public int getInFlight() {
+		return inFlight == null ? 0 : maxInFlight - inFlight.availablePermits();
+	}
+
+	public static final class EndpointStats {
+		private final String endpoint;
+		private final LongAdder requests = new LongAdder();
+		private final LongAdder failedRequests = new LongAdder();
+		private final LongAdder messages = new LongAdder();
+		private final LongAdder latencyNanos = new LongAdder();
+		private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+		EndpointStats(final String endpoint) {
+			this.endpoint = endpoint;
+		}
+
+		void record(final long latencyNanos, final int messages, final boolean success) {
+			this.requests.increment();
+			this.messages.add(messages);
+			this.latencyNanos.add(latencyNanos);
+			this.maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+			if (!success) {
+				failedRequests.increment();
+			}
+		}
+
+		/**
+		 * @return scheme, host and port of the webhook URL
+		 */
+		public String getEndpoint() {
+			return endpoint;
+		}
+
+		public long getRequests() {
+			return requests.sum();
+		}
+
+		public long getFailedRequests() {
+			return failedRequests.sum();
+		}
+
+		public long getMessages() {
+			return messages.sum();
+		}
+
+		public long getAverageLatencyMillis() {
+			final long requests = getRequests();
+			return requests == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(latencyNanos.sum() / requests);
+		}
+
+		public long getMaxLatencyMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+		}
+	}
+
+	/**
+	 * Body of a batch request
+	 */
+	static enum BatchBody {
+		NDJSON(NDJSON_CONTENT_TYPE),
+		JSON_ARRAY(ContentType.APPLICATION_JSON);
+
+		private final ContentType contentType;
+
+		private BatchBody(ContentType contentType) {
+			this.contentType = contentType;
+		}
+	}
+
 	public static enum WebhookFormat {
 		URL_PARAMETER_GET(HttpMethod.GET, ContentType.TEXT_PLAIN),
 		URL_PARAMETER_POST(HttpMethod.POST, ContentType.TEXT_PLAIN),
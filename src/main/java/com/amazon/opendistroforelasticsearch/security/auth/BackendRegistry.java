@@ -33,6 +33,7 @@ package com.amazon.opendistroforelasticsearch.security.auth;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -49,8 +50,11 @@ import javax.naming.ldap.Rdn;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchSecurityException;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.rest.BytesRestResponse;
 import org.elasticsearch.rest.RestChannel;
@@ -67,9 +71,11 @@ import com.amazon.opendistroforelasticsearch.security.auth.internal.NoOpAuthenti
 import com.amazon.opendistroforelasticsearch.security.configuration.AdminDNs;
 import com.amazon.opendistroforelasticsearch.security.http.XFFResolver;
 import com.amazon.opendistroforelasticsearch.security.securityconf.DynamicConfigModel;
+import com.amazon.opendistroforelasticsearch.security.securityconf.impl.CType;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.Utils;
 import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
 import com.amazon.opendistroforelasticsearch.security.support.HTTPHelper;
+import com.amazon.opendistroforelasticsearch.security.support.LatencyHistogram;
 import com.amazon.opendistroforelasticsearch.security.user.AuthCredentials;
 import com.amazon.opendistroforelasticsearch.security.user.User;
 
@@ -104,46 +110,50 @@ public class BackendRegistry {
     private final ThreadPool threadPool;
     private final UserInjector userInjector;
     private final int ttlInMin;
-    private Cache<AuthCredentials, User> userCache; //rest standard
-    private Cache<String, User> restImpersonationCache; //used for rest impersonation
-    private Cache<String, User> userCacheTransport; //transport no creds, possibly impersonated
-    private Cache<AuthCredentials, User> authenticatedUserCacheTransport; //transport creds, no impersonation
+    private final GradualCacheInvalidator cacheInvalidator;
+    private final CacheRefresher cacheRefresher;
+    private final LatencyHistogram restAuthenticateLatency = new LatencyHistogram();
+    private final LatencyHistogram transportAuthenticateLatency = new LatencyHistogram();
+    private Cache<AuthCredentials, CacheRefresher.Entry<User>> userCache; //rest standard
+    private Cache<String, CacheRefresher.Entry<User>> restImpersonationCache; //used for rest impersonation
+    private Cache<String, CacheRefresher.Entry<User>> userCacheTransport; //transport no creds, possibly impersonated
+    private Cache<AuthCredentials, CacheRefresher.Entry<User>> authenticatedUserCacheTransport; //transport creds, no impersonation
 
     private Cache<User, Set<String>> transportRoleCache; //
     private Cache<User, Set<String>> restRoleCache; //
-    private Cache<String, User> transportImpersonationCache; //used for transport impersonation
+    private Cache<String, CacheRefresher.Entry<User>> transportImpersonationCache; //used for transport impersonation
 
     private volatile String transportUsernameAttribute = null;
     
     private void createCaches() {
         userCache = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
-                .removalListener(new RemovalListener<AuthCredentials, User>() {
+                .removalListener(new RemovalListener<AuthCredentials, CacheRefresher.Entry<User>>() {
                     @Override
-                    public void onRemoval(RemovalNotification<AuthCredentials, User> notification) {
+                    public void onRemoval(RemovalNotification<AuthCredentials, CacheRefresher.Entry<User>> notification) {
                         log.debug("Clear user cache for {} due to {}", notification.getKey().getUsername(), notification.getCause());
                     }
                 }).build();
 
         userCacheTransport = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
-                .removalListener(new RemovalListener<String, User>() {
+                .removalListener(new RemovalListener<String, CacheRefresher.Entry<User>>() {
                     @Override
-                    public void onRemoval(RemovalNotification<String, User> notification) {
+                    public void onRemoval(RemovalNotification<String, CacheRefresher.Entry<User>> notification) {
                         log.debug("Clear user cache for {} due to {}", notification.getKey(), notification.getCause());
                     }
                 }).build();
 
         authenticatedUserCacheTransport = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
-                .removalListener(new RemovalListener<AuthCredentials, User>() {
+                .removalListener(new RemovalListener<AuthCredentials, CacheRefresher.Entry<User>>() {
                     @Override
-                    public void onRemoval(RemovalNotification<AuthCredentials, User> notification) {
+                    public void onRemoval(RemovalNotification<AuthCredentials, CacheRefresher.Entry<User>> notification) {
                         log.debug("Clear user cache for {} due to {}", notification.getKey().getUsername(), notification.getCause());
                     }
                 }).build();
 
         restImpersonationCache = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
-                .removalListener(new RemovalListener<String, User>() {
+                .removalListener(new RemovalListener<String, CacheRefresher.Entry<User>>() {
                     @Override
-                    public void onRemoval(RemovalNotification<String, User> notification) {
+                    public void onRemoval(RemovalNotification<String, CacheRefresher.Entry<User>> notification) {
                         log.debug("Clear user cache for {} due to {}", notification.getKey(), notification.getCause());
                     }
                 }).build();
@@ -165,9 +175,9 @@ public class BackendRegistry {
                 }).build();
 
         transportImpersonationCache = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
-                .removalListener(new RemovalListener<String, User>() {
+                .removalListener(new RemovalListener<String, CacheRefresher.Entry<User>>() {
                     @Override
-                    public void onRemoval(RemovalNotification<String, User> notification) {
+                    public void onRemoval(RemovalNotification<String, CacheRefresher.Entry<User>> notification) {
                         log.debug("Clear user cache for {} due to {}", notification.getKey(), notification.getCause());
                     }
                 }).build();
@@ -185,6 +195,9 @@ public class BackendRegistry {
 
 
         this.ttlInMin = settings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_CACHE_TTL_MINUTES, 60);
+        this.cacheInvalidator = new GradualCacheInvalidator(threadPool,
+                settings.getAsTime(ConfigConstants.OPENDISTRO_SECURITY_CACHE_INVALIDATION_SPREAD, TimeValue.ZERO));
+        this.cacheRefresher = CacheRefresher.from(settings);
 
         // This is going to be defined in the elasticsearch.yml, so it's best suited to be initialized once.
         this.injectedUserEnabled = esSettings.getAsBoolean(ConfigConstants.OPENDISTRO_SECURITY_UNSUPPORTED_INJECT_USER_ENABLED,false);
@@ -196,20 +209,58 @@ public class BackendRegistry {
         return initialized;
     }
 
+    /**
+     * Drops all cached users and roles, spread over {@code opendistro_security.cache.invalidation_spread} if configured
+     */
     public void invalidateCache() {
-        userCache.invalidateAll();
-        userCacheTransport.invalidateAll();
-        authenticatedUserCacheTransport.invalidateAll();
-        restImpersonationCache.invalidateAll();
-        restRoleCache.invalidateAll();
-        transportRoleCache.invalidateAll();
-        transportImpersonationCache.invalidateAll();
+        cacheInvalidator.invalidateAll(allCaches());
+    }
+
+    /**
+     * Drops all cached users and roles at once, never spread
+     */
+    public void invalidateCacheNow() {
+        cacheInvalidator.invalidateAllNow(allCaches());
+    }
+
+    List<Cache<?, ?>> allCaches() {
+        return Arrays.<Cache<?, ?>>asList(userCache, userCacheTransport, authenticatedUserCacheTransport,
+                restImpersonationCache, restRoleCache, transportRoleCache, transportImpersonationCache);
+    }
+
+    /**
+     * Drops the cached users and roles which may depend on the changed configuration types. A change of the
+     * config (authentication and authorization domains) drops everything at once, never spread, so that users
+     * of a removed or disabled domain are not authenticated anymore. A change of the internal users drops
+     * only the entries of the changed users. The other types are not used here, backend roles are
+     * mapped to security roles on every request.
+     *
+     * @param changedUsers names of the internal users which were added, changed or removed
+     */
+    public void invalidateCache(final Set<CType> changedTypes, final Set<String> changedUsers) {
+        if (changedTypes.contains(CType.CONFIG)) {
+            cacheInvalidator.invalidateAllNow(allCaches());
+            return;
+        }
+
+        if (changedTypes.contains(CType.INTERNALUSERS) && !changedUsers.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Clear user cache for changed internal users {}", changedUsers);
+            }
+            userCache.asMap().keySet().removeIf(ac -> changedUsers.contains(ac.getUsername()));
+            authenticatedUserCacheTransport.asMap().keySet().removeIf(ac -> changedUsers.contains(ac.getUsername()));
+            userCacheTransport.asMap().keySet().removeIf(changedUsers::contains);
+            restImpersonationCache.asMap().keySet().removeIf(changedUsers::contains);
+            transportImpersonationCache.asMap().keySet().removeIf(changedUsers::contains);
+            restRoleCache.asMap().keySet().removeIf(user -> changedUsers.contains(user.getName()));
+            transportRoleCache.asMap().keySet().removeIf(user -> changedUsers.contains(user.getName()));
+        }
     }
 
     @Subscribe
     public void onDynamicConfigModelChanged(DynamicConfigModel dcm) {
 
-        invalidateCache();
+        //caches are invalidated by TransportConfigUpdateAction, depending on what changed
         transportUsernameAttribute = dcm.getTransportUsernameAttribute();// config.dynamic.transport_userrname_attribute;
         anonymousAuthEnabled = dcm.isAnonymousAuthenticationEnabled()//config.dynamic.http.anonymous_auth_enabled
                 && !esSettings.getAsBoolean(ConfigConstants.OPENDISTRO_SECURITY_COMPLIANCE_DISABLE_ANONYMOUS_AUTHENTICATION, false);
@@ -229,6 +280,15 @@ public class BackendRegistry {
     }
 
     public User authenticate(final TransportRequest request, final String sslPrincipal, final Task task, final String action) {
+        final long start = System.nanoTime();
+        try {
+            return authenticate0(request, sslPrincipal, task, action);
+        } finally {
+            transportAuthenticateLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private User authenticate0(final TransportRequest request, final String sslPrincipal, final Task task, final String action) {
         if(log.isDebugEnabled() && request.remoteAddress() != null) {
             log.debug("Transport authentication request from {}", request.remoteAddress());
         }
@@ -353,6 +413,40 @@ public class BackendRegistry {
      * @throws ElasticsearchSecurityException
      */
     public boolean authenticate(final RestRequest request, final RestChannel channel, final ThreadContext threadContext) {
+        final long start = System.nanoTime();
+        try {
+            return authenticate0(request, channel, threadContext);
+        } finally {
+            restAuthenticateLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return latency of the authentication of REST requests
+     */
+    public LatencyHistogram getRestAuthenticateLatency() {
+        return restAuthenticateLatency;
+    }
+
+    /**
+     * @return latency of the authentication of transport requests
+     */
+    public LatencyHistogram getTransportAuthenticateLatency() {
+        return transportAuthenticateLatency;
+    }
+
+    /**
+     * @return number of cached users which were refreshed ahead of their expiry
+     */
+    public long getCacheRefreshed() {
+        return cacheRefresher.getRefreshed();
+    }
+
+    public long getCacheRefreshFailed() {
+        return cacheRefresher.getFailed();
+    }
+
+    private boolean authenticate0(final RestRequest request, final RestChannel channel, final ThreadContext threadContext) {
 
         if (request.getHttpChannel().getRemoteAddress() instanceof InetSocketAddress && isBlocked(((InetSocketAddress) request.getHttpChannel().getRemoteAddress()).getAddress())) {
             if (log.isDebugEnabled()) {
@@ -467,7 +561,13 @@ public class BackendRegistry {
             }
 
             //http completed       
-            authenticatedUser = authcz(userCache, restRoleCache, ac, authDomain.getBackend(), restAuthorizers);
+            try {
+                authenticatedUser = authcz(userCache, restRoleCache, ac, authDomain.getBackend(), restAuthorizers);
+            } catch (EsRejectedExecutionException e) {
+                log.warn("Rejecting REST request of {}: {}", ac.getUsername(), e.getMessage());
+                channel.sendResponse(new BytesRestResponse(RestStatus.TOO_MANY_REQUESTS, e.getMessage()));
+                return false;
+            }
 
             if(authenticatedUser == null) {
                 if(log.isDebugEnabled()) {
@@ -571,30 +671,27 @@ public class BackendRegistry {
      * @param authDomain
      * @return null if user cannot b authenticated
      */
-    private User checkExistsAndAuthz(final Cache<String, User> cache, final User user, final AuthenticationBackend authenticationBackend,
+    private User checkExistsAndAuthz(final Cache<String, CacheRefresher.Entry<User>> cache, final User user, final AuthenticationBackend authenticationBackend,
                                      final Set<AuthorizationBackend> authorizers) {
         if(user == null) {
             return null;
         }
 
         try {
-            return cache.get(user.getName(), new Callable<User>() { //no cache miss in case of noop
+            return cacheRefresher.get(cache, user.getName(), new Callable<User>() { //no cache miss in case of noop
                 @Override
                 public User call() throws Exception {
                     if(log.isTraceEnabled()) {
                         log.trace("Credentials for user "+user.getName()+" not cached, return from "+authenticationBackend.getType()
                                 + " backend directly");
                     }
-                    if(authenticationBackend.exists(user)) {
-                        authz(user, null, authorizers); //no role cache because no miss here in case of noop
-                        return user;
-                    }
-
-                    if(log.isDebugEnabled()) {
-                        log.debug("User "+user.getName()+" does not exist in "+authenticationBackend.getType());
-                    }
-                    return null;
+                    return existsAndAuthz(user, authenticationBackend, authorizers);
                 }
+            }, () -> {
+                //the cached user is in use, refresh a copy
+                final User copy = new User(user.getName(), user.getRoles(), null);
+                copy.addAttributes(user.getCustomAttributesMap());
+                return () -> existsAndAuthz(copy, authenticationBackend, authorizers);
             });
         } catch (Exception e) {
             if(log.isDebugEnabled()) {
@@ -603,6 +700,19 @@ public class BackendRegistry {
             return null;
         }
     }
+
+    private User existsAndAuthz(final User user, final AuthenticationBackend authenticationBackend, final Set<AuthorizationBackend> authorizers) {
+        if(authenticationBackend.exists(user)) {
+            authz(user, null, authorizers); //no role cache because no miss here in case of noop
+            return user;
+        }
+
+        if(log.isDebugEnabled()) {
+            log.debug("User "+user.getName()+" does not exist in "+authenticationBackend.getType());
+        }
+        return null;
+    }
+
     private void authz(User authenticatedUser, Cache<User, Set<String>> roleCache, final Set<AuthorizationBackend> authorizers) {
 
         if(authenticatedUser == null) {
@@ -647,7 +757,7 @@ public class BackendRegistry {
      * @param authDomain
      * @return null if user cannot b authenticated
      */
-    private User authcz(final Cache<AuthCredentials, User> cache, Cache<User, Set<String>> roleCache, final AuthCredentials ac,
+    private User authcz(final Cache<AuthCredentials, CacheRefresher.Entry<User>> cache, Cache<User, Set<String>> roleCache, final AuthCredentials ac,
                         final AuthenticationBackend authBackend, final Set<AuthorizationBackend> authorizers) {
         if(ac == null) {
             return null;
@@ -661,7 +771,7 @@ public class BackendRegistry {
                 return authBackend.authenticate(ac);
             }
 
-            return cache.get(ac, new Callable<User>() {
+            return cacheRefresher.get(cache, ac, new Callable<User>() {
                 @Override
                 public User call() throws Exception {
                     if(log.isTraceEnabled()) {
@@ -672,8 +782,29 @@ public class BackendRegistry {
                     authz(authenticatedUser, roleCache, authorizers);
                     return authenticatedUser;
                 }
+            }, () -> {
+                //the secrets of ac are cleared when we return
+                final AuthCredentials copy = ac.copy();
+                return () -> {
+                    try {
+                        final User authenticatedUser = authBackend.authenticate(copy);
+                        //roles are refreshed too, not taken from the role cache
+                        authz(authenticatedUser, null, authorizers);
+                        if(authenticatedUser != null && roleCache != null) {
+                            roleCache.put(authenticatedUser, new HashSet<String>(authenticatedUser.getRoles()));
+                        }
+                        return authenticatedUser;
+                    } finally {
+                        copy.clearSecrets();
+                    }
+                };
             });
         } catch (Exception e) {
+            //overload is not an authentication failure
+            final Throwable rejection = ExceptionsHelper.unwrap(e, EsRejectedExecutionException.class);
+            if(rejection != null) {
+                throw (EsRejectedExecutionException) rejection;
+            }
             if(log.isDebugEnabled()) {
                 log.debug("Can not authenticate "+ac.getUsername()+" due to "+e.toString(), e);
             }
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auth;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ElasticsearchSecurityException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+
+import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+
+/**
+ * Refresh-ahead for the user caches of the {@link BackendRegistry}. An entry which is older than the
+ * soft TTL is still served, but it is reloaded in the background on a small dedicated pool. The hard TTL
+ * is the expiry of the cache itself, so a user whose backend is not reachable is only served until then.
+ * If the backend rejects the credentials on a reload, the entry is evicted so that the next request
+ * authenticates again. If a reload fails otherwise, e.g. the backend is not reachable, the stale entry
+ * is kept and the next reload is delayed with an exponential backoff.
+ */
+final class CacheRefresher {
+
+    private static final Logger log = LogManager.getLogger(CacheRefresher.class);
+    private static final int DEFAULT_THREADS = 2;
+    private static final int MAX_QUEUE_LEN = 1000;
+
+    private final long softTtlNanos;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    //null if refresh-ahead is disabled
+    private final Executor executor;
+
+    private final LongAdder refreshed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    CacheRefresher(final TimeValue softTtl, final TimeValue initialBackoff, final TimeValue maxBackoff, final Executor executor) {
+        this.softTtlNanos = softTtl.nanos();
+        this.initialBackoffNanos = Math.max(1, initialBackoff.nanos());
+        this.maxBackoffNanos = Math.max(initialBackoffNanos, maxBackoff.nanos());
+        this.executor = softTtlNanos > 0 ? executor : null;
+    }
+
+    static CacheRefresher from(final Settings settings) {
+        final TimeValue softTtl = TimeValue.timeValueMinutes(settings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_CACHE_SOFT_TTL_MINUTES, 0));
+        Executor executor = null;
+        if (softTtl.nanos() > 0) {
+            final int threads = settings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_CACHE_REFRESH_THREADS, DEFAULT_THREADS);
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(MAX_QUEUE_LEN), EsExecutors.daemonThreadFactory("opendistro_security_cache_refresh"));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return new CacheRefresher(softTtl,
+                settings.getAsTime(ConfigConstants.OPENDISTRO_SECURITY_CACHE_REFRESH_INITIAL_BACKOFF, TimeValue.timeValueSeconds(10)),
+                settings.getAsTime(ConfigConstants.OPENDISTRO_SECURITY_CACHE_REFRESH_MAX_BACKOFF, TimeValue.timeValueMinutes(5)),
+                executor);
+    }
+
+    /**
+     * Like {@link Cache#get(Object, Callable)}, a loader which returns null is not cached and ends in an exception.
+     * @param refresher called on the calling thread when a refresh is due, returns the reload which is run in the background.
+     * The reload must not need anything which is gone when this method returns, like the secrets of the credentials.
+     */
+    <K, V> V get(final Cache<K, Entry<V>> cache, final K key, final Callable<V> loader, final Supplier<Callable<V>> refresher)
+            throws ExecutionException {
+
+        final Entry<V> entry = cache.get(key, () -> {
+            final V value = loader.call();
+            return value == null ? null : new Entry<>(value, System.nanoTime());
+        });
+
+        if (executor != null && entry.isRefreshDue(System.nanoTime(), softTtlNanos) && entry.refreshing.compareAndSet(false, true)) {
+            try {
+                final Callable<V> reload = refresher.get();
+                executor.execute(() -> refresh(cache, key, entry, reload));
+            } catch (RejectedExecutionException e) {
+                //pool is busy, one of the next requests will try again
+                entry.refreshing.set(false);
+            }
+        }
+
+        return entry.value;
+    }
+
+    private <K, V> void refresh(final Cache<K, Entry<V>> cache, final K key, final Entry<V> entry, final Callable<V> reload) {
+        try {
+            final V value = reload.call();
+            if (value == null) {
+                //gone in the backend, the next request loads it again
+                cache.asMap().remove(key, entry);
+            } else {
+                //only if not invalidated or reloaded meanwhile
+                cache.asMap().replace(key, entry, new Entry<>(value, System.nanoTime()));
+            }
+            refreshed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            if (isRejection(e)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Credentials rejected on refresh, evict the cache entry", e);
+                }
+                cache.asMap().remove(key, entry);
+                return;
+            }
+            entry.failures++;
+            long backoff = initialBackoffNanos;
+            for (int i = 1; i < entry.failures && backoff < maxBackoffNanos; i++) {
+                backoff <<= 1;
+            }
+            backoff = Math.min(maxBackoffNanos, backoff);
+            entry.nextRefreshNanos = System.nanoTime() + backoff;
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to refresh cache entry, keep the stale one and try again in {} ms", TimeUnit.NANOSECONDS.toMillis(backoff), e);
+            }
+            entry.refreshing.set(false);
+        }
+    }
+
+    //backends reject credentials or users with their own exception, an unavailable backend fails with an
+    //underlying cause like an IOException or a connection error
+    static boolean isRejection(final Exception e) {
+        return Throwables.getRootCause(e) instanceof ElasticsearchSecurityException;
+    }
+
+    public long getRefreshed() {
+        return refreshed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    static final class Entry<V> {
+        private final V value;
+        private final long loadedNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        //only written by the refreshing thread
+        private volatile int failures;
+        private volatile long nextRefreshNanos;
+
+        Entry(final V value, final long loadedNanos) {
+            this.value = value;
+            this.loadedNanos = loadedNanos;
+        }
+
+        V getValue() {
+            return value;
+        }
+
+        private boolean isRefreshDue(final long now, final long softTtlNanos) {
+            if (refreshing.get() || now - loadedNanos < softTtlNanos) {
+                return false;
+            }
+            return failures == 0 || now - nextRefreshNanos >= 0;
+        }
+    }
+}
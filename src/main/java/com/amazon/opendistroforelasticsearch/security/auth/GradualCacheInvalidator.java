@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auth;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import com.google.common.cache.Cache;
+
+/**
+ * Invalidates all entries of some caches, either at once or spread over a period of time.
+ * When spread, the keys present at the time of the invalidation are dropped in random order
+ * in small batches, so that the authentication and authorization backends see the users
+ * coming back gradually and not all at the same time.
+ */
+final class GradualCacheInvalidator {
+
+    static final long TICK_MILLIS = 100;
+
+    private final Logger log = LogManager.getLogger(this.getClass());
+    private final ThreadPool threadPool;
+    private final long spreadMillis;
+    //a new invalidation supersedes a running one, its snapshot contains the keys which are still there
+    private long generation;
+
+    GradualCacheInvalidator(final ThreadPool threadPool, final TimeValue spread) {
+        this.threadPool = threadPool;
+        this.spreadMillis = spread.millis();
+    }
+
+    synchronized void invalidateAll(final List<Cache<?, ?>> caches) {
+        final long current = ++generation;
+
+        if (spreadMillis <= 0 || threadPool == null) {
+            caches.forEach(Cache::invalidateAll);
+            return;
+        }
+
+        final List<Runnable> removals = new ArrayList<>();
+        for (final Cache<?, ?> cache : caches) {
+            for (final Object key : cache.asMap().keySet()) {
+                removals.add(() -> cache.invalidate(key));
+            }
+        }
+
+        if (removals.isEmpty()) {
+            return;
+        }
+
+        Collections.shuffle(removals);
+        final long ticks = Math.max(1, spreadMillis / TICK_MILLIS);
+        final int perTick = (int) Math.max(1, (removals.size() + ticks - 1) / ticks);
+        log.debug("Invalidate {} cache entries over {} ms", removals.size(), spreadMillis);
+        tick(current, removals, 0, perTick);
+    }
+
+    /**
+     * Invalidates all entries at once, regardless of the spread, and stops a running spread invalidation
+     */
+    synchronized void invalidateAllNow(final List<Cache<?, ?>> caches) {
+        ++generation;
+        caches.forEach(Cache::invalidateAll);
+    }
+
+    private void tick(final long current, final List<Runnable> removals, final int from, final int perTick) {
+        synchronized (this) {
+            if (current != generation) {
+                return;
+            }
+        }
+
+        final int to = Math.min(removals.size(), from + perTick);
+        for (int i = from; i < to; i++) {
+            removals.get(i).run();
+        }
+
+        if (to < removals.size()) {
+            threadPool.schedule(() -> tick(current, removals, to, perTick), TimeValue.timeValueMillis(TICK_MILLIS), ThreadPool.Names.GENERIC);
+        }
+    }
+}
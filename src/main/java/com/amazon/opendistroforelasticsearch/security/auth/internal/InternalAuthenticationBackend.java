@@ -39,7 +39,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.bouncycastle.crypto.generators.OpenBSDBCrypt;
 import org.elasticsearch.ElasticsearchSecurityException;
 
 import com.amazon.opendistroforelasticsearch.security.auth.AuthenticationBackend;
@@ -52,6 +51,15 @@ import org.greenrobot.eventbus.Subscribe;
 public class InternalAuthenticationBackend implements AuthenticationBackend, AuthorizationBackend {
 
     private InternalUsersModel internalUsersModel;
+    private final PasswordVerifier passwordVerifier;
+
+    public InternalAuthenticationBackend() {
+        this(PasswordVerifier.direct());
+    }
+
+    public InternalAuthenticationBackend(final PasswordVerifier passwordVerifier) {
+        this.passwordVerifier = passwordVerifier;
+    }
 
     @Override
     public boolean exists(User user) {
@@ -112,7 +120,7 @@ public class InternalAuthenticationBackend implements AuthenticationBackend, Aut
         Arrays.fill(password, (byte)0);
 
         try {
-            if (OpenBSDBCrypt.checkPassword(internalUsersModel.getHash(credentials.getUsername()), array)) {
+            if (passwordVerifier.verify(credentials.getUsername(), internalUsersModel.getHash(credentials.getUsername()), array)) {
                 final List<String> roles = internalUsersModel.getBackenRoles(credentials.getUsername());
                 final Map<String, String> customAttributes = internalUsersModel.getAttributes(credentials.getUsername());
                 if(customAttributes != null) {
@@ -162,6 +170,10 @@ public class InternalAuthenticationBackend implements AuthenticationBackend, Aut
 
     }
 
+    public PasswordVerifier getPasswordVerifier() {
+        return passwordVerifier;
+    }
+
     @Subscribe
     public void onInternalUsersModelChanged(InternalUsersModel ium) {
         this.internalUsersModel = ium;
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auth.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.generators.OpenBSDBCrypt;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+import org.elasticsearch.ElasticsearchSecurityException;
+
+/**
+ * Password hashes of internal users. The prefix of the hash selects the algorithm, so hashes of
+ * different algorithms can be mixed:
+ * <ul>
+ * <li>{@code $2y$12$...} BCrypt, the default</li>
+ * <li>{@code $pbkdf2-sha256$<iterations>$<salt>$<hash>} PBKDF2 with HMAC-SHA256</li>
+ * <li>{@code $argon2id$v=19$m=<memory in KiB>,t=<iterations>,p=<parallelism>$<salt>$<hash>} Argon2</li>
+ * </ul>
+ * Salt and hash are Base64 without padding, {@code .} is accepted instead of {@code +} as written by passlib.
+ * The cost is part of the hash, so it can be tuned per user.
+ */
+public final class PasswordHashes {
+
+    private static final String PBKDF2_PREFIX = "$pbkdf2-sha256$";
+    private static final String ARGON2_PREFIX = "$argon2";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private PasswordHashes() {
+    }
+
+    /**
+     * @return true if {@code password} matches {@code hash}
+     * @throws ElasticsearchSecurityException if the hash is malformed
+     */
+    public static boolean check(final String hash, final char[] password) {
+        Objects.requireNonNull(hash, "hash must not be null");
+        if (hash.startsWith(PBKDF2_PREFIX)) {
+            return checkPbkdf2(hash, password);
+        }
+        if (hash.startsWith(ARGON2_PREFIX)) {
+            return checkArgon2(hash, password);
+        }
+        return OpenBSDBCrypt.checkPassword(hash, password);
+    }
+
+    public static String pbkdf2(final char[] password, final int iterations) {
+        final byte[] salt = salt();
+        final byte[] hash = pbkdf2(password, salt, iterations, HASH_LENGTH);
+        return PBKDF2_PREFIX + iterations + "$" + encode(salt) + "$" + encode(hash);
+    }
+
+    public static String argon2(final char[] password, final int memoryKb, final int iterations, final int parallelism) {
+        final byte[] salt = salt();
+        final byte[] hash = argon2(Argon2Parameters.ARGON2_id, Argon2Parameters.ARGON2_VERSION_13, memoryKb, iterations, parallelism,
+                salt, password, HASH_LENGTH);
+        return "$argon2id$v=" + Argon2Parameters.ARGON2_VERSION_13 + "$m=" + memoryKb + ",t=" + iterations + ",p=" + parallelism
+                + "$" + encode(salt) + "$" + encode(hash);
+    }
+
+    private static boolean checkPbkdf2(final String hash, final char[] password) {
+        //"", "pbkdf2-sha256", iterations, salt, hash
+        final String[] parts = hash.split("\\$");
+        if (parts.length != 5) {
+            throw new ElasticsearchSecurityException("Invalid PBKDF2 hash");
+        }
+        try {
+            final byte[] expected = decode(parts[4]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, decode(parts[3]), Integer.parseInt(parts[2]), expected.length));
+        } catch (IllegalArgumentException e) {
+            throw new ElasticsearchSecurityException("Invalid PBKDF2 hash", e);
+        }
+    }
+
+    private static boolean checkArgon2(final String hash, final char[] password) {
+        //"", "argon2id", "v=19", "m=65536,t=3,p=4", salt, hash
+        final String[] parts = hash.split("\\$");
+        if (parts.length != 6 || !parts[2].startsWith("v=")) {
+            throw new ElasticsearchSecurityException("Invalid Argon2 hash");
+        }
+
+        final int type;
+        switch (parts[1]) {
+            case "argon2id":
+                type = Argon2Parameters.ARGON2_id;
+                break;
+            case "argon2i":
+                type = Argon2Parameters.ARGON2_i;
+                break;
+            case "argon2d":
+                type = Argon2Parameters.ARGON2_d;
+                break;
+            default:
+                throw new ElasticsearchSecurityException("Invalid Argon2 hash");
+        }
+
+        try {
+            int memory = -1, iterations = -1, parallelism = -1;
+            for (final String parameter : parts[3].split(",")) {
+                final int value = Integer.parseInt(parameter.substring(2));
+                if (parameter.startsWith("m=")) {
+                    memory = value;
+                } else if (parameter.startsWith("t=")) {
+                    iterations = value;
+                } else if (parameter.startsWith("p=")) {
+                    parallelism = value;
+                }
+            }
+            if (memory < 1 || iterations < 1 || parallelism < 1) {
+                throw new ElasticsearchSecurityException("Invalid Argon2 hash");
+            }
+
+            final byte[] expected = decode(parts[5]);
+            return MessageDigest.isEqual(expected, argon2(type, Integer.parseInt(parts[2].substring(2)), memory, iterations,
+                    parallelism, decode(parts[4]), password, expected.length));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ElasticsearchSecurityException("Invalid Argon2 hash", e);
+        }
+    }
+
+    private static byte[] pbkdf2(final char[] password, final byte[] salt, final int iterations, final int length) {
+        final PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new ElasticsearchSecurityException("Unable to compute PBKDF2 hash", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static byte[] argon2(final int type, final int version, final int memoryKb, final int iterations, final int parallelism,
+            final byte[] salt, final char[] password, final int length) {
+        final Argon2BytesGenerator generator = new Argon2BytesGenerator();
+        generator.init(new Argon2Parameters.Builder(type)
+                .withVersion(version)
+                .withMemoryAsKB(memoryKb)
+                .withIterations(iterations)
+                .withParallelism(parallelism)
+                .withSalt(salt)
+                .build());
+
+        final ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        final byte[] passwordBytes = new byte[bytes.remaining()];
+        bytes.get(passwordBytes);
+        try {
+            final byte[] hash = new byte[length];
+            generator.generateBytes(passwordBytes, hash);
+            return hash;
+        } finally {
+            Arrays.fill(passwordBytes, (byte) 0);
+            Arrays.fill(bytes.array(), (byte) 0);
+        }
+    }
+
+    private static byte[] salt() {
+        final byte[] salt = new byte[SALT_LENGTH];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
+
+    private static String encode(final byte[] bytes) {
+        return Base64.getEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] decode(final String s) {
+        return Base64.getDecoder().decode(s.replace('.', '+'));
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auth.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.elasticsearch.ElasticsearchSecurityException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+
+import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
+import com.amazon.opendistroforelasticsearch.security.support.LatencyHistogram;
+
+/**
+ * Verifies passwords of internal users on a small bounded pool, so that a burst of cache misses
+ * does not occupy all network threads with hashing. Concurrent checks of the same credentials
+ * against the same hash share one verification. If the queue is full, the check is rejected
+ * with an {@link EsRejectedExecutionException}, which ends in a 429 for the client.
+ */
+public final class PasswordVerifier {
+
+    private static final int DEFAULT_MAX_QUEUE_LEN = 1000;
+
+    //null if the passwords are verified on the calling thread
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentMap<Key, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    PasswordVerifier(final int threads, final int maxQueueLen) {
+        if (threads > 0) {
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(maxQueueLen),
+                    EsExecutors.daemonThreadFactory("opendistro_security_password_hashing"));
+            this.executor.allowCoreThreadTimeOut(true);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public static PasswordVerifier from(final Settings settings) {
+        final int defaultThreads = Math.max(1, EsExecutors.allocatedProcessors(settings) / 2);
+        return new PasswordVerifier(settings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_PASSWORD_HASHING_THREADS, defaultThreads),
+                settings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_PASSWORD_HASHING_MAX_QUEUE_LEN, DEFAULT_MAX_QUEUE_LEN));
+    }
+
+    /**
+     * Verifies on the calling thread, for the tools and tests
+     */
+    static PasswordVerifier direct() {
+        return new PasswordVerifier(0, 0);
+    }
+
+    /**
+     * @return true if {@code password} matches {@code hash}
+     * @throws EsRejectedExecutionException if too many passwords are waiting for verification
+     */
+    public boolean verify(final String username, final String hash, final char[] password) {
+        final Key key = new Key(username, hash, password);
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        final CompletableFuture<Boolean> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            shared.increment();
+            return await(running);
+        }
+
+        //the caller wipes its password when we return, even if we return early
+        final char[] copy = password.clone();
+        final Runnable check = () -> {
+            final long start = System.nanoTime();
+            boolean matches = false;
+            Throwable failure = null;
+            try {
+                matches = PasswordHashes.check(hash, copy);
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                Arrays.fill(copy, '\0');
+                inFlight.remove(key, future);
+                verified.increment();
+                latency.record(System.nanoTime() - start);
+            }
+
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(matches);
+            }
+        };
+
+        if (executor == null) {
+            check.run();
+        } else {
+            try {
+                executor.execute(check);
+            } catch (RejectedExecutionException e) {
+                Arrays.fill(copy, '\0');
+                inFlight.remove(key, future);
+                rejected.increment();
+                final EsRejectedExecutionException rejection = new EsRejectedExecutionException(
+                        "Too many concurrent password verifications, try again later", executor.isShutdown());
+                future.completeExceptionally(rejection);
+                throw rejection;
+            }
+        }
+        return await(future);
+    }
+
+    private static boolean await(final CompletableFuture<Boolean> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ElasticsearchSecurityException("Interrupted while verifying password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ElasticsearchSecurityException("Unable to verify password", e.getCause());
+        }
+    }
+
+    public int getThreads() {
+        return executor == null ? 0 : executor.getMaximumPoolSize();
+    }
+
+    public int getQueueDepth() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * @return number of distinct credentials which are being checked or waiting for it
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return number of passwords which were checked against their hash
+     */
+    public long getVerified() {
+        return verified.sum();
+    }
+
+    /**
+     * @return number of requests which waited for the check of the same credentials by another request
+     */
+    public long getShared() {
+        return shared.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    //the password is only kept as digest
+    private static final class Key {
+        private final String username;
+        private final String hash;
+        private final byte[] passwordDigest;
+        private final int hashCode;
+
+        private Key(final String username, final String hash, final char[] password) {
+            this.username = username;
+            this.hash = hash;
+            final ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+            try {
+                final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(bytes);
+                this.passwordDigest = digest.digest();
+            } catch (NoSuchAlgorithmException e) {
+                throw new ElasticsearchSecurityException("Unable to digest password", e);
+            } finally {
+                Arrays.fill(bytes.array(), (byte) 0);
+            }
+            this.hashCode = Objects.hash(username, hash, Arrays.hashCode(passwordDigest));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return Objects.equals(username, other.username) && Objects.equals(hash, other.hash)
+                    && MessageDigest.isEqual(passwordDigest, other.passwordDigest);
+        }
+    }
+}
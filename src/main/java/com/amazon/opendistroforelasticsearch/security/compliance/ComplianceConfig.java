@@ -103,7 +103,7 @@ public class ComplianceConfig {
     private final String opendistrosecurityIndex;
 
     private final Map<WildcardMatcher, Set<String>> readEnabledFields;
-    private final LoadingCache<String, WildcardMatcher> readEnabledFieldsCache;
+    private final LoadingCache<String, ReadFieldsExtractor> readEnabledFieldsCache;
     private final DateTimeFormatter auditLogPattern;
     private final String auditLogIndex;
     private final boolean enabled;
@@ -163,10 +163,10 @@ public class ComplianceConfig {
 
         this.readEnabledFieldsCache = CacheBuilder.newBuilder()
                 .maximumSize(CACHE_SIZE)
-                .build(new CacheLoader<String, WildcardMatcher>() {
+                .build(new CacheLoader<String, ReadFieldsExtractor>() {
                     @Override
-                    public WildcardMatcher load(String index) throws Exception {
-                        return WildcardMatcher.from(getFieldsForIndex(index));
+                    public ReadFieldsExtractor load(String index) throws Exception {
+                        return new ReadFieldsExtractor(getFieldsForIndex(index));
                     }
                 });
     }
@@ -481,7 +481,7 @@ public class ComplianceConfig {
             return logInternalConfig;
         }
         try {
-            return readEnabledFieldsCache.get(index) != WildcardMatcher.NONE;
+            return readEnabledFieldsCache.get(index).getMatcher() != WildcardMatcher.NONE;
         } catch (ExecutionException e) {
             log.warn("Failed to get index {} fields enabled for read from cache. Bypassing cache.", index, e);
             return getFieldsForIndex(index).isEmpty();
@@ -495,20 +495,28 @@ public class ComplianceConfig {
      * @return true/false
      */
     public boolean readHistoryEnabledForField(String index, String field) {
+        return getReadFieldsExtractor(index).getMatcher().test(field);
+    }
+
+    /**
+     * Get the extractor for the fields of given index which are watched for read requests
+     * Checks if compliance is enabled
+     * @param index index
+     * @return extractor which extracts no fields if read compliance history is not enabled
+     */
+    public ReadFieldsExtractor getReadFieldsExtractor(String index) {
         if (!this.isEnabled()) {
-            return false;
+            return ReadFieldsExtractor.NONE;
         }
         // if open distro index (internal index) check if internal config logging is enabled
         if (opendistrosecurityIndex.equals(index)) {
-            return logInternalConfig;
+            return logInternalConfig ? ReadFieldsExtractor.ALL : ReadFieldsExtractor.NONE;
         }
-        WildcardMatcher matcher;
         try {
-            matcher = readEnabledFieldsCache.get(index);
+            return readEnabledFieldsCache.get(index);
         } catch (ExecutionException e) {
             log.warn("Failed to get index {} fields enabled for read from cache. Bypassing cache.", index, e);
-            matcher = WildcardMatcher.from(getFieldsForIndex(index));
+            return new ReadFieldsExtractor(getFieldsForIndex(index));
         }
-        return matcher.test(field);
     }
 }
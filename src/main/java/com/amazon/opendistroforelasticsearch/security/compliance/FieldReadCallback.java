@@ -21,25 +21,22 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.function.Function;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.index.FieldInfo;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
-import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.shard.ShardId;
 
 import com.amazon.opendistroforelasticsearch.security.auditlog.AuditLog;
-import com.amazon.opendistroforelasticsearch.security.dlic.rest.support.Utils;
+import com.amazon.opendistroforelasticsearch.security.configuration.FlsSourceFilter;
 import com.amazon.opendistroforelasticsearch.security.support.HeaderHelper;
 import com.amazon.opendistroforelasticsearch.security.support.SourceFieldsContext;
 import com.amazon.opendistroforelasticsearch.security.support.WildcardMatcher;
-import com.github.wnameless.json.flattener.JsonFlattener;
 
 //TODO  We need to deal with caching!!
 //Currently we disable caching (and realtime requests) when FLS or DLS is applied
@@ -55,7 +52,10 @@ public final class FieldReadCallback {
     private final Index index;
     private final WildcardMatcher maskedFieldsMatcher;
     private final AuditLog auditLog;
-    private Function<Map<String, ?>, Map<String, Object>> filterFunction;
+    private final ReadFieldsExtractor extractor;
+    //false if no watched field is in the mapping, then nothing is recorded
+    private final boolean watched;
+    private FlsSourceFilter sourceFilter;
     private SourceFieldsContext sfc;
     private Doc doc;
     private final ShardId shardId;
@@ -70,6 +70,12 @@ public final class FieldReadCallback {
         this.auditLog = auditLog;
         this.maskedFieldsMatcher = maskedFieldsMatcher;
         this.shardId = shardId;
+        final ComplianceConfig complianceConfig = auditLog.getComplianceConfig();
+        this.extractor = complianceConfig == null ? ReadFieldsExtractor.NONE : complianceConfig.getReadFieldsExtractor(index.getName());
+        this.watched = extractor.hasWatchedFields(indexService.mapperService());
+        if(!watched) {
+            return;
+        }
         try {
             sfc = (SourceFieldsContext) HeaderHelper.deserializeSafeFromHeader(threadContext, "_opendistro_security_source_field_context");
             if(sfc != null && sfc.hasIncludesOrExcludes()) {
@@ -77,7 +83,7 @@ public final class FieldReadCallback {
                     log.trace("_opendistro_security_source_field_context: "+sfc);
                 }
 
-                filterFunction = XContentMapValues.filter(sfc.getIncludes(), sfc.getExcludes());
+                sourceFilter = FlsSourceFilter.forPatterns(sfc.getIncludes(), sfc.getExcludes());
             }
         } catch (Exception e) {
             if(log.isDebugEnabled()) {
@@ -87,10 +93,13 @@ public final class FieldReadCallback {
     }
 
     private boolean recordField(final String fieldName, boolean isStringField) {
-        return !(isStringField && maskedFieldsMatcher.test(fieldName)) && auditLog.getComplianceConfig().readHistoryEnabledForField(index.getName(), fieldName);
+        return !(isStringField && maskedFieldsMatcher.test(fieldName)) && extractor.getMatcher().test(fieldName);
     }
 
     public void binaryFieldRead(final FieldInfo fieldInfo, byte[] fieldValue) {
+        if(!watched) {
+            return;
+        }
         try {
             if(!recordField(fieldInfo.name, false) && !fieldInfo.name.equals("_source") && !fieldInfo.name.equals("_id")) {
                 return;
@@ -98,18 +107,15 @@ public final class FieldReadCallback {
 
             if(fieldInfo.name.equals("_source")) {
 
-                if(filterFunction != null) {
-                    final Map<String, Object> filteredSource = filterFunction.apply(Utils.byteArrayToMutableJsonMap(fieldValue));
-                    fieldValue = Utils.jsonMapToByteArray(filteredSource);
+                if(sourceFilter != null) {
+                    fieldValue = sourceFilter.filter(fieldValue);
                 }
 
-                Map<String, Object> filteredSource = new JsonFlattener(new String(fieldValue, StandardCharsets.UTF_8)).flattenAsMap();
-                for(String k: filteredSource.keySet()) {
-                    if(!recordField(k, filteredSource.get(k) instanceof String)) {
-                        continue;
+                extractor.extract(fieldValue, (k, v) -> {
+                    if(!(v instanceof String && maskedFieldsMatcher.test(k))) {
+                        fieldRead0(k, v);
                     }
-                    fieldRead0(k, filteredSource.get(k));
-                }
+                });
             } else if (fieldInfo.name.equals("_id")) {
                 fieldRead0(fieldInfo.name, Uid.decodeId(fieldValue));
             }  else {
@@ -121,6 +127,9 @@ public final class FieldReadCallback {
     }
 
     public void stringFieldRead(final FieldInfo fieldInfo, final byte[] fieldValue) {
+        if(!watched) {
+            return;
+        }
         try {
             if(!recordField(fieldInfo.name, true)) {
                 return;
@@ -132,6 +141,9 @@ public final class FieldReadCallback {
     }
 
     public void numericFieldRead(final FieldInfo fieldInfo, final Number fieldValue) {
+        if(!watched) {
+            return;
+        }
         try {
             if(!recordField(fieldInfo.name, false)) {
                 return;
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.compliance;
+
+import static org.elasticsearch.common.xcontent.DeprecationHandler.THROW_UNSUPPORTED_OPERATION;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentParser.Token;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.MapperService;
+
+import com.amazon.opendistroforelasticsearch.security.support.WildcardMatcher;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Extracts the fields of an index which are watched for read requests from the _source of a document.
+ * The _source is walked on the token stream once, subtrees which cannot contain a watched field are
+ * skipped and only the values of watched fields are materialized.
+ *
+ * Field names are the same as the ones of the flattened document: the dotted path of the field,
+ * with the position within an array in brackets, e.g. {@code a.b[0].c}.
+ */
+public final class ReadFieldsExtractor {
+
+    private static final Logger log = LogManager.getLogger(ReadFieldsExtractor.class);
+    //same limit as FlsSourceFilter
+    private static final int MAX_DETERMINIZED_STATES = 50_000;
+
+    static final ReadFieldsExtractor NONE = new ReadFieldsExtractor(Collections.emptySet());
+    static final ReadFieldsExtractor ALL = new ReadFieldsExtractor(Collections.singleton("*"));
+
+    private final Set<String> fields;
+    private final WildcardMatcher matcher;
+    //null if a watched field is a regular expression or the fields are too complex for an automaton,
+    //then every path is tested with the matcher
+    private final CharacterRunAutomaton automaton;
+    private volatile MappingCheck mappingCheck;
+
+    public ReadFieldsExtractor(final Set<String> fields) {
+        this.fields = ImmutableSet.copyOf(fields);
+        this.matcher = WildcardMatcher.from(this.fields);
+        this.automaton = toAutomaton(this.fields);
+    }
+
+    public WildcardMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * @return false if none of the watched fields is in the mapping of the index, so that no document
+     * of the index needs to be looked at
+     */
+    public boolean hasWatchedFields(final MapperService mapperService) {
+        if (matcher == WildcardMatcher.NONE) {
+            return false;
+        }
+        if (matcher == WildcardMatcher.ANY || mapperService == null) {
+            return true;
+        }
+
+        final DocumentMapper documentMapper = mapperService.documentMapper();
+        if (documentMapper == null) {
+            return true;
+        }
+
+        //the mapping only changes with a new document mapper
+        final MappingCheck check = mappingCheck;
+        if (check != null && check.documentMapper == documentMapper) {
+            return check.watched;
+        }
+
+        final boolean watched = fields.stream().anyMatch(field -> isMapped(mapperService, field));
+        mappingCheck = new MappingCheck(documentMapper, watched);
+        return watched;
+    }
+
+    private static boolean isMapped(final MapperService mapperService, final String field) {
+        if (field.indexOf('?') >= 0 || field.indexOf('[') >= 0 || (field.startsWith("/") && field.endsWith("/"))) {
+            //cannot be looked up, assume it is there
+            return true;
+        }
+        return !mapperService.simpleMatchToFullName(field).isEmpty();
+    }
+
+    /**
+     * Passes the path and the value of each watched field in {@code source} to {@code consumer}.
+     * Values are strings, {@link BigDecimal} numbers, booleans, null or empty lists and maps for empty arrays and objects.
+     */
+    public void extract(final byte[] source, final BiConsumer<String, Object> consumer) throws IOException {
+        if (matcher == WildcardMatcher.NONE) {
+            return;
+        }
+
+        XContentType xContentType = XContentFactory.xContentType(source);
+        if (xContentType == null) {
+            xContentType = XContentType.JSON;
+        }
+
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY, THROW_UNSUPPORTED_OPERATION,
+                new BytesArray(source), xContentType)) {
+
+            if (parser.nextToken() != Token.START_OBJECT) {
+                throw new ElasticsearchParseException("_source is not an object");
+            }
+            extractObject(parser, new StringBuilder(), 0, consumer);
+        }
+    }
+
+    //parser is positioned on the start of the object, state includes the separator for the inner fields
+    //returns false if the object is empty
+    private boolean extractObject(final XContentParser parser, final StringBuilder path, final int initialState,
+            final BiConsumer<String, Object> consumer) throws IOException {
+
+        final int length = path.length();
+        boolean empty = true;
+        while (parser.nextToken() == Token.FIELD_NAME) {
+            empty = false;
+            final String name = parser.currentName();
+            final Token token = parser.nextToken();
+
+            final int state = step(initialState, name);
+            if (state == -1) {
+                parser.skipChildren();
+                continue;
+            }
+
+            if (length > 0) {
+                path.append('.');
+            }
+            path.append(name);
+            extractValue(parser, token, path, state, consumer);
+            path.setLength(length);
+        }
+        return !empty;
+    }
+
+    private boolean extractArray(final XContentParser parser, final StringBuilder path, final int initialState,
+            final BiConsumer<String, Object> consumer) throws IOException {
+
+        final int length = path.length();
+        Token token;
+        int i = 0;
+        for (; (token = parser.nextToken()) != Token.END_ARRAY; i++) {
+            final int state = step(initialState, Integer.toString(i) + ']');
+            if (state == -1) {
+                parser.skipChildren();
+                continue;
+            }
+
+            path.append('[').append(i).append(']');
+            extractValue(parser, token, path, state, consumer);
+            path.setLength(length);
+        }
+        return i > 0;
+    }
+
+    private void extractValue(final XContentParser parser, final Token token, final StringBuilder path, final int state,
+            final BiConsumer<String, Object> consumer) throws IOException {
+
+        if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+            final boolean object = token == Token.START_OBJECT;
+            final int innerState = step(state, object ? '.' : '[');
+
+            //an empty object or array is a field on its own
+            if (innerState == -1 && !isAccept(state, path)) {
+                parser.skipChildren();
+                return;
+            }
+
+            final boolean nonEmpty = object ? extractObject(parser, path, innerState, consumer)
+                    : extractArray(parser, path, innerState, consumer);
+            if (!nonEmpty && isAccept(state, path)) {
+                consumer.accept(path.toString(), object ? Collections.emptyMap() : Collections.emptyList());
+            }
+        } else if (isAccept(state, path)) {
+            consumer.accept(path.toString(), value(parser, token));
+        }
+    }
+
+    private static Object value(final XContentParser parser, final Token token) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER:
+                return new BigDecimal(parser.text());
+            case VALUE_BOOLEAN:
+                return parser.booleanValue();
+            case VALUE_NULL:
+                return null;
+            default:
+                return parser.text();
+        }
+    }
+
+    private int step(int state, final String s) {
+        if (automaton == null) {
+            return 0;
+        }
+        for (int i = 0; state != -1 && i < s.length(); ++i) {
+            state = automaton.step(state, s.charAt(i));
+        }
+        return state;
+    }
+
+    private int step(final int state, final char c) {
+        if (automaton == null) {
+            return 0;
+        }
+        return state == -1 ? -1 : automaton.step(state, c);
+    }
+
+    private boolean isAccept(final int state, final StringBuilder path) {
+        if (automaton == null) {
+            return matcher.test(path.toString());
+        }
+        return state != -1 && automaton.isAccept(state);
+    }
+
+    private static CharacterRunAutomaton toAutomaton(final Set<String> fields) {
+        final List<Automaton> automata = new ArrayList<>(fields.size());
+        for (final String field : fields) {
+            if (field.startsWith("/") && field.endsWith("/")) {
+                return null;
+            }
+            if (field.isEmpty()) {
+                continue;
+            }
+            final List<Automaton> parts = new ArrayList<>(field.length());
+            for (int i = 0; i < field.length(); i++) {
+                final char c = field.charAt(i);
+                parts.add(c == '*' ? Automata.makeAnyString() : c == '?' ? Automata.makeAnyChar() : Automata.makeChar(c));
+            }
+            automata.add(Operations.concatenate(parts));
+        }
+        try {
+            return new CharacterRunAutomaton(Operations.union(automata), MAX_DETERMINIZED_STATES);
+        } catch (TooComplexToDeterminizeException e) {
+            log.warn("Watched fields {} are too complex for an automaton, every field is tested on its own", fields, e);
+            return null;
+        }
+    }
+
+    private static final class MappingCheck {
+        private final DocumentMapper documentMapper;
+        private final boolean watched;
+
+        private MappingCheck(final DocumentMapper documentMapper, final boolean watched) {
+            this.documentMapper = documentMapper;
+            this.watched = watched;
+        }
+    }
+}
@@ -284,6 +284,10 @@ public class ConfigurationRepository {
         this.dynamicConfigFactory = dynamicConfigFactory;
     }
 
+    public DynamicConfigFactory getDynamicConfigFactory() {
+        return dynamicConfigFactory;
+    }
+
     /**
      *
      * @param configurationType
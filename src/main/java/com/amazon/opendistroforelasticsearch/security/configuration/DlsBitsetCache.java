@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.configuration;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.MemorySizeValue;
+
+import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * Node wide cache of the documents matched by a DLS query in a segment, similar to
+ * Elasticsearch's BitsetFilterCache. The entries are keyed by segment core, so they stay
+ * valid when documents get deleted, and all entries of a segment are dropped at once when its
+ * core is closed. When the configured size is reached, the least recently used bitsets are
+ * evicted. The cached bitsets ignore deletions and must not be modified.
+ */
+public class DlsBitsetCache {
+
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final Cache<Key, FixedBitSet> cache;
+    //the cached keys of each open segment core
+    private final Map<IndexReader.CacheKey, Set<Key>> cores = new ConcurrentHashMap<>();
+
+    public DlsBitsetCache(final Settings settings) {
+        this(MemorySizeValue.parseBytesSizeValueOrHeapRatio(settings.get(ConfigConstants.OPENDISTRO_SECURITY_DLS_BITSET_CACHE_SIZE,
+                ConfigConstants.OPENDISTRO_SECURITY_DLS_BITSET_CACHE_SIZE_DEFAULT), ConfigConstants.OPENDISTRO_SECURITY_DLS_BITSET_CACHE_SIZE)
+                .getBytes());
+    }
+
+    @VisibleForTesting
+    DlsBitsetCache(final long maxBytes) {
+        this.cache = CacheBuilder.newBuilder()
+                //one segment, so that the least recently used bitsets of all segment cores are evicted first
+                .concurrencyLevel(1)
+                .maximumWeight(maxBytes)
+                .weigher((Key k, FixedBitSet v) -> (int) Math.min(Integer.MAX_VALUE, v.ramBytesUsed()))
+                .removalListener(this::onRemoval)
+                .build();
+    }
+
+    /**
+     * @param reader the segment reader, without any DLS/FLS filtering
+     * @param includesExcludes the FLS fields the query was evaluated with
+     * @param maskedFields the masked fields the query was evaluated with
+     */
+    FixedBitSet getOrCompute(final LeafReader reader, final Query dlsQuery, final Set<String> includesExcludes,
+            final Set<String> maskedFields, final Callable<FixedBitSet> loader) throws IOException {
+
+        final IndexReader.CacheHelper coreCacheHelper = reader.getCoreCacheHelper();
+
+        if (coreCacheHelper == null) {
+            return call(loader);
+        }
+
+        final IndexReader.CacheKey coreKey = coreCacheHelper.getKey();
+        final Set<Key> coreKeys = cores.computeIfAbsent(coreKey, k -> {
+            coreCacheHelper.addClosedListener(this::onClose);
+            return ConcurrentHashMap.newKeySet();
+        });
+
+        final Key key = new Key(coreKey, dlsQuery, includesExcludes, maskedFields);
+        final boolean[] loaded = new boolean[1];
+        final FixedBitSet bitset;
+        try {
+            bitset = cache.get(key, () -> {
+                final FixedBitSet value = loader.call();
+                usedBytes.addAndGet(value.ramBytesUsed());
+                coreKeys.add(key);
+                loaded[0] = true;
+                return value;
+            });
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw ExceptionsHelper.convertToElastic((Exception) e.getCause());
+        }
+
+        //the segment was closed during the load
+        if (loaded[0] && cores.get(coreKey) != coreKeys) {
+            cache.invalidate(key);
+        }
+        return bitset;
+    }
+
+    private void onClose(final IndexReader.CacheKey coreKey) {
+        final Set<Key> coreKeys = cores.remove(coreKey);
+        if (coreKeys != null) {
+            cache.invalidateAll(coreKeys);
+        }
+    }
+
+    private void onRemoval(final RemovalNotification<Key, FixedBitSet> notification) {
+        usedBytes.addAndGet(-notification.getValue().ramBytesUsed());
+        final Set<Key> coreKeys = cores.get(notification.getKey().coreKey);
+        if (coreKeys != null) {
+            coreKeys.remove(notification.getKey());
+        }
+    }
+
+    @VisibleForTesting
+    long size() {
+        cache.cleanUp();
+        return cache.size();
+    }
+
+    @VisibleForTesting
+    long usedBytes() {
+        return usedBytes.get();
+    }
+
+    private static FixedBitSet call(final Callable<FixedBitSet> loader) throws IOException {
+        try {
+            return loader.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw ExceptionsHelper.convertToElastic(e);
+        }
+    }
+
+    private static final class Key {
+        private final IndexReader.CacheKey coreKey;
+        private final Query dlsQuery;
+        private final Set<String> includesExcludes;
+        private final Set<String> maskedFields;
+        private final int hashCode;
+
+        private Key(final IndexReader.CacheKey coreKey, final Query dlsQuery, final Set<String> includesExcludes, final Set<String> maskedFields) {
+            this.coreKey = coreKey;
+            this.dlsQuery = dlsQuery;
+            this.includesExcludes = includesExcludes;
+            this.maskedFields = maskedFields;
+            this.hashCode = Objects.hash(coreKey, dlsQuery, includesExcludes, maskedFields);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && coreKey == other.coreKey
+                    && dlsQuery.equals(other.dlsQuery)
+                    && Objects.equals(includesExcludes, other.includesExcludes)
+                    && Objects.equals(maskedFields, other.maskedFields);
+        }
+    }
+}
@@ -20,12 +20,12 @@ package com.amazon.opendistroforelasticsearch.security.configuration;
 //https://github.com/apache/lucene-solr/blob/branch_6_3/lucene/misc/src/java/org/apache/lucene/index/PKIndexSplitter.java
 //https://github.com/salyh/elasticsearch-security-plugin/blob/4b53974a43b270ae77ebe79d635e2484230c9d01/src/main/java/org/elasticsearch/plugins/security/filter/DlsWriteFilter.java
 
+import static org.elasticsearch.common.xcontent.DeprecationHandler.THROW_UNSUPPORTED_OPERATION;
+
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -63,29 +63,26 @@ import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.automaton.CompiledAutomaton;
+import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.cluster.service.ClusterService;
-import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
-import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.lucene.index.SequentialStoredFieldsLeafReader;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.common.xcontent.XContentBuilder;
-import org.elasticsearch.common.xcontent.XContentHelper;
-import org.elasticsearch.common.xcontent.XContentType;
-import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.shard.ShardId;
 
 import com.amazon.opendistroforelasticsearch.security.auditlog.AuditLog;
 import com.amazon.opendistroforelasticsearch.security.compliance.FieldReadCallback;
-import com.amazon.opendistroforelasticsearch.security.dlic.rest.support.Utils;
 import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
 import com.amazon.opendistroforelasticsearch.security.support.HeaderHelper;
-import com.amazon.opendistroforelasticsearch.security.support.MapUtils;
 import com.amazon.opendistroforelasticsearch.security.support.OpenDistroSecurityUtils;
 import com.amazon.opendistroforelasticsearch.security.support.WildcardMatcher;
-import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
 
@@ -100,7 +97,7 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
     private String[] includes;
     private String[] excludes;
     private boolean canOptimize = true;
-    private Function<Map<String, ?>, Map<String, Object>> filterFunction;
+    private FlsSourceFilter sourceFilter;
     private final IndexService indexService;
     private final ThreadContext threadContext;
     private final ClusterService clusterService;
@@ -108,7 +105,7 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
     private final MaskedFieldsMap maskedFieldsMap;
     private final ShardId shardId;
     private final boolean maskFields;
-    private final Salt salt;
+    private final MaskedFieldCache maskedFieldCache;
 
     private DlsGetEvaluator dge = null;
 
@@ -116,7 +113,8 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
     DlsFlsFilterLeafReader(final LeafReader delegate, final Set<String> includesExcludes,
                            final Query dlsQuery, final IndexService indexService, final ThreadContext threadContext,
                            final ClusterService clusterService,
-                           final AuditLog auditlog, final Set<String> maskedFields, final ShardId shardId, final Salt salt) {
+                           final AuditLog auditlog, final Set<String> maskedFields, final ShardId shardId, final MaskedFieldCache maskedFieldCache,
+                           final DlsBitsetCache dlsBitsetCache) {
         super(delegate);
 
         maskFields = (maskedFields != null && maskedFields.size() > 0);
@@ -125,8 +123,8 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
         this.threadContext = threadContext;
         this.clusterService = clusterService;
         this.auditlog = auditlog;
-        this.salt = salt;
-        this.maskedFieldsMap = MaskedFieldsMap.extractMaskedFields(maskFields, maskedFields, salt);
+        this.maskedFieldCache = maskedFieldCache;
+        this.maskedFieldsMap = MaskedFieldsMap.extractMaskedFields(maskFields, maskedFields, maskedFieldCache);
 
         this.shardId = shardId;
         flsEnabled = includesExcludes != null && !includesExcludes.isEmpty();
@@ -169,6 +167,8 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
                         }
                     }
                 }
+
+                sourceFilter = FlsSourceFilter.forFieldNames(includesSet, excludesSet);
             } else {
                 if (!excludesSet.isEmpty()) {
                     WildcardMatcher matcher = WildcardMatcher.from(excludesSet);
@@ -192,9 +192,9 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
                 }
 
                 if (!excludesSet.isEmpty()) {
-                    filterFunction = XContentMapValues.filter(null, excludes);
+                    sourceFilter = FlsSourceFilter.forPatterns(null, excludes);
                 } else {
-                    filterFunction = XContentMapValues.filter(includes, null);
+                    sourceFilter = FlsSourceFilter.forPatterns(includes, null);
                 }
             }
 
@@ -211,7 +211,7 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
         }
 
         try {
-            dge = new DlsGetEvaluator(dlsQuery, in, applyDlsHere());
+            dge = new DlsGetEvaluator(dlsQuery, in, applyDlsHere(), includesExcludes, maskedFields, dlsBitsetCache);
         } catch (IOException e) {
             throw ExceptionsHelper.convertToElastic(e);
         }
@@ -223,31 +223,32 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
         private final CacheHelper readerCacheHelper;
         private final boolean hasDeletions;
 
-        public DlsGetEvaluator(final Query dlsQuery, final LeafReader in, boolean applyDlsHere) throws IOException {
+        public DlsGetEvaluator(final Query dlsQuery, final LeafReader in, boolean applyDlsHere, final Set<String> includesExcludes,
+                               final Set<String> maskedFields, final DlsBitsetCache dlsBitsetCache) throws IOException {
             if(dlsQuery != null && applyDlsHere) {
-                //borrowed from Apache Lucene (Copyright Apache Software Foundation (ASF))
-                //https://github.com/apache/lucene-solr/blob/branch_6_3/lucene/misc/src/java/org/apache/lucene/index/PKIndexSplitter.java
-                final IndexSearcher searcher = new IndexSearcher(DlsFlsFilterLeafReader.this);
-                searcher.setQueryCache(null);
-                final Weight preserveWeight = searcher.createWeight(dlsQuery, ScoreMode.COMPLETE_NO_SCORES, 1f);
-
-                final int maxDoc = in.maxDoc();
-                final FixedBitSet bits = new FixedBitSet(maxDoc);
-                final Scorer preserveScorer = preserveWeight.scorer(DlsFlsFilterLeafReader.this.getContext());
-
-                if (preserveScorer != null) {
-                    bits.or(preserveScorer.iterator());
-                }
+                final FixedBitSet matchingDocs = dlsBitsetCache == null ? matchingDocs(dlsQuery, in)
+                        : dlsBitsetCache.getOrCompute(in, dlsQuery, includesExcludes, maskedFields, () -> matchingDocs(dlsQuery, in));
+
+                final Bits bits;
 
                 if (in.hasDeletions()) {
+                    //cached bitsets are shared and must not be modified
+                    final FixedBitSet liveMatchingDocs = matchingDocs.clone();
                     final Bits oldLiveDocs = in.getLiveDocs();
                     assert oldLiveDocs != null;
-                    final DocIdSetIterator it = new BitSetIterator(bits, 0L);
-                    for (int i = it.nextDoc(); i != DocIdSetIterator.NO_MORE_DOCS; i = it.nextDoc()) {
-                        if (!oldLiveDocs.get(i)) {
-                            bits.clear(i);
+                    if (oldLiveDocs instanceof FixedBitSet) {
+                        liveMatchingDocs.and((FixedBitSet) oldLiveDocs);
+                    } else {
+                        final DocIdSetIterator it = new BitSetIterator(liveMatchingDocs, 0L);
+                        for (int i = it.nextDoc(); i != DocIdSetIterator.NO_MORE_DOCS; i = it.nextDoc()) {
+                            if (!oldLiveDocs.get(i)) {
+                                liveMatchingDocs.clear(i);
+                            }
                         }
                     }
+                    bits = liveMatchingDocs;
+                } else {
+                    bits = matchingDocs;
                 }
 
                 liveBits = bits;
@@ -264,6 +265,24 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
             }
         }
 
+        //documents matching the DLS query, regardless of deletions
+        private FixedBitSet matchingDocs(final Query dlsQuery, final LeafReader in) throws IOException {
+            //borrowed from Apache Lucene (Copyright Apache Software Foundation (ASF))
+            //https://github.com/apache/lucene-solr/blob/branch_6_3/lucene/misc/src/java/org/apache/lucene/index/PKIndexSplitter.java
+            final IndexSearcher searcher = new IndexSearcher(DlsFlsFilterLeafReader.this);
+            searcher.setQueryCache(null);
+            final Weight preserveWeight = searcher.createWeight(dlsQuery, ScoreMode.COMPLETE_NO_SCORES, 1f);
+
+            final FixedBitSet bits = new FixedBitSet(in.maxDoc());
+            final Scorer preserveScorer = preserveWeight.scorer(DlsFlsFilterLeafReader.this.getContext());
+
+            if (preserveScorer != null) {
+                bits.or(preserveScorer.iterator());
+            }
+
+            return bits;
+        }
+
         //return null means no hidden docs
         public Bits getLiveDocs() {
             return liveBits;
@@ -289,10 +308,10 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
             this.maskedFieldsMap = maskedFieldsMap;
         }
 
-        public static MaskedFieldsMap extractMaskedFields(boolean maskFields, Set<String> maskedFields, final Salt salt) {
+        public static MaskedFieldsMap extractMaskedFields(boolean maskFields, Set<String> maskedFields, final MaskedFieldCache maskedFieldCache) {
             if (maskFields) {
                 return new MaskedFieldsMap(maskedFields.stream()
-                    .map(mf -> new MaskedField(mf, salt))
+                    .map(maskedFieldCache::get)
                     .collect(ImmutableMap.toImmutableMap(mf -> WildcardMatcher.from(mf.getName()), Function.identity())));
             } else {
                 return new MaskedFieldsMap(Collections.emptyMap());
@@ -327,12 +346,14 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
         private final AuditLog auditlog;
         private final Set<String> maskedFields;
         private final ShardId shardId;
-        private final Salt salt;
+        private final MaskedFieldCache maskedFieldCache;
+        private final DlsBitsetCache dlsBitsetCache;
 
         public DlsFlsSubReaderWrapper(final Set<String> includes, final Query dlsQuery,
                                       final IndexService indexService, final ThreadContext threadContext,
                                       final ClusterService clusterService,
-                                      final AuditLog auditlog, final Set<String> maskedFields, ShardId shardId, final Salt salt) {
+                                      final AuditLog auditlog, final Set<String> maskedFields, ShardId shardId, final MaskedFieldCache maskedFieldCache,
+                                      final DlsBitsetCache dlsBitsetCache) {
             this.includes = includes;
             this.dlsQuery = dlsQuery;
             this.indexService = indexService;
@@ -341,12 +362,13 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
             this.auditlog = auditlog;
             this.maskedFields = maskedFields;
             this.shardId = shardId;
-            this.salt = salt;
+            this.maskedFieldCache = maskedFieldCache;
+            this.dlsBitsetCache = dlsBitsetCache;
         }
 
         @Override
         public LeafReader wrap(final LeafReader reader) {
-            return new DlsFlsFilterLeafReader(reader, includes, dlsQuery, indexService, threadContext, clusterService, auditlog, maskedFields, shardId, salt);
+            return new DlsFlsFilterLeafReader(reader, includes, dlsQuery, indexService, threadContext, clusterService, auditlog, maskedFields, shardId, maskedFieldCache, dlsBitsetCache);
         }
 
     }
@@ -361,13 +383,15 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
         private final AuditLog auditlog;
         private final Set<String> maskedFields;
         private final ShardId shardId;
-        private final Salt salt;
+        private final MaskedFieldCache maskedFieldCache;
+        private final DlsBitsetCache dlsBitsetCache;
 
         public DlsFlsDirectoryReader(final DirectoryReader in, final Set<String> includes, final Query dlsQuery,
                                      final IndexService indexService, final ThreadContext threadContext,
                                      final ClusterService clusterService,
-                                     final AuditLog auditlog, final Set<String> maskedFields, ShardId shardId, final Salt salt) throws IOException {
-            super(in, new DlsFlsSubReaderWrapper(includes, dlsQuery, indexService, threadContext, clusterService, auditlog, maskedFields, shardId, salt));
+                                     final AuditLog auditlog, final Set<String> maskedFields, ShardId shardId, final MaskedFieldCache maskedFieldCache,
+                                     final DlsBitsetCache dlsBitsetCache) throws IOException {
+            super(in, new DlsFlsSubReaderWrapper(includes, dlsQuery, indexService, threadContext, clusterService, auditlog, maskedFields, shardId, maskedFieldCache, dlsBitsetCache));
             this.includes = includes;
             this.dlsQuery = dlsQuery;
             this.indexService = indexService;
@@ -376,12 +400,13 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
             this.auditlog = auditlog;
             this.maskedFields = maskedFields;
             this.shardId = shardId;
-            this.salt = salt;
+            this.maskedFieldCache = maskedFieldCache;
+            this.dlsBitsetCache = dlsBitsetCache;
         }
 
         @Override
         protected DirectoryReader doWrapDirectoryReader(final DirectoryReader in) throws IOException {
-            return new DlsFlsDirectoryReader(in, includes, dlsQuery, indexService, threadContext, clusterService, auditlog, maskedFields, shardId, salt);
+            return new DlsFlsDirectoryReader(in, includes, dlsQuery, indexService, threadContext, clusterService, auditlog, maskedFields, shardId, maskedFieldCache, dlsBitsetCache);
         }
 
         @Override
@@ -580,19 +605,7 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
         public void binaryField(final FieldInfo fieldInfo, final byte[] value) throws IOException {
 
             if (fieldInfo.name.equals("_source")) {
-                Map<String, Object> filteredSource = Utils.byteArrayToMutableJsonMap(value);
-
-                if (!canOptimize) {
-                    filteredSource = filterFunction.apply(filteredSource);
-                } else {
-                    if (!excludesSet.isEmpty()) {
-                        filteredSource.keySet().removeAll(excludesSet);
-                    } else {
-                        filteredSource.keySet().retainAll(includesSet);
-                    }
-                }
-
-                delegate.binaryField(fieldInfo, Utils.jsonMapToByteArray(filteredSource));
+                delegate.binaryField(fieldInfo, sourceFilter.filter(value));
             } else {
                 delegate.binaryField(fieldInfo, value);
             }
@@ -658,12 +671,7 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
         public void binaryField(final FieldInfo fieldInfo, final byte[] value) throws IOException {
 
             if (fieldInfo.name.equals("_source")) {
-                final BytesReference bytesRef = new BytesArray(value);
-                final Tuple<XContentType, Map<String, Object>> bytesRefTuple = XContentHelper.convertToMap(bytesRef, false, XContentType.JSON);
-                Map<String, Object> filteredSource = bytesRefTuple.v2();
-                MapUtils.deepTraverseMap(filteredSource, HASH_CB);
-                final XContentBuilder xBuilder = XContentBuilder.builder(bytesRefTuple.v1().xContent()).map(filteredSource);
-                delegate.binaryField(fieldInfo, BytesReference.toBytes(BytesReference.bytes(xBuilder)));
+                delegate.binaryField(fieldInfo, maskSource(value));
             } else {
                 delegate.binaryField(fieldInfo, value);
             }
@@ -722,45 +730,69 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
         }
     }
 
-    private final MapUtils.Callback HASH_CB = new HashingCallback();
+    private byte[] maskSource(final byte[] source) throws IOException {
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, THROW_UNSUPPORTED_OPERATION, source);
+                BytesStreamOutput out = new BytesStreamOutput(source.length)) {
 
-    private class HashingCallback implements MapUtils.Callback {
-        @SuppressWarnings({ "rawtypes", "unchecked" })
-        @Override
-        public void call(String key, Map<String, Object> map, List<String> stack) {
-            Object v = map.get(key);
-
-            if (v instanceof List) {
-                final String field = stack.isEmpty() ? key : Joiner.on('.').join(stack) + "." + key;
-                final MaskedField mf = maskedFieldsMap.getMaskedField(field).orElse(null);
-                if (mf != null) {
-                    final List listField = (List) v;
-                    for (ListIterator iterator = listField.listIterator(); iterator.hasNext();) {
-                        final Object listFieldItem = iterator.next();
-
-                        if (listFieldItem instanceof String) {
-                            iterator.set(mf.mask(((String) listFieldItem)));
-                        } else if (listFieldItem instanceof byte[]) {
-                            iterator.set(mf.mask(((byte[]) listFieldItem)));
-                        }
-                    }
-                }
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                throw new ElasticsearchParseException("_source is not an object");
             }
 
-            if (v != null && (v instanceof String || v instanceof byte[])) {
+            final XContentBuilder builder = new XContentBuilder(JsonXContent.jsonXContent, out);
+            maskObject(parser, builder, new StringBuilder());
+            builder.close();
+            return BytesReference.toBytes(out.bytes());
+        }
+    }
 
-                final String field = stack.isEmpty() ? key : Joiner.on('.').join(stack) + "." + key;
-                final MaskedField mf = maskedFieldsMap.getMaskedField(field).orElse(null);
-                if (mf != null) {
-                    if (v instanceof String) {
-                        map.replace(key, mf.mask(((String) v)));
-                    } else {
-                        map.replace(key, mf.mask(((byte[]) v)));
+    //copies the object the parser is positioned on and masks the string and binary values of masked fields
+    private void maskObject(final XContentParser parser, final XContentBuilder builder, final StringBuilder path) throws IOException {
+        final int pathLength = path.length();
+        builder.startObject();
+
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            final String name = parser.currentName();
+            final XContentParser.Token token = parser.nextToken();
+            path.append(name);
+            builder.field(name);
+
+            if (token == XContentParser.Token.START_OBJECT) {
+                maskObject(parser, builder, path.append('.'));
+            } else if (token == XContentParser.Token.START_ARRAY
+                    || token == XContentParser.Token.VALUE_STRING
+                    || token == XContentParser.Token.VALUE_EMBEDDED_OBJECT) {
+                final MaskedField mf = maskedFieldsMap.getMaskedField(path.toString()).orElse(null);
+
+                if (mf == null) {
+                    builder.copyCurrentStructure(parser);
+                } else if (token == XContentParser.Token.START_ARRAY) {
+                    builder.startArray();
+                    while (parser.nextToken() != XContentParser.Token.END_ARRAY) {
+                        maskValue(parser, builder, mf);
                     }
+                    builder.endArray();
+                } else {
+                    maskValue(parser, builder, mf);
                 }
+            } else {
+                builder.copyCurrentStructure(parser);
             }
+
+            path.setLength(pathLength);
         }
 
+        builder.endObject();
+    }
+
+    //objects and arrays nested in an array of a masked field are copied as they are
+    private static void maskValue(final XContentParser parser, final XContentBuilder builder, final MaskedField mf) throws IOException {
+        if (parser.currentToken() == XContentParser.Token.VALUE_STRING) {
+            builder.value(mf.mask(parser.text()));
+        } else if (parser.currentToken() == XContentParser.Token.VALUE_EMBEDDED_OBJECT) {
+            builder.value(mf.mask(parser.binaryValue()));
+        } else {
+            builder.copyCurrentStructure(parser);
+        }
     }
 
     @Override
@@ -1151,16 +1183,15 @@ class DlsFlsFilterLeafReader extends SequentialStoredFieldsLeafReader  {
         return dge.hasDeletions();
     }
 
-    @SuppressWarnings("unchecked")
     private MaskedFieldsMap getRuntimeMaskedFieldInfo() {
-        final Map<String, Set<String>> maskedFieldsMap = (Map<String, Set<String>>) HeaderHelper.deserializeSafeFromHeader(threadContext,
+        final Map<String, Set<String>> maskedFieldsMap = HeaderHelper.deserializeSafeDlsFlsMapFromHeader(threadContext,
                 ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER);
         final String maskedEval = OpenDistroSecurityUtils.evalMap(maskedFieldsMap, indexService.index().getName());
 
         if(maskedEval != null) {
             final Set<String> mf = maskedFieldsMap.get(maskedEval);
             if(mf != null && !mf.isEmpty()) {
-                return MaskedFieldsMap.extractMaskedFields(true, mf, salt);
+                return MaskedFieldsMap.extractMaskedFields(true, mf, maskedFieldCache);
             }
 
         }
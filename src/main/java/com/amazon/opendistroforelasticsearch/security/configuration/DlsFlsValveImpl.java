@@ -138,7 +138,7 @@ public class DlsFlsValveImpl implements DlsFlsRequestValve {
     @Override
     public void handleSearchContext(SearchContext context, ThreadPool threadPool, NamedXContentRegistry namedXContentRegistry) {
         try {
-            final Map<String, Set<String>> queries = (Map<String, Set<String>>) HeaderHelper.deserializeSafeFromHeader(threadPool.getThreadContext(),
+            final Map<String, Set<String>> queries = HeaderHelper.deserializeSafeDlsFlsMapFromHeader(threadPool.getThreadContext(),
                     ConfigConstants.OPENDISTRO_SECURITY_DLS_QUERY_HEADER);
 
             final String dlsEval = OpenDistroSecurityUtils.evalMap(queries, context.indexShard().indexSettings().getIndex().getName());
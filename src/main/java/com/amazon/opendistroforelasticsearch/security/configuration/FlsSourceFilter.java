@@ -0,0 +1,284 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.configuration;
+
+import static org.elasticsearch.common.xcontent.DeprecationHandler.THROW_UNSUPPORTED_OPERATION;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.regex.Regex;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentParser.Token;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+
+/**
+ * Filters the _source of a document on the token stream, copying the allowed subtrees
+ * from the parser to the generator and skipping the others, so that no map of the
+ * document is ever built.
+ *
+ * With patterns the result is the same as with {@link org.elasticsearch.common.xcontent.support.XContentMapValues#filter(String[], String[])}:
+ * a pattern matches the dotted path of a field, an included object keeps all its inner
+ * fields and objects or arrays which end up empty are dropped.
+ */
+public final class FlsSourceFilter {
+
+    //same limit as XContentMapValues#filter, so that every FLS field set which worked there still works
+    private static final int MAX_DETERMINIZED_STATES = 50_000;
+
+    private static final CharacterRunAutomaton MATCH_ALL = new CharacterRunAutomaton(Automata.makeAnyString());
+    private static final CharacterRunAutomaton MATCH_NONE = new CharacterRunAutomaton(Automata.makeEmpty());
+
+    //top level field names, used when no include or exclude has dots or wildcards
+    private final Set<String> includesSet;
+    private final Set<String> excludesSet;
+
+    private final CharacterRunAutomaton include;
+    private final CharacterRunAutomaton exclude;
+
+    private FlsSourceFilter(final Set<String> includesSet, final Set<String> excludesSet,
+            final CharacterRunAutomaton include, final CharacterRunAutomaton exclude) {
+        this.includesSet = includesSet;
+        this.excludesSet = excludesSet;
+        this.include = include;
+        this.exclude = exclude;
+    }
+
+    /**
+     * Filter on top level field names only, if {@code excludes} is not empty {@code includes} is ignored
+     */
+    static FlsSourceFilter forFieldNames(final Set<String> includes, final Set<String> excludes) {
+        return new FlsSourceFilter(includes, excludes, null, null);
+    }
+
+    /**
+     * Filter on dotted paths and wildcard patterns, {@code null} or empty means no includes or no excludes
+     */
+    public static FlsSourceFilter forPatterns(final String[] includes, final String[] excludes) {
+        return new FlsSourceFilter(null, null,
+                includes == null || includes.length == 0 ? MATCH_ALL : toAutomaton(includes),
+                excludes == null || excludes.length == 0 ? MATCH_NONE : toAutomaton(excludes));
+    }
+
+    public byte[] filter(final byte[] source) throws IOException {
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, THROW_UNSUPPORTED_OPERATION, source);
+                BytesStreamOutput out = new BytesStreamOutput(source.length)) {
+
+            if (parser.nextToken() != Token.START_OBJECT) {
+                throw new ElasticsearchParseException("_source is not an object");
+            }
+
+            final XContentBuilder builder = new XContentBuilder(JsonXContent.jsonXContent, out);
+            builder.startObject();
+
+            if (include == null) {
+                filterFieldNames(parser, builder);
+            } else {
+                filterObject(parser, new Writer(builder), include, 0, 0);
+            }
+
+            builder.endObject();
+            builder.close();
+            return BytesReference.toBytes(out.bytes());
+        }
+    }
+
+    private void filterFieldNames(final XContentParser parser, final XContentBuilder builder) throws IOException {
+        while (parser.nextToken() == Token.FIELD_NAME) {
+            final String name = parser.currentName();
+            parser.nextToken();
+
+            final boolean allowed = excludesSet.isEmpty() ? includesSet.contains(name) : !excludesSet.contains(name);
+
+            if (allowed) {
+                builder.field(name);
+                builder.copyCurrentStructure(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    //parser is positioned on the start of the object, the start itself is written by the caller
+    private void filterObject(final XContentParser parser, final Writer writer, final CharacterRunAutomaton include,
+            final int initialIncludeState, final int initialExcludeState) throws IOException {
+
+        while (parser.nextToken() == Token.FIELD_NAME) {
+            final String name = parser.currentName();
+            final Token token = parser.nextToken();
+
+            final int includeState = step(include, name, initialIncludeState);
+            if (includeState == -1) {
+                parser.skipChildren();
+                continue;
+            }
+
+            int excludeState = step(exclude, name, initialExcludeState);
+            if (excludeState != -1 && exclude.isAccept(excludeState)) {
+                parser.skipChildren();
+                continue;
+            }
+
+            final boolean included = include.isAccept(includeState);
+            CharacterRunAutomaton subInclude = include;
+            int subIncludeState = includeState;
+
+            if (included) {
+                if (excludeState == -1 || exclude.step(excludeState, '.') == -1) {
+                    //no exclude can match an inner field
+                    writer.flush();
+                    writer.builder.field(name);
+                    writer.builder.copyCurrentStructure(parser);
+                    continue;
+                }
+                //only the excludes matter for the inner fields
+                subInclude = MATCH_ALL;
+                subIncludeState = 0;
+            }
+
+            if (token == Token.START_OBJECT) {
+                subIncludeState = subInclude.step(subIncludeState, '.');
+                if (subIncludeState == -1) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (excludeState != -1) {
+                    excludeState = exclude.step(excludeState, '.');
+                }
+
+                writer.open(name, false);
+                if (included) {
+                    //an included object is kept even if all its fields are excluded
+                    writer.flush();
+                }
+                filterObject(parser, writer, subInclude, subIncludeState, excludeState);
+                writer.close();
+            } else if (token == Token.START_ARRAY) {
+                writer.open(name, true);
+                filterArray(parser, writer, subInclude, subIncludeState, excludeState);
+                writer.close();
+            } else if (included) {
+                writer.flush();
+                writer.builder.field(name);
+                writer.builder.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    private void filterArray(final XContentParser parser, final Writer writer, final CharacterRunAutomaton include,
+            final int initialIncludeState, final int initialExcludeState) throws IOException {
+
+        final boolean included = include.isAccept(initialIncludeState);
+        Token token;
+
+        while ((token = parser.nextToken()) != Token.END_ARRAY) {
+            if (token == Token.START_OBJECT) {
+                final int includeState = include.step(initialIncludeState, '.');
+                if (includeState == -1) {
+                    parser.skipChildren();
+                    continue;
+                }
+                final int excludeState = initialExcludeState == -1 ? -1 : exclude.step(initialExcludeState, '.');
+
+                writer.open(null, false);
+                filterObject(parser, writer, include, includeState, excludeState);
+                writer.close();
+            } else if (token == Token.START_ARRAY) {
+                writer.open(null, true);
+                filterArray(parser, writer, include, initialIncludeState, initialExcludeState);
+                writer.close();
+            } else if (included) {
+                writer.flush();
+                writer.builder.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    private static int step(final CharacterRunAutomaton automaton, final String key, int state) {
+        for (int i = 0; state != -1 && i < key.length(); ++i) {
+            state = automaton.step(state, key.charAt(i));
+        }
+        return state;
+    }
+
+    private static CharacterRunAutomaton toAutomaton(final String[] patterns) {
+        final Automaton automaton = Regex.simpleMatchToAutomaton(patterns);
+        //a pattern matching an object also matches all its inner fields
+        return new CharacterRunAutomaton(Operations.union(automaton,
+                Operations.concatenate(Arrays.asList(automaton, Automata.makeChar('.'), Automata.makeAnyString()))),
+                MAX_DETERMINIZED_STATES);
+    }
+
+    /**
+     * Writes the start of objects and arrays only once something is written into them,
+     * so that objects and arrays which end up empty are not written at all.
+     */
+    private static final class Writer {
+        private final XContentBuilder builder;
+        //field name of each open object or array, null within an array
+        private final List<String> names = new ArrayList<>();
+        private final List<Boolean> arrays = new ArrayList<>();
+        private int written = 0;
+
+        private Writer(final XContentBuilder builder) {
+            this.builder = builder;
+        }
+
+        private void open(final String name, final boolean array) {
+            names.add(name);
+            arrays.add(array);
+        }
+
+        private void flush() throws IOException {
+            for (; written < names.size(); written++) {
+                if (names.get(written) != null) {
+                    builder.field(names.get(written));
+                }
+                if (arrays.get(written)) {
+                    builder.startArray();
+                } else {
+                    builder.startObject();
+                }
+            }
+        }
+
+        private void close() throws IOException {
+            final int last = names.size() - 1;
+            if (written > last) {
+                if (arrays.get(last)) {
+                    builder.endArray();
+                } else {
+                    builder.endObject();
+                }
+                written--;
+            }
+            names.remove(last);
+            arrays.remove(last);
+        }
+    }
+}
@@ -20,24 +20,53 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.regex.Pattern;
 
 import org.apache.lucene.util.BytesRef;
 import org.bouncycastle.crypto.digests.Blake2bDigest;
 import org.bouncycastle.util.encoders.Hex;
 
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 public class MaskedField {
 
+    //digests are not thread safe but can be reused once a hash is computed, so keep one per thread
+    private static final ThreadLocal<Map<String, MessageDigest>> messageDigests = ThreadLocal.withInitial(HashMap::new);
+    //keyed by salt
+    private static final ThreadLocal<Map<byte[], Blake2bDigest>> blake2bDigests = ThreadLocal.withInitial(IdentityHashMap::new);
+
     private final String name;
     private String algo = null;
     private List<RegexReplacement> regexReplacements;
     private final byte[] defaultSalt;
+    //masked values of the most recently masked values, null if disabled
+    private final Cache<String, String> maskedStrings;
+    private final Cache<BytesRef, BytesRef> maskedBytes;
 
     public MaskedField(final String value, final Salt salt) {
+        this(value, salt, 0);
+    }
+
+    /**
+     * @param valueCacheSize number of masked values to keep per type of value, 0 to disable.
+     *                       Worth it for fields with only a few distinct values.
+     */
+    public MaskedField(final String value, final Salt salt, final int valueCacheSize) {
         this.defaultSalt = salt.getSalt16();
+        if (valueCacheSize > 0) {
+            this.maskedStrings = CacheBuilder.newBuilder().maximumSize(valueCacheSize).build();
+            this.maskedBytes = CacheBuilder.newBuilder().maximumSize(valueCacheSize).build();
+        } else {
+            this.maskedStrings = null;
+            this.maskedBytes = null;
+        }
         final List<String> tokens = Splitter.on("::").splitToList(Objects.requireNonNull(value));
         final int tokenCount = tokens.size();
         if (tokenCount == 1) {
@@ -61,19 +90,32 @@ public class MaskedField {
     }
 
     public byte[] mask(byte[] value) {
-        if (isDefault()) {
-            return blake2bHash(value);
-        } else {
-            return customHash(value);
+        if (maskedBytes != null) {
+            return mask(new BytesRef(value)).bytes;
         }
+
+        return maskBytes(value, 0, value.length);
     }
 
     public String mask(String value) {
+        if (maskedStrings != null) {
+            final String cached = maskedStrings.getIfPresent(value);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final String masked;
         if (isDefault()) {
-            return blake2bHash(value);
+            masked = blake2bHash(value);
         } else {
-            return customHash(value);
+            masked = customHash(value);
+        }
+
+        if (maskedStrings != null) {
+            maskedStrings.put(value, masked);
         }
+        return masked;
     }
 
     public BytesRef mask(BytesRef value) {
@@ -81,10 +123,27 @@ public class MaskedField {
             return null;
         }
 
+        if (maskedBytes != null) {
+            final BytesRef cached = maskedBytes.getIfPresent(value);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final BytesRef masked = new BytesRef(maskBytes(value.bytes, value.offset, value.length));
+
+        if (maskedBytes != null) {
+            //the value may be a reused buffer
+            maskedBytes.put(BytesRef.deepCopyOf(value), masked);
+        }
+        return masked;
+    }
+
+    private byte[] maskBytes(final byte[] value, final int offset, final int length) {
         if (isDefault()) {
-            return blake2bHash(value);
+            return blake2bHash(value, offset, length);
         } else {
-            return customHash(value);
+            return customHash(value, offset, length);
         }
     }
 
@@ -143,59 +202,62 @@ public class MaskedField {
         return regexReplacements == null && algo == null;
     }
 
-    private byte[] customHash(byte[] in) {
+    private byte[] customHash(final byte[] in, final int offset, final int length) {
         if (algo != null) {
-            try {
-                MessageDigest digest = MessageDigest.getInstance(algo);
-                return Hex.encode(digest.digest(in));
-            } catch (NoSuchAlgorithmException e) {
-                throw new IllegalArgumentException(e);
-            }
+            final MessageDigest digest = messageDigests.get().computeIfAbsent(algo, a -> {
+                try {
+                    return MessageDigest.getInstance(a);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalArgumentException(e);
+                }
+            });
+            digest.update(in, offset, length);
+            return Hex.encode(digest.digest());
         } else if (regexReplacements != null) {
-            String cur = new String(in, StandardCharsets.UTF_8);
-            for(RegexReplacement rr: regexReplacements) {
-                cur = cur.replaceAll(rr.getRegex(), rr.getReplacement());
-            }
-            return cur.getBytes(StandardCharsets.UTF_8);
-
+            return replace(new String(in, offset, length, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
         } else {
             throw new IllegalArgumentException();
         }
     }
 
-    private BytesRef customHash(BytesRef in) {
-        final BytesRef copy = BytesRef.deepCopyOf(in);
-        return new BytesRef(customHash(copy.bytes));
+    private String customHash(String in) {
+        if (algo == null && regexReplacements != null) {
+            return replace(in);
+        }
+        final byte[] bytes = in.getBytes(StandardCharsets.UTF_8);
+        return new String(customHash(bytes, 0, bytes.length), StandardCharsets.UTF_8);
     }
 
-    private String customHash(String in) {
-        return new String(customHash(in.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    private String replace(String in) {
+        for(RegexReplacement rr: regexReplacements) {
+            in = rr.getPattern().matcher(in).replaceAll(rr.getReplacement());
+        }
+        return in;
     }
 
-    private byte[] blake2bHash(byte[] in) {
-        final Blake2bDigest hash = new Blake2bDigest(null, 32, null, defaultSalt);
-        hash.update(in, 0, in.length);
+    private byte[] blake2bHash(final byte[] in, final int offset, final int length) {
+        final Blake2bDigest hash = blake2bDigests.get().computeIfAbsent(defaultSalt, salt -> new Blake2bDigest(null, 32, null, salt));
+        hash.update(in, offset, length);
         final byte[] out = new byte[hash.getDigestSize()];
+        //also resets the digest
         hash.doFinal(out, 0);
         return Hex.encode(out);
     }
 
-    private BytesRef blake2bHash(BytesRef in) {
-        final BytesRef copy = BytesRef.deepCopyOf(in);
-        return new BytesRef(blake2bHash(copy.bytes));
-    }
-
     private String blake2bHash(String in) {
-        return new String(blake2bHash(in.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+        final byte[] bytes = in.getBytes(StandardCharsets.UTF_8);
+        return new String(blake2bHash(bytes, 0, bytes.length), StandardCharsets.UTF_8);
     }
 
     private static class RegexReplacement {
         private final String regex;
+        private final Pattern pattern;
         private final String replacement;
 
         public RegexReplacement(String regex, String replacement) {
             super();
             this.regex = regex.substring(1).substring(0, regex.length()-2);
+            this.pattern = Pattern.compile(this.regex);
             this.replacement = replacement;
         }
 
@@ -203,6 +265,10 @@ public class MaskedField {
             return regex;
         }
 
+        public Pattern getPattern() {
+            return pattern;
+        }
+
         public String getReplacement() {
             return replacement;
         }
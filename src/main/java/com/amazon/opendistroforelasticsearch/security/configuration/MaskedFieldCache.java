@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.configuration;
+
+import org.elasticsearch.common.settings.Settings;
+
+import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Node wide cache of the parsed masked field definitions of the roles, so that the
+ * compiled regular expressions and the cache of masked values of a field are shared by
+ * all searches instead of being built again for every segment of every search.
+ */
+public class MaskedFieldCache {
+
+    private static final int MAX_MASKED_FIELDS = 1000;
+
+    private final Salt salt;
+    private final int valueCacheSize;
+    private final Cache<String, MaskedField> maskedFields = CacheBuilder.newBuilder()
+            .maximumSize(MAX_MASKED_FIELDS)
+            .build();
+
+    public MaskedFieldCache(final Settings settings, final Salt salt) {
+        this(salt, settings.getAsInt(ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELDS_VALUE_CACHE_SIZE,
+                ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELDS_VALUE_CACHE_SIZE_DEFAULT));
+    }
+
+    MaskedFieldCache(final Salt salt, final int valueCacheSize) {
+        this.salt = salt;
+        this.valueCacheSize = valueCacheSize;
+    }
+
+    /**
+     * @param value the masked field as configured in the role, like {@code field::SHA-1}
+     */
+    MaskedField get(final String value) {
+        MaskedField maskedField = maskedFields.getIfPresent(value);
+        if (maskedField == null) {
+            //invalid definitions throw here and are not cached
+            maskedField = new MaskedField(value, salt, valueCacheSize);
+            maskedFields.put(value, maskedField);
+        }
+        return maskedField;
+    }
+}
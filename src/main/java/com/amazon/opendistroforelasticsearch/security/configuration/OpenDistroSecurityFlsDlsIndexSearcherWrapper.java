@@ -52,11 +52,13 @@ public class OpenDistroSecurityFlsDlsIndexSearcherWrapper extends OpenDistroSecu
     private final IndexService indexService;
     private final AuditLog auditlog;
     private final LongSupplier nowInMillis;
-    private final Salt salt;
+    private final MaskedFieldCache maskedFieldCache;
+    private final DlsBitsetCache dlsBitsetCache;
 
     public OpenDistroSecurityFlsDlsIndexSearcherWrapper(final IndexService indexService, final Settings settings,
             final AdminDNs adminDNs, final ClusterService clusterService, final AuditLog auditlog,
-            final ComplianceIndexingOperationListener ciol, final PrivilegesEvaluator evaluator, final Salt salt) {
+            final ComplianceIndexingOperationListener ciol, final PrivilegesEvaluator evaluator, final MaskedFieldCache maskedFieldCache,
+            final DlsBitsetCache dlsBitsetCache) {
         super(indexService, settings, adminDNs, evaluator);
         ciol.setIs(indexService);
         this.clusterService = clusterService;
@@ -69,7 +71,8 @@ public class OpenDistroSecurityFlsDlsIndexSearcherWrapper extends OpenDistroSecu
             nowInMillis = () -> {throw new IllegalArgumentException("'now' is not allowed in DLS queries");};
         }
         log.debug("FLS/DLS {} enabled for index {}", this, indexService.index().getName());
-        this.salt = salt;
+        this.maskedFieldCache = maskedFieldCache;
+        this.dlsBitsetCache = dlsBitsetCache;
     }
 
     @SuppressWarnings("unchecked")
@@ -84,11 +87,11 @@ public class OpenDistroSecurityFlsDlsIndexSearcherWrapper extends OpenDistroSecu
 
         if(!isAdmin) {
 
-            final Map<String, Set<String>> allowedFlsFields = (Map<String, Set<String>>) HeaderHelper.deserializeSafeFromHeader(threadContext,
+            final Map<String, Set<String>> allowedFlsFields = HeaderHelper.deserializeSafeDlsFlsMapFromHeader(threadContext,
                     ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER);
-            final Map<String, Set<String>> queries = (Map<String, Set<String>>) HeaderHelper.deserializeSafeFromHeader(threadContext,
+            final Map<String, Set<String>> queries = HeaderHelper.deserializeSafeDlsFlsMapFromHeader(threadContext,
                     ConfigConstants.OPENDISTRO_SECURITY_DLS_QUERY_HEADER);
-            final Map<String, Set<String>> maskedFieldsMap = (Map<String, Set<String>>) HeaderHelper.deserializeSafeFromHeader(threadContext,
+            final Map<String, Set<String>> maskedFieldsMap = HeaderHelper.deserializeSafeDlsFlsMapFromHeader(threadContext,
                     ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER);
 
             final String flsEval = OpenDistroSecurityUtils.evalMap(allowedFlsFields, index.getName());
@@ -117,6 +120,6 @@ public class OpenDistroSecurityFlsDlsIndexSearcherWrapper extends OpenDistroSecu
         }
 
         return new DlsFlsFilterLeafReader.DlsFlsDirectoryReader(reader, flsFields, dlsQuery,
-                indexService, threadContext, clusterService, auditlog, maskedFields, shardId, salt);
+                indexService, threadContext, clusterService, auditlog, maskedFields, shardId, maskedFieldCache, dlsBitsetCache);
     }
 }
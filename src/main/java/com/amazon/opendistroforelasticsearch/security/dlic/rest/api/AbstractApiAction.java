@@ -310,7 +310,7 @@ public abstract class AbstractApiAction extends BaseRestHandler {
 							.setIfSeqNo(configuration.getSeqNo())
 							.setIfPrimaryTerm(configuration.getPrimaryTerm())
 							.source(id, XContentHelper.toXContent(configuration, XContentType.JSON, false)),
-					new ConfigUpdatingActionListener<IndexResponse>(client, actionListener));
+					new ConfigUpdatingActionListener<IndexResponse>(client, actionListener, cType));
 		} catch (IOException e) {
 			throw ExceptionsHelper.convertToElastic(e);
 		}
@@ -320,17 +320,24 @@ public abstract class AbstractApiAction extends BaseRestHandler {
 
 		private final Client client;
 		private final ActionListener<Response> delegate;
+		private final String[] configTypes;
 
 		public ConfigUpdatingActionListener(Client client, ActionListener<Response> delegate) {
+			this(client, delegate, CType.values());
+		}
+
+		//only the changed types are reloaded, so that the nodes keep their caches for the others
+		public ConfigUpdatingActionListener(Client client, ActionListener<Response> delegate, CType... configTypes) {
 			super();
 			this.client = client;
 			this.delegate = delegate;
+			this.configTypes = Arrays.stream(configTypes).map(CType::toLCString).toArray(String[]::new);
 		}
 
 		@Override
 		public void onResponse(Response response) {
 
-			final ConfigUpdateRequest cur = new ConfigUpdateRequest(CType.lcStringValues().toArray(new String[0]));
+			final ConfigUpdateRequest cur = new ConfigUpdateRequest(configTypes);
 
 			client.execute(ConfigUpdateAction.INSTANCE, cur, new ActionListener<ConfigUpdateResponse>() {
 				@Override
@@ -31,7 +31,6 @@ import com.amazon.opendistroforelasticsearch.security.support.SecurityJsonNode;
 import com.amazon.opendistroforelasticsearch.security.user.User;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.bouncycastle.crypto.generators.OpenBSDBCrypt;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.service.ClusterService;
@@ -202,7 +201,8 @@ public class AccountApiAction extends AbstractApiAction {
         final Hashed internalUserEntry = (Hashed) internalUser.getCEntry(username);
         final String currentHash = internalUserEntry.getHash();
 
-        if (currentHash == null || !OpenBSDBCrypt.checkPassword(currentHash, currentPassword.toCharArray())) {
+        if (currentHash == null
+                || !cl.getDynamicConfigFactory().getPasswordVerifier().verify(username, currentHash, currentPassword.toCharArray())) {
             badRequestResponse(channel, "Could not validate your current password.");
             return;
         }
@@ -56,6 +56,7 @@ public class AuditValidator extends AbstractConfigurationValidator {
         this.allowedKeys.put("enabled", DataType.BOOLEAN);
         this.allowedKeys.put("audit", DataType.OBJECT);
         this.allowedKeys.put("compliance", DataType.OBJECT);
+        this.allowedKeys.put("aggregation", DataType.OBJECT);
     }
 
     @Override
@@ -17,6 +17,7 @@ package com.amazon.opendistroforelasticsearch.security.httpclient;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
@@ -27,9 +28,11 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
@@ -39,6 +42,8 @@ import org.apache.http.HttpHost;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.conn.ssl.DefaultHostnameVerifier;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
@@ -48,15 +53,30 @@ import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.SSLContexts;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.client.Node;
+import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.mapper.MapperService;
 
 import com.google.common.collect.Lists;
 
@@ -128,6 +148,8 @@ public class HttpClient implements Closeable {
         return new HttpClientBuilder(servers);
     }
 
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson");
+
     private final KeyStore trustStore;
     private final Logger log = LogManager.getLogger(this.getClass());
     private RestHighLevelClient rclient;
@@ -188,6 +210,10 @@ public class HttpClient implements Closeable {
     }
 
     public boolean index(final String content, final String index, final String type, final boolean refresh) {
+        return index(new BytesArray(content), XContentType.JSON, index, type, refresh);
+    }
+
+    public boolean index(final BytesReference content, final XContentType contentType, final String index, final String type, final boolean refresh) {
 
             try {
 
@@ -195,7 +221,7 @@ public class HttpClient implements Closeable {
                 
                 final IndexResponse response = rclient.index(ir
                               .setRefreshPolicy(refresh?RefreshPolicy.IMMEDIATE:RefreshPolicy.NONE)
-                              .source(content, XContentType.JSON), RequestOptions.DEFAULT);
+                              .source(content, contentType), RequestOptions.DEFAULT);
 
                 return response.getShardInfo().getSuccessful() > 0 && response.getShardInfo().getFailed() == 0;
 
@@ -205,6 +231,75 @@ public class HttpClient implements Closeable {
             }
     }
 
+    /**
+     * Sends the index requests as one _bulk request without blocking. The body is written as NDJSON
+     * straight from the request sources and gzip compressed if {@code gzip} is set.
+     * 
+     * @param listener called on one of the client threads with a response holding one item per request, in the same order
+     */
+    public void bulk(final List<IndexRequest> requests, final RefreshPolicy refreshPolicy, final boolean gzip, final ActionListener<BulkResponse> listener) {
+
+        final Request request = new Request("POST", "/_bulk");
+        request.addParameter("refresh", refreshPolicy.getValue());
+
+        try {
+            final ByteArrayEntity entity = new ByteArrayEntity(bulkBody(requests, gzip), NDJSON);
+            if (gzip) {
+                entity.setContentEncoding("gzip");
+            }
+            request.setEntity(entity);
+        } catch (Exception e) {
+            listener.onFailure(e);
+            return;
+        }
+
+        rclient.getLowLevelClient().performRequestAsync(request, new ResponseListener() {
+
+            @Override
+            public void onSuccess(final Response response) {
+                final BulkResponse bulkResponse;
+                try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY,
+                        DeprecationHandler.THROW_UNSUPPORTED_OPERATION, response.getEntity().getContent())) {
+                    bulkResponse = BulkResponse.fromXContent(parser);
+                } catch (Exception e) {
+                    listener.onFailure(e);
+                    return;
+                }
+                listener.onResponse(bulkResponse);
+            }
+
+            @Override
+            public void onFailure(final Exception e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private static byte[] bulkBody(final List<IndexRequest> requests, final boolean gzip) throws IOException {
+        try (BytesStreamOutput bytes = new BytesStreamOutput()) {
+            try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : bytes) {
+                for (final IndexRequest request : requests) {
+                    final XContentBuilder action = XContentFactory.jsonBuilder().startObject().startObject("index");
+                    action.field("_index", request.index());
+                    if (request.type() != null && !MapperService.SINGLE_MAPPING_NAME.equals(request.type())) {
+                        action.field("_type", request.type());
+                    }
+                    BytesReference.bytes(action.endObject().endObject()).writeTo(out);
+                    out.write('\n');
+
+                    //NDJSON needs every source on one line
+                    if (request.getContentType() == XContentType.JSON && request.source().indexOf((byte) '\n', 0) < 0) {
+                        request.source().writeTo(out);
+                    } else {
+                        out.write(XContentHelper.convertToJson(request.source(), false, request.getContentType()).getBytes(StandardCharsets.UTF_8));
+                    }
+                    out.write('\n');
+                }
+            }
+            return BytesReference.toBytes(bytes.bytes());
+        }
+    }
+
     private final HttpAsyncClientBuilder asyncClientBuilder(HttpAsyncClientBuilder httpClientBuilder)
             throws NoSuchAlgorithmException, KeyStoreException, UnrecoverableKeyException, KeyManagementException {
 
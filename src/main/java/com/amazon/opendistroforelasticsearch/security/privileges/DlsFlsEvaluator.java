@@ -30,7 +30,6 @@
 
 package com.amazon.opendistroforelasticsearch.security.privileges;
 
-import java.io.Serializable;
 import java.util.Map;
 import java.util.Set;
 
@@ -48,8 +47,8 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import com.amazon.opendistroforelasticsearch.security.resolver.IndexResolverReplacer.Resolved;
 import com.amazon.opendistroforelasticsearch.security.securityconf.SecurityRoles;
-import com.amazon.opendistroforelasticsearch.security.support.Base64Helper;
 import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
+import com.amazon.opendistroforelasticsearch.security.support.DlsFlsHeaders;
 import com.amazon.opendistroforelasticsearch.security.support.WildcardMatcher;
 import com.amazon.opendistroforelasticsearch.security.support.HeaderHelper;
 import com.amazon.opendistroforelasticsearch.security.user.User;
@@ -61,9 +60,11 @@ public class DlsFlsEvaluator {
     protected final Logger log = LogManager.getLogger(this.getClass());
 
     private final ThreadPool threadPool;
+    private final boolean useJDKSerialization;
 
     public DlsFlsEvaluator(Settings settings, ThreadPool threadPool) {
         this.threadPool = threadPool;
+        this.useJDKSerialization = settings.getAsBoolean(ConfigConstants.OPENDISTRO_SECURITY_COMPAT_JDK_SERIALIZATION_HEADERS, ConfigConstants.OPENDISTRO_SECURITY_COMPAT_JDK_SERIALIZATION_HEADERS_DEFAULT);
     }
 
     public PrivilegesEvaluatorResponse evaluate(final ActionRequest request, final ClusterService clusterService, final IndexNameExpressionResolver resolver, final Resolved requestedResolved, final User user,
@@ -77,14 +78,16 @@ public class DlsFlsEvaluator {
 
         if (maskedFieldsMap != null && !maskedFieldsMap.isEmpty()) {
 
+            final String maskedFieldsHeader = DlsFlsHeaders.serialize(maskedFieldsMap, useJDKSerialization);
+
             if(request instanceof ClusterSearchShardsRequest && HeaderHelper.isTrustedClusterRequest(threadContext)) {
-                threadContext.addResponseHeader(ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER, Base64Helper.serializeObject((Serializable) maskedFieldsMap));
+                threadContext.addResponseHeader(ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER, maskedFieldsHeader);
                 if (log.isDebugEnabled()) {
                     log.debug("added response header for masked fields info: {}", maskedFieldsMap);
                 }
             } else {
                 if (threadContext.getHeader(ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER) != null) {
-                    if (!maskedFieldsMap.equals(Base64Helper.deserializeObject(threadContext.getHeader(ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER)))) {
+                    if (!DlsFlsHeaders.matches(threadContext.getHeader(ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER), maskedFieldsHeader, maskedFieldsMap)) {
                         throw new ElasticsearchSecurityException(ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER + " does not match  ");
                     } else {
                         if (log.isDebugEnabled()) {
@@ -92,7 +95,7 @@ public class DlsFlsEvaluator {
                         }
                     }
                 } else {
-                    threadContext.putHeader(ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER, Base64Helper.serializeObject((Serializable) maskedFieldsMap));
+                    threadContext.putHeader(ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_HEADER, maskedFieldsHeader);
                     if (log.isDebugEnabled()) {
                         log.debug("attach masked fields info: {}", maskedFieldsMap);
                     }
@@ -115,18 +118,20 @@ public class DlsFlsEvaluator {
 
         if (!dlsQueries.isEmpty()) {
 
+            final String dlsQueriesHeader = DlsFlsHeaders.serialize(dlsQueries, useJDKSerialization);
+
             if(request instanceof ClusterSearchShardsRequest && HeaderHelper.isTrustedClusterRequest(threadContext)) {
-                threadContext.addResponseHeader(ConfigConstants.OPENDISTRO_SECURITY_DLS_QUERY_HEADER, Base64Helper.serializeObject((Serializable) dlsQueries));
+                threadContext.addResponseHeader(ConfigConstants.OPENDISTRO_SECURITY_DLS_QUERY_HEADER, dlsQueriesHeader);
                 if (log.isDebugEnabled()) {
                     log.debug("added response header for DLS info: {}", dlsQueries);
                 }
             } else {
                 if (threadContext.getHeader(ConfigConstants.OPENDISTRO_SECURITY_DLS_QUERY_HEADER) != null) {
-                    if (!dlsQueries.equals(Base64Helper.deserializeObject(threadContext.getHeader(ConfigConstants.OPENDISTRO_SECURITY_DLS_QUERY_HEADER)))) {
+                    if (!DlsFlsHeaders.matches(threadContext.getHeader(ConfigConstants.OPENDISTRO_SECURITY_DLS_QUERY_HEADER), dlsQueriesHeader, dlsQueries)) {
                         throw new ElasticsearchSecurityException(ConfigConstants.OPENDISTRO_SECURITY_DLS_QUERY_HEADER + " does not match (SG 900D)");
                     }
                 } else {
-                    threadContext.putHeader(ConfigConstants.OPENDISTRO_SECURITY_DLS_QUERY_HEADER, Base64Helper.serializeObject((Serializable) dlsQueries));
+                    threadContext.putHeader(ConfigConstants.OPENDISTRO_SECURITY_DLS_QUERY_HEADER, dlsQueriesHeader);
                     if (log.isDebugEnabled()) {
                         log.debug("attach DLS info: {}", dlsQueries);
                     }
@@ -142,14 +147,16 @@ public class DlsFlsEvaluator {
 
         if (!flsFields.isEmpty()) {
 
+            final String flsFieldsHeader = DlsFlsHeaders.serialize(flsFields, useJDKSerialization);
+
             if(request instanceof ClusterSearchShardsRequest && HeaderHelper.isTrustedClusterRequest(threadContext)) {
-                threadContext.addResponseHeader(ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER, Base64Helper.serializeObject((Serializable) flsFields));
+                threadContext.addResponseHeader(ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER, flsFieldsHeader);
                 if (log.isDebugEnabled()) {
                     log.debug("added response header for FLS info: {}", flsFields);
                 }
             } else {
                 if (threadContext.getHeader(ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER) != null) {
-                    if (!flsFields.equals(Base64Helper.deserializeObject(threadContext.getHeader(ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER)))) {
+                    if (!DlsFlsHeaders.matches(threadContext.getHeader(ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER), flsFieldsHeader, flsFields)) {
                         throw new ElasticsearchSecurityException(ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER + " does not match  ");
                     } else {
                         if (log.isDebugEnabled()) {
@@ -157,7 +164,7 @@ public class DlsFlsEvaluator {
                         }
                     }
                 } else {
-                    threadContext.putHeader(ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER, Base64Helper.serializeObject((Serializable) flsFields));
+                    threadContext.putHeader(ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_HEADER, flsFieldsHeader);
                     if (log.isDebugEnabled()) {
                         log.debug("attach FLS info: {}", flsFields);
                     }
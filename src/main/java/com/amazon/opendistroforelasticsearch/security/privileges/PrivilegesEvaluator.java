@@ -89,6 +89,7 @@ import com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModel;
 import com.amazon.opendistroforelasticsearch.security.securityconf.DynamicConfigModel;
 import com.amazon.opendistroforelasticsearch.security.securityconf.SecurityRoles;
 import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
+import com.amazon.opendistroforelasticsearch.security.support.LatencyHistogram;
 import com.amazon.opendistroforelasticsearch.security.support.WildcardMatcher;
 import com.amazon.opendistroforelasticsearch.security.user.User;
 
@@ -120,6 +121,7 @@ public class PrivilegesEvaluator {
     private final DlsFlsEvaluator dlsFlsEvaluator;
 
     private final boolean advancedModulesEnabled;
+    private final LatencyHistogram evaluateLatency = new LatencyHistogram();
     private DynamicConfigModel dcm;
 
     public PrivilegesEvaluator(final ClusterService clusterService, final ThreadPool threadPool,
@@ -167,8 +169,25 @@ public class PrivilegesEvaluator {
         return configModel !=null && configModel.getSecurityRoles() != null && dcm != null;
     }
 
-    public PrivilegesEvaluatorResponse evaluate(final User user, String action0, final ActionRequest request,
-                                                Task task, final Set<String> injectedRoles) {
+    public PrivilegesEvaluatorResponse evaluate(final User user, final String action0, final ActionRequest request,
+                                                final Task task, final Set<String> injectedRoles) {
+        final long start = System.nanoTime();
+        try {
+            return evaluate0(user, action0, request, task, injectedRoles);
+        } finally {
+            evaluateLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return latency of {@link #evaluate(User, String, ActionRequest, Task, Set)}
+     */
+    public LatencyHistogram getEvaluateLatency() {
+        return evaluateLatency;
+    }
+
+    private PrivilegesEvaluatorResponse evaluate0(final User user, String action0, final ActionRequest request,
+                                                  Task task, final Set<String> injectedRoles) {
 
         if (!isInitialized()) {
             throw new ElasticsearchSecurityException("Open Distro Security is not initialized.");
@@ -22,6 +22,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -29,18 +30,22 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.metadata.Metadata;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.settings.Settings;
@@ -57,6 +62,8 @@ import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
 import com.amazon.opendistroforelasticsearch.security.support.WildcardMatcher;
 import com.amazon.opendistroforelasticsearch.security.user.User;
 import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -265,7 +272,7 @@ public class ConfigModelV7 extends ConfigModel {
         }
 
         try {
-            SecurityRoles _securityRoles = new SecurityRoles(futures.size());
+            SecurityRoles _securityRoles = new SecurityRoles(futures.size(), true, new ResolvedIndexPatternCache());
             for (Future<SecurityRole> future : futures) {
                 _securityRoles.addSecurityRole(future.get());
             }
@@ -288,10 +295,24 @@ public class ConfigModelV7 extends ConfigModel {
 
         protected final Logger log = LogManager.getLogger(this.getClass());
 
+        //upper bound for the number of distinct mapped role sets we keep compiled per config version
+        private static final int MAX_FILTERED_ROLE_SETS = 1000;
+
         final Set<SecurityRole> roles;
 
-        private SecurityRoles(int roleCount) {
+        //only present on the unfiltered roles of a config model, keyed by the mapped role names
+        private final Cache<Set<String>, SecurityRoles> filteredRolesCache;
+        //action -> index patterns of all roles (rolespan) which grant this action
+        private final Map<String, IndexPattern[]> patternsByAction = new ConcurrentHashMap<>();
+        private final Map<String, Boolean> clusterPermsByAction = new ConcurrentHashMap<>();
+
+        //shared by the unfiltered roles and all role sets filtered from them
+        private final ResolvedIndexPatternCache resolvedIndexPatternCache;
+
+        private SecurityRoles(int roleCount, boolean cacheFilteredRoles, ResolvedIndexPatternCache resolvedIndexPatternCache) {
             roles = new HashSet<>(roleCount);
+            filteredRolesCache = cacheFilteredRoles ? CacheBuilder.newBuilder().maximumSize(MAX_FILTERED_ROLE_SETS).build() : null;
+            this.resolvedIndexPatternCache = resolvedIndexPatternCache;
         }
 
         private SecurityRoles addSecurityRole(SecurityRole securityRole) {
@@ -340,7 +361,22 @@ public class ConfigModelV7 extends ConfigModel {
         }
 
         public SecurityRoles filter(Set<String> keep) {
-            final SecurityRoles retVal = new SecurityRoles(roles.size());
+            if (filteredRolesCache == null) {
+                return doFilter(keep);
+            }
+
+            //the filtered roles carry their compiled action tables, so reusing them
+            //for the same role set avoids recompiling matchers on every request
+            SecurityRoles retVal = filteredRolesCache.getIfPresent(keep);
+            if (retVal == null) {
+                retVal = doFilter(keep);
+                filteredRolesCache.put(ImmutableSet.copyOf(keep), retVal);
+            }
+            return retVal;
+        }
+
+        private SecurityRoles doFilter(Set<String> keep) {
+            final SecurityRoles retVal = new SecurityRoles(roles.size(), false, resolvedIndexPatternCache);
             for (SecurityRole sr : roles) {
                 if (keep.contains(sr.getName())) {
                     retVal.addSecurityRole(sr);
@@ -349,6 +385,17 @@ public class ConfigModelV7 extends ConfigModel {
             return retVal;
         }
 
+        private IndexPattern[] getIndexPatternsForAction(String action) {
+            IndexPattern[] patterns = patternsByAction.get(action);
+            if (patterns == null) {
+                patterns = patternsByAction.computeIfAbsent(action, a -> roles.stream()
+                        .flatMap(r -> Arrays.stream(r.getIndexPatternsForAction(a)))
+                        .distinct()
+                        .toArray(IndexPattern[]::new));
+            }
+            return patterns;
+        }
+
         @Override
         public Map<String, Set<String>> getMaskedFields(User user, IndexNameExpressionResolver resolver, ClusterService cs) {
             final Map<String, Set<String>> maskedFieldsMap = new HashMap<>();
@@ -358,7 +405,7 @@ public class ConfigModelV7 extends ConfigModel {
                     final Set<String> maskedFields = ip.getMaskedFields();
                     if (!maskedFields.isEmpty()) {
                         final String indexPattern = ip.getUnresolvedIndexPattern(user);
-                        Set<String> concreteIndices = ip.getResolvedIndexPattern(user, resolver, cs);
+                        Set<String> concreteIndices = ip.getResolvedIndexPattern(user, resolver, cs, resolvedIndexPatternCache);
 
                         Set<String> currentMaskedFields = maskedFieldsMap.get(indexPattern);
                         if (currentMaskedFields != null) {
@@ -396,7 +443,7 @@ public class ConfigModelV7 extends ConfigModel {
                     Set<String> concreteIndices = new HashSet<>();
 
                     if ((dls != null && dls.length() > 0) || (fls != null && fls.size() > 0)) {
-                        concreteIndices = ip.getResolvedIndexPattern(user, resolver, cs);
+                        concreteIndices = ip.getResolvedIndexPattern(user, resolver, cs, resolvedIndexPatternCache);
                     }
 
                     if (dls != null && dls.length() > 0) {
@@ -448,7 +495,7 @@ public class ConfigModelV7 extends ConfigModel {
         public Set<String> getAllPermittedIndicesForKibana(Resolved resolved, User user, String[] actions, IndexNameExpressionResolver resolver, ClusterService cs) {
             Set<String> retVal = new HashSet<>();
             for (SecurityRole sr : roles) {
-                retVal.addAll(sr.getAllResolvedPermittedIndices(Resolved._LOCAL_ALL, user, actions, resolver, cs));
+                retVal.addAll(sr.getAllResolvedPermittedIndices(Resolved._LOCAL_ALL, user, actions, resolver, cs, resolvedIndexPatternCache));
                 retVal.addAll(resolved.getRemoteIndices());
             }
             return Collections.unmodifiableSet(retVal);
@@ -458,7 +505,7 @@ public class ConfigModelV7 extends ConfigModel {
         public Set<String> reduce(Resolved resolved, User user, String[] actions, IndexNameExpressionResolver resolver, ClusterService cs) {
             Set<String> retVal = new HashSet<>();
             for (SecurityRole sr : roles) {
-                retVal.addAll(sr.getAllResolvedPermittedIndices(resolved, user, actions, resolver, cs));
+                retVal.addAll(sr.getAllResolvedPermittedIndices(resolved, user, actions, resolver, cs, resolvedIndexPatternCache));
             }
             if (log.isDebugEnabled()) {
                 log.debug("Reduced requested resolved indices {} to permitted indices {}.", resolved, retVal.toString());
@@ -469,7 +516,7 @@ public class ConfigModelV7 extends ConfigModel {
         //return true on success
         public boolean get(Resolved resolved, User user, String[] actions, IndexNameExpressionResolver resolver, ClusterService cs) {
             for (SecurityRole sr : roles) {
-                if (ConfigModelV7.impliesTypePerm(sr.getIpatterns(), resolved, user, actions, resolver, cs)) {
+                if (ConfigModelV7.impliesTypePerm(sr::getIndexPatternsForAction, resolved, user, actions, resolver, cs, resolvedIndexPatternCache)) {
                     return true;
                 }
             }
@@ -477,15 +524,18 @@ public class ConfigModelV7 extends ConfigModel {
         }
 
         public boolean impliesClusterPermissionPermission(String action) {
-            return roles.stream().filter(r -> r.impliesClusterPermission(action)).count() > 0;
+            Boolean implied = clusterPermsByAction.get(action);
+            if (implied == null) {
+                implied = roles.stream().anyMatch(r -> r.impliesClusterPermission(action));
+                clusterPermsByAction.put(action, implied);
+            }
+            return implied;
         }
 
         //rolespan
         public boolean impliesTypePermGlobal(Resolved resolved, User user, String[] actions, IndexNameExpressionResolver resolver,
                 ClusterService cs) {
-            Set<IndexPattern> ipatterns = new HashSet<ConfigModelV7.IndexPattern>();
-            roles.stream().forEach(p -> ipatterns.addAll(p.getIpatterns()));
-            return ConfigModelV7.impliesTypePerm(ipatterns, resolved, user, actions, resolver, cs);
+            return ConfigModelV7.impliesTypePerm(this::getIndexPatternsForAction, resolved, user, actions, resolver, cs, resolvedIndexPatternCache);
         }
     }
 
@@ -493,6 +543,8 @@ public class ConfigModelV7 extends ConfigModel {
         private final String name;
         private final Set<IndexPattern> ipatterns;
         private final WildcardMatcher clusterPerms;
+        //action -> index patterns of this role which grant this action, filled on first use
+        private final Map<String, IndexPattern[]> patternsByAction = new ConcurrentHashMap<>();
 
         public static final class Builder {
             private final String name;
@@ -530,10 +582,20 @@ public class ConfigModelV7 extends ConfigModel {
             return clusterPerms.test(action);
         }
 
+        private IndexPattern[] getIndexPatternsForAction(String action) {
+            IndexPattern[] patterns = patternsByAction.get(action);
+            if (patterns == null) {
+                patterns = patternsByAction.computeIfAbsent(action, a -> ipatterns.stream()
+                        .filter(p -> p.getPerms().test(a))
+                        .toArray(IndexPattern[]::new));
+            }
+            return patterns;
+        }
+
         //get indices which are permitted for the given types and actions
         //dnfof + kibana special only
         private Set<String> getAllResolvedPermittedIndices(Resolved resolved, User user, String[] actions, IndexNameExpressionResolver resolver,
-                ClusterService cs) {
+                ClusterService cs, ResolvedIndexPatternCache resolvedIndexPatternCache) {
 
             final Set<String> retVal = new HashSet<>();
             for (IndexPattern p : ipatterns) {
@@ -548,7 +610,7 @@ public class ConfigModelV7 extends ConfigModel {
 //                }
                 if (patternMatch) {
                     //resolved but can contain patterns for nonexistent indices
-                    final WildcardMatcher permitted = WildcardMatcher.from(p.getResolvedIndexPattern(user, resolver, cs)); //maybe they do not exist
+                    final WildcardMatcher permitted = WildcardMatcher.from(p.getResolvedIndexPattern(user, resolver, cs, resolvedIndexPatternCache)); //maybe they do not exist
                     final Set<String> res = new HashSet<>();
                     if (!resolved.isLocalAll() && !resolved.getAllIndices().contains("*") && !resolved.getAllIndices().contains("_all")) {
                         //resolved but can contain patterns for nonexistent indices
@@ -647,10 +709,16 @@ public class ConfigModelV7 extends ConfigModel {
         private final Set<String> fls = new HashSet<>();
         private final Set<String> maskedFields = new HashSet<>();
         private final Set<String> perms = new HashSet<>();
+        private final WildcardMatcher staticIndexMatcher;
+        //rebuilt whenever perms are added, so reads never compile it
+        private volatile WildcardMatcher permsMatcher;
 
         public IndexPattern(String indexPattern) {
             super();
             this.indexPattern = Objects.requireNonNull(indexPattern);
+            //patterns without ${...} placeholders do not depend on the user and can be compiled once
+            this.staticIndexMatcher = indexPattern.contains("${") ? null : WildcardMatcher.from(indexPattern);
+            this.permsMatcher = WildcardMatcher.from(perms);
         }
 
         public IndexPattern addFlsFields(List<String> flsFields) {
@@ -670,6 +738,7 @@ public class ConfigModelV7 extends ConfigModel {
         public IndexPattern addPerm(Set<String> perms) {
             if (perms != null) {
                 this.perms.addAll(perms);
+                this.permsMatcher = WildcardMatcher.from(this.perms);
             }
             return this;
         }
@@ -740,24 +809,32 @@ public class ConfigModelV7 extends ConfigModel {
             return replaceProperties(indexPattern, user);
         }
 
-        private Set<String> getResolvedIndexPattern(User user, IndexNameExpressionResolver resolver, ClusterService cs) {
-            String unresolved = getUnresolvedIndexPattern(user);
+        private Set<String> getResolvedIndexPattern(User user, IndexNameExpressionResolver resolver, ClusterService cs,
+                ResolvedIndexPatternCache resolvedIndexPatternCache) {
+            final String unresolved = getUnresolvedIndexPattern(user);
+            if (resolvedIndexPatternCache == null) {
+                return resolveIndexPattern(unresolved, resolver, cs.state());
+            }
+            return resolvedIndexPatternCache.get(unresolved, resolver, cs);
+        }
+
+        private static Set<String> resolveIndexPattern(String unresolved, IndexNameExpressionResolver resolver, ClusterState state) {
             WildcardMatcher matcher = WildcardMatcher.from(unresolved);
             String[] resolved = null;
             if (!(matcher instanceof WildcardMatcher.Exact)) {
-                final String[] aliasesForPermittedPattern = cs.state().getMetadata().getIndicesLookup().entrySet().stream()
+                final String[] aliasesForPermittedPattern = state.getMetadata().getIndicesLookup().entrySet().stream()
                         .filter(e -> e.getValue().getType() == ALIAS)
                         .filter(e -> matcher.test(e.getKey()))
                         .map(e -> e.getKey())
                         .toArray(String[]::new);
 
                 if (aliasesForPermittedPattern.length > 0) {
-                    resolved = resolver.concreteIndexNames(cs.state(), IndicesOptions.lenientExpandOpen(), aliasesForPermittedPattern);
+                    resolved = resolver.concreteIndexNames(state, IndicesOptions.lenientExpandOpen(), aliasesForPermittedPattern);
                 }
             }
 
             if (resolved == null && !unresolved.isEmpty()) {
-                resolved = resolver.concreteIndexNames(cs.state(), IndicesOptions.lenientExpandOpen(), unresolved);
+                resolved = resolver.concreteIndexNames(state, IndicesOptions.lenientExpandOpen(), unresolved);
             }
             if (resolved == null || resolved.length == 0) {
                 return ImmutableSet.of(unresolved);
@@ -782,7 +859,23 @@ public class ConfigModelV7 extends ConfigModel {
         }
 
         public WildcardMatcher getPerms() {
-            return WildcardMatcher.from(perms);
+            return permsMatcher;
+        }
+
+        //the resolved matcher is a superset of the plain pattern matcher, so the
+        //cluster state only needs to be consulted if the plain pattern does not match
+        private boolean matchesIndex(String index, User user, IndexNameExpressionResolver resolver, ClusterService cs,
+                ResolvedIndexPatternCache resolvedIndexPatternCache, Map<IndexPattern, WildcardMatcher> resolvedMatchers) {
+            if (staticIndexMatcher != null && staticIndexMatcher.test(index)) {
+                return true;
+            }
+
+            WildcardMatcher resolvedMatcher = resolvedMatchers.get(this);
+            if (resolvedMatcher == null) {
+                resolvedMatcher = WildcardMatcher.from(getResolvedIndexPattern(user, resolver, cs, resolvedIndexPatternCache));
+                resolvedMatchers.put(this, resolvedMatcher);
+            }
+            return resolvedMatcher.test(index);
         }
 
     }
@@ -937,35 +1030,88 @@ public class ConfigModelV7 extends ConfigModel {
         }));
     }
 
-    private static final class IndexMatcherAndPermissions {
-        private WildcardMatcher matcher;
-        private WildcardMatcher perms;
-        public IndexMatcherAndPermissions(Set<String> patterns, Set<String> perms) {
-            this.matcher = WildcardMatcher.from(patterns);
-            this.perms = WildcardMatcher.from(perms);
+    //resolved index patterns for the current cluster metadata version, shared by all roles of a config model.
+    //a new metadata version (index created, deleted, opened, closed or aliased) replaces the whole snapshot on next access
+    private static final class ResolvedIndexPatternCache {
+
+        //user attribute substitution makes the number of distinct patterns unbounded
+        private static final int MAX_CACHED_PATTERNS = 10000;
+
+        private volatile Snapshot snapshot;
+
+        private Set<String> get(String unresolved, IndexNameExpressionResolver resolver, ClusterService cs) {
+            final ClusterState state = cs.state();
+            final Snapshot current = getSnapshot(state.metadata());
+            Set<String> resolved = current.resolved.getIfPresent(unresolved);
+            if (resolved == null) {
+                resolved = IndexPattern.resolveIndexPattern(unresolved, resolver, state);
+                current.resolved.put(unresolved, resolved);
+            }
+            return resolved;
+        }
+
+        private Snapshot getSnapshot(Metadata metadata) {
+            Snapshot current = snapshot;
+            if (current == null || !current.isFor(metadata)) {
+                synchronized (this) {
+                    current = snapshot;
+                    if (current == null || !current.isFor(metadata)) {
+                        snapshot = current = new Snapshot(metadata);
+                    }
+                }
+            }
+            return current;
         }
 
-        public boolean matches(String index, String action) {
-            return matcher.test(index) && perms.test(action);
+        private static final class Snapshot {
+            private final String clusterUUID;
+            private final long version;
+            private final Cache<String, Set<String>> resolved = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PATTERNS).build();
+
+            private Snapshot(Metadata metadata) {
+                this.clusterUUID = metadata.clusterUUID();
+                this.version = metadata.version();
+            }
+
+            private boolean isFor(Metadata metadata) {
+                return version == metadata.version() && clusterUUID.equals(metadata.clusterUUID());
+            }
         }
     }
 
-    private static boolean impliesTypePerm(Set<IndexPattern> ipatterns, Resolved resolved, User user, String[] requestedActions,
-                                           IndexNameExpressionResolver resolver, ClusterService cs) {
-        Set<String> resolvedRequestedIndices = resolved.getAllIndices();
-        IndexMatcherAndPermissions[] indexMatcherAndPermissions = ipatterns
-                .stream()
-                .map(p -> new IndexMatcherAndPermissions(p.getResolvedIndexPattern(user, resolver, cs), p.perms))
-                .toArray(IndexMatcherAndPermissions[]::new);
-        return resolvedRequestedIndices
-                .stream()
-                .allMatch(index ->
-                        Arrays.stream(requestedActions).allMatch(action ->
-                                Arrays.stream(indexMatcherAndPermissions).anyMatch(ipap ->
-                                        ipap.matches(index, action)
-                                )
-                        )
-                );
+    private static boolean impliesTypePerm(Function<String, IndexPattern[]> patternsForAction, Resolved resolved, User user,
+                                           String[] requestedActions, IndexNameExpressionResolver resolver, ClusterService cs,
+                                           ResolvedIndexPatternCache resolvedIndexPatternCache) {
+        final Set<String> resolvedRequestedIndices = resolved.getAllIndices();
+        if (resolvedRequestedIndices.isEmpty()) {
+            return true;
+        }
+
+        final IndexPattern[][] patternsPerAction = new IndexPattern[requestedActions.length][];
+        for (int i = 0; i < requestedActions.length; i++) {
+            patternsPerAction[i] = patternsForAction.apply(requestedActions[i]);
+            if (patternsPerAction[i].length == 0) {
+                return false;
+            }
+        }
+
+        //resolve every pattern against the cluster state at most once per request
+        final Map<IndexPattern, WildcardMatcher> resolvedMatchers = new IdentityHashMap<>();
+        for (String index : resolvedRequestedIndices) {
+            for (IndexPattern[] patterns : patternsPerAction) {
+                boolean matched = false;
+                for (IndexPattern p : patterns) {
+                    if (p.matchesIndex(index, user, resolver, cs, resolvedIndexPatternCache, resolvedMatchers)) {
+                        matched = true;
+                        break;
+                    }
+                }
+                if (!matched) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
     
     
@@ -1073,12 +1219,25 @@ public class ConfigModelV7 extends ConfigModel {
 
     private class RoleMappingHolder {
 
+        //upper bound for the number of distinct (user, backend roles, caller) mappings we memoize per config version
+        private static final int MAX_CACHED_MAPPINGS = 10000;
+
         private ListMultimap<String, String> users;
         private ListMultimap<Set<String>, String> abars;
         private ListMultimap<String, String> bars;
         private ListMultimap<String, String> hosts;
         private final String hostResolverMode;
 
+        //matchers are compiled once here instead of on every map() call
+        private WildcardMatcher userMatcher;
+        private WildcardMatcher barMatcher;
+        private WildcardMatcher hostMatcher;
+        private Map<Set<String>, List<WildcardMatcher>> abarMatchers;
+
+        private final Cache<RoleMappingCacheKey, Set<String>> mappingCache = CacheBuilder.newBuilder()
+                .maximumSize(MAX_CACHED_MAPPINGS)
+                .build();
+
         private RoleMappingHolder(final SecurityDynamicConfiguration<RoleMappingsV7> rolemappings, final String hostResolverMode) {
 
             this.hostResolverMode = hostResolverMode;
@@ -1115,6 +1274,14 @@ public class ConfigModelV7 extends ConfigModel {
                 abars = abars_;
                 bars = bars_;
                 hosts = hosts_;
+
+                userMatcher = WildcardMatcher.from(users.keySet());
+                barMatcher = WildcardMatcher.from(bars.keySet());
+                hostMatcher = WildcardMatcher.from(hosts.keySet());
+                abarMatchers = new HashMap<>(abars.keySet().size());
+                for (Set<String> patterns : abars.keySet()) {
+                    abarMatchers.put(patterns, WildcardMatcher.matchers(patterns));
+                }
             }
         }
 
@@ -1124,6 +1291,27 @@ public class ConfigModelV7 extends ConfigModel {
                 return Collections.emptySet();
             }
 
+            //reverse lookups can change independently of the config, so those are always resolved freshly
+            if (caller != null && hostResolverMode.equalsIgnoreCase("ip-hostname-lookup")) {
+                return doMap(user, caller);
+            }
+
+            final RoleMappingCacheKey key = new RoleMappingCacheKey(user, caller, hostResolverMode, rolesMappingResolution);
+            Set<String> securityRoles = mappingCache.getIfPresent(key);
+
+            if (securityRoles == null) {
+                //shared by all requests of the user, so callers must not be able to modify it
+                securityRoles = Collections.unmodifiableSet(doMap(user, caller));
+                mappingCache.put(key, securityRoles);
+            } else if (log.isTraceEnabled()) {
+                log.trace("Role mapping for {} served from cache", user.getName());
+            }
+
+            return securityRoles;
+        }
+
+        private Set<String> doMap(final User user, final TransportAddress caller) {
+
             final Set<String> securityRoles = new TreeSet<String>(user.getOpenDistroSecurityRoles());
 
             if (rolesMappingResolution == ConfigConstants.RolesMappingResolution.BOTH
@@ -1137,16 +1325,18 @@ public class ConfigModelV7 extends ConfigModel {
             if (((rolesMappingResolution == ConfigConstants.RolesMappingResolution.BOTH
                     || rolesMappingResolution == ConfigConstants.RolesMappingResolution.MAPPING_ONLY))) {
 
-                for (String p : WildcardMatcher.getAllMatchingPatterns(WildcardMatcher.matchers(users.keySet()), user.getName())) {
+                for (String p : userMatcher.getMatchingPatterns(user.getName())) {
                     securityRoles.addAll(users.get(p));
                 }
-                for (String p : WildcardMatcher.getAllMatchingPatterns(WildcardMatcher.matchers(bars.keySet()), user.getRoles())) {
-                    securityRoles.addAll(bars.get(p));
+                for (String backendRole : user.getRoles()) {
+                    for (String p : barMatcher.getMatchingPatterns(backendRole)) {
+                        securityRoles.addAll(bars.get(p));
+                    }
                 }
 
-                for (Set<String> patterns : abars.keySet()) {
-                    if (patterns.stream().allMatch(p -> WildcardMatcher.from(p).matchAny(user.getRoles()))) {
-                        securityRoles.addAll(abars.get(patterns));
+                for (Entry<Set<String>, List<WildcardMatcher>> abar : abarMatchers.entrySet()) {
+                    if (abar.getValue().stream().allMatch(m -> m.matchAny(user.getRoles()))) {
+                        securityRoles.addAll(abars.get(abar.getKey()));
                     }
                 }
 
@@ -1154,8 +1344,7 @@ public class ConfigModelV7 extends ConfigModel {
                     //IPV4 or IPv6 (compressed and without scope identifiers)
                     final String ipAddress = caller.getAddress();
 
-                    List<WildcardMatcher> hostMatchers = WildcardMatcher.matchers(hosts.keySet());
-                    for (String p : WildcardMatcher.getAllMatchingPatterns(hostMatchers, ipAddress)) {
+                    for (String p : hostMatcher.getMatchingPatterns(ipAddress)) {
                         securityRoles.addAll(hosts.get(p));
                     }
 
@@ -1163,7 +1352,7 @@ public class ConfigModelV7 extends ConfigModel {
                             && (hostResolverMode.equalsIgnoreCase("ip-hostname") || hostResolverMode.equalsIgnoreCase("ip-hostname-lookup"))) {
                         final String hostName = caller.address().getHostString();
 
-                        for (String p : WildcardMatcher.getAllMatchingPatterns(hostMatchers, hostName)) {
+                        for (String p : hostMatcher.getMatchingPatterns(hostName)) {
                             securityRoles.addAll(hosts.get(p));
                         }
                     }
@@ -1172,7 +1361,7 @@ public class ConfigModelV7 extends ConfigModel {
 
                         final String resolvedHostName = caller.address().getHostName();
 
-                        for (String p : WildcardMatcher.getAllMatchingPatterns(hostMatchers, resolvedHostName)) {
+                        for (String p : hostMatcher.getMatchingPatterns(resolvedHostName)) {
                             securityRoles.addAll(hosts.get(p));
                         }
                     }
@@ -1183,6 +1372,48 @@ public class ConfigModelV7 extends ConfigModel {
 
         }
     }
+
+    private static final class RoleMappingCacheKey {
+        private final String userName;
+        private final Set<String> backendRoles;
+        private final Set<String> securityRoles;
+        private final String callerAddress;
+        private final String callerHostName;
+        private final ConfigConstants.RolesMappingResolution resolution;
+        private final int hashCode;
+
+        private RoleMappingCacheKey(final User user, final TransportAddress caller, final String hostResolverMode,
+                final ConfigConstants.RolesMappingResolution resolution) {
+            this.userName = user.getName();
+            this.backendRoles = ImmutableSet.copyOf(user.getRoles());
+            this.securityRoles = ImmutableSet.copyOf(user.getOpenDistroSecurityRoles());
+            this.callerAddress = caller == null ? null : caller.getAddress();
+            this.callerHostName = caller == null || caller.address() == null || !hostResolverMode.equalsIgnoreCase("ip-hostname") ? null
+                    : caller.address().getHostString();
+            this.resolution = resolution;
+            this.hashCode = Objects.hash(userName, backendRoles, securityRoles, callerAddress, callerHostName, resolution);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            RoleMappingCacheKey other = (RoleMappingCacheKey) obj;
+            return Objects.equals(userName, other.userName)
+                    && Objects.equals(backendRoles, other.backendRoles)
+                    && Objects.equals(securityRoles, other.securityRoles)
+                    && Objects.equals(callerAddress, other.callerAddress)
+                    && Objects.equals(callerHostName, other.callerHostName)
+                    && resolution == other.resolution;
+        }
+    }
     
     
     
@@ -55,6 +55,7 @@ import org.greenrobot.eventbus.EventBusBuilder;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.amazon.opendistroforelasticsearch.security.DefaultObjectMapper;
 import com.amazon.opendistroforelasticsearch.security.auth.internal.InternalAuthenticationBackend;
+import com.amazon.opendistroforelasticsearch.security.auth.internal.PasswordVerifier;
 import com.amazon.opendistroforelasticsearch.security.configuration.ClusterInfoHolder;
 import com.amazon.opendistroforelasticsearch.security.configuration.ConfigurationChangeListener;
 import com.amazon.opendistroforelasticsearch.security.configuration.ConfigurationRepository;
@@ -126,7 +127,7 @@ public class DynamicConfigFactory implements Initializable, ConfigurationChangeL
     private final EventBus eventBus = EVENT_BUS_BUILDER.build();
     private final Settings esSettings;
     private final Path configPath;
-    private final InternalAuthenticationBackend iab = new InternalAuthenticationBackend();
+    private final InternalAuthenticationBackend iab;
 
     SecurityDynamicConfiguration<?> config;
     
@@ -136,6 +137,7 @@ public class DynamicConfigFactory implements Initializable, ConfigurationChangeL
         this.cr = cr;
         this.esSettings = esSettings;
         this.configPath = configPath;
+        this.iab = new InternalAuthenticationBackend(PasswordVerifier.from(esSettings));
 
         if(esSettings.getAsBoolean(ConfigConstants.OPENDISTRO_SECURITY_UNSUPPORTED_LOAD_STATIC_RESOURCES, true)) {
             try {
@@ -281,6 +283,17 @@ public class DynamicConfigFactory implements Initializable, ConfigurationChangeL
         return initialized.get();
     }
     
+    public PasswordVerifier getPasswordVerifier() {
+        return iab.getPasswordVerifier();
+    }
+
+    /**
+     * Stops the password hashing threads
+     */
+    public void close() {
+        iab.getPasswordVerifier().close();
+    }
+
     public void registerDCFListener(Object listener) {
         eventBus.register(listener);
     }
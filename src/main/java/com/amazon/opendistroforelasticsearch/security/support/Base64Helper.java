@@ -54,6 +54,7 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -62,6 +63,10 @@ import java.util.regex.Pattern;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.SpecialPermission;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
 
 import com.amazon.opendistroforelasticsearch.security.user.User;
 
@@ -162,9 +167,29 @@ public class Base64Helper {
     }
 
     public static String serializeObject(final Serializable object) {
+        return serializeObject(object, true);
+    }
+
+    /**
+     * Users, socket addresses, strings and the DLS/FLS/masked fields maps are written in a compact
+     * binary format unless {@code useJDKSerialization} is set (needed as long as nodes which only
+     * understand JDK serialization are part of the cluster). Everything else is always JDK serialized.
+     */
+    public static String serializeObject(final Serializable object, final boolean useJDKSerialization) {
 
         Preconditions.checkArgument(object != null, "object must not be null");
 
+        if (!useJDKSerialization) {
+            final byte binaryType = binaryTypeOf(object);
+            if (binaryType != TYPE_NONE) {
+                try {
+                    return BaseEncoding.base64().encode(serializeBinary(object, binaryType));
+                } catch (final Exception e) {
+                    throw new ElasticsearchException("Instance {} of class {} is not serializable", e, object, object.getClass());
+                }
+            }
+        }
+
         final ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try (final ObjectOutputStream out = SafeObjectOutputStream.create(bos)) {
             out.writeObject(object);
@@ -180,6 +205,16 @@ public class Base64Helper {
         Preconditions.checkArgument(!Strings.isNullOrEmpty(string), "string must not be null or empty");
 
         final byte[] bytes = BaseEncoding.base64().decode(string);
+
+        //JDK serialization streams always start with 0xACED
+        if (bytes.length > 1 && bytes[0] == BINARY_FORMAT_V1) {
+            try {
+                return deserializeBinary(bytes);
+            } catch (final Exception e) {
+                throw new ElasticsearchException(e);
+            }
+        }
+
         final ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
         try (SafeObjectInputStream in = new SafeObjectInputStream(bis)) {
             return (Serializable) in.readObject();
@@ -188,6 +223,130 @@ public class Base64Helper {
         }
     }
 
+    private static final byte BINARY_FORMAT_V1 = 0x01;
+
+    private static final byte TYPE_NONE = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INET_SOCKET_ADDRESS = 2;
+    private static final byte TYPE_USER = 3;
+    private static final byte TYPE_STRING_SET_MAP = 4;
+
+    private static byte binaryTypeOf(final Serializable object) {
+        final Class<?> clazz = object.getClass();
+        if (clazz == String.class) {
+            return TYPE_STRING;
+        }
+        if (clazz == InetSocketAddress.class) {
+            return TYPE_INET_SOCKET_ADDRESS;
+        }
+        //subclasses like LdapUser carry additional state
+        if (clazz == User.class) {
+            return TYPE_USER;
+        }
+        if (object instanceof Map && isStringSetMap((Map<?, ?>) object)) {
+            return TYPE_STRING_SET_MAP;
+        }
+        return TYPE_NONE;
+    }
+
+    private static boolean isStringSetMap(final Map<?, ?> map) {
+        for (final Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof Set)) {
+                return false;
+            }
+            for (final Object value : (Set<?>) entry.getValue()) {
+                if (!(value instanceof String)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] serializeBinary(final Serializable object, final byte binaryType) throws IOException {
+        try (final BytesStreamOutput out = new BytesStreamOutput(128)) {
+            out.writeByte(BINARY_FORMAT_V1);
+            out.writeByte(binaryType);
+            switch (binaryType) {
+            case TYPE_STRING:
+                out.writeString((String) object);
+                break;
+            case TYPE_INET_SOCKET_ADDRESS:
+                writeInetSocketAddress(out, (InetSocketAddress) object);
+                break;
+            case TYPE_USER:
+                writeUser(out, (User) object);
+                break;
+            case TYPE_STRING_SET_MAP:
+                out.writeMap((Map<String, Set<String>>) object, StreamOutput::writeString, StreamOutput::writeStringCollection);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown type " + binaryType);
+            }
+            return BytesReference.toBytes(out.bytes());
+        }
+    }
+
+    private static Serializable deserializeBinary(final byte[] bytes) throws IOException {
+        try (final StreamInput in = StreamInput.wrap(bytes, 2, bytes.length - 2)) {
+            switch (bytes[1]) {
+            case TYPE_STRING:
+                return in.readString();
+            case TYPE_INET_SOCKET_ADDRESS:
+                return readInetSocketAddress(in);
+            case TYPE_USER:
+                return readUser(in);
+            case TYPE_STRING_SET_MAP:
+                return (Serializable) in.readMap(StreamInput::readString, i -> new HashSet<>(i.readStringList()));
+            default:
+                throw new IOException("Unknown type " + bytes[1]);
+            }
+        }
+    }
+
+    private static void writeInetSocketAddress(final StreamOutput out, final InetSocketAddress address) throws IOException {
+        final InetAddress inetAddress = address.getAddress();
+        out.writeBoolean(inetAddress != null);
+        if (inetAddress == null) {
+            out.writeString(address.getHostString());
+        } else {
+            final String hostString = address.getHostString();
+            //getHostString() does not trigger a reverse lookup
+            out.writeOptionalString(hostString.equals(inetAddress.getHostAddress()) ? null : hostString);
+            out.writeByteArray(inetAddress.getAddress());
+        }
+        out.writeVInt(address.getPort());
+    }
+
+    private static InetSocketAddress readInetSocketAddress(final StreamInput in) throws IOException {
+        if (!in.readBoolean()) {
+            final String host = in.readString();
+            return InetSocketAddress.createUnresolved(host, in.readVInt());
+        }
+        final String host = in.readOptionalString();
+        final InetAddress inetAddress = InetAddress.getByAddress(host, in.readByteArray());
+        return new InetSocketAddress(inetAddress, in.readVInt());
+    }
+
+    private static void writeUser(final StreamOutput out, final User user) throws IOException {
+        out.writeString(user.getName());
+        out.writeStringCollection(user.getRoles());
+        out.writeStringCollection(user.getOpenDistroSecurityRoles());
+        out.writeOptionalString(user.getRequestedTenant());
+        out.writeMap(user.getCustomAttributesMap(), StreamOutput::writeString, StreamOutput::writeString);
+        out.writeBoolean(user.isInjected());
+    }
+
+    private static User readUser(final StreamInput in) throws IOException {
+        final User user = new User(in.readString(), in.readStringList(), null);
+        user.addOpenDistroSecurityRoles(in.readStringList());
+        user.setRequestedTenant(in.readOptionalString());
+        user.addAttributes(in.readMap(StreamInput::readString, StreamInput::readString));
+        user.setInjected(in.readBoolean());
+        return user;
+    }
+
     private final static class SafeObjectInputStream extends ObjectInputStream {
 
         public SafeObjectInputStream(InputStream in) throws IOException {
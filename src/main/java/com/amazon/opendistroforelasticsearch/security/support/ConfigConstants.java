@@ -98,6 +98,7 @@ public class ConfigConstants {
 
     public static final String OPENDISTRO_SECURITY_USER = OPENDISTRO_SECURITY_CONFIG_PREFIX+"user";
     public static final String OPENDISTRO_SECURITY_USER_HEADER = OPENDISTRO_SECURITY_CONFIG_PREFIX+"user_header";
+    public static final String OPENDISTRO_SECURITY_USER_HEADER_MEMO = OPENDISTRO_SECURITY_CONFIG_PREFIX+"user_header_memo";
 
     public static final String OPENDISTRO_SECURITY_USER_INFO_THREAD_CONTEXT = OPENDISTRO_SECURITY_CONFIG_PREFIX + "user_info";
 
@@ -138,6 +139,8 @@ public class ConfigConstants {
     public static final String OPENDISTRO_SECURITY_AUDIT_CONFIG_ENDPOINTS = "opendistro_security.audit.endpoints";
     public static final String OPENDISTRO_SECURITY_AUDIT_THREADPOOL_SIZE = "opendistro_security.audit.threadpool.size";
     public static final String OPENDISTRO_SECURITY_AUDIT_THREADPOOL_MAX_QUEUE_LEN = "opendistro_security.audit.threadpool.max_queue_len";
+    public static final String OPENDISTRO_SECURITY_AUDIT_WRITE_DIFF_THREADS = "opendistro_security.audit.write_diff.threads";
+    public static final String OPENDISTRO_SECURITY_AUDIT_WRITE_DIFF_MAX_QUEUE_LEN = "opendistro_security.audit.write_diff.max_queue_len";
     public static final String OPENDISTRO_SECURITY_AUDIT_LOG_REQUEST_BODY = "opendistro_security.audit.log_request_body";
     public static final String OPENDISTRO_SECURITY_AUDIT_RESOLVE_INDICES = "opendistro_security.audit.resolve_indices";
     public static final String OPENDISTRO_SECURITY_AUDIT_ENABLE_REST = "opendistro_security.audit.enable_rest";
@@ -155,9 +158,29 @@ public class ConfigConstants {
     
     public static final String OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT_PREFIX = "opendistro_security.audit.config.";
 
+    // Queue of a sink, default to the thread pool queue length and the fallback sink
+    public static final String OPENDISTRO_SECURITY_AUDIT_QUEUE_MAX_LEN = "queue.max_len";
+    public static final String OPENDISTRO_SECURITY_AUDIT_QUEUE_OVERFLOW_POLICY = "queue.overflow_policy";
+    // Threads which store the messages of a sink, default to 2 but at most the thread pool size
+    public static final String OPENDISTRO_SECURITY_AUDIT_QUEUE_DRAINERS = "queue.drainers";
+    public static final int OPENDISTRO_SECURITY_AUDIT_QUEUE_DRAINERS_DEFAULT = 2;
+
+    // Spool of a sink, relative paths are resolved against the first data path
+    public static final String OPENDISTRO_SECURITY_AUDIT_SPOOL_ENABLED = "spool.enabled";
+    public static final String OPENDISTRO_SECURITY_AUDIT_SPOOL_PATH = "spool.path";
+    public static final String OPENDISTRO_SECURITY_AUDIT_SPOOL_MAX_SIZE = "spool.max_size";
+    public static final String OPENDISTRO_SECURITY_AUDIT_SPOOL_SEGMENT_SIZE = "spool.segment_size";
+    public static final String OPENDISTRO_SECURITY_AUDIT_SPOOL_INITIAL_BACKOFF = "spool.initial_backoff";
+    public static final String OPENDISTRO_SECURITY_AUDIT_SPOOL_MAX_BACKOFF = "spool.max_backoff";
+
     // Internal / External ES
     public static final String OPENDISTRO_SECURITY_AUDIT_ES_INDEX = "index";
     public static final String OPENDISTRO_SECURITY_AUDIT_ES_TYPE = "type";
+    public static final String OPENDISTRO_SECURITY_AUDIT_ES_REFRESH_POLICY = "refresh_policy";
+    public static final String OPENDISTRO_SECURITY_AUDIT_ES_BULK_ENABLED = "bulk.enabled";
+    public static final String OPENDISTRO_SECURITY_AUDIT_ES_BULK_ACTIONS = "bulk.actions";
+    public static final String OPENDISTRO_SECURITY_AUDIT_ES_BULK_SIZE = "bulk.size";
+    public static final String OPENDISTRO_SECURITY_AUDIT_ES_BULK_FLUSH_INTERVAL = "bulk.flush_interval";
     
     // External ES
     public static final String OPENDISTRO_SECURITY_AUDIT_EXTERNAL_ES_HTTP_ENDPOINTS = "http_endpoints";
@@ -176,6 +199,7 @@ public class ConfigConstants {
     public static final String OPENDISTRO_SECURITY_AUDIT_EXTERNAL_ES_JKS_CERT_ALIAS = "cert_alias";
     public static final String OPENDISTRO_SECURITY_AUDIT_EXTERNAL_ES_ENABLED_SSL_CIPHERS = "enabled_ssl_ciphers";
     public static final String OPENDISTRO_SECURITY_AUDIT_EXTERNAL_ES_ENABLED_SSL_PROTOCOLS = "enabled_ssl_protocols";
+    public static final String OPENDISTRO_SECURITY_AUDIT_EXTERNAL_ES_BULK_GZIP = "bulk.gzip";
 
     // Webhooks    
     public static final String OPENDISTRO_SECURITY_AUDIT_WEBHOOK_URL = "webhook.url";
@@ -183,6 +207,13 @@ public class ConfigConstants {
     public static final String OPENDISTRO_SECURITY_AUDIT_WEBHOOK_SSL_VERIFY = "webhook.ssl.verify";
     public static final String OPENDISTRO_SECURITY_AUDIT_WEBHOOK_PEMTRUSTEDCAS_FILEPATH = "webhook.ssl.pemtrustedcas_filepath";
     public static final String OPENDISTRO_SECURITY_AUDIT_WEBHOOK_PEMTRUSTEDCAS_CONTENT = "webhook.ssl.pemtrustedcas_content";
+    public static final String OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_ENABLED = "webhook.batch.enabled";
+    public static final String OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_BODY = "webhook.batch.body";
+    public static final String OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_ACTIONS = "webhook.batch.actions";
+    public static final String OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_SIZE = "webhook.batch.size";
+    public static final String OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_FLUSH_INTERVAL = "webhook.batch.flush_interval";
+    public static final String OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_MAX_IN_FLIGHT = "webhook.batch.max_in_flight";
+    public static final String OPENDISTRO_SECURITY_AUDIT_WEBHOOK_BATCH_GZIP = "webhook.batch.gzip";
     
     // Log4j
     public static final String OPENDISTRO_SECURITY_AUDIT_LOG4J_LOGGER_NAME = "log4j.logger_name";
@@ -203,6 +234,13 @@ public class ConfigConstants {
     public static final String OPENDISTRO_SECURITY_NODES_DN_DYNAMIC_CONFIG_ENABLED = "opendistro_security.nodes_dn_dynamic_config_enabled";
     public static final String OPENDISTRO_SECURITY_DISABLED = "opendistro_security.disabled";
     public static final String OPENDISTRO_SECURITY_CACHE_TTL_MINUTES = "opendistro_security.cache.ttl_minutes";
+    public static final String OPENDISTRO_SECURITY_CACHE_INVALIDATION_SPREAD = "opendistro_security.cache.invalidation_spread";
+    public static final String OPENDISTRO_SECURITY_CACHE_SOFT_TTL_MINUTES = "opendistro_security.cache.soft_ttl_minutes";
+    public static final String OPENDISTRO_SECURITY_CACHE_REFRESH_THREADS = "opendistro_security.cache.refresh_threads";
+    public static final String OPENDISTRO_SECURITY_CACHE_REFRESH_INITIAL_BACKOFF = "opendistro_security.cache.refresh_initial_backoff";
+    public static final String OPENDISTRO_SECURITY_CACHE_REFRESH_MAX_BACKOFF = "opendistro_security.cache.refresh_max_backoff";
+    public static final String OPENDISTRO_SECURITY_PASSWORD_HASHING_THREADS = "opendistro_security.password_hashing.threads";
+    public static final String OPENDISTRO_SECURITY_PASSWORD_HASHING_MAX_QUEUE_LEN = "opendistro_security.password_hashing.max_queue_len";
     public static final String OPENDISTRO_SECURITY_ALLOW_UNSAFE_DEMOCERTIFICATES = "opendistro_security.allow_unsafe_democertificates";
     public static final String OPENDISTRO_SECURITY_ALLOW_DEFAULT_INIT_SECURITYINDEX = "opendistro_security.allow_default_init_securityindex";
     public static final String OPENDISTRO_SECURITY_BACKGROUND_INIT_IF_SECURITYINDEX_NOT_EXIST = "opendistro_security.background_init_if_securityindex_not_exist";
@@ -241,6 +279,18 @@ public class ConfigConstants {
     public static final String OPENDISTRO_SECURITY_RESTAPI_PASSWORD_VALIDATION_REGEX = "opendistro_security.restapi.password_validation_regex";
     public static final String OPENDISTRO_SECURITY_RESTAPI_PASSWORD_VALIDATION_ERROR_MESSAGE = "opendistro_security.restapi.password_validation_error_message";
 
+    // bytes or percentage of the heap used to cache which documents a DLS query matches in a segment
+    public static final String OPENDISTRO_SECURITY_DLS_BITSET_CACHE_SIZE = "opendistro_security.dls.bitset_cache.size";
+    public static final String OPENDISTRO_SECURITY_DLS_BITSET_CACHE_SIZE_DEFAULT = "1%";
+    // masked values kept per masked field, keeps cleartext values in memory so disabled by default
+    public static final String OPENDISTRO_SECURITY_MASKED_FIELDS_VALUE_CACHE_SIZE = "opendistro_security.masked_fields.value_cache.size";
+    public static final int OPENDISTRO_SECURITY_MASKED_FIELDS_VALUE_CACHE_SIZE_DEFAULT = 0;
+
+    // write transport headers with JDK serialization, which all nodes can read. The binary format is opt-in
+    // and must only be enabled once every node of the cluster (and of remote clusters) can read it
+    public static final String OPENDISTRO_SECURITY_COMPAT_JDK_SERIALIZATION_HEADERS = "opendistro_security.compat.jdk_serialization_headers";
+    public static final boolean OPENDISTRO_SECURITY_COMPAT_JDK_SERIALIZATION_HEADERS_DEFAULT = true;
+
     // Illegal Opcodes from here on
     public static final String OPENDISTRO_SECURITY_UNSUPPORTED_DISABLE_REST_AUTH_INITIALLY = "opendistro_security.unsupported.disable_rest_auth_initially";
     public static final String OPENDISTRO_SECURITY_UNSUPPORTED_DISABLE_INTERTRANSPORT_AUTH_INITIALLY = "opendistro_security.unsupported.disable_intertransport_auth_initially";
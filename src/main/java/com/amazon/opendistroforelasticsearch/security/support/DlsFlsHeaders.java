@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.support;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.elasticsearch.ElasticsearchSecurityException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Encoding of the DLS query, FLS fields and masked fields headers.
+ *
+ * In binary mode the header is {@code <digest>:<payload>} where the payload is the
+ * canonical (sorted) binary encoding of the map and the digest its SHA-256. Two headers
+ * can therefore be compared without decoding them, and decoded maps are cached by digest
+ * so that every shard and every field filter of a request does not decode the header again.
+ * Headers without a digest are plain {@link Base64Helper} values as written by older nodes
+ * or in JDK serialization compatibility mode.
+ */
+public final class DlsFlsHeaders {
+
+    private static final char DIGEST_SEPARATOR = ':';
+    private static final int MAX_CACHED_MAPS = 1000;
+
+    private static final Cache<String, Map<String, Set<String>>> decodedMaps = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_MAPS)
+            .build();
+
+    private DlsFlsHeaders() {
+    }
+
+    public static String serialize(final Map<String, Set<String>> map, final boolean useJDKSerialization) {
+        if (useJDKSerialization) {
+            return Base64Helper.serializeObject((Serializable) map, true);
+        }
+
+        final TreeMap<String, Set<String>> canonical = new TreeMap<>();
+        for (final Map.Entry<String, Set<String>> entry : map.entrySet()) {
+            canonical.put(entry.getKey(), new TreeSet<>(entry.getValue()));
+        }
+        final String payload = Base64Helper.serializeObject(canonical, false);
+        return digest(payload) + DIGEST_SEPARATOR + payload;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Set<String>> deserialize(final String header) {
+        final int sep = header.indexOf(DIGEST_SEPARATOR);
+
+        if (sep < 0) {
+            return (Map<String, Set<String>>) Base64Helper.deserializeObject(header);
+        }
+
+        final String digest = header.substring(0, sep);
+        Map<String, Set<String>> map = decodedMaps.getIfPresent(digest);
+
+        if (map == null) {
+            final String payload = header.substring(sep + 1);
+            //never let a header populate the cache for a digest which does not belong to it
+            if (!digest.equals(digest(payload))) {
+                throw new ElasticsearchSecurityException("Digest of DLS/FLS header does not match its content");
+            }
+            final ImmutableMap.Builder<String, Set<String>> builder = ImmutableMap.builder();
+            for (final Map.Entry<String, Set<String>> entry : ((Map<String, Set<String>>) Base64Helper.deserializeObject(payload)).entrySet()) {
+                builder.put(entry.getKey(), ImmutableSet.copyOf(entry.getValue()));
+            }
+            map = builder.build();
+            decodedMaps.put(digest, map);
+        }
+
+        return map;
+    }
+
+    /**
+     * @return true if {@code header} holds the same map as {@code serializedMap}, a value
+     *         returned by {@link #serialize(Map, boolean)} for {@code map}
+     */
+    public static boolean matches(final String header, final String serializedMap, final Map<String, Set<String>> map) {
+        final int sep = header.indexOf(DIGEST_SEPARATOR);
+        if (sep > 0 && header.regionMatches(0, serializedMap, 0, sep + 1)) {
+            return true;
+        }
+        return map.equals(deserialize(header));
+    }
+
+    private static String digest(final String payload) {
+        return BaseEncoding.base64Url().omitPadding().encode(Hashing.sha256().hashString(payload, StandardCharsets.US_ASCII).asBytes());
+    }
+}
@@ -32,6 +32,7 @@ package com.amazon.opendistroforelasticsearch.security.support;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.Set;
 
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 
@@ -80,6 +81,20 @@ public class HeaderHelper {
 
         return null;
     }
+
+    /**
+     * Reads one of the DLS query, FLS fields or masked fields headers, see {@link DlsFlsHeaders}
+     */
+    public static Map<String, Set<String>> deserializeSafeDlsFlsMapFromHeader(final ThreadContext context, final String headerName) {
+
+        final String header = getSafeFromHeader(context, headerName);
+
+        if (!Strings.isNullOrEmpty(header)) {
+            return DlsFlsHeaders.deserialize(header);
+        }
+
+        return null;
+    }
     
     public static boolean isTrustedClusterRequest(final ThreadContext context) {
         return context.getTransient(ConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_TRUSTED_CLUSTER_REQUEST) == Boolean.TRUE;
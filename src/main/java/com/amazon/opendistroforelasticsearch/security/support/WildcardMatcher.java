@@ -30,9 +30,13 @@
 
 package com.amazon.opendistroforelasticsearch.security.support;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -172,7 +176,8 @@ public abstract class WildcardMatcher implements Predicate<String> {
         return from(pattern, true);
     }
 
-    // This may in future use more optimized techniques to combine multiple WildcardMatchers in a single automaton
+    // Multiple patterns are combined into a single MatcherCombiner which indexes exact, prefix
+    // and suffix patterns so that a candidate is tested against all of them in one pass
     public static <T> WildcardMatcher from(Stream<T> stream, boolean caseSensitive) {
         Collection<WildcardMatcher> matchers = stream.map(t -> {
             if (t instanceof String) {
@@ -286,6 +291,11 @@ public abstract class WildcardMatcher implements Predicate<String> {
         return Optional.ofNullable(test(candidate) ? this : null);
     }
 
+    // returns the patterns of this matcher which match the candidate
+    public List<String> getMatchingPatterns(final String candidate) {
+        return test(candidate) ? Collections.singletonList(toString()) : Collections.emptyList();
+    }
+
     public static List<WildcardMatcher> matchers(Collection<String> patterns) {
         return patterns.stream().map(p -> WildcardMatcher.from(p, true))
                 .collect(Collectors.toList());
@@ -458,25 +468,92 @@ public abstract class WildcardMatcher implements Predicate<String> {
     // MatcherCombiner is a combination of a set of matchers
     // matches if any of the set do
     // Empty MultiMatcher always returns false
+    //
+    // Exact patterns are kept in a hash map, "prefix*" and "*suffix" patterns in character tries,
+    // so a candidate is checked against all of them with a single walk over its characters.
+    // Everything else (regex, case folding, patterns with ? or several *) is tested one by one.
     private static final class MatcherCombiner extends WildcardMatcher {
 
         private final Collection<WildcardMatcher> wildcardMatchers;
         private final int hashCode;
+        private final Map<String, WildcardMatcher> exactMatchers = new HashMap<>();
+        private final CharTrie prefixMatchers = new CharTrie();
+        private final CharTrie suffixMatchers = new CharTrie();
+        private final WildcardMatcher[] otherMatchers;
 
         MatcherCombiner(Collection<WildcardMatcher> wildcardMatchers) {
             Preconditions.checkArgument(wildcardMatchers.size() > 1);
             this.wildcardMatchers = wildcardMatchers;
             hashCode = wildcardMatchers.hashCode();
+
+            final List<WildcardMatcher> others = new ArrayList<>();
+            for (WildcardMatcher matcher : wildcardMatchers) {
+                if (matcher instanceof Exact) {
+                    exactMatchers.putIfAbsent(((Exact) matcher).pattern, matcher);
+                } else if (matcher instanceof SimpleMatcher && isPrefixPattern(((SimpleMatcher) matcher).pattern)) {
+                    final String pattern = ((SimpleMatcher) matcher).pattern;
+                    prefixMatchers.add(pattern, 0, pattern.length() - 1, false, matcher);
+                } else if (matcher instanceof SimpleMatcher && isSuffixPattern(((SimpleMatcher) matcher).pattern)) {
+                    final String pattern = ((SimpleMatcher) matcher).pattern;
+                    suffixMatchers.add(pattern, 1, pattern.length(), true, matcher);
+                } else {
+                    others.add(matcher);
+                }
+            }
+            otherMatchers = others.toArray(new WildcardMatcher[0]);
+        }
+
+        private static boolean isPrefixPattern(String pattern) {
+            return pattern.indexOf('?') < 0 && pattern.indexOf('*') == pattern.length() - 1;
+        }
+
+        private static boolean isSuffixPattern(String pattern) {
+            return pattern.indexOf('?') < 0 && pattern.lastIndexOf('*') == 0;
         }
 
         @Override
         public boolean test(String candidate) {
-            return wildcardMatchers.stream().anyMatch(m -> m.test(candidate));
+            if (exactMatchers.containsKey(candidate)
+                    || prefixMatchers.findFirst(candidate, false) != null
+                    || suffixMatchers.findFirst(candidate, true) != null) {
+                return true;
+            }
+            for (WildcardMatcher matcher : otherMatchers) {
+                if (matcher.test(candidate)) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         @Override
         public Optional<WildcardMatcher> findFirst(final String candidate) {
-            return wildcardMatchers.stream().filter(m -> m.test(candidate)).findFirst();
+            WildcardMatcher matcher = exactMatchers.get(candidate);
+            if (matcher == null) {
+                matcher = prefixMatchers.findFirst(candidate, false);
+            }
+            if (matcher == null) {
+                matcher = suffixMatchers.findFirst(candidate, true);
+            }
+            if (matcher == null) {
+                matcher = Arrays.stream(otherMatchers).filter(m -> m.test(candidate)).findFirst().orElse(null);
+            }
+            return Optional.ofNullable(matcher);
+        }
+
+        @Override
+        public List<String> getMatchingPatterns(final String candidate) {
+            final List<String> patterns = new ArrayList<>();
+            final WildcardMatcher exact = exactMatchers.get(candidate);
+            if (exact != null) {
+                patterns.add(exact.toString());
+            }
+            prefixMatchers.collectAll(candidate, false, patterns);
+            suffixMatchers.collectAll(candidate, true, patterns);
+            for (WildcardMatcher matcher : otherMatchers) {
+                patterns.addAll(matcher.getMatchingPatterns(candidate));
+            }
+            return patterns;
         }
 
         @Override
@@ -495,4 +572,77 @@ public abstract class WildcardMatcher implements Predicate<String> {
         @Override
         public String toString() { return wildcardMatchers.toString(); }
     }
+
+    // Character trie over the literal part of "prefix*" (walked forwards) or "*suffix" (walked backwards) patterns.
+    // A node carries the matcher of the pattern whose literal part ends at this node.
+    private static final class CharTrie {
+
+        private char[] keys = new char[0];
+        private CharTrie[] children = new CharTrie[0];
+        private WildcardMatcher matcher;
+
+        private void add(String pattern, int from, int to, boolean reverse, WildcardMatcher matcher) {
+            CharTrie node = this;
+            for (int i = 0; i < to - from; i++) {
+                node = node.getOrAddChild(pattern.charAt(reverse ? to - 1 - i : from + i));
+            }
+            if (node.matcher == null) {
+                node.matcher = matcher;
+            }
+        }
+
+        private CharTrie getOrAddChild(char c) {
+            int pos = Arrays.binarySearch(keys, c);
+            if (pos >= 0) {
+                return children[pos];
+            }
+            pos = -pos - 1;
+            final CharTrie child = new CharTrie();
+            final char[] newKeys = new char[keys.length + 1];
+            final CharTrie[] newChildren = new CharTrie[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, pos);
+            System.arraycopy(children, 0, newChildren, 0, pos);
+            newKeys[pos] = c;
+            newChildren[pos] = child;
+            System.arraycopy(keys, pos, newKeys, pos + 1, keys.length - pos);
+            System.arraycopy(children, pos, newChildren, pos + 1, children.length - pos);
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+        private CharTrie getChild(char c) {
+            final int pos = Arrays.binarySearch(keys, c);
+            return pos >= 0 ? children[pos] : null;
+        }
+
+        private WildcardMatcher findFirst(String candidate, boolean reverse) {
+            CharTrie node = this;
+            final int n = candidate.length();
+            for (int i = 0; node != null; i++) {
+                if (node.matcher != null) {
+                    return node.matcher;
+                }
+                if (i == n) {
+                    break;
+                }
+                node = node.getChild(candidate.charAt(reverse ? n - 1 - i : i));
+            }
+            return null;
+        }
+
+        private void collectAll(String candidate, boolean reverse, List<String> patterns) {
+            CharTrie node = this;
+            final int n = candidate.length();
+            for (int i = 0; node != null; i++) {
+                if (node.matcher != null) {
+                    patterns.add(node.matcher.toString());
+                }
+                if (i == n) {
+                    break;
+                }
+                node = node.getChild(candidate.charAt(reverse ? n - 1 - i : i));
+            }
+        }
+    }
 }
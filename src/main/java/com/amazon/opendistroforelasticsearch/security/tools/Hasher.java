@@ -43,6 +43,8 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.bouncycastle.crypto.generators.OpenBSDBCrypt;
 
+import com.amazon.opendistroforelasticsearch.security.auth.internal.PasswordHashes;
+
 public class Hasher {
 
     public static void main(final String[] args) {
@@ -51,26 +53,28 @@ public class Hasher {
         final HelpFormatter formatter = new HelpFormatter();
         options.addOption(Option.builder("p").argName("password").hasArg().desc("Cleartext password to hash").build());
         options.addOption(Option.builder("env").argName("name environment variable").hasArg().desc("name environment variable to read password from").build());
+        options.addOption(Option.builder("a").argName("algorithm").hasArg().desc("bcrypt (default), pbkdf2 or argon2").build());
 
         final CommandLineParser parser = new DefaultParser();
         try {
             final CommandLine line = parser.parse(options, args);
+            final String algorithm = line.getOptionValue("a", "bcrypt");
             
             if(line.hasOption("p")) {
-                System.out.println(hash(line.getOptionValue("p").toCharArray()));
+                System.out.println(hash(line.getOptionValue("p").toCharArray(), algorithm));
             } else if(line.hasOption("env")) {
                 final String pwd = System.getenv(line.getOptionValue("env"));
                 if(pwd == null || pwd.isEmpty()) {
                     throw new Exception("No environment variable '"+line.getOptionValue("env")+"' set");
                 }
-                System.out.println(hash(pwd.toCharArray()));
+                System.out.println(hash(pwd.toCharArray(), algorithm));
             } else {
                 final Console console = System.console();
                 if(console == null) {
                     throw new Exception("Cannot allocate a console");
                 }
                 final char[] passwd = console.readPassword("[%s]", "Password:");
-                System.out.println(hash(passwd));
+                System.out.println(hash(passwd, algorithm));
             }  
         } catch (final Exception exp) {
             System.err.println("Parsing failed.  Reason: " + exp.getMessage());
@@ -79,6 +83,23 @@ public class Hasher {
         }
     }
 
+    public static String hash(final char[] clearTextPassword, final String algorithm) {
+        try {
+            switch (algorithm) {
+                case "bcrypt":
+                    return hash(clearTextPassword);
+                case "pbkdf2":
+                    return PasswordHashes.pbkdf2(Objects.requireNonNull(clearTextPassword), 100_000);
+                case "argon2":
+                    return PasswordHashes.argon2(Objects.requireNonNull(clearTextPassword), 19_456, 2, 1);
+                default:
+                    throw new IllegalArgumentException("Unknown algorithm "+algorithm);
+            }
+        } finally {
+            Arrays.fill(clearTextPassword, '\0');
+        }
+    }
+
     public static String hash(final char[] clearTextPassword) {
         final byte[] salt = new byte[16];
         new SecureRandom().nextBytes(salt);
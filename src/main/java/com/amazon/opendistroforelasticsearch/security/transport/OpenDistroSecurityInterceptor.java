@@ -31,7 +31,9 @@
 package com.amazon.opendistroforelasticsearch.security.transport;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -87,6 +89,7 @@ public class OpenDistroSecurityInterceptor {
     private final Settings settings;
     private final SslExceptionHandler sslExceptionHandler;
     private final ClusterInfoHolder clusterInfoHolder;
+    private final boolean useJDKSerialization;
 
     public OpenDistroSecurityInterceptor(final Settings settings,
             final ThreadPool threadPool, final BackendRegistry backendRegistry,
@@ -104,6 +107,7 @@ public class OpenDistroSecurityInterceptor {
         this.settings = settings;
         this.sslExceptionHandler = sslExceptionHandler;
         this.clusterInfoHolder = clusterInfoHolder;
+        this.useJDKSerialization = settings.getAsBoolean(ConfigConstants.OPENDISTRO_SECURITY_COMPAT_JDK_SERIALIZATION_HEADERS, ConfigConstants.OPENDISTRO_SECURITY_COMPAT_JDK_SERIALIZATION_HEADERS_DEFAULT);
     }
 
     public <T extends TransportRequest> OpenDistroSecurityRequestHandler<T> getHandler(String action,
@@ -124,6 +128,8 @@ public class OpenDistroSecurityInterceptor {
         final String origCCSTransientDls = getThreadContext().getTransient(ConfigConstants.OPENDISTRO_SECURITY_DLS_QUERY_CCS);
         final String origCCSTransientFls = getThreadContext().getTransient(ConfigConstants.OPENDISTRO_SECURITY_FLS_FIELDS_CCS);
         final String origCCSTransientMf = getThreadContext().getTransient(ConfigConstants.OPENDISTRO_SECURITY_MASKED_FIELD_CCS);
+        final UserHeaderMemo userHeaderMemo0 = getThreadContext().getTransient(ConfigConstants.OPENDISTRO_SECURITY_USER_HEADER_MEMO);
+        UserHeaderMemo newUserHeaderMemo = null;
 
         try (ThreadContext.StoredContext stashedContext = getThreadContext().stashContext()) {
             final TransportResponseHandler<T> restoringHandler = new RestoringTransportResponseHandler<T>(handler, stashedContext);
@@ -179,7 +185,7 @@ public class OpenDistroSecurityInterceptor {
 
             getThreadContext().putHeader(headerMap);
 
-            ensureCorrectHeaders(remoteAddress0, user0, origin0, injectedUserString);
+            newUserHeaderMemo = ensureCorrectHeaders(remoteAddress0, user0, origin0, injectedUserString, userHeaderMemo0);
 
             if (isActionTraceEnabled()) {
                 getThreadContext().putHeader("_opendistro_security_trace"+System.currentTimeMillis()+"#"+UUID.randomUUID().toString(), Thread.currentThread().getName()+" IC -> "+action+" "+getThreadContext().getHeaders().entrySet().stream().filter(p->!p.getKey().startsWith("_opendistro_security_trace")).collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue())));
@@ -187,9 +193,17 @@ public class OpenDistroSecurityInterceptor {
 
             sender.sendRequest(connection, action, request, options, restoringHandler);
         }
+
+        //a request fans out to many shards, so remember the serialized user for the next hop
+        if (newUserHeaderMemo != null && userHeaderMemo0 == null
+                && getThreadContext().getTransient(ConfigConstants.OPENDISTRO_SECURITY_USER_HEADER_MEMO) == null) {
+            getThreadContext().putTransient(ConfigConstants.OPENDISTRO_SECURITY_USER_HEADER_MEMO, newUserHeaderMemo);
+        }
     }
 
-    private void ensureCorrectHeaders(final Object remoteAdr, final User origUser, final String origin, final String injectedUserString) {
+    private UserHeaderMemo ensureCorrectHeaders(final Object remoteAdr, final User origUser, final String origin, final String injectedUserString,
+            final UserHeaderMemo userHeaderMemo) {
+        UserHeaderMemo newUserHeaderMemo = null;
         // keep original address
 
         if(origin != null && !origin.isEmpty() /*&& !Origin.LOCAL.toString().equalsIgnoreCase(origin)*/ && getThreadContext().getHeader(ConfigConstants.OPENDISTRO_SECURITY_ORIGIN_HEADER) == null) {
@@ -205,7 +219,7 @@ public class OpenDistroSecurityInterceptor {
             String remoteAddressHeader = getThreadContext().getHeader(ConfigConstants.OPENDISTRO_SECURITY_REMOTE_ADDRESS_HEADER);
 
             if(remoteAddressHeader == null) {
-                getThreadContext().putHeader(ConfigConstants.OPENDISTRO_SECURITY_REMOTE_ADDRESS_HEADER, Base64Helper.serializeObject(((TransportAddress) remoteAdr).address()));
+                getThreadContext().putHeader(ConfigConstants.OPENDISTRO_SECURITY_REMOTE_ADDRESS_HEADER, Base64Helper.serializeObject(((TransportAddress) remoteAdr).address(), useJDKSerialization));
             }
         }
 
@@ -214,13 +228,49 @@ public class OpenDistroSecurityInterceptor {
 
         if(userHeader == null) {
             if(origUser != null) {
-                getThreadContext().putHeader(ConfigConstants.OPENDISTRO_SECURITY_USER_HEADER, Base64Helper.serializeObject(origUser));
+                if(userHeaderMemo != null && userHeaderMemo.matches(origUser)) {
+                    getThreadContext().putHeader(ConfigConstants.OPENDISTRO_SECURITY_USER_HEADER, userHeaderMemo.serializedUser);
+                } else {
+                    newUserHeaderMemo = new UserHeaderMemo(origUser, Base64Helper.serializeObject(origUser, useJDKSerialization));
+                    getThreadContext().putHeader(ConfigConstants.OPENDISTRO_SECURITY_USER_HEADER, newUserHeaderMemo.serializedUser);
+                }
             }
             else if(StringUtils.isNotEmpty(injectedUserString)) {
                 getThreadContext().putHeader(ConfigConstants.OPENDISTRO_SECURITY_INJECTED_USER_HEADER, injectedUserString);
             }
         }
 
+        return newUserHeaderMemo;
+    }
+
+    /**
+     * The serialized user header together with the state of the user it was serialized from.
+     * The user is mutable (roles, tenant and attributes are added while the request is evaluated),
+     * so the header is only reused for a user which still has the same state.
+     */
+    static final class UserHeaderMemo {
+        private final User user;
+        private final List<Object> state;
+        private final String serializedUser;
+
+        UserHeaderMemo(final User user, final String serializedUser) {
+            this.user = user;
+            this.state = state(user, true);
+            this.serializedUser = serializedUser;
+        }
+
+        boolean matches(final User user) {
+            return this.user == user && state.equals(state(user, false));
+        }
+
+        private static List<Object> state(final User user, final boolean copy) {
+            return Arrays.asList(user.getClass(), user.getName(),
+                    copy ? new HashSet<>(user.getRoles()) : user.getRoles(),
+                    copy ? new HashSet<>(user.getOpenDistroSecurityRoles()) : user.getOpenDistroSecurityRoles(),
+                    user.getRequestedTenant(),
+                    copy ? new HashMap<>(user.getCustomAttributesMap()) : user.getCustomAttributesMap(),
+                    user.isInjected());
+        }
     }
 
     private ThreadContext getThreadContext() {
@@ -145,6 +145,19 @@ public final class AuthCredentials {
         nativeCredentials = null;
     }
 
+    /**
+     * Copy with its own secrets, so that the copy and this credentials can be wiped independently
+     *
+     * @return a copy of this credentials
+     */
+    public AuthCredentials copy() {
+        final AuthCredentials copy = new AuthCredentials(username, getPassword(), nativeCredentials,
+                backendRoles.toArray(new String[0]));
+        copy.complete = complete;
+        copy.attributes.putAll(attributes);
+        return copy;
+    }
+
     public String getUsername() {
         return username;
     }
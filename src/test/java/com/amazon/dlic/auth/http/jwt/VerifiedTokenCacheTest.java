@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.dlic.auth.http.jwt;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VerifiedTokenCacheTest {
+
+    private static VerifiedTokenCache<String> cache() {
+        return new VerifiedTokenCache<>(100, TimeValue.timeValueMinutes(10), TimeValue.timeValueMinutes(1));
+    }
+
+    @Test
+    public void testVerified() {
+        final VerifiedTokenCache<String> cache = cache();
+        final String key = cache.key("token");
+        Assert.assertNull(cache.get(key));
+
+        cache.putVerified(key, cache.generation(), "claims", 0);
+        Assert.assertEquals("claims", cache.get(key).getClaims());
+        Assert.assertFalse(cache.get(key).isRejected());
+        Assert.assertNull(cache.get(cache.key("other")));
+    }
+
+    @Test
+    public void testExpired() {
+        final VerifiedTokenCache<String> cache = cache();
+        final String key = cache.key("token");
+        cache.putVerified(key, cache.generation(), "claims", System.currentTimeMillis() - 1);
+        Assert.assertNull(cache.get(key));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRejected() {
+        final VerifiedTokenCache<String> cache = cache();
+        final String key = cache.key("token");
+        cache.putRejected(key, cache.generation());
+        Assert.assertTrue(cache.get(key).isRejected());
+        Assert.assertNull(cache.get(key).getClaims());
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        final VerifiedTokenCache<String> cache = cache();
+        final String key = cache.key("token");
+        cache.putVerified(key, cache.generation(), "claims", 0);
+        cache.invalidateAll();
+        Assert.assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testKeysChangedDuringVerification() {
+        final VerifiedTokenCache<String> cache = cache();
+        final String key = cache.key("token");
+        final long generation = cache.generation();
+        cache.invalidateAll();
+        cache.putVerified(key, generation, "claims", 0);
+        Assert.assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testDisabled() {
+        final VerifiedTokenCache<String> cache = VerifiedTokenCache.from(Settings.builder().put("jwt_cache_max_size", 0).build());
+        final String key = cache.key("token");
+        Assert.assertNull(key);
+        cache.putVerified(key, cache.generation(), "claims", 0);
+        cache.putRejected(key, cache.generation());
+        Assert.assertNull(cache.get(key));
+    }
+}
@@ -18,6 +18,7 @@ package com.amazon.dlic.auth.http.jwt.keybyoidc;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.cxf.rs.security.jose.jwk.JsonWebKey;
 import org.apache.cxf.rs.security.jose.jwk.JsonWebKeys;
@@ -54,6 +55,24 @@ public class SelfRefreshingKeySetTest {
 
 
 
+	@Test
+	public void refreshListenerTest() throws AuthenticatorUnavailableException, BadCredentialsException {
+		SelfRefreshingKeySet selfRefreshingKeySet = new SelfRefreshingKeySet(new MockKeySetProvider());
+		AtomicInteger refreshed = new AtomicInteger();
+		selfRefreshingKeySet.addRefreshListener(refreshed::incrementAndGet);
+
+		selfRefreshingKeySet.getKey("kid/a");
+		selfRefreshingKeySet.getKey("kid/b");
+		Assert.assertEquals(1, refreshed.get());
+
+		try {
+			selfRefreshingKeySet.getKey("kid/X");
+			Assert.fail("Expected a BadCredentialsException");
+		} catch (BadCredentialsException e) {
+			Assert.assertEquals(2, refreshed.get());
+		}
+	}
+
 	@Test(timeout = 10000)
 	public void twoThreadedTest() throws Exception {
 		BlockingMockKeySetProvider provider = new BlockingMockKeySetProvider();
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.dlic.auth.http.kerberos;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginException;
+
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AcceptorCredentialsTest {
+
+    private final AtomicLong nanoTime = new AtomicLong(1000);
+    private final AtomicLong keytabModified = new AtomicLong(1);
+    private final AtomicInteger logins = new AtomicInteger();
+    private final AtomicBoolean failing = new AtomicBoolean();
+    //lifetime of the ticket of the next login, 0 for none
+    private long ticketLifetimeMillis;
+
+    private AcceptorCredentials acceptorCredentials(final TimeValue renewInterval) {
+        return new AcceptorCredentials(Collections.singleton("HTTP/localhost@EXAMPLE.COM"), () -> {
+            logins.incrementAndGet();
+            if (failing.get()) {
+                throw new LoginException("KDC unavailable");
+            }
+            final Subject subject = new Subject();
+            if (ticketLifetimeMillis > 0) {
+                final long now = System.currentTimeMillis();
+                subject.getPrivateCredentials().add(new KerberosTicket(new byte[] { 1 }, new KerberosPrincipal("client@EXAMPLE.COM"),
+                        new KerberosPrincipal("krbtgt/EXAMPLE.COM@EXAMPLE.COM"), new byte[16], 17, null, new Date(now), new Date(now),
+                        new Date(now + ticketLifetimeMillis), null, null));
+            }
+            return new Tuple<>(subject, null);
+        }, keytabModified::get, renewInterval, nanoTime::get, Runnable::run);
+    }
+
+    private void advance(final long duration, final TimeUnit unit) {
+        nanoTime.addAndGet(unit.toNanos(duration));
+    }
+
+    @Test
+    public void testRenewInterval() throws Exception {
+        final AcceptorCredentials acceptorCredentials = acceptorCredentials(TimeValue.timeValueHours(1));
+        final AcceptorCredentials.Credentials first = acceptorCredentials.get();
+        Assert.assertSame(first, acceptorCredentials.get());
+        Assert.assertEquals(1, logins.get());
+
+        advance(59, TimeUnit.MINUTES);
+        acceptorCredentials.get();
+        Assert.assertEquals(1, logins.get());
+
+        advance(1, TimeUnit.MINUTES);
+        acceptorCredentials.get();
+        Assert.assertEquals(2, logins.get());
+        Assert.assertNotSame(first, acceptorCredentials.get());
+        Assert.assertEquals(2, logins.get());
+    }
+
+    @Test
+    public void testTicketLifetime() throws Exception {
+        //renewed at 80% of the lifetime, before the renew interval
+        ticketLifetimeMillis = TimeUnit.MINUTES.toMillis(100);
+        final AcceptorCredentials acceptorCredentials = acceptorCredentials(TimeValue.timeValueHours(10));
+        acceptorCredentials.get();
+
+        advance(79, TimeUnit.MINUTES);
+        acceptorCredentials.get();
+        Assert.assertEquals(1, logins.get());
+
+        advance(2, TimeUnit.MINUTES);
+        acceptorCredentials.get();
+        Assert.assertEquals(2, logins.get());
+    }
+
+    @Test
+    public void testKeytabChanged() throws Exception {
+        final AcceptorCredentials acceptorCredentials = acceptorCredentials(TimeValue.timeValueHours(1));
+        acceptorCredentials.get();
+
+        //not checked before the check interval
+        keytabModified.set(2);
+        acceptorCredentials.get();
+        Assert.assertEquals(1, logins.get());
+
+        advance(AcceptorCredentials.KEYTAB_CHECK_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+        acceptorCredentials.get();
+        Assert.assertEquals(2, logins.get());
+
+        advance(AcceptorCredentials.KEYTAB_CHECK_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+        acceptorCredentials.get();
+        Assert.assertEquals(2, logins.get());
+    }
+
+    @Test
+    public void testFailedRenewalAfterKeytabChange() throws Exception {
+        final AcceptorCredentials acceptorCredentials = acceptorCredentials(TimeValue.timeValueHours(1));
+        final AcceptorCredentials.Credentials first = acceptorCredentials.get();
+
+        failing.set(true);
+        keytabModified.set(2);
+        advance(AcceptorCredentials.KEYTAB_CHECK_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+        Assert.assertSame(first, acceptorCredentials.get());
+        Assert.assertEquals(2, logins.get());
+
+        //the same change does not trigger another attempt on the next checks
+        for (int i = 0; i < 5; i++) {
+            advance(AcceptorCredentials.KEYTAB_CHECK_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+            Assert.assertSame(first, acceptorCredentials.get());
+        }
+        Assert.assertEquals(2, logins.get());
+
+        failing.set(false);
+        advance(AcceptorCredentials.RETRY_NANOS - 5 * AcceptorCredentials.KEYTAB_CHECK_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+        acceptorCredentials.get();
+        Assert.assertEquals(3, logins.get());
+        Assert.assertNotSame(first, acceptorCredentials.get());
+    }
+
+    @Test
+    public void testFailedRenewal() throws Exception {
+        final AcceptorCredentials acceptorCredentials = acceptorCredentials(TimeValue.timeValueHours(1));
+        final AcceptorCredentials.Credentials first = acceptorCredentials.get();
+
+        failing.set(true);
+        advance(1, TimeUnit.HOURS);
+        Assert.assertSame(first, acceptorCredentials.get());
+        Assert.assertEquals(2, logins.get());
+
+        advance(AcceptorCredentials.RETRY_NANOS - 1, TimeUnit.NANOSECONDS);
+        acceptorCredentials.get();
+        Assert.assertEquals(2, logins.get());
+
+        advance(1, TimeUnit.NANOSECONDS);
+        acceptorCredentials.get();
+        Assert.assertEquals(3, logins.get());
+    }
+
+    @Test(expected = LoginException.class)
+    public void testFailedInitialLogin() throws Exception {
+        failing.set(true);
+        acceptorCredentials(TimeValue.timeValueHours(1)).get();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.dlic.auth.http.kerberos;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazon.opendistroforelasticsearch.security.user.AuthCredentials;
+import com.amazon.opendistroforelasticsearch.security.util.FakeRestRequest;
+
+public class HTTPSpnegoAuthenticatorTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path configPath;
+
+    @Before
+    public void setup() throws Exception {
+        configPath = folder.getRoot().toPath();
+        folder.newFile("acceptor.keytab");
+    }
+
+    private CountingAuthenticator authenticator(final Settings.Builder settings) {
+        return new CountingAuthenticator(settings
+                .put("path.home", configPath.toString())
+                .putList("opendistro_security.kerberos.acceptor_principal", "HTTP/localhost@EXAMPLE.COM")
+                .put("opendistro_security.kerberos.acceptor_keytab_filepath", "acceptor.keytab")
+                .build(), configPath);
+    }
+
+    private static FakeRestRequest request(final String token) {
+        final Map<String, String> headers = new HashMap<>();
+        headers.put("Authorization", "Negotiate " + Base64.getEncoder().encodeToString(token.getBytes(StandardCharsets.UTF_8)));
+        return new FakeRestRequest(headers, new HashMap<>());
+    }
+
+    @Test
+    public void testMissingKeytab() {
+        final HTTPSpnegoAuthenticator authenticator = new HTTPSpnegoAuthenticator(Settings.builder()
+                .put("path.home", configPath.toString())
+                .putList("opendistro_security.kerberos.acceptor_principal", "HTTP/localhost@EXAMPLE.COM")
+                .build(), configPath);
+
+        //not authenticated, every time
+        Assert.assertNull(authenticator.acceptToken("token_alice".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertNull(authenticator.acceptToken("token_alice".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testTokenCacheDisabled() {
+        final CountingAuthenticator authenticator = authenticator(Settings.builder());
+
+        Assert.assertEquals("alice", authenticator.extractCredentials(request("token_alice"), null).getUsername());
+        Assert.assertEquals("alice", authenticator.extractCredentials(request("token_alice"), null).getUsername());
+        Assert.assertEquals(2, authenticator.accepted.get());
+    }
+
+    @Test
+    public void testTokenCache() {
+        final CountingAuthenticator authenticator = authenticator(Settings.builder().put("token_cache_ttl", "1m"));
+
+        final AuthCredentials first = authenticator.extractCredentials(request("token_alice"), null);
+        final AuthCredentials second = authenticator.extractCredentials(request("token_alice"), null);
+        Assert.assertEquals(1, authenticator.accepted.get());
+        Assert.assertEquals("alice", second.getUsername());
+        Assert.assertTrue(second.isComplete());
+        Assert.assertArrayEquals((byte[]) first.getNativeCredentials(), (byte[]) second.getNativeCredentials());
+
+        Assert.assertEquals("bob", authenticator.extractCredentials(request("token_bob"), null).getUsername());
+        Assert.assertEquals(2, authenticator.accepted.get());
+    }
+
+    @Test
+    public void testIncompleteNotCached() {
+        final CountingAuthenticator authenticator = authenticator(Settings.builder().put("token_cache_ttl", "1m"));
+
+        Assert.assertFalse(authenticator.extractCredentials(request("continue"), null).isComplete());
+        Assert.assertFalse(authenticator.extractCredentials(request("continue"), null).isComplete());
+        Assert.assertEquals(2, authenticator.accepted.get());
+    }
+
+    //accepts "token_<user>" for <user>, "continue" needs another round trip
+    private static final class CountingAuthenticator extends HTTPSpnegoAuthenticator {
+        private final AtomicInteger accepted = new AtomicInteger();
+
+        private CountingAuthenticator(final Settings settings, final Path configPath) {
+            super(settings, configPath);
+        }
+
+        @Override
+        AuthCredentials acceptToken(final byte[] decodedNegotiateHeader) {
+            accepted.incrementAndGet();
+            final String token = new String(decodedNegotiateHeader, StandardCharsets.UTF_8);
+            final byte[] outToken = ("out_" + token).getBytes(StandardCharsets.UTF_8);
+            if (token.startsWith("token_")) {
+                return new AuthCredentials(token.substring("token_".length()), (Object) outToken).markComplete();
+            }
+            return new AuthCredentials("_incomplete_", (Object) outToken);
+        }
+    }
+}
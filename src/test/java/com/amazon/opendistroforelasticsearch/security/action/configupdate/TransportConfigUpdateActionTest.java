@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.action.configupdate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.auth.BackendRegistry;
+import com.amazon.opendistroforelasticsearch.security.configuration.ConfigurationRepository;
+import com.amazon.opendistroforelasticsearch.security.securityconf.impl.CType;
+import com.amazon.opendistroforelasticsearch.security.securityconf.impl.SecurityDynamicConfiguration;
+
+public class TransportConfigUpdateActionTest {
+
+    private static SecurityDynamicConfiguration<?> internalUsers(final long seqNo, final String entries) throws Exception {
+        return SecurityDynamicConfiguration.fromJson("{\"_meta\":{\"type\":\"internalusers\",\"config_version\":2}" + entries + "}",
+                CType.INTERNALUSERS, 2, seqNo, 1);
+    }
+
+    private static SecurityDynamicConfiguration<?> roles(final long seqNo, final String entries) throws Exception {
+        return SecurityDynamicConfiguration.fromJson("{\"_meta\":{\"type\":\"roles\",\"config_version\":2}" + entries + "}",
+                CType.ROLES, 2, seqNo, 1);
+    }
+
+    @Test
+    public void testChangedEntries() throws Exception {
+        final SecurityDynamicConfiguration<?> before = internalUsers(1,
+                ",\"alice\":{\"hash\":\"a\"},\"bob\":{\"hash\":\"b\"},\"carol\":{\"hash\":\"c\"}");
+        final SecurityDynamicConfiguration<?> after = internalUsers(2,
+                ",\"alice\":{\"hash\":\"a\"},\"bob\":{\"hash\":\"b2\"},\"dave\":{\"hash\":\"d\"}");
+
+        //bob changed, carol removed, dave added
+        Assert.assertEquals(new HashSet<>(Arrays.asList("bob", "carol", "dave")),
+                TransportConfigUpdateAction.changedEntries(before, after));
+        Assert.assertEquals(Collections.emptySet(), TransportConfigUpdateAction.changedEntries(before, before));
+        Assert.assertEquals(Collections.singleton("carol"),
+                TransportConfigUpdateAction.changedEntries(before, internalUsers(2, ",\"alice\":{\"hash\":\"a\"},\"bob\":{\"hash\":\"b\"}")));
+        Assert.assertEquals(Collections.singleton("dave"),
+                TransportConfigUpdateAction.changedEntries(before, internalUsers(2,
+                        ",\"alice\":{\"hash\":\"a\"},\"bob\":{\"hash\":\"b\"},\"carol\":{\"hash\":\"c\"},\"dave\":{\"hash\":\"d\"}")));
+    }
+
+    @Test
+    public void testIsChanged() throws Exception {
+        final String entries = ",\"alice\":{\"hash\":\"a\"}";
+        //same document version
+        Assert.assertFalse(TransportConfigUpdateAction.isChanged(internalUsers(1, entries), internalUsers(1, ",\"bob\":{\"hash\":\"b\"}")));
+        //new document version with the same content
+        Assert.assertFalse(TransportConfigUpdateAction.isChanged(internalUsers(1, entries), internalUsers(2, entries)));
+        //not from the index, compared by content
+        Assert.assertFalse(TransportConfigUpdateAction.isChanged(internalUsers(-1, entries), internalUsers(-1, entries)));
+        Assert.assertTrue(TransportConfigUpdateAction.isChanged(internalUsers(-1, entries), internalUsers(-1, ",\"alice\":{\"hash\":\"b\"}")));
+        Assert.assertTrue(TransportConfigUpdateAction.isChanged(internalUsers(1, entries), internalUsers(2, ",\"alice\":{\"hash\":\"b\"}")));
+    }
+
+    @Test
+    public void testInternalUsersUpdate() throws Exception {
+        final ConfigurationRepository configurationRepository = mock(ConfigurationRepository.class);
+        final BackendRegistry backendRegistry = mock(BackendRegistry.class);
+        doReturn(internalUsers(1, ",\"alice\":{\"hash\":\"a\"},\"bob\":{\"hash\":\"b\"}"))
+            .doReturn(internalUsers(2, ",\"alice\":{\"hash\":\"a\"},\"bob\":{\"hash\":\"b2\"}"))
+            .when(configurationRepository).getConfiguration(CType.INTERNALUSERS);
+
+        TransportConfigUpdateAction.reloadAndInvalidate(EnumSet.of(CType.INTERNALUSERS), configurationRepository, backendRegistry);
+
+        verify(configurationRepository).reloadConfiguration(EnumSet.of(CType.INTERNALUSERS));
+        verify(backendRegistry).invalidateCache(EnumSet.of(CType.INTERNALUSERS), Collections.singleton("bob"));
+        verifyNoMoreInteractions(backendRegistry);
+    }
+
+    @Test
+    public void testRolesUpdate() throws Exception {
+        final ConfigurationRepository configurationRepository = mock(ConfigurationRepository.class);
+        final BackendRegistry backendRegistry = mock(BackendRegistry.class);
+        doReturn(roles(1, ",\"role\":{\"cluster_permissions\":[\"a\"]}"))
+            .doReturn(roles(2, ",\"role\":{\"cluster_permissions\":[\"b\"]}"))
+            .when(configurationRepository).getConfiguration(CType.ROLES);
+        final SecurityDynamicConfiguration<?> users = internalUsers(1, ",\"alice\":{\"hash\":\"a\"}");
+        doReturn(users).when(configurationRepository).getConfiguration(CType.INTERNALUSERS);
+
+        TransportConfigUpdateAction.reloadAndInvalidate(EnumSet.of(CType.ROLES, CType.INTERNALUSERS),
+                configurationRepository, backendRegistry);
+
+        verify(backendRegistry).invalidateCache(EnumSet.of(CType.ROLES), Collections.emptySet());
+        verifyNoMoreInteractions(backendRegistry);
+    }
+
+    @Test
+    public void testFlushCache() throws Exception {
+        final ConfigurationRepository configurationRepository = mock(ConfigurationRepository.class);
+        final BackendRegistry backendRegistry = mock(BackendRegistry.class);
+        doReturn(roles(1, ",\"role\":{\"cluster_permissions\":[\"a\"]}")).when(configurationRepository).getConfiguration(any(CType.class));
+
+        TransportConfigUpdateAction.reloadAndInvalidate(EnumSet.allOf(CType.class), configurationRepository, backendRegistry);
+
+        verify(configurationRepository).reloadConfiguration(EnumSet.allOf(CType.class));
+        verify(backendRegistry).invalidateCache();
+        verifyNoMoreInteractions(backendRegistry);
+    }
+
+    @Test
+    public void testFullUpdate() throws Exception {
+        final ConfigurationRepository configurationRepository = mock(ConfigurationRepository.class);
+        final BackendRegistry backendRegistry = mock(BackendRegistry.class);
+        doReturn(roles(1, ",\"role\":{\"cluster_permissions\":[\"a\"]}")).when(configurationRepository).getConfiguration(any(CType.class));
+        doReturn(internalUsers(1, ",\"alice\":{\"hash\":\"a\"}"))
+            .doReturn(internalUsers(2, ",\"alice\":{\"hash\":\"b\"}"))
+            .when(configurationRepository).getConfiguration(CType.INTERNALUSERS);
+
+        //a revoked password must not be accepted during the invalidation spread
+        TransportConfigUpdateAction.reloadAndInvalidate(EnumSet.allOf(CType.class), configurationRepository, backendRegistry);
+
+        verify(configurationRepository).reloadConfiguration(EnumSet.allOf(CType.class));
+        verify(backendRegistry).invalidateCacheNow();
+        verifyNoMoreInteractions(backendRegistry);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.compliance;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.compliance.ReadFieldsExtractor;
+import com.amazon.opendistroforelasticsearch.security.support.WildcardMatcher;
+import com.github.wnameless.json.flattener.JsonFlattener;
+import com.google.common.collect.ImmutableSet;
+
+public class ReadFieldsExtractorTest {
+
+    private static final String SOURCE = "{\"name\":\"john\",\"age\":42,\"salary\":1.50,\"active\":true,\"manager\":null,"
+            + "\"address\":{\"street\":\"main\",\"zip\":12345,\"geo\":{\"lat\":1.5,\"lon\":-2}},"
+            + "\"tags\":[\"a\",\"b\"],\"jobs\":[{\"title\":\"dev\",\"years\":[2019,2020]},{\"title\":\"ops\"}],"
+            + "\"empty\":{},\"none\":[]}";
+
+    private static Map<String, String> extract(ReadFieldsExtractor extractor, String source) throws Exception {
+        final Map<String, String> fields = new TreeMap<>();
+        extractor.extract(source.getBytes(StandardCharsets.UTF_8), (k, v) -> fields.put(k, String.valueOf(v)));
+        return fields;
+    }
+
+    private static Map<String, String> flatten(WildcardMatcher matcher, String source) {
+        final Map<String, String> fields = new TreeMap<>();
+        new JsonFlattener(source).flattenAsMap().forEach((k, v) -> {
+            if (matcher.test(k)) {
+                fields.put(k, String.valueOf(v));
+            }
+        });
+        return fields;
+    }
+
+    @Test
+    public void testSameAsFlattened() throws Exception {
+        for (ReadFieldsExtractor extractor : new ReadFieldsExtractor[] {
+                new ReadFieldsExtractor(ImmutableSet.of("*")),
+                new ReadFieldsExtractor(ImmutableSet.of("name", "address.*")),
+                new ReadFieldsExtractor(ImmutableSet.of("jobs[?].title", "tags*", "empty", "none")),
+                new ReadFieldsExtractor(ImmutableSet.of("/a.*/", "salary")) }) {
+            final Map<String, String> fields = extract(extractor, SOURCE);
+            Assert.assertFalse(fields.isEmpty());
+            Assert.assertEquals(flatten(extractor.getMatcher(), SOURCE), fields);
+        }
+    }
+
+    @Test
+    public void testWatchedOnly() throws Exception {
+        final Map<String, String> fields = extract(new ReadFieldsExtractor(ImmutableSet.of("address.geo.l*", "jobs[0].years[1]")), SOURCE);
+        Assert.assertEquals(3, fields.size());
+        Assert.assertEquals("1.5", fields.get("address.geo.lat"));
+        Assert.assertEquals("-2", fields.get("address.geo.lon"));
+        Assert.assertEquals("2020", fields.get("jobs[0].years[1]"));
+
+        Assert.assertTrue(extract(new ReadFieldsExtractor(ImmutableSet.of("address.country")), SOURCE).isEmpty());
+        Assert.assertTrue(extract(new ReadFieldsExtractor(ImmutableSet.of()), SOURCE).isEmpty());
+    }
+
+    @Test
+    public void testDottedFieldNames() throws Exception {
+        final Map<String, String> fields = extract(new ReadFieldsExtractor(ImmutableSet.of("address.street")),
+                "{\"address.street\":\"main\",\"address\":{\"street\":\"side\"}}");
+        Assert.assertEquals(1, fields.size());
+        Assert.assertTrue(fields.containsKey("address.street"));
+    }
+
+    @Test
+    public void testTooComplexForAutomaton() throws Exception {
+        //a wildcard followed by a fixed number of any characters has exponentially many states
+        final StringBuilder pattern = new StringBuilder("*a");
+        for (int i = 0; i < 20; i++) {
+            pattern.append('?');
+        }
+        final ImmutableSet<String> fields = ImmutableSet.of(pattern.toString(), "name", "address.geo.*");
+        final ReadFieldsExtractor extractor = new ReadFieldsExtractor(fields);
+        final String source = "{\"name\":\"john\",\"address\":{\"geo\":{\"lat\":1.5}},\"xa12345678901234567890\":1,\"other\":2}";
+        Assert.assertEquals(flatten(WildcardMatcher.from(fields), source), extract(extractor, source));
+        Assert.assertEquals(3, extract(extractor, source).size());
+    }
+}
@@ -24,9 +24,11 @@ import com.fasterxml.jackson.databind.InjectableValues;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.junit.Before;
@@ -43,6 +45,7 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class AuditConfigSerializeTest {
 
@@ -263,6 +266,27 @@ public class AuditConfigSerializeTest {
         assertTrue(compareJson(Strings.toString(jsonBuilder), json));
     }
 
+    @Test
+    public void testAggregation() throws IOException {
+        // arrange
+        final String json = "{" +
+                "\"aggregation\":{" +
+                    "\"categories\":{\"granted_privileges\":\"10s\",\"COMPLIANCE_DOC_READ\":\"1m\"}," +
+                    "\"max_keys\":500}" +
+                "}";
+
+        // act
+        final AuditConfig auditConfig = objectMapper.readValue(json, AuditConfig.class);
+        final AuditConfig.Aggregation aggregation = auditConfig.getAggregation();
+
+        // assert
+        assertEquals(ImmutableMap.of(GRANTED_PRIVILEGES, TimeValue.timeValueSeconds(10), AuditCategory.COMPLIANCE_DOC_READ, TimeValue.timeValueMinutes(1)), aggregation.getWindows());
+        assertEquals(500, aggregation.getMaxKeys());
+        assertEquals(aggregation, objectMapper.readValue(objectMapper.writeValueAsString(auditConfig), AuditConfig.class).getAggregation());
+        assertNull(objectMapper.readValue("{}", AuditConfig.class).getAggregation());
+        assertFalse(objectMapper.writeValueAsString(new AuditConfig(true, null, null)).contains("aggregation"));
+    }
+
     @Test
     public void testNullDeSerialize() throws IOException {
         // arrange
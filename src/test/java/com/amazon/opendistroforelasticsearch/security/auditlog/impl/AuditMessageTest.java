@@ -21,15 +21,21 @@ import com.google.common.collect.ImmutableMap;
 import org.elasticsearch.cluster.ClusterName;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -101,4 +107,43 @@ public class AuditMessageTest {
         message.addTransportHeaders(TEST_TRANSPORT_HEADERS, false);
         assertEquals(message.getAsMap().get(AuditMessage.TRANSPORT_REQUEST_HEADERS), TEST_TRANSPORT_HEADERS);
     }
+
+    @Test
+    public void testEncodedOnceUntilChanged() {
+        final BytesReference json = message.toBytes(XContentType.JSON);
+        assertSame(json, message.toBytes(XContentType.JSON));
+        assertEquals(json.utf8ToString(), message.toJson());
+
+        message.addId("1");
+        assertNotSame(json, message.toBytes(XContentType.JSON));
+        assertEquals("1", XContentHelper.convertToMap(message.toBytes(XContentType.JSON), false, XContentType.JSON).v2().get(AuditMessage.ID));
+    }
+
+    @Test
+    public void testEncodingsHaveFixedLayout() {
+        message.addTransportHeaders(TEST_TRANSPORT_HEADERS, true);
+        message.addIndices(new String[] { "a", "b" });
+        message.addId("1");
+
+        final Map<String, Object> json = XContentHelper.convertToMap(message.toBytes(XContentType.JSON), true, XContentType.JSON).v2();
+        for (final XContentType type : new XContentType[] { XContentType.SMILE, XContentType.CBOR }) {
+            assertEquals(json, XContentHelper.convertToMap(message.toBytes(type), true, type).v2());
+        }
+
+        final List<String> keys = new ArrayList<>(json.keySet());
+        assertEquals(AuditMessage.FORMAT_VERSION, keys.get(0));
+        assertEquals(AuditMessage.CATEGORY, keys.get(1));
+        assertEquals(new ArrayList<>(message.getAsMap().keySet()), keys);
+    }
+
+    @Test
+    public void testFromMap() {
+        message.addRestHeaders(TEST_REST_HEADERS, true);
+        message.addId("1");
+
+        final AuditMessage copy = AuditMessage.fromMap(XContentHelper.convertToMap(message.toBytes(XContentType.JSON), false, XContentType.JSON).v2());
+        assertEquals(message.getCategory(), copy.getCategory());
+        assertEquals(message.toJson(), copy.toJson());
+        assertEquals(message.toText(), copy.toText());
+    }
 }
@@ -34,6 +34,7 @@ import org.junit.Test;
 
 import com.amazon.opendistroforelasticsearch.security.auditlog.helper.RetrySink;
 import com.amazon.opendistroforelasticsearch.security.auditlog.integration.TestAuditlogImpl;
+import com.amazon.opendistroforelasticsearch.security.auditlog.sink.AuditLogSink;
 import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
 import com.amazon.opendistroforelasticsearch.security.test.AbstractSecurityUnitTest;
 
@@ -114,6 +115,12 @@ public class AuditlogTest {
         al.logSSLException(null, new Exception("test retry"));
         Assert.assertNotNull(RetrySink.getMsg());
         Assert.assertTrue(RetrySink.getMsg().toJson().contains("test retry"));
+
+        final AuditLogSink sink = ((AuditLogImpl) al).getMessageRouter().getSinks().stream()
+                .filter(s -> s instanceof RetrySink).findFirst().get();
+        Assert.assertEquals(5, sink.getRetries());
+        Assert.assertEquals(6, sink.getStoreLatency().getCount());
+        Assert.assertEquals(0, sink.getFallbacks());
     }
 
     @Test
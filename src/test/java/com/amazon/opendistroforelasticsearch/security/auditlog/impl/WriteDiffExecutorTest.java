@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WriteDiffExecutorTest {
+
+    @Test
+    public void testQueueFull() throws Exception {
+        final WriteDiffExecutor executor = new WriteDiffExecutor(1, 1);
+        final List<Thread> threads = new CopyOnWriteArrayList<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            threads.add(Thread.currentThread());
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        executor.execute(() -> threads.add(Thread.currentThread()));
+        Assert.assertEquals(1, executor.getQueueDepth());
+
+        //no room left, done on this thread
+        executor.execute(() -> threads.add(Thread.currentThread()));
+        Assert.assertEquals(Thread.currentThread(), threads.get(1));
+        Assert.assertEquals(1, executor.getInline());
+
+        release.countDown();
+        executor.close();
+
+        Assert.assertEquals(3, threads.size());
+        Assert.assertNotEquals(Thread.currentThread(), threads.get(0));
+        Assert.assertEquals(threads.get(0), threads.get(2));
+        Assert.assertEquals(2, executor.getQueued());
+        Assert.assertEquals(3, executor.getCompleted());
+        Assert.assertEquals(0, executor.getQueueDepth());
+    }
+
+    @Test
+    public void testFailure() {
+        final WriteDiffExecutor executor = new WriteDiffExecutor(0, 1);
+        executor.execute(() -> {
+            throw new IllegalStateException("test");
+        });
+        Assert.assertEquals(1, executor.getInline());
+        Assert.assertEquals(1, executor.getFailed());
+        Assert.assertEquals(0, executor.getCompleted());
+        executor.close();
+    }
+}
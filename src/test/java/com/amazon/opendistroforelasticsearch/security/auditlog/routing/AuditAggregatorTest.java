@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.routing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.auditlog.config.AuditConfig;
+import com.amazon.opendistroforelasticsearch.security.auditlog.helper.MockAuditMessageFactory;
+import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditCategory;
+import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditMessage;
+import com.google.common.collect.ImmutableMap;
+
+public class AuditAggregatorTest {
+
+    private final List<AuditMessage> emitted = new CopyOnWriteArrayList<>();
+
+    private AuditAggregator aggregator(TimeValue window, int maxKeys) {
+        return new AuditAggregator(new AuditConfig.Aggregation(ImmutableMap.of(AuditCategory.GRANTED_PRIVILEGES, window), maxKeys), emitted::add);
+    }
+
+    private static AuditMessage message(String user, String index) {
+        final AuditMessage msg = MockAuditMessageFactory.validAuditMessage(AuditCategory.GRANTED_PRIVILEGES);
+        msg.addEffectiveUser(user);
+        msg.addPrivilege("indices:data/read/search");
+        msg.addIndices(new String[] { index });
+        return msg;
+    }
+
+    @Test
+    public void testRollup() throws Exception {
+        try (AuditAggregator aggregator = aggregator(TimeValue.timeValueMillis(200), 100)) {
+            final AuditMessage first = message("user1", "index1");
+            Assert.assertTrue(aggregator.aggregate(first));
+            for (int i = 0; i < 9; i++) {
+                Assert.assertTrue(aggregator.aggregate(message("user1", "index1")));
+            }
+            Assert.assertTrue(aggregator.aggregate(message("user2", "index1")));
+            Assert.assertTrue(aggregator.aggregate(message("user1", "index2")));
+            //not an aggregated category
+            Assert.assertFalse(aggregator.aggregate(MockAuditMessageFactory.validAuditMessage(AuditCategory.MISSING_PRIVILEGES)));
+
+            Assert.assertEquals(3, aggregator.getPending());
+            Assert.assertTrue(emitted.isEmpty());
+
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (emitted.size() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(3, emitted.size());
+            Assert.assertEquals(0, aggregator.getPending());
+            Assert.assertEquals(12, aggregator.getAggregated());
+            Assert.assertEquals(3, aggregator.getEmitted());
+
+            final Map<String, Object> rollup = emitted.stream().filter(msg -> msg == first).findFirst().get().getAsMap();
+            Assert.assertEquals(10, rollup.get(AuditMessage.AGGREGATED_COUNT));
+            Assert.assertEquals(first.getTimestamp(), rollup.get(AuditMessage.AGGREGATED_FIRST_TIMESTAMP));
+            Assert.assertNotNull(rollup.get(AuditMessage.AGGREGATED_LAST_TIMESTAMP));
+        }
+    }
+
+    @Test
+    public void testMaxKeys() {
+        final AuditAggregator aggregator = aggregator(TimeValue.timeValueHours(1), 2);
+        Assert.assertTrue(aggregator.aggregate(message("user1", "index1")));
+        Assert.assertTrue(aggregator.aggregate(message("user2", "index1")));
+        Assert.assertFalse(aggregator.aggregate(message("user3", "index1")));
+        //pending roll-ups still take more messages
+        Assert.assertTrue(aggregator.aggregate(message("user1", "index1")));
+        Assert.assertEquals(1, aggregator.getOverflow());
+
+        aggregator.close();
+        Assert.assertEquals(2, emitted.size());
+        Assert.assertFalse(aggregator.aggregate(message("user1", "index1")));
+    }
+}
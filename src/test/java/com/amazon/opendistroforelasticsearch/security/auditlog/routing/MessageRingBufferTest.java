@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.routing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageRingBufferTest {
+
+    @Test
+    public void testFifoAndCapacity() {
+        final MessageRingBuffer<Integer> buffer = new MessageRingBuffer<>(3);
+        Assert.assertEquals(4, buffer.capacity());
+
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++) {
+                Assert.assertTrue(buffer.offer(i));
+            }
+            Assert.assertFalse(buffer.offer(4));
+            Assert.assertEquals(4, buffer.size());
+
+            for (int i = 0; i < 4; i++) {
+                Assert.assertEquals(Integer.valueOf(i), buffer.poll());
+            }
+            Assert.assertNull(buffer.poll());
+            Assert.assertEquals(0, buffer.size());
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final MessageRingBuffer<Long> buffer = new MessageRingBuffer<>(64);
+        final int producers = 4;
+        final long perProducer = 100_000;
+        final Thread[] threads = new Thread[producers];
+
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                for (long i = 1; i <= perProducer; i++) {
+                    while (!buffer.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        final AtomicLong sum = new AtomicLong();
+        long received = 0;
+        while (received < producers * perProducer) {
+            final Long value = buffer.poll();
+            if (value != null) {
+                sum.addAndGet(value);
+                received++;
+            }
+        }
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(producers * perProducer * (perProducer + 1) / 2, sum.get());
+        Assert.assertNull(buffer.poll());
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.auditlog.config.ThreadPoolConfig;
+import com.amazon.opendistroforelasticsearch.security.auditlog.helper.LoggingSink;
+import com.amazon.opendistroforelasticsearch.security.auditlog.helper.MockAuditMessageFactory;
+import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditMessage;
+import com.amazon.opendistroforelasticsearch.security.auditlog.sink.AuditLogSink;
+import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
+
+public class SinkQueueTest {
+
+    private static class BlockedSink extends AuditLogSink {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final List<AuditMessage> messages = new CopyOnWriteArrayList<>();
+
+        BlockedSink(AuditLogSink fallbackSink) {
+            super("blocked", Settings.EMPTY, null, fallbackSink);
+        }
+
+        @Override
+        protected boolean doStore(AuditMessage msg) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(msg);
+            return true;
+        }
+    }
+
+    private static List<AuditMessage> messages(int count) {
+        final List<AuditMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(MockAuditMessageFactory.validAuditMessage());
+        }
+        return messages;
+    }
+
+    //one message held by the drainer, then the queue of two is filled
+    private static SinkQueue fill(BlockedSink sink, OverflowPolicy policy, List<AuditMessage> messages) throws Exception {
+        final SinkQueue queue = new SinkQueue(sink, 2, 1, policy);
+        queue.submit(messages.get(0));
+        Assert.assertTrue(sink.started.await(10, TimeUnit.SECONDS));
+        queue.submit(messages.get(1));
+        queue.submit(messages.get(2));
+        Assert.assertEquals(2, queue.getDepth());
+        return queue;
+    }
+
+    @Test
+    public void testDropNewest() throws Exception {
+        final List<AuditMessage> messages = messages(4);
+        final BlockedSink sink = new BlockedSink(null);
+        final SinkQueue queue = fill(sink, OverflowPolicy.DROP_NEWEST, messages);
+        queue.submit(messages.get(3));
+        Assert.assertEquals(1, queue.getDropped());
+
+        sink.release.countDown();
+        queue.close(10, TimeUnit.SECONDS);
+        Assert.assertEquals(messages.subList(0, 3), sink.messages);
+        Assert.assertEquals(3, queue.getEnqueued());
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        final List<AuditMessage> messages = messages(4);
+        final BlockedSink sink = new BlockedSink(null);
+        final SinkQueue queue = fill(sink, OverflowPolicy.DROP_OLDEST, messages);
+        queue.submit(messages.get(3));
+        Assert.assertEquals(1, queue.getDropped());
+
+        sink.release.countDown();
+        queue.close(10, TimeUnit.SECONDS);
+        Assert.assertEquals(3, sink.messages.size());
+        Assert.assertSame(messages.get(0), sink.messages.get(0));
+        Assert.assertSame(messages.get(2), sink.messages.get(1));
+        Assert.assertSame(messages.get(3), sink.messages.get(2));
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        final List<AuditMessage> messages = messages(4);
+        final LoggingSink fallback = new LoggingSink("fallback", Settings.EMPTY, null, null);
+        final BlockedSink sink = new BlockedSink(fallback);
+        final SinkQueue queue = fill(sink, OverflowPolicy.FALLBACK, messages);
+        queue.submit(messages.get(3));
+        Assert.assertEquals(1, queue.getFallback());
+        Assert.assertSame(messages.get(3), fallback.messages.get(0));
+
+        sink.release.countDown();
+        queue.close(10, TimeUnit.SECONDS);
+        Assert.assertEquals(messages.subList(0, 3), sink.messages);
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        final List<AuditMessage> messages = messages(4);
+        final BlockedSink sink = new BlockedSink(null);
+        final SinkQueue queue = fill(sink, OverflowPolicy.BLOCK, messages);
+
+        final Thread producer = new Thread(() -> queue.submit(messages.get(3)));
+        producer.start();
+        producer.join(200);
+        Assert.assertTrue(producer.isAlive());
+
+        sink.release.countDown();
+        producer.join(10000);
+        Assert.assertFalse(producer.isAlive());
+        queue.close(10, TimeUnit.SECONDS);
+        Assert.assertEquals(messages, sink.messages);
+        Assert.assertEquals(0, queue.getDropped());
+    }
+
+    private static List<Thread> drainerThreads(String sinkName) {
+        final List<Thread> threads = new ArrayList<>();
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            final String name = thread.getName();
+            if (name.contains("opendistro_security_audit_" + sinkName + "[") || name.contains("opendistro_security_audit_" + sinkName + "]")) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    @Test
+    public void testIdleDrainersPark() throws Exception {
+        final List<AuditMessage> messages = messages(3);
+        final CountDownLatch stored = new CountDownLatch(messages.size());
+        final AuditLogSink sink = new AuditLogSink("idle", Settings.EMPTY, null, null) {
+            @Override
+            protected boolean doStore(AuditMessage msg) {
+                stored.countDown();
+                return true;
+            }
+        };
+        final SinkQueue queue = new SinkQueue(sink, 10, 2, OverflowPolicy.BLOCK);
+
+        //idle drainers wait without a timeout until a message arrives
+        final List<Thread> drainers = drainerThreads("idle");
+        Assert.assertEquals(2, drainers.size());
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (final Thread drainer : drainers) {
+            while (drainer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(Thread.State.WAITING, drainer.getState());
+        }
+
+        for (final AuditMessage message : messages) {
+            queue.submit(message);
+        }
+        Assert.assertTrue(stored.await(10, TimeUnit.SECONDS));
+
+        queue.close(10, TimeUnit.SECONDS);
+        for (final Thread drainer : drainers) {
+            Assert.assertFalse(drainer.isAlive());
+        }
+    }
+
+    private static AuditLogSink configuredSink(String name, Settings settings) {
+        return new AuditLogSink(name, settings, "sink", null) {
+            @Override
+            protected boolean doStore(AuditMessage msg) {
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void testDrainersPerSink() throws Exception {
+        final AuditLogSink defaultSink = configuredSink("default", Settings.EMPTY);
+        final AuditLogSink configuredSink = configuredSink("configured",
+                Settings.builder().put("sink." + ConfigConstants.OPENDISTRO_SECURITY_AUDIT_QUEUE_DRAINERS, 3).build());
+
+        AsyncStoragePool pool = new AsyncStoragePool(new ThreadPoolConfig(10, 100));
+        pool.submit(MockAuditMessageFactory.validAuditMessage(), defaultSink);
+        pool.submit(MockAuditMessageFactory.validAuditMessage(), configuredSink);
+        for (final SinkQueue queue : pool.getQueues()) {
+            Assert.assertEquals(queue.getSinkName().equals("default") ? ConfigConstants.OPENDISTRO_SECURITY_AUDIT_QUEUE_DRAINERS_DEFAULT : 3,
+                    queue.getDrainers());
+        }
+        pool.close();
+
+        pool = new AsyncStoragePool(new ThreadPoolConfig(1, 100));
+        pool.submit(MockAuditMessageFactory.validAuditMessage(), defaultSink);
+        Assert.assertEquals(1, pool.getQueues().iterator().next().getDrainers());
+        pool.close();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.sink;
+
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazon.opendistroforelasticsearch.security.auditlog.helper.MockAuditMessageFactory;
+import com.amazon.opendistroforelasticsearch.security.auditlog.impl.AuditMessage;
+
+public class AuditSpoolTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<AuditMessage> stored = new CopyOnWriteArrayList<>();
+
+    private AuditSpool open(int segmentSize, long maxSize, Predicate<AuditMessage> replayer) throws Exception {
+        return new AuditSpool("test", folder.getRoot().toPath(), segmentSize, maxSize, TimeValue.timeValueMillis(1),
+                TimeValue.timeValueMillis(20), replayer);
+    }
+
+    private static AuditMessage message(int id) {
+        final AuditMessage msg = MockAuditMessageFactory.validAuditMessage();
+        msg.addId(String.valueOf(id));
+        return msg;
+    }
+
+    private void awaitStored(int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (stored.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, stored.size());
+    }
+
+    private void assertStoredInOrder(int count) {
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(String.valueOf(i), stored.get(i).getAsMap().get(AuditMessage.ID));
+        }
+    }
+
+    @Test
+    public void testReplayWithBackoff() throws Exception {
+        final AtomicInteger failures = new AtomicInteger(5);
+        try (AuditSpool spool = open(4096, 1024 * 1024, msg -> failures.decrementAndGet() < 0 && stored.add(msg))) {
+            final AuditMessage first = message(0);
+            for (int i = 0; i < 50; i++) {
+                Assert.assertTrue(spool.append(i == 0 ? first : message(i)));
+            }
+            Assert.assertEquals(50, spool.getPendingRecords());
+            Assert.assertTrue(spool.getSegmentCount() > 1);
+
+            spool.start();
+            awaitStored(50);
+            assertStoredInOrder(50);
+            Assert.assertEquals(first.toJson(), stored.get(0).toJson());
+            Assert.assertEquals(first.getCategory(), stored.get(0).getCategory());
+
+            Assert.assertEquals(0, spool.getPendingRecords());
+            Assert.assertEquals(50, spool.getSpooled());
+            Assert.assertEquals(50, spool.getReplayed());
+            Assert.assertEquals(0, spool.getBackoffMillis());
+            Assert.assertEquals(1, spool.getSegmentCount());
+        }
+    }
+
+    @Test
+    public void testRecoverAfterRestart() throws Exception {
+        final AtomicInteger replays = new AtomicInteger();
+        try (AuditSpool spool = open(4096, 1024 * 1024, msg -> replays.incrementAndGet() <= 3 && stored.add(msg))) {
+            for (int i = 0; i < 10; i++) {
+                spool.append(message(i));
+            }
+            spool.start();
+            awaitStored(3);
+        }
+
+        try (AuditSpool spool = open(4096, 1024 * 1024, stored::add)) {
+            Assert.assertEquals(7, spool.getPendingRecords());
+            spool.start();
+            awaitStored(10);
+            assertStoredInOrder(10);
+        }
+    }
+
+    @Test
+    public void testCorruptedRecord() throws Exception {
+        try (AuditSpool spool = open(4096, 1024 * 1024, stored::add)) {
+            spool.append(message(0));
+            spool.append(message(1));
+            spool.append(message(2));
+        }
+
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.getRoot().toPath())) {
+            stream.forEach(files::add);
+        }
+        Assert.assertEquals(1, files.size());
+
+        //flip a byte in the payload of the second record
+        try (RandomAccessFile file = new RandomAccessFile(files.get(0).toFile(), "rw")) {
+            final int firstLength = file.readInt();
+            final long position = 8 + firstLength + 8 + 10;
+            file.seek(position);
+            final int b = file.read();
+            file.seek(position);
+            file.write(b ^ 0xFF);
+        }
+
+        try (AuditSpool spool = open(4096, 1024 * 1024, stored::add)) {
+            Assert.assertEquals(1, spool.getPendingRecords());
+            Assert.assertEquals(1, spool.getCorrupted());
+
+            //appends continue after the last intact record
+            spool.append(message(1));
+            spool.start();
+            awaitStored(2);
+            assertStoredInOrder(2);
+        }
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        try (AuditSpool spool = open(4096, 8192, msg -> false)) {
+            int appended = 0;
+            while (spool.append(message(appended))) {
+                appended++;
+            }
+            Assert.assertTrue(appended > 0);
+            Assert.assertEquals(appended, spool.getPendingRecords());
+            Assert.assertEquals(2, spool.getSegmentCount());
+            Assert.assertEquals(8192, spool.getSizeInBytes());
+            Assert.assertEquals(1, spool.getRejected());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auditlog.sink;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageBatcherTest {
+
+    private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testFlushByCountAndSize() throws Exception {
+        try (MessageBatcher<Integer> batcher = new MessageBatcher<>("test", 3, new ByteSizeValue(100, ByteSizeUnit.BYTES),
+                TimeValue.timeValueHours(1), batches::add)) {
+            for (int i = 0; i < 7; i++) {
+                Assert.assertTrue(batcher.add(i, 1));
+            }
+            awaitBatches(2);
+            Assert.assertEquals(Arrays.asList(Arrays.asList(0, 1, 2), Arrays.asList(3, 4, 5)), batches);
+
+            Assert.assertTrue(batcher.add(7, 100));
+            awaitBatches(3);
+            Assert.assertEquals(Arrays.asList(6, 7), batches.get(2));
+
+            batcher.add(8, 1);
+            batcher.flush();
+            Assert.assertEquals(Arrays.asList(8), batches.get(3));
+        }
+    }
+
+    @Test
+    public void testFlushByInterval() throws Exception {
+        try (MessageBatcher<Integer> batcher = new MessageBatcher<>("test", 100, new ByteSizeValue(1, ByteSizeUnit.MB),
+                TimeValue.timeValueMillis(10), batches::add)) {
+            batcher.add(1, 1);
+            awaitBatches(1);
+            Assert.assertEquals(Arrays.asList(Arrays.asList(1)), batches);
+        }
+    }
+
+    @Test
+    public void testPendingLimit() {
+        try (MessageBatcher<Integer> batcher = new MessageBatcher<>("test", 2, new ByteSizeValue(1, ByteSizeUnit.MB),
+                TimeValue.timeValueHours(1), batches::add)) {
+            for (int i = 0; i < 20; i++) {
+                Assert.assertTrue(batcher.add(i, 1));
+            }
+            Assert.assertFalse(batcher.add(20, 1));
+            Assert.assertEquals(20, batcher.getPending());
+
+            batcher.done(2);
+            Assert.assertTrue(batcher.add(20, 1));
+        }
+    }
+
+    @Test
+    public void testFailingFlusherReleasesMessages() throws Exception {
+        try (MessageBatcher<Integer> batcher = new MessageBatcher<>("test", 2, new ByteSizeValue(1, ByteSizeUnit.MB),
+                TimeValue.timeValueHours(1), batch -> {
+                    throw new IllegalStateException("test");
+                })) {
+            batcher.add(1, 1);
+            batcher.add(2, 1);
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (batcher.getPending() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(0, batcher.getPending());
+        }
+    }
+
+    @Test
+    public void testFullBatchesAreSentOnFlushThread() throws Exception {
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        try (MessageBatcher<Integer> batcher = new MessageBatcher<>("test", 2, new ByteSizeValue(1, ByteSizeUnit.MB),
+                TimeValue.timeValueHours(1), batch -> {
+                    threads.add(Thread.currentThread().getName());
+                    batches.add(batch);
+                })) {
+            batcher.add(1, 1);
+            batcher.add(2, 1);
+            awaitBatches(1);
+            Assert.assertNotEquals(Thread.currentThread().getName(), threads.get(0));
+            Assert.assertTrue(threads.get(0), threads.get(0).contains("opendistro_security_audit_test_flush"));
+        }
+    }
+
+    @Test
+    public void testCloseWaitsForMessagesInFlight() {
+        final AtomicReference<MessageBatcher<Integer>> ref = new AtomicReference<>();
+        final MessageBatcher<Integer> batcher = new MessageBatcher<>("test", 10, new ByteSizeValue(1, ByteSizeUnit.MB),
+                TimeValue.timeValueHours(1), batch -> new Thread(() -> {
+                    //sent asynchronously
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    batches.add(batch);
+                    ref.get().done(batch.size());
+                }).start());
+        ref.set(batcher);
+        batcher.add(1, 1);
+        batcher.add(2, 1);
+        batcher.close();
+        Assert.assertEquals(Arrays.asList(Arrays.asList(1, 2)), batches);
+        Assert.assertEquals(0, batcher.getPending());
+    }
+
+    @Test
+    public void testAddAfterClose() {
+        final MessageBatcher<Integer> batcher = new MessageBatcher<>("test", 2, new ByteSizeValue(1, ByteSizeUnit.MB),
+                TimeValue.timeValueHours(1), batches::add);
+        batcher.close();
+        Assert.assertFalse(batcher.add(1, 1));
+        Assert.assertEquals(0, batcher.getPending());
+        batcher.flush();
+        Assert.assertTrue(batches.isEmpty());
+    }
+
+    private void awaitBatches(final int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (batches.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
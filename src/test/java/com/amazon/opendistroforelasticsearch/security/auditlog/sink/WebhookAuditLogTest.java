@@ -15,20 +15,29 @@
 
 package com.amazon.opendistroforelasticsearch.security.auditlog.sink;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManagerFactory;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
 import org.apache.http.entity.ContentType;
 import org.apache.http.impl.bootstrap.HttpServer;
 import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.util.EntityUtils;
 import org.elasticsearch.common.settings.Settings;
 import org.junit.After;
 import org.junit.Assert;
@@ -693,6 +702,150 @@ public class WebhookAuditLogTest {
         server.shutdown(3l, TimeUnit.SECONDS);
 	}
 
+	@Test
+	public void batchHttpTest() throws Exception {
+		final BlockingQueue<HttpRequest> requests = new LinkedBlockingQueue<>();
+		final BlockingQueue<byte[]> bodies = new LinkedBlockingQueue<>();
+
+		server = ServerBootstrap.bootstrap()
+				.setListenerPort(8080)
+				.setServerInfo("Test/1.1")
+				.registerHandler("*", (request, response, context) -> {
+					requests.add(request);
+					bodies.add(EntityUtils.toByteArray(((HttpEntityEnclosingRequest) request).getEntity()));
+				})
+				.create();
+
+		server.start();
+
+		// NDJSON, flushed once three messages are batched
+		Settings settings = Settings.builder()
+				.put("opendistro_security.audit.config.webhook.url", "http://localhost:8080/endpoint")
+				.put("opendistro_security.audit.config.webhook.format", "json")
+				.put("opendistro_security.audit.config.webhook.batch.enabled", true)
+				.put("opendistro_security.audit.config.webhook.batch.actions", 3)
+				.put("opendistro_security.audit.config.webhook.batch.flush_interval", "1h")
+				.put("path.home", ".")
+				.build();
+
+		LoggingSink fallback = new LoggingSink("test", Settings.EMPTY, null, null);
+		WebhookSink auditlog = new WebhookSink("name", settings, ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT, null, fallback);
+		Assert.assertTrue(auditlog.isHandlingBackpressure());
+		AuditMessage msg = MockAuditMessageFactory.validAuditMessage();
+		for (int i = 0; i < 3; i++) {
+			auditlog.store(msg);
+		}
+
+		HttpRequest request = requests.poll(10, TimeUnit.SECONDS);
+		Assert.assertNotNull(request);
+		Assert.assertEquals("POST", request.getRequestLine().getMethod());
+		Assert.assertTrue(request.getFirstHeader("Content-Type").getValue().startsWith("application/x-ndjson"));
+		String[] lines = new String(bodies.poll(), StandardCharsets.UTF_8).split("\n");
+		Assert.assertEquals(3, lines.length);
+		for (String line : lines) {
+			Assert.assertEquals(msg.toJson(), line);
+		}
+		auditlog.close();
+		Assert.assertEquals(0, fallback.messages.size());
+		Assert.assertEquals(1, auditlog.getEndpointStats().getRequests());
+		Assert.assertEquals(3, auditlog.getEndpointStats().getMessages());
+		Assert.assertEquals("http://localhost:8080", auditlog.getEndpointStats().getEndpoint());
+
+		// gzipped JSON array, flushed on close
+		settings = Settings.builder()
+				.put(settings)
+				.put("opendistro_security.audit.config.webhook.batch.body", "json_array")
+				.put("opendistro_security.audit.config.webhook.batch.gzip", true)
+				.build();
+
+		auditlog = new WebhookSink("name", settings, ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT, null, fallback);
+		auditlog.store(msg);
+		auditlog.store(msg);
+		auditlog.close();
+
+		request = requests.poll(10, TimeUnit.SECONDS);
+		Assert.assertNotNull(request);
+		Assert.assertEquals("gzip", request.getFirstHeader("Content-Encoding").getValue());
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bodies.poll()))) {
+			Assert.assertEquals("[" + msg.toJson() + "," + msg.toJson() + "]", new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8));
+		}
+		Assert.assertEquals(0, fallback.messages.size());
+
+		server.shutdown(3l, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void batchSlowEndpointTest() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final BlockingQueue<HttpRequest> requests = new LinkedBlockingQueue<>();
+
+		server = ServerBootstrap.bootstrap()
+				.setListenerPort(8080)
+				.setServerInfo("Test/1.1")
+				.registerHandler("*", (request, response, context) -> {
+					requests.add(request);
+					try {
+						release.await(30, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					response.setStatusCode(500);
+				})
+				.create();
+
+		server.start();
+
+		// one message per batch, one request in flight
+		Settings settings = Settings.builder()
+				.put("opendistro_security.audit.config.webhook.url", "http://localhost:8080/endpoint")
+				.put("opendistro_security.audit.config.webhook.format", "json")
+				.put("opendistro_security.audit.config.webhook.batch.enabled", true)
+				.put("opendistro_security.audit.config.webhook.batch.actions", 1)
+				.put("opendistro_security.audit.config.webhook.batch.max_in_flight", 1)
+				.put("opendistro_security.audit.config.webhook.batch.flush_interval", "1h")
+				.put("path.home", ".")
+				.build();
+
+		LoggingSink fallback = new LoggingSink("test", Settings.EMPTY, null, null);
+		WebhookSink auditlog = new WebhookSink("name", settings, ConfigConstants.OPENDISTRO_SECURITY_AUDIT_CONFIG_DEFAULT, null, fallback);
+		AuditMessage msg = MockAuditMessageFactory.validAuditMessage();
+
+		auditlog.store(msg);
+		Assert.assertNotNull(requests.poll(10, TimeUnit.SECONDS));
+
+		// the endpoint is busy, the second batch waits for a slot on the flush thread, not on the caller
+		final long start = System.nanoTime();
+		auditlog.store(msg);
+		Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+		// gives up after the timeout and hands the message to the fallback
+		awaitFallback(fallback, 1);
+		Assert.assertEquals(1, fallback.messages.size());
+		Assert.assertEquals(1, auditlog.getPendingMessages());
+
+		// the endpoint fails the first request
+		release.countDown();
+		awaitFallback(fallback, 2);
+		Assert.assertEquals(2, fallback.messages.size());
+		Assert.assertEquals(0, auditlog.getPendingMessages());
+
+		// new messages are still accepted
+		auditlog.store(msg);
+		Assert.assertNotNull(requests.poll(10, TimeUnit.SECONDS));
+		awaitFallback(fallback, 3);
+		Assert.assertEquals(0, auditlog.getPendingMessages());
+
+		auditlog.close();
+		server.shutdown(3l, TimeUnit.SECONDS);
+	}
+
+	private static void awaitFallback(final LoggingSink fallback, final int count) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+		while (fallback.messages.size() < count && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
 	// for TLS support on our in-memory server
 	private SSLContext createSSLContext() throws Exception {
 			final TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auth;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.securityconf.impl.CType;
+import com.amazon.opendistroforelasticsearch.security.support.ConfigConstants;
+import com.amazon.opendistroforelasticsearch.security.user.AuthCredentials;
+import com.amazon.opendistroforelasticsearch.security.user.User;
+import com.google.common.cache.Cache;
+
+public class BackendRegistryCacheInvalidationTest {
+
+    private ThreadPool threadPool;
+    private Deque<Runnable> scheduled;
+
+    @Before
+    public void setup() {
+        threadPool = mock(ThreadPool.class);
+        scheduled = new ArrayDeque<>();
+        when(threadPool.schedule(any(Runnable.class), any(TimeValue.class), anyString())).thenAnswer(invocation -> {
+            scheduled.add(invocation.getArgument(0));
+            return null;
+        });
+    }
+
+    private BackendRegistry backendRegistry(final TimeValue spread) {
+        final BackendRegistry backendRegistry = new BackendRegistry(Settings.builder()
+                .put(ConfigConstants.OPENDISTRO_SECURITY_CACHE_INVALIDATION_SPREAD, spread.getStringRep()).build(), null, null, null, threadPool);
+        for (final String username : new String[] { "alice", "bob", "carol" }) {
+            put(backendRegistry, username);
+        }
+        return backendRegistry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void put(final BackendRegistry backendRegistry, final String username) {
+        final List<Cache<?, ?>> caches = backendRegistry.allCaches();
+        final AuthCredentials credentials = new AuthCredentials(username, "secret".getBytes(StandardCharsets.UTF_8));
+        final User user = new User(username);
+        //userCache, userCacheTransport, authenticatedUserCacheTransport, restImpersonationCache,
+        //restRoleCache, transportRoleCache, transportImpersonationCache
+        final Object[] keys = { credentials, username, credentials, username, user, user, username };
+        Assert.assertEquals(keys.length, caches.size());
+        for (int i = 0; i < keys.length; i++) {
+            ((Cache<Object, Object>) caches.get(i)).put(keys[i], username);
+        }
+    }
+
+    private static void assertCached(final BackendRegistry backendRegistry, final String... usernames) {
+        for (final Cache<?, ?> cache : backendRegistry.allCaches()) {
+            Assert.assertEquals(usernames.length, cache.size());
+            for (final String username : usernames) {
+                Assert.assertTrue(cache.asMap().containsValue(username));
+            }
+        }
+    }
+
+    @Test
+    public void testInternalUsersChanged() {
+        final BackendRegistry backendRegistry = backendRegistry(TimeValue.ZERO);
+        backendRegistry.invalidateCache(EnumSet.of(CType.INTERNALUSERS), Collections.singleton("bob"));
+        assertCached(backendRegistry, "alice", "carol");
+    }
+
+    @Test
+    public void testRolesAndTenantsChanged() {
+        final BackendRegistry backendRegistry = backendRegistry(TimeValue.ZERO);
+        backendRegistry.invalidateCache(EnumSet.of(CType.ROLES, CType.ROLESMAPPING, CType.TENANTS, CType.ACTIONGROUPS),
+                Collections.emptySet());
+        assertCached(backendRegistry, "alice", "bob", "carol");
+    }
+
+    @Test
+    public void testConfigChanged() {
+        final BackendRegistry backendRegistry = backendRegistry(TimeValue.ZERO);
+        backendRegistry.invalidateCache(EnumSet.of(CType.CONFIG, CType.INTERNALUSERS), Collections.singleton("bob"));
+        assertCached(backendRegistry);
+    }
+
+    @Test
+    public void testConfigChangedIsNotSpread() {
+        final BackendRegistry backendRegistry = backendRegistry(TimeValue.timeValueMinutes(1));
+        backendRegistry.invalidateCache(EnumSet.of(CType.CONFIG), Collections.emptySet());
+        assertCached(backendRegistry);
+        Assert.assertTrue(scheduled.isEmpty());
+    }
+
+    @Test
+    public void testFlushIsSpread() {
+        final BackendRegistry backendRegistry = backendRegistry(TimeValue.timeValueMinutes(1));
+        backendRegistry.invalidateCache();
+        Assert.assertFalse(scheduled.isEmpty());
+
+        //a config change in the meantime drops the rest at once and stops the spread invalidation
+        backendRegistry.invalidateCache(EnumSet.of(CType.CONFIG), Collections.emptySet());
+        assertCached(backendRegistry);
+        put(backendRegistry, "alice");
+        while (!scheduled.isEmpty()) {
+            scheduled.poll().run();
+        }
+        assertCached(backendRegistry, "alice");
+    }
+}
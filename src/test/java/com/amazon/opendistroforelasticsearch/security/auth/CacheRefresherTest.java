@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auth;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.ElasticsearchSecurityException;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+public class CacheRefresherTest {
+
+    private Deque<Runnable> executed;
+    private Cache<String, CacheRefresher.Entry<String>> cache;
+    private AtomicInteger loads;
+
+    @Before
+    public void setup() {
+        executed = new ArrayDeque<>();
+        cache = CacheBuilder.newBuilder().build();
+        loads = new AtomicInteger();
+    }
+
+    private CacheRefresher refresher(long softTtlNanos) {
+        return new CacheRefresher(TimeValue.timeValueNanos(softTtlNanos), TimeValue.timeValueHours(1), TimeValue.timeValueHours(2),
+                executed::add);
+    }
+
+    private Callable<String> loader() {
+        return () -> "v" + loads.incrementAndGet();
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        final CacheRefresher refresher = refresher(0);
+        Assert.assertEquals("v1", refresher.get(cache, "k", loader(), this::loader));
+        Assert.assertEquals("v1", refresher.get(cache, "k", loader(), this::loader));
+        Assert.assertTrue(executed.isEmpty());
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        final CacheRefresher refresher = refresher(1);
+        Assert.assertEquals("v1", refresher.get(cache, "k", loader(), this::loader));
+        Thread.sleep(1);
+
+        //stale value is served, only one refresh is started
+        Assert.assertEquals("v1", refresher.get(cache, "k", loader(), this::loader));
+        Assert.assertEquals("v1", refresher.get(cache, "k", loader(), this::loader));
+        Assert.assertEquals(1, executed.size());
+
+        executed.poll().run();
+        Assert.assertEquals(1, refresher.getRefreshed());
+        Assert.assertEquals("v2", cache.getIfPresent("k").getValue());
+    }
+
+    @Test
+    public void testFailedRefreshKeepsStale() throws Exception {
+        final CacheRefresher refresher = refresher(1);
+        refresher.get(cache, "k", loader(), this::loader);
+        Thread.sleep(1);
+
+        refresher.get(cache, "k", loader(), () -> () -> {
+            throw new IllegalStateException("backend down");
+        });
+        executed.poll().run();
+        Assert.assertEquals(1, refresher.getFailed());
+        Assert.assertEquals("v1", cache.getIfPresent("k").getValue());
+
+        //backoff
+        Assert.assertEquals("v1", refresher.get(cache, "k", loader(), this::loader));
+        Assert.assertTrue(executed.isEmpty());
+    }
+
+    @Test
+    public void testRejectedRefreshEvicts() throws Exception {
+        final CacheRefresher refresher = refresher(1);
+        refresher.get(cache, "k", loader(), this::loader);
+        Thread.sleep(1);
+
+        refresher.get(cache, "k", loader(), () -> () -> {
+            throw new ElasticsearchSecurityException("password does not match");
+        });
+        executed.poll().run();
+        Assert.assertEquals(1, refresher.getFailed());
+        Assert.assertNull(cache.getIfPresent("k"));
+
+        //the next request authenticates again
+        Assert.assertEquals("v2", refresher.get(cache, "k", loader(), this::loader));
+    }
+
+    @Test
+    public void testIsRejection() {
+        Assert.assertTrue(CacheRefresher.isRejection(new ElasticsearchSecurityException("user not found")));
+        Assert.assertTrue(CacheRefresher.isRejection(new ElasticsearchSecurityException("wrapped",
+                new ElasticsearchSecurityException("No user found"))));
+        Assert.assertFalse(CacheRefresher.isRejection(new ElasticsearchSecurityException("unreachable",
+                new IOException("connection refused"))));
+        Assert.assertFalse(CacheRefresher.isRejection(new IllegalStateException("backend down")));
+    }
+
+    @Test
+    public void testInvalidatedWhileRefreshing() throws Exception {
+        final CacheRefresher refresher = refresher(1);
+        refresher.get(cache, "k", loader(), this::loader);
+        Thread.sleep(1);
+
+        refresher.get(cache, "k", loader(), this::loader);
+        cache.invalidateAll();
+        executed.poll().run();
+        Assert.assertNull(cache.getIfPresent("k"));
+    }
+
+    @Test
+    public void testNotCachedIfNull() {
+        final CacheRefresher refresher = refresher(0);
+        try {
+            refresher.get(cache, "k", () -> null, this::loader);
+            Assert.fail();
+        } catch (Exception e) {
+            //expected
+        }
+        Assert.assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auth;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+public class GradualCacheInvalidatorTest {
+
+    private ThreadPool threadPool;
+    private Deque<Runnable> scheduled;
+    private Cache<String, String> cache1;
+    private Cache<String, String> cache2;
+
+    @Before
+    public void setup() {
+        threadPool = mock(ThreadPool.class);
+        scheduled = new ArrayDeque<>();
+        when(threadPool.schedule(any(Runnable.class), any(TimeValue.class), anyString())).thenAnswer(invocation -> {
+            scheduled.add(invocation.getArgument(0));
+            return null;
+        });
+
+        cache1 = CacheBuilder.newBuilder().build();
+        cache2 = CacheBuilder.newBuilder().build();
+        for (int i = 0; i < 10; i++) {
+            cache1.put("a" + i, "v");
+            cache2.put("b" + i, "v");
+        }
+    }
+
+    private long size() {
+        return cache1.size() + cache2.size();
+    }
+
+    @Test
+    public void testImmediate() {
+        new GradualCacheInvalidator(threadPool, TimeValue.ZERO).invalidateAll(Arrays.asList(cache1, cache2));
+        Assert.assertEquals(0, size());
+        verifyZeroInteractions(threadPool);
+    }
+
+    @Test
+    public void testSpread() {
+        //5 ticks, 4 entries each
+        new GradualCacheInvalidator(threadPool, TimeValue.timeValueMillis(5 * GradualCacheInvalidator.TICK_MILLIS))
+                .invalidateAll(Arrays.asList(cache1, cache2));
+
+        long expected = 16;
+        Assert.assertEquals(expected, size());
+        while (!scheduled.isEmpty()) {
+            scheduled.poll().run();
+            expected -= 4;
+            Assert.assertEquals(expected, size());
+        }
+        Assert.assertEquals(0, size());
+    }
+
+    @Test
+    public void testSuperseded() {
+        final GradualCacheInvalidator invalidator = new GradualCacheInvalidator(threadPool,
+                TimeValue.timeValueMillis(20 * GradualCacheInvalidator.TICK_MILLIS));
+        invalidator.invalidateAll(Arrays.asList(cache1, cache2));
+        Assert.assertEquals(19, size());
+        final Runnable stale = scheduled.poll();
+
+        invalidator.invalidateAll(Collections.singletonList(cache1));
+        stale.run();
+        //the stale run does nothing and does not schedule the next tick
+        Assert.assertEquals(1, scheduled.size());
+
+        while (!scheduled.isEmpty()) {
+            scheduled.poll().run();
+        }
+        Assert.assertEquals(0, cache1.size());
+        Assert.assertTrue(cache2.size() > 0);
+    }
+}
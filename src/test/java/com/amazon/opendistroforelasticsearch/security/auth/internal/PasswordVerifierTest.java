@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.auth.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.tools.Hasher;
+
+public class PasswordVerifierTest {
+
+    @Test
+    public void testHashes() {
+        for (String hash : new String[] { Hasher.hash("secret".toCharArray()), PasswordHashes.pbkdf2("secret".toCharArray(), 1000),
+                PasswordHashes.argon2("secret".toCharArray(), 64, 1, 1) }) {
+            Assert.assertTrue(hash, PasswordHashes.check(hash, "secret".toCharArray()));
+            Assert.assertFalse(hash, PasswordHashes.check(hash, "secreT".toCharArray()));
+        }
+    }
+
+    @Test
+    public void testPasslibPbkdf2() {
+        //passlib.hash.pbkdf2_sha256.using(rounds=1000, salt=b"saltsaltsaltsalt").hash("password")
+        final String hash = "$pbkdf2-sha256$1000$c2FsdHNhbHRzYWx0c2FsdA$8nX7hwFEzIB8aPajJTYK8weHQc5Ngz0pFVAKvSu4jQA";
+        Assert.assertTrue(PasswordHashes.check(hash, "password".toCharArray()));
+        Assert.assertFalse(PasswordHashes.check(hash, "Password".toCharArray()));
+    }
+
+    @Test
+    public void testReferenceArgon2() {
+        //echo -n "password" | argon2 somesalt -id -t 2 -m 16 -p 4 -l 32
+        final String hash = "$argon2id$v=19$m=65536,t=2,p=4$c29tZXNhbHQ$GpZ3sK/oH9p7VIiV56G/64Zo/8GaUw434IimaPqxwCo";
+        Assert.assertTrue(PasswordHashes.check(hash, "password".toCharArray()));
+        Assert.assertFalse(PasswordHashes.check(hash, "Password".toCharArray()));
+    }
+
+    @Test
+    public void testDirect() {
+        final PasswordVerifier verifier = PasswordVerifier.direct();
+        final String hash = PasswordHashes.pbkdf2("secret".toCharArray(), 1000);
+        Assert.assertTrue(verifier.verify("user", hash, "secret".toCharArray()));
+        Assert.assertFalse(verifier.verify("user", hash, "other".toCharArray()));
+        Assert.assertEquals(2, verifier.getVerified());
+        Assert.assertEquals(0, verifier.getThreads());
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        final PasswordVerifier verifier = new PasswordVerifier(1, 10);
+        final String hash = PasswordHashes.pbkdf2("secret".toCharArray(), 200_000);
+        final ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> {
+                    start.await();
+                    return verifier.verify("user", hash, "secret".toCharArray());
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue(result.get());
+            }
+            Assert.assertEquals(8, verifier.getVerified() + verifier.getShared());
+            Assert.assertTrue(verifier.getVerified() < 8);
+        } finally {
+            callers.shutdownNow();
+            verifier.close();
+        }
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        final PasswordVerifier verifier = new PasswordVerifier(1, 1);
+        final String hash = PasswordHashes.pbkdf2("secret".toCharArray(), 1_000_000);
+        final ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            //one running, one queued
+            final Future<Boolean> running = callers.submit(() -> verifier.verify("user1", hash, "secret".toCharArray()));
+            while (verifier.getInFlight() < 1) {
+                Thread.sleep(1);
+            }
+            final Future<Boolean> queued = callers.submit(() -> verifier.verify("user2", hash, "secret".toCharArray()));
+            while (verifier.getQueueDepth() < 1) {
+                Thread.sleep(1);
+            }
+
+            try {
+                verifier.verify("user3", hash, "secret".toCharArray());
+                Assert.fail();
+            } catch (EsRejectedExecutionException e) {
+                Assert.assertEquals(1, verifier.getRejected());
+            }
+
+            Assert.assertTrue(running.get());
+            Assert.assertTrue(queued.get());
+            Assert.assertEquals(0, verifier.getInFlight());
+        } finally {
+            callers.shutdownNow();
+            verifier.close();
+        }
+    }
+
+    @Test
+    public void testClosed() {
+        final PasswordVerifier verifier = new PasswordVerifier(1, 1);
+        final String hash = PasswordHashes.pbkdf2("secret".toCharArray(), 1000);
+        Assert.assertTrue(verifier.verify("user", hash, "secret".toCharArray()));
+
+        verifier.close();
+        try {
+            verifier.verify("user", hash, "secret".toCharArray());
+            Assert.fail();
+        } catch (EsRejectedExecutionException e) {
+            Assert.assertTrue(e.isExecutorShutdown());
+            Assert.assertEquals(0, verifier.getInFlight());
+        }
+    }
+}
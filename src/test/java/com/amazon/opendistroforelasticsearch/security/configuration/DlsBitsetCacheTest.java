@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.configuration;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.FixedBitSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DlsBitsetCacheTest {
+
+    @Test
+    public void testCachedPerSegmentAndQuery() throws Exception {
+        final DlsBitsetCache cache = new DlsBitsetCache(1024 * 1024);
+        final AtomicInteger loads = new AtomicInteger();
+
+        try (Directory directory = new ByteBuffersDirectory()) {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()))) {
+                for (int i = 0; i < 10; i++) {
+                    final Document doc = new Document();
+                    doc.add(new StringField("owner", "team_" + (i % 2), Field.Store.NO));
+                    writer.addDocument(doc);
+                }
+            }
+
+            final DirectoryReader reader = DirectoryReader.open(directory);
+            final LeafReader leaf = reader.leaves().get(0).reader();
+            final Query team0 = new TermQuery(new Term("owner", "team_0"));
+            final Query team1 = new TermQuery(new Term("owner", "team_1"));
+
+            final FixedBitSet first = cache.getOrCompute(leaf, team0, null, null, () -> {
+                loads.incrementAndGet();
+                return new FixedBitSet(leaf.maxDoc());
+            });
+            final FixedBitSet second = cache.getOrCompute(leaf, new TermQuery(new Term("owner", "team_0")), null, null, () -> {
+                loads.incrementAndGet();
+                return new FixedBitSet(leaf.maxDoc());
+            });
+            Assert.assertSame(first, second);
+            Assert.assertEquals(1, loads.get());
+
+            cache.getOrCompute(leaf, team1, null, null, () -> {
+                loads.incrementAndGet();
+                return new FixedBitSet(leaf.maxDoc());
+            });
+            cache.getOrCompute(leaf, team0, Collections.singleton("~secret"), null, () -> {
+                loads.incrementAndGet();
+                return new FixedBitSet(leaf.maxDoc());
+            });
+            Assert.assertEquals(3, loads.get());
+            Assert.assertEquals(3, cache.size());
+
+            reader.close();
+            Assert.assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void testSegmentClosed() throws Exception {
+        final DlsBitsetCache cache = new DlsBitsetCache(1024 * 1024);
+        final Query team0 = new TermQuery(new Term("owner", "team_0"));
+        final Query team1 = new TermQuery(new Term("owner", "team_1"));
+
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE))) {
+            //one segment per team
+            for (int team = 0; team < 2; team++) {
+                for (int i = 0; i < 5; i++) {
+                    final Document doc = new Document();
+                    doc.add(new StringField("owner", "team_" + team, Field.Store.NO));
+                    writer.addDocument(doc);
+                }
+                writer.commit();
+            }
+
+            final DirectoryReader reader = DirectoryReader.open(directory);
+            Assert.assertEquals(2, reader.leaves().size());
+            for (final LeafReaderContext leaf : reader.leaves()) {
+                cache.getOrCompute(leaf.reader(), team0, null, null, () -> new FixedBitSet(leaf.reader().maxDoc()));
+                cache.getOrCompute(leaf.reader(), team1, null, null, () -> new FixedBitSet(leaf.reader().maxDoc()));
+            }
+            Assert.assertEquals(4, cache.size());
+
+            //the second segment is fully deleted, the new reader shares only the core of the first one
+            writer.deleteDocuments(new Term("owner", "team_1"));
+            writer.commit();
+            final DirectoryReader newReader = DirectoryReader.openIfChanged(reader);
+            Assert.assertEquals(1, newReader.leaves().size());
+
+            reader.close();
+            Assert.assertEquals(2, cache.size());
+            final AtomicInteger loads = new AtomicInteger();
+            cache.getOrCompute(newReader.leaves().get(0).reader(), team0, null, null, () -> {
+                loads.incrementAndGet();
+                return new FixedBitSet(5);
+            });
+            Assert.assertEquals(0, loads.get());
+
+            newReader.close();
+            Assert.assertEquals(0, cache.size());
+            Assert.assertEquals(0, cache.usedBytes());
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        final FixedBitSet bitset = new FixedBitSet(10);
+        final DlsBitsetCache cache = new DlsBitsetCache(2 * bitset.ramBytesUsed());
+        final AtomicInteger loads = new AtomicInteger();
+
+        try (Directory directory = new ByteBuffersDirectory()) {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()))) {
+                writer.addDocument(new Document());
+            }
+
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                final LeafReader leaf = reader.leaves().get(0).reader();
+                final Query team0 = new TermQuery(new Term("owner", "team_0"));
+                final Query team1 = new TermQuery(new Term("owner", "team_1"));
+                final Query team2 = new TermQuery(new Term("owner", "team_2"));
+                final Callable<FixedBitSet> loader = () -> {
+                    loads.incrementAndGet();
+                    return new FixedBitSet(10);
+                };
+
+                cache.getOrCompute(leaf, team0, null, null, loader);
+                cache.getOrCompute(leaf, team1, null, null, loader);
+                //team_0 is used again, so team_1 is the least recently used one
+                cache.getOrCompute(leaf, team0, null, null, loader);
+                cache.getOrCompute(leaf, team2, null, null, loader);
+                Assert.assertEquals(3, loads.get());
+                Assert.assertEquals(2, cache.size());
+                Assert.assertEquals(2 * bitset.ramBytesUsed(), cache.usedBytes());
+
+                cache.getOrCompute(leaf, team0, null, null, loader);
+                cache.getOrCompute(leaf, team2, null, null, loader);
+                Assert.assertEquals(3, loads.get());
+                cache.getOrCompute(leaf, team1, null, null, loader);
+                Assert.assertEquals(4, loads.get());
+                Assert.assertEquals(2, cache.size());
+            }
+            Assert.assertEquals(0, cache.size());
+            Assert.assertEquals(0, cache.usedBytes());
+        }
+    }
+}
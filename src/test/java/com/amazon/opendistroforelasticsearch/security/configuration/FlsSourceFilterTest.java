@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.configuration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FlsSourceFilterTest {
+
+    private static final String SOURCE = "{"
+            + "\"user\": \"jdoe\","
+            + "\"ssn\": \"123-45-6789\","
+            + "\"empty\": {},"
+            + "\"address\": {\"street\": \"Main St\", \"zip\": 12345, \"geo\": {\"lat\": 1.5, \"lon\": 2.5}},"
+            + "\"tags\": [\"a\", \"b\", [\"c\", {\"d\": 1}]],"
+            + "\"items\": [{\"name\": \"x\", \"price\": 10, \"secret\": true}, {\"price\": 20}, 3],"
+            + "\"a.b\": {\"c\": \"dotted\"},"
+            + "\"nothing\": null"
+            + "}";
+
+    private static Map<String, Object> toMap(final byte[] source) {
+        return XContentHelper.convertToMap(new BytesArray(source), false, XContentType.JSON).v2();
+    }
+
+    private static void assertSameAsMapFilter(final String[] includes, final String[] excludes) throws Exception {
+        final byte[] source = SOURCE.getBytes(StandardCharsets.UTF_8);
+        final Map<String, Object> expected = XContentMapValues.filter(includes, excludes).apply(toMap(source));
+        Assert.assertEquals(Arrays.toString(includes) + " " + Arrays.toString(excludes),
+                expected, toMap(FlsSourceFilter.forPatterns(includes, excludes).filter(source)));
+    }
+
+    @Test
+    public void testIncludes() throws Exception {
+        assertSameAsMapFilter(new String[] { "user" }, null);
+        assertSameAsMapFilter(new String[] { "address" }, null);
+        assertSameAsMapFilter(new String[] { "address.geo.lat", "items.name" }, null);
+        assertSameAsMapFilter(new String[] { "a*" }, null);
+        assertSameAsMapFilter(new String[] { "*.lon", "tags" }, null);
+        assertSameAsMapFilter(new String[] { "a.b.c" }, null);
+        assertSameAsMapFilter(new String[] { "empty", "nothing" }, null);
+        assertSameAsMapFilter(new String[] { "unknown" }, null);
+    }
+
+    @Test
+    public void testExcludes() throws Exception {
+        assertSameAsMapFilter(null, new String[] { "ssn" });
+        assertSameAsMapFilter(null, new String[] { "address.geo" });
+        assertSameAsMapFilter(null, new String[] { "items.secret", "items.price" });
+        assertSameAsMapFilter(null, new String[] { "*.lat", "tags.d" });
+        assertSameAsMapFilter(null, new String[] { "a.b" });
+        assertSameAsMapFilter(null, new String[] { "*" });
+    }
+
+    @Test
+    public void testManyPatterns() throws Exception {
+        final String[] patterns = new String[1000];
+        for (int i = 0; i < patterns.length; i += 2) {
+            patterns[i] = "*.field_" + Integer.toHexString(i * 7919) + "_name";
+            patterns[i + 1] = "*_" + Integer.toHexString(i * 104729) + "_*";
+        }
+        assertSameAsMapFilter(patterns, null);
+        assertSameAsMapFilter(null, patterns);
+    }
+
+    @Test
+    public void testFieldNames() throws Exception {
+        final byte[] source = SOURCE.getBytes(StandardCharsets.UTF_8);
+
+        final Map<String, Object> included = toMap(FlsSourceFilter.forFieldNames(new HashSet<>(Arrays.asList("user", "items")),
+                Collections.emptySet()).filter(source));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("user", "items")), included.keySet());
+        Assert.assertEquals(toMap(source).get("items"), included.get("items"));
+
+        final Map<String, Object> excluded = toMap(FlsSourceFilter.forFieldNames(Collections.emptySet(),
+                new HashSet<>(Arrays.asList("ssn", "address"))).filter(source));
+        final Map<String, Object> expected = toMap(source);
+        expected.remove("ssn");
+        expected.remove("address");
+        Assert.assertEquals(expected, excluded);
+    }
+}
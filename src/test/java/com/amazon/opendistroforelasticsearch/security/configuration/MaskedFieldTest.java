@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.configuration;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.apache.lucene.util.BytesRef;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MaskedFieldTest {
+
+    private static final Salt SALT = new Salt("abcdefghijklmnop".getBytes(StandardCharsets.UTF_8));
+
+    private static void assertSameMaskForAllTypes(final MaskedField mf, final String value) {
+        final String masked = mf.mask(value);
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(masked, new String(mf.mask(bytes), StandardCharsets.UTF_8));
+
+        //value in the middle of a larger buffer
+        final byte[] buffer = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, buffer, 2, bytes.length);
+        Assert.assertEquals(masked, mf.mask(new BytesRef(buffer, 2, bytes.length)).utf8ToString());
+    }
+
+    @Test
+    public void testDefault() {
+        final MaskedField mf = new MaskedField("ip", SALT);
+        Assert.assertEquals(mf.mask("10.0.0.1"), new MaskedField("ip", SALT).mask("10.0.0.1"));
+        Assert.assertNotEquals(mf.mask("10.0.0.1"), mf.mask("10.0.0.2"));
+        Assert.assertNotEquals(mf.mask("10.0.0.1"), new MaskedField("ip", new Salt(new byte[16])).mask("10.0.0.1"));
+        assertSameMaskForAllTypes(mf, "10.0.0.1");
+    }
+
+    @Test
+    public void testAlgorithm() throws Exception {
+        final MaskedField mf = new MaskedField("ip::SHA-256", SALT);
+        final String expected = new String(Hex.encode(MessageDigest.getInstance("SHA-256").digest("10.0.0.1".getBytes(StandardCharsets.UTF_8))),
+                StandardCharsets.UTF_8);
+        Assert.assertEquals(expected, mf.mask("10.0.0.1"));
+        Assert.assertEquals(expected, mf.mask("10.0.0.1"));
+        assertSameMaskForAllTypes(mf, "10.0.0.1");
+    }
+
+    @Test
+    public void testRegexReplacements() {
+        final MaskedField mf = new MaskedField("email::/[a-z]+@/::xxx@::/\\.com$/::.org", SALT);
+        Assert.assertEquals("xxx@example.org", mf.mask("jdoe@example.com"));
+        assertSameMaskForAllTypes(mf, "jdoe@example.com");
+    }
+
+    @Test
+    public void testValueCache() {
+        final MaskedField uncached = new MaskedField("ip", SALT);
+        final MaskedField cached = new MaskedField("ip", SALT, 2);
+
+        for (int i = 0; i < 10; i++) {
+            final String value = "10.0.0." + (i % 3);
+            Assert.assertEquals(uncached.mask(value), cached.mask(value));
+            assertSameMaskForAllTypes(cached, value);
+        }
+    }
+}
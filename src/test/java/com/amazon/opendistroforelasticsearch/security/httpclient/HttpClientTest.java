@@ -15,7 +15,17 @@
 
 package com.amazon.opendistroforelasticsearch.security.httpclient;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -74,6 +84,57 @@ public class HttpClientTest extends SingleClusterTest {
 
     }
 
+    @Test
+    public void testBulk() throws Exception {
+
+        final Settings settings = Settings.builder()
+                .put("opendistro_security.ssl.http.enabled", false)
+                .build();
+
+        setup(Settings.EMPTY, new DynamicSecurityConfig(), settings);
+
+        Thread.sleep(1000);
+
+        try(final HttpClient httpClient = HttpClient.builder(clusterInfo.httpHost+":"+clusterInfo.httpPort)
+                .setBasicCredentials("admin", "admin").build()) {
+
+            for (final boolean gzip : new boolean[] { false, true }) {
+                final List<IndexRequest> requests = new ArrayList<>();
+                requests.add(new IndexRequest("bulkindex").source("{\"a\":5}", XContentType.JSON));
+                requests.add(new IndexRequest("bulkindex").source("{\n  \"a\" : 6\n}", XContentType.JSON));
+                //a text value for a long field fails on its own
+                requests.add(new IndexRequest("bulkindex").source("{\"a\":\"x\"}", XContentType.JSON));
+                requests.add(new IndexRequest("bulkindex").source("a: 7\n", XContentType.YAML));
+
+                final BulkResponse response = bulk(httpClient, requests, gzip);
+                Assert.assertEquals(4, response.getItems().length);
+                Assert.assertTrue(response.hasFailures());
+                Assert.assertFalse(response.getItems()[0].isFailed());
+                Assert.assertFalse(response.getItems()[1].isFailed());
+                Assert.assertTrue(response.getItems()[2].isFailed());
+                Assert.assertFalse(response.getItems()[3].isFailed());
+            }
+        }
+
+        try(final HttpClient httpClient = HttpClient.builder("unknownhost:6654")
+                .setBasicCredentials("admin", "admin").build()) {
+            final List<IndexRequest> requests = new ArrayList<>();
+            requests.add(new IndexRequest("bulkindex").source("{\"a\":5}", XContentType.JSON));
+            try {
+                bulk(httpClient, requests, true);
+                Assert.fail("Expected the bulk request to fail");
+            } catch (Exception e) {
+                //expected
+            }
+        }
+    }
+
+    private static BulkResponse bulk(final HttpClient httpClient, final List<IndexRequest> requests, final boolean gzip) throws Exception {
+        final CompletableFuture<BulkResponse> future = new CompletableFuture<>();
+        httpClient.bulk(requests, RefreshPolicy.IMMEDIATE, gzip, ActionListener.wrap(future::complete, future::completeExceptionally));
+        return future.get(30, TimeUnit.SECONDS);
+    }
+
     @Test
     public void testSslConnection() throws Exception {
 
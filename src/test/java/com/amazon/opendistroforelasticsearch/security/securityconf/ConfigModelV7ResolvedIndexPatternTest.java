@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.securityconf;
+
+import static com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModelV7Test.ROLES_MAPPING;
+import static com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModelV7Test.model;
+import static com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModelV7Test.resolved;
+import static com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModelV7Test.set;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.AliasMetadata;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.metadata.Metadata;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.user.User;
+
+public class ConfigModelV7ResolvedIndexPatternTest {
+
+    private static final String ROLES = "\"alias_reader\":{\"index_permissions\":[{\"index_patterns\":[\"logs\"],\"allowed_actions\":[\"indices:data/read/*\"]}]},"
+            + "\"logs_reader\":{\"index_permissions\":[{\"index_patterns\":[\"logs\"],\"allowed_actions\":[\"indices:data/read/*\"]}]}";
+
+    private static ClusterState state(String clusterUUID, long version, boolean withAlias) {
+        final IndexMetadata.Builder index = IndexMetadata.builder("logs-2020")
+                .settings(Settings.builder().put(IndexMetadata.SETTING_VERSION_CREATED, Version.CURRENT))
+                .numberOfShards(1)
+                .numberOfReplicas(0);
+        if (withAlias) {
+            index.putAlias(AliasMetadata.builder("logs").build());
+        }
+        final Metadata metadata = Metadata.builder().clusterUUID(clusterUUID).version(version).put(index.build(), false).build();
+        return ClusterState.builder(ClusterName.DEFAULT).metadata(metadata).build();
+    }
+
+    @Test
+    public void testResolvedPerMetadataVersion() throws Exception {
+        final ClusterService clusterService = mock(ClusterService.class);
+        final IndexNameExpressionResolver resolver = new IndexNameExpressionResolver(new ThreadContext(Settings.EMPTY));
+        final ConfigModelV7.SecurityRoles roles = model(ROLES, ROLES_MAPPING, "ip-only").getSecurityRoles();
+        final ConfigModelV7.SecurityRoles aliasReader = roles.filter(set("alias_reader"));
+        final ConfigModelV7.SecurityRoles logsReader = roles.filter(set("logs_reader"));
+        final User alice = new User("alice");
+        final String[] search = { "indices:data/read/search" };
+
+        when(clusterService.state()).thenReturn(state("uuid", 1, false));
+        Assert.assertFalse(aliasReader.impliesTypePermGlobal(resolved("logs-2020"), alice, search, resolver, clusterService));
+
+        //same metadata version, the pattern is not resolved again, also not for other roles of the config
+        when(clusterService.state()).thenReturn(state("uuid", 1, true));
+        Assert.assertFalse(aliasReader.impliesTypePermGlobal(resolved("logs-2020"), alice, search, resolver, clusterService));
+        Assert.assertFalse(logsReader.impliesTypePermGlobal(resolved("logs-2020"), alice, search, resolver, clusterService));
+
+        //the alias is seen with the next metadata version
+        when(clusterService.state()).thenReturn(state("uuid", 2, true));
+        Assert.assertTrue(aliasReader.impliesTypePermGlobal(resolved("logs-2020"), alice, search, resolver, clusterService));
+        Assert.assertTrue(logsReader.impliesTypePermGlobal(resolved("logs-2020"), alice, search, resolver, clusterService));
+
+        //and with the same version of another cluster
+        when(clusterService.state()).thenReturn(state("other", 2, false));
+        Assert.assertFalse(aliasReader.impliesTypePermGlobal(resolved("logs-2020"), alice, search, resolver, clusterService));
+    }
+}
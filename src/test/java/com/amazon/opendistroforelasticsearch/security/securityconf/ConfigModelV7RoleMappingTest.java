@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.securityconf;
+
+import static com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModelV7Test.ROLES;
+import static com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModelV7Test.ROLES_MAPPING;
+import static com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModelV7Test.caller;
+import static com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModelV7Test.model;
+import static com.amazon.opendistroforelasticsearch.security.securityconf.ConfigModelV7Test.set;
+
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.user.User;
+
+public class ConfigModelV7RoleMappingTest {
+
+    @Test
+    public void testRoleMapping() throws Exception {
+        final ConfigModelV7 model = model(ROLES, ROLES_MAPPING, "ip-only");
+
+        Assert.assertEquals(set("logs_reader"), model.mapSecurityRoles(new User("admin"), null));
+        Assert.assertEquals(set("logs_reader"), model.mapSecurityRoles(new User("bob", set("ops-12"), null), null));
+        Assert.assertEquals(set(), model.mapSecurityRoles(new User("bob", set("ops-x"), null), null));
+        Assert.assertEquals(set("own_index"), model.mapSecurityRoles(new User("bob", set("dev", "eu-west"), null), null));
+        Assert.assertEquals(set(), model.mapSecurityRoles(new User("bob", set("dev"), null), null));
+        Assert.assertEquals(set("snapshots"), model.mapSecurityRoles(new User("bob"), caller("10.0.0.1", "10.0.0.1")));
+        //host names are ignored in this mode
+        Assert.assertEquals(set(), model.mapSecurityRoles(new User("bob"), caller("node.example.com", "10.1.0.1")));
+    }
+
+    @Test
+    public void testRoleMappingCache() throws Exception {
+        final ConfigModelV7 model = model(ROLES, ROLES_MAPPING, "ip-only");
+
+        final Set<String> mapped = model.mapSecurityRoles(new User("bob", set("ops-1"), null), null);
+        Assert.assertSame(mapped, model.mapSecurityRoles(new User("bob", set("ops-1"), null), null));
+        Assert.assertNotSame(mapped, model.mapSecurityRoles(new User("bob", set("ops-1", "dev"), null), null));
+        try {
+            mapped.add("all_access");
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            //expected
+        }
+
+        //a new config version maps with its own mapping
+        final ConfigModelV7 rebuilt = model(ROLES, "\"snapshots\":{\"backend_roles\":[\"ops-*\"]}", "ip-only");
+        final Set<String> remapped = rebuilt.mapSecurityRoles(new User("bob", set("ops-1"), null), null);
+        Assert.assertEquals(set("snapshots"), remapped);
+        Assert.assertSame(remapped, rebuilt.mapSecurityRoles(new User("bob", set("ops-1"), null), null));
+        Assert.assertEquals(set("logs_reader"), model.mapSecurityRoles(new User("bob", set("ops-1"), null), null));
+    }
+
+    @Test
+    public void testRoleMappingHostNames() throws Exception {
+        final ConfigModelV7 model = model(ROLES, ROLES_MAPPING, "ip-hostname");
+
+        final Set<String> mapped = model.mapSecurityRoles(new User("bob"), caller("node.example.com", "10.1.0.1"));
+        Assert.assertEquals(set("snapshots"), mapped);
+        Assert.assertSame(mapped, model.mapSecurityRoles(new User("bob"), caller("node.example.com", "10.1.0.1")));
+        //same address with another host name
+        Assert.assertEquals(set(), model.mapSecurityRoles(new User("bob"), caller("node.example.org", "10.1.0.1")));
+    }
+
+    @Test
+    public void testRoleMappingHostNameLookup() throws Exception {
+        final ConfigModelV7 model = model(ROLES, ROLES_MAPPING, "ip-hostname-lookup");
+
+        //reverse lookups are never cached
+        final Set<String> mapped = model.mapSecurityRoles(new User("bob"), caller("node.example.com", "10.1.0.1"));
+        Assert.assertEquals(set("snapshots"), mapped);
+        Assert.assertNotSame(mapped, model.mapSecurityRoles(new User("bob"), caller("node.example.com", "10.1.0.1")));
+        Assert.assertEquals(set(), model.mapSecurityRoles(new User("bob"), caller("node.example.org", "10.1.0.1")));
+
+        //without a caller there is nothing to look up
+        final Set<String> withoutCaller = model.mapSecurityRoles(new User("admin"), null);
+        Assert.assertSame(withoutCaller, model.mapSecurityRoles(new User("admin"), null));
+    }
+}
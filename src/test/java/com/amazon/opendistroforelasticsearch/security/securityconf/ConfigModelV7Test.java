@@ -0,0 +1,171 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.securityconf;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.resolver.IndexResolverReplacer.Resolved;
+import com.amazon.opendistroforelasticsearch.security.securityconf.impl.CType;
+import com.amazon.opendistroforelasticsearch.security.securityconf.impl.SecurityDynamicConfiguration;
+import com.amazon.opendistroforelasticsearch.security.user.User;
+
+public class ConfigModelV7Test {
+
+    private static final String ACTION_GROUPS = "\"read_group\":{\"allowed_actions\":[\"indices:data/read/search\",\"indices:data/read/get\"]}";
+
+    static final String ROLES = "\"logs_reader\":{\"cluster_permissions\":[\"cluster:monitor/*\"],"
+            + "\"index_permissions\":[{\"index_patterns\":[\"logs-*\"],\"allowed_actions\":[\"indices:data/read/*\"]}]},"
+            + "\"own_index\":{\"index_permissions\":[{\"index_patterns\":[\"user_${user.name}\"],\"allowed_actions\":[\"read_group\"]}]},"
+            + "\"snapshots\":{\"cluster_permissions\":[\"/cluster:admin\\\\/snapshot\\\\/(get|status)/\"]}";
+
+    static final String ROLES_MAPPING = "\"logs_reader\":{\"users\":[\"adm*\"],\"backend_roles\":[\"/ops-\\\\d+/\"]},"
+            + "\"own_index\":{\"and_backend_roles\":[\"dev\",\"eu*\"]},"
+            + "\"snapshots\":{\"hosts\":[\"*.example.com\",\"10.0.0.*\"]}";
+
+    private ClusterService clusterService;
+    private IndexNameExpressionResolver resolver;
+
+    @Before
+    public void setup() {
+        clusterService = mock(ClusterService.class);
+        when(clusterService.state()).thenReturn(ClusterState.builder(ClusterName.DEFAULT).build());
+        resolver = new IndexNameExpressionResolver(new ThreadContext(Settings.EMPTY));
+    }
+
+    static <T> SecurityDynamicConfiguration<T> config(CType type, String entries) throws Exception {
+        final String json = "{\"_meta\":{\"type\":\"" + type.toLCString() + "\",\"config_version\":2}"
+                + (entries.isEmpty() ? "" : "," + entries) + "}";
+        return SecurityDynamicConfiguration.fromJson(json, type, 2, 0, 0);
+    }
+
+    static ConfigModelV7 model(String roles, String rolesMapping, String hostResolverMode) throws Exception {
+        final DynamicConfigModel dcm = mock(DynamicConfigModel.class);
+        when(dcm.getHostsResolverMode()).thenReturn(hostResolverMode);
+        return new ConfigModelV7(config(CType.ROLES, roles), config(CType.ROLESMAPPING, rolesMapping),
+                config(CType.ACTIONGROUPS, ACTION_GROUPS), config(CType.TENANTS, ""), dcm, Settings.EMPTY);
+    }
+
+    static Resolved resolved(String... indices) throws Exception {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.writeStringCollection(Collections.emptyList());
+            out.writeStringCollection(Arrays.asList(indices));
+            out.writeStringCollection(Arrays.asList(indices));
+            out.writeStringCollection(Collections.emptyList());
+            return new Resolved(out.bytes().streamInput());
+        }
+    }
+
+    static TransportAddress caller(String hostName, String ip) throws Exception {
+        return new TransportAddress(InetAddress.getByAddress(hostName, InetAddress.getByName(ip).getAddress()), 9300);
+    }
+
+    static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    @Test
+    public void testClusterPermissions() throws Exception {
+        final ConfigModelV7.SecurityRoles roles = model(ROLES, ROLES_MAPPING, "ip-only").getSecurityRoles();
+
+        final ConfigModelV7.SecurityRoles logsReader = roles.filter(set("logs_reader"));
+        Assert.assertTrue(logsReader.impliesClusterPermissionPermission("cluster:monitor/health"));
+        Assert.assertTrue(logsReader.impliesClusterPermissionPermission("cluster:monitor/health"));
+        Assert.assertFalse(logsReader.impliesClusterPermissionPermission("cluster:admin/snapshot/get"));
+
+        final ConfigModelV7.SecurityRoles snapshots = roles.filter(set("snapshots"));
+        Assert.assertTrue(snapshots.impliesClusterPermissionPermission("cluster:admin/snapshot/get"));
+        Assert.assertTrue(snapshots.impliesClusterPermissionPermission("cluster:admin/snapshot/status"));
+        Assert.assertFalse(snapshots.impliesClusterPermissionPermission("cluster:admin/snapshot/delete"));
+        Assert.assertFalse(snapshots.impliesClusterPermissionPermission("cluster:monitor/health"));
+    }
+
+    @Test
+    public void testFilteredRolesCache() throws Exception {
+        final ConfigModelV7.SecurityRoles roles = model(ROLES, ROLES_MAPPING, "ip-only").getSecurityRoles();
+
+        final ConfigModelV7.SecurityRoles filtered = roles.filter(set("logs_reader", "snapshots"));
+        Assert.assertEquals(set("logs_reader", "snapshots"), filtered.getRoleNames());
+        Assert.assertSame(filtered, roles.filter(set("snapshots", "logs_reader")));
+        Assert.assertNotSame(filtered, roles.filter(set("logs_reader")));
+
+        //a rebuilt config does not serve role sets of the previous one
+        final ConfigModelV7.SecurityRoles rebuilt = model("\"logs_reader\":{\"cluster_permissions\":[\"cluster:admin/*\"]}",
+                ROLES_MAPPING, "ip-only").getSecurityRoles();
+        final ConfigModelV7.SecurityRoles rebuiltFiltered = rebuilt.filter(set("logs_reader", "snapshots"));
+        Assert.assertEquals(set("logs_reader"), rebuiltFiltered.getRoleNames());
+        Assert.assertSame(rebuiltFiltered, rebuilt.filter(set("logs_reader", "snapshots")));
+        Assert.assertTrue(rebuiltFiltered.impliesClusterPermissionPermission("cluster:admin/snapshot/delete"));
+        Assert.assertFalse(filtered.impliesClusterPermissionPermission("cluster:admin/snapshot/delete"));
+    }
+
+    @Test
+    public void testIndexPermissions() throws Exception {
+        final ConfigModelV7.SecurityRoles roles = model(ROLES, ROLES_MAPPING, "ip-only").getSecurityRoles()
+                .filter(set("logs_reader", "own_index"));
+        final User alice = new User("alice");
+        final String[] search = { "indices:data/read/search" };
+
+        //twice, the second time served by the action tables
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(roles.impliesTypePermGlobal(resolved("logs-2020"), alice, search, resolver, clusterService));
+            Assert.assertTrue(roles.impliesTypePermGlobal(resolved("logs-2020", "user_alice"), alice, search, resolver, clusterService));
+            Assert.assertFalse(roles.impliesTypePermGlobal(resolved("user_bob"), alice, search, resolver, clusterService));
+            Assert.assertFalse(roles.impliesTypePermGlobal(resolved("metrics"), alice, search, resolver, clusterService));
+        }
+
+        //the action group of own_index does not contain this action
+        Assert.assertTrue(roles.impliesTypePermGlobal(resolved("logs-2020"), alice, new String[] { "indices:data/read/scroll" },
+                resolver, clusterService));
+        Assert.assertFalse(roles.impliesTypePermGlobal(resolved("user_alice"), alice, new String[] { "indices:data/read/scroll" },
+                resolver, clusterService));
+        Assert.assertFalse(roles.impliesTypePermGlobal(resolved("logs-2020"), alice, new String[] { "indices:data/write/index" },
+                resolver, clusterService));
+    }
+
+    @Test
+    public void testIndexPatternPerms() {
+        final ConfigModelV7.IndexPattern pattern = new ConfigModelV7.IndexPattern("logs-*");
+        Assert.assertFalse(pattern.getPerms().test("indices:data/read/search"));
+
+        pattern.addPerm(set("indices:data/read/*"));
+        Assert.assertTrue(pattern.getPerms().test("indices:data/read/search"));
+        Assert.assertFalse(pattern.getPerms().test("indices:data/write/index"));
+
+        pattern.addPerm(set("/indices:data\\/write\\/(index|bulk)/"));
+        Assert.assertTrue(pattern.getPerms().test("indices:data/read/search"));
+        Assert.assertTrue(pattern.getPerms().test("indices:data/write/index"));
+        Assert.assertFalse(pattern.getPerms().test("indices:data/write/delete"));
+    }
+}
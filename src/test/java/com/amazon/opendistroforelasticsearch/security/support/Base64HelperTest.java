@@ -25,9 +25,15 @@ import org.elasticsearch.action.search.SearchRequest;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import com.google.common.io.BaseEncoding;
@@ -45,6 +51,10 @@ public class Base64HelperTest {
         return deserializeObject(serializeObject(s));
     }
 
+    private static Serializable dsBinary(Serializable s) {
+        return deserializeObject(serializeObject(s, false));
+    }
+
     @Test
     public void testString() {
         String string = "string";
@@ -99,6 +109,70 @@ public class Base64HelperTest {
         Assert.assertEquals(list, ds(list));
     }
 
+    @Test
+    public void testBinaryString() {
+        Assert.assertEquals("string", dsBinary("string"));
+        Assert.assertEquals("", dsBinary(""));
+    }
+
+    @Test
+    public void testBinaryInetSocketAddress() throws Exception {
+        InetSocketAddress wildcard = new InetSocketAddress(0);
+        Assert.assertEquals(wildcard, dsBinary(wildcard));
+
+        InetSocketAddress named = new InetSocketAddress(InetAddress.getByAddress("node-1", new byte[] { 10, 0, 0, 1 }), 9300);
+        InetSocketAddress namedCopy = (InetSocketAddress) dsBinary(named);
+        Assert.assertEquals(named, namedCopy);
+        Assert.assertEquals("node-1", namedCopy.getHostString());
+
+        InetSocketAddress unresolved = InetSocketAddress.createUnresolved("node-2", 9300);
+        Assert.assertEquals(unresolved, dsBinary(unresolved));
+    }
+
+    @Test
+    public void testBinaryUser() {
+        User user = new User("user", Arrays.asList("br1", "br2"), null);
+        user.addOpenDistroSecurityRoles(Arrays.asList("role1"));
+        user.addAttributes(Collections.singletonMap("attr.jwt.dept", "eng"));
+        user.setRequestedTenant("tenant");
+        user.setInjected(true);
+
+        User copy = (User) dsBinary(user);
+        Assert.assertEquals(user, copy);
+        Assert.assertEquals(user.getRoles(), copy.getRoles());
+        Assert.assertEquals(user.getOpenDistroSecurityRoles(), copy.getOpenDistroSecurityRoles());
+        Assert.assertEquals(user.getCustomAttributesMap(), copy.getCustomAttributesMap());
+        Assert.assertEquals("tenant", copy.getRequestedTenant());
+        Assert.assertTrue(copy.isInjected());
+
+        Assert.assertNull(((User) dsBinary(new User("user"))).getRequestedTenant());
+    }
+
+    @Test
+    public void testBinaryStringSetMap() {
+        Map<String, Set<String>> map = new HashMap<>();
+        map.put("logs-*", new HashSet<>(Arrays.asList("{\"term\": {\"owner\": \"a\"}}", "{\"match_all\": {}}")));
+        map.put("metrics", Collections.emptySet());
+        Assert.assertEquals(map, dsBinary((Serializable) map));
+        Assert.assertEquals(new HashMap<>(), dsBinary(new HashMap<>()));
+    }
+
+    @Test
+    public void testBinaryFallsBackToJDKSerialization() {
+        Pattern pattern = Pattern.compile(".*");
+        Assert.assertEquals(pattern.pattern(), ((Pattern) dsBinary(pattern)).pattern());
+        ArrayList<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+        Assert.assertEquals(list, dsBinary(list));
+        HashMap<String, String> map = new HashMap<>(Collections.singletonMap("a", "b"));
+        Assert.assertEquals(map, dsBinary(map));
+    }
+
+    @Test
+    public void testBinaryIsSmaller() {
+        User user = new User("user", Arrays.asList("br1", "br2"), null);
+        Assert.assertTrue(serializeObject(user, false).length() < serializeObject(user, true).length());
+    }
+
     @Test(expected = ElasticsearchException.class)
     public void notSafeSerializable() {
         serializeObject(new NotSafeSerializable());
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazon.opendistroforelasticsearch.security.support;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.elasticsearch.ElasticsearchSecurityException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DlsFlsHeadersTest {
+
+    private static Map<String, Set<String>> map(String... keyValues) {
+        final Map<String, Set<String>> map = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.computeIfAbsent(keyValues[i], k -> new LinkedHashSet<>()).add(keyValues[i + 1]);
+        }
+        return map;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final Map<String, Set<String>> map = map("logs-*", "{\"term\": {\"owner\": \"a\"}}", "logs-*", "{\"match_all\": {}}", "metrics", "~secret");
+        final String header = DlsFlsHeaders.serialize(map, false);
+        Assert.assertEquals(map, DlsFlsHeaders.deserialize(header));
+        Assert.assertSame(DlsFlsHeaders.deserialize(header), DlsFlsHeaders.deserialize(header));
+    }
+
+    @Test
+    public void testCanonicalEncoding() {
+        final String header1 = DlsFlsHeaders.serialize(map("a", "1", "a", "2", "b", "3"), false);
+        final String header2 = DlsFlsHeaders.serialize(map("b", "3", "a", "2", "a", "1"), false);
+        Assert.assertEquals(header1, header2);
+    }
+
+    @Test
+    public void testMatches() {
+        final Map<String, Set<String>> map = map("a", "1", "b", "2");
+        final String header = DlsFlsHeaders.serialize(map, false);
+        Assert.assertTrue(DlsFlsHeaders.matches(header, DlsFlsHeaders.serialize(map("b", "2", "a", "1"), false), map("b", "2", "a", "1")));
+
+        final Map<String, Set<String>> other = map("a", "1", "b", "3");
+        Assert.assertFalse(DlsFlsHeaders.matches(header, DlsFlsHeaders.serialize(other, false), other));
+    }
+
+    @Test
+    public void testJDKSerializationCompatibility() {
+        final Map<String, Set<String>> map = new HashMap<>();
+        map.put("logs-*", new HashSet<>(Arrays.asList("1", "2")));
+        final String jdkHeader = DlsFlsHeaders.serialize(map, true);
+        Assert.assertEquals(-1, jdkHeader.indexOf(':'));
+        Assert.assertEquals(map, DlsFlsHeaders.deserialize(jdkHeader));
+
+        //header written by an old node compared on a new node and vice versa
+        Assert.assertTrue(DlsFlsHeaders.matches(jdkHeader, DlsFlsHeaders.serialize(map, false), map));
+        Assert.assertTrue(DlsFlsHeaders.matches(DlsFlsHeaders.serialize(map, false), jdkHeader, map));
+    }
+
+    @Test(expected = ElasticsearchSecurityException.class)
+    public void testForgedDigest() {
+        final String header = DlsFlsHeaders.serialize(map("forged", "1"), false);
+        DlsFlsHeaders.deserialize("AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA" + header.substring(header.indexOf(':')));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.support;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        long previousHighest = -1;
+        for (long micros = 0; micros < 1_000_000; micros++) {
+            final int bucket = LatencyHistogram.bucket(micros);
+            final long highest = LatencyHistogram.highestValue(bucket);
+            Assert.assertTrue(micros <= highest);
+            //at most 12.5% off
+            Assert.assertTrue(highest - micros <= micros / 8);
+            Assert.assertTrue(highest >= previousHighest);
+            previousHighest = highest;
+        }
+        Assert.assertEquals(LatencyHistogram.bucket(Long.MAX_VALUE), LatencyHistogram.bucket(1L << 40));
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentileInMicros(99));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getMaxInNanos());
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(500500), histogram.getTotalTimeInNanos());
+
+        final long p50 = histogram.getPercentileInMicros(50);
+        Assert.assertTrue(String.valueOf(p50), p50 >= 500 && p50 <= 500 * 1.125);
+        final long p99 = histogram.getPercentileInMicros(99);
+        Assert.assertTrue(String.valueOf(p99), p99 >= 990 && p99 <= 990 * 1.125);
+        Assert.assertEquals(1, histogram.getPercentileInMicros(0));
+
+        final Map<String, Object> map = histogram.toMap();
+        Assert.assertEquals(1000L, map.get("count"));
+        Assert.assertEquals(500L, map.get("total_time_in_millis"));
+        Assert.assertEquals(p99, ((Map<?, ?>) map.get("percentiles_in_micros")).get("99.0"));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazon.opendistroforelasticsearch.security.support;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WildcardMatcherTest {
+
+    @Test
+    public void testCombinedMatcher() {
+        final WildcardMatcher matcher = WildcardMatcher.from("logs-*", "*-archive", "metrics", "/audit-[0-9]+/", "tmp?");
+        Assert.assertTrue(matcher.test("logs-2020"));
+        Assert.assertTrue(matcher.test("logs-"));
+        Assert.assertTrue(matcher.test("old-archive"));
+        Assert.assertTrue(matcher.test("metrics"));
+        Assert.assertTrue(matcher.test("audit-42"));
+        Assert.assertTrue(matcher.test("tmp1"));
+        Assert.assertFalse(matcher.test("logs"));
+        Assert.assertFalse(matcher.test("metrics-1"));
+        Assert.assertFalse(matcher.test("audit-x"));
+        Assert.assertFalse(matcher.test(""));
+    }
+
+    @Test
+    public void testMatchingPatterns() {
+        final WildcardMatcher matcher = WildcardMatcher.from("l*", "logs-*", "*-2020", "logs-2020", "x*");
+        Assert.assertEquals(new HashSet<>(Arrays.asList("l*", "logs-*", "*-2020", "logs-2020")),
+                new HashSet<>(matcher.getMatchingPatterns("logs-2020")));
+        Assert.assertTrue(matcher.getMatchingPatterns("metrics").isEmpty());
+        Assert.assertEquals(Arrays.asList("metrics"), WildcardMatcher.from("metrics").getMatchingPatterns("metrics"));
+    }
+
+    @Test
+    public void testCombinedMatcherAgreesWithSingleMatchers() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            final Set<String> patterns = new HashSet<>();
+            for (int j = 0; j < 2 + random.nextInt(6); j++) {
+                patterns.add(randomString(random, "ab*?", 5));
+            }
+            final WildcardMatcher combined = WildcardMatcher.from(patterns);
+            final List<WildcardMatcher> singles = WildcardMatcher.matchers(patterns);
+
+            for (int j = 0; j < 20; j++) {
+                final String candidate = randomString(random, "ab", 6);
+                final boolean expected = singles.stream().anyMatch(m -> m.test(candidate));
+                Assert.assertEquals(patterns + " " + candidate, expected, combined.test(candidate));
+                Assert.assertEquals(patterns + " " + candidate, expected, combined.findFirst(candidate).isPresent());
+                Assert.assertEquals(patterns + " " + candidate, new HashSet<>(WildcardMatcher.getAllMatchingPatterns(singles, candidate)),
+                        new HashSet<>(combined.getMatchingPatterns(candidate)));
+            }
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int maxLength) {
+        final StringBuilder sb = new StringBuilder();
+        final int length = random.nextInt(maxLength);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License").
+ *  You may not use this file except in compliance with the License.
+ *  A copy of the License is located at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed
+ *  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.transport;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.transport.OpenDistroSecurityInterceptor.UserHeaderMemo;
+import com.amazon.opendistroforelasticsearch.security.user.User;
+
+public class UserHeaderMemoTest {
+
+    @Test
+    public void testSameUser() {
+        final User user = new User("user", Collections.singleton("backend"), null);
+        final UserHeaderMemo memo = new UserHeaderMemo(user, "serialized");
+        Assert.assertTrue(memo.matches(user));
+        Assert.assertFalse(memo.matches(new User("user", Collections.singleton("backend"), null)));
+    }
+
+    @Test
+    public void testMutatedUser() {
+        User user = new User("user");
+        UserHeaderMemo memo = new UserHeaderMemo(user, "serialized");
+        user.addOpenDistroSecurityRoles(Collections.singleton("role"));
+        Assert.assertFalse(memo.matches(user));
+
+        user = new User("user");
+        memo = new UserHeaderMemo(user, "serialized");
+        user.setRequestedTenant("tenant");
+        Assert.assertFalse(memo.matches(user));
+
+        user = new User("user");
+        memo = new UserHeaderMemo(user, "serialized");
+        user.addAttributes(Collections.singletonMap("attr.key", "value"));
+        Assert.assertFalse(memo.matches(user));
+
+        user = new User("user");
+        memo = new UserHeaderMemo(user, "serialized");
+        user.addRole("backend");
+        Assert.assertFalse(memo.matches(user));
+    }
+}